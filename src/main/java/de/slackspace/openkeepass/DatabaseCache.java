@@ -0,0 +1,354 @@
+package de.slackspace.openkeepass;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.slackspace.openkeepass.crypto.RandomGenerator;
+import de.slackspace.openkeepass.crypto.Sha256;
+import de.slackspace.openkeepass.domain.CustomIcon;
+import de.slackspace.openkeepass.domain.CustomIconBuilder;
+import de.slackspace.openkeepass.domain.CustomIconsBuilder;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.History;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.Meta;
+import de.slackspace.openkeepass.domain.MetaBuilder;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.util.ByteUtils;
+
+/**
+ * A cache of opened KeePass databases.
+ * <p>
+ * Opening a database reads the file, derives the key and parses the whole
+ * tree, which is expensive to repeat for a file which has not changed. The
+ * cache keeps the opened {@link KeePassFile} of every database file and
+ * password and returns it again as long as the file has the same size and
+ * modification time. These are checked on every lookup, so a file which has
+ * been changed is opened again.
+ * <p>
+ * Every lookup returns its own copy of the groups and entries of the cached
+ * tree, so a caller which changes the returned KeePassFile, e.g. with a
+ * {@link de.slackspace.openkeepass.domain.GroupBuilder}, does not affect the
+ * cache or other callers. Copying the tree is much cheaper than opening the
+ * file again.
+ * <p>
+ * The cache holds at most the given number of databases and the given
+ * weight. The weight of a database is the size of its file, which grows
+ * with the tree held in memory. If either limit is exceeded the least
+ * recently used databases are evicted.
+ * <p>
+ * Passwords are not stored. A database is cached under a salted hash of its
+ * password which is only valid for this cache instance.
+ *
+ */
+public class DatabaseCache {
+
+    private static final int SALT_LENGTH = 32;
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final byte[] salt = new RandomGenerator().getRandomBytes(SALT_LENGTH);
+    private final Map<CacheKey, CachedDatabase> databases = new LinkedHashMap<CacheKey, CachedDatabase>(16, 0.75f, true);
+
+    private long weight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries
+     *            the maximum number of cached databases
+     * @param maxWeight
+     *            the maximum sum of the file sizes of the cached databases in
+     *            bytes
+     */
+    public DatabaseCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one database.");
+        }
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("The maximum weight must be positive.");
+        }
+
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the opened database file. If the file has been opened with the
+     * same password before and has not changed since, a copy of the cached
+     * KeePassFile is returned; otherwise the file is opened and cached.
+     *
+     * @param keePassDatabaseFile
+     *            a KeePass database file, must not be NULL
+     * @param password
+     *            the password to open the database
+     * @return a KeePassFile
+     * @see KeePassDatabase#openDatabase(String)
+     */
+    public KeePassFile openDatabase(File keePassDatabaseFile, String password) {
+        if (keePassDatabaseFile == null) {
+            throw new IllegalArgumentException("You must provide a valid KeePass database file.");
+        }
+        if (password == null) {
+            throw new IllegalArgumentException("The password for the database must not be null. Please provide a valid password.");
+        }
+
+        CacheKey key = new CacheKey(canonicalPath(keePassDatabaseFile), fingerprint(password));
+        long size = keePassDatabaseFile.length();
+        long lastModified = keePassDatabaseFile.lastModified();
+
+        KeePassFile cachedFile = null;
+        synchronized (this) {
+            CachedDatabase cached = databases.get(key);
+            if (cached != null) {
+                if (cached.size == size && cached.lastModified == lastModified) {
+                    hitCount++;
+                    cachedFile = cached.keePassFile;
+                } else {
+                    remove(key);
+                }
+            }
+            if (cachedFile == null) {
+                missCount++;
+            }
+        }
+
+        if (cachedFile != null) {
+            // cached databases are never changed, so they can be copied without the lock
+            return copy(cachedFile);
+        }
+
+        KeePassFile keePassFile = KeePassDatabase.getInstance(keePassDatabaseFile).openDatabase(password);
+        put(key, new CachedDatabase(keePassFile, size, lastModified));
+
+        return copy(keePassFile);
+    }
+
+    /**
+     * Removes all cached databases of the given file.
+     *
+     * @param keePassDatabaseFile
+     *            the database file
+     */
+    public synchronized void invalidate(File keePassDatabaseFile) {
+        String path = canonicalPath(keePassDatabaseFile);
+
+        Iterator<Map.Entry<CacheKey, CachedDatabase>> iterator = databases.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<CacheKey, CachedDatabase> database = iterator.next();
+            if (database.getKey().path.equals(path)) {
+                weight -= database.getValue().size;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached databases.
+     */
+    public synchronized void invalidateAll() {
+        databases.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the number of cached databases.
+     *
+     * @return the number of cached databases
+     */
+    public synchronized int size() {
+        return databases.size();
+    }
+
+    /**
+     * Returns the sum of the file sizes of the cached databases.
+     *
+     * @return the weight of the cache in bytes
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns how many lookups have been served from the cache.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns how many lookups had to open the database file, either because
+     * it was not cached or because it has changed.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns how many databases have been evicted to stay within the limits
+     * of the cache.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private synchronized void put(CacheKey key, CachedDatabase database) {
+        remove(key);
+        databases.put(key, database);
+        weight += database.size;
+
+        Iterator<CachedDatabase> eldest = databases.values().iterator();
+        while (databases.size() > 1 && (databases.size() > maxEntries || weight > maxWeight)) {
+            weight -= eldest.next().size;
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    private void remove(CacheKey key) {
+        CachedDatabase removed = databases.remove(key);
+        if (removed != null) {
+            weight -= removed.size;
+        }
+    }
+
+    /**
+     * Copies the groups and entries of a database. Unlike
+     * {@link de.slackspace.openkeepass.domain.zipper.GroupZipper#cloneKeePassFile()}
+     * no child list, history, custom icon list or icon data is shared with
+     * the original, which is read by other callers concurrently and must
+     * never be changed. Times and properties cannot be changed and are shared.
+     */
+    private static KeePassFile copy(KeePassFile keePassFile) {
+        KeePassFileBuilder builder = new KeePassFileBuilder(copy(keePassFile.getMeta()));
+        for (Group group : keePassFile.getRoot().getGroups()) {
+            builder.addTopGroups(copy(group));
+        }
+        return builder.build();
+    }
+
+    private static Meta copy(Meta meta) {
+        if (meta == null || meta.getCustomIcons() == null) {
+            return meta;
+        }
+
+        List<CustomIcon> customIcons = new ArrayList<CustomIcon>();
+        for (CustomIcon customIcon : meta.getCustomIcons().getIcons()) {
+            customIcons.add(new CustomIconBuilder().uuid(customIcon.getUuid()).data(copy(customIcon.getData())).build());
+        }
+        return new MetaBuilder(meta).customIcons(new CustomIconsBuilder().customIcons(customIcons).build()).build();
+    }
+
+    private static Group copy(Group group) {
+        GroupBuilder builder = new GroupBuilder().uuid(group.getUuid()).name(group.getName()).iconId(group.getIconId())
+                .iconData(copy(group.getIconData())).customIconUuid(group.getCustomIconUuid()).times(group.getTimes());
+        if (group.hasExpandedFlag()) {
+            builder.isExpanded(group.isExpanded());
+        } else {
+            builder.withoutExpandedFlag();
+        }
+
+        for (Entry entry : group.getEntries()) {
+            builder.addEntry(copy(entry));
+        }
+        for (Group child : group.getGroups()) {
+            builder.addGroup(copy(child));
+        }
+
+        return builder.build();
+    }
+
+    private static Entry copy(Entry entry) {
+        EntryBuilder builder = new EntryBuilder(entry).iconData(copy(entry.getIconData()));
+        if (entry.getHistory() != null) {
+            History history = new History();
+            for (Entry historicEntry : entry.getHistory().getHistoricEntries()) {
+                history.getHistoricEntries().add(copy(historicEntry));
+            }
+            builder.history(history);
+        }
+
+        return builder.build();
+    }
+
+    private static byte[] copy(byte[] data) {
+        return data == null ? null : data.clone();
+    }
+
+    private String fingerprint(String password) {
+        return ByteUtils.toHexString(Sha256.hash(ByteUtils.concat(salt, Sha256.hash(password))));
+    }
+
+    private static String canonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            throw new KeePassDatabaseUnreadableException("Could not resolve the path of the database file", e);
+        }
+    }
+
+    /**
+     * Identifies a database file opened with a specific password.
+     */
+    private static class CacheKey {
+
+        private final String path;
+        private final String fingerprint;
+
+        CacheKey(String path, String fingerprint) {
+            this.path = path;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + fingerprint.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return path.equals(other.path) && fingerprint.equals(other.fingerprint);
+        }
+    }
+
+    /**
+     * An opened database and the state of its file when it was opened.
+     */
+    private static class CachedDatabase {
+
+        private final KeePassFile keePassFile;
+        private final long size;
+        private final long lastModified;
+
+        CachedDatabase(KeePassFile keePassFile, long size, long lastModified) {
+            this.keePassFile = keePassFile;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
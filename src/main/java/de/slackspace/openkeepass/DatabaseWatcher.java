@@ -0,0 +1,222 @@
+package de.slackspace.openkeepass;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.slackspace.openkeepass.api.DatabaseChangeListener;
+import de.slackspace.openkeepass.api.DatabaseChanges;
+import de.slackspace.openkeepass.domain.KeePassFile;
+
+/**
+ * Watches a KeePass database file and reloads it in the background when it
+ * changes.
+ * <p>
+ * The file is checked on the given executor in a fixed interval. A change of
+ * its size or modification time is only picked up once the file has stayed
+ * the same for one more interval, so a file which is still being written is
+ * not reloaded. After a reload the new version is compared with the previous
+ * one and the {@link DatabaseChanges} are published to the listeners, which
+ * can update their state incrementally:
+ *
+ * <pre>
+ * DatabaseWatcher watcher = new DatabaseWatcher(new File("keePassDatabasePath"), "secret", executor);
+ * watcher.addListener(listener);
+ * watcher.start(5, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * Listeners are notified on the executor thread. The database is reloaded
+ * without holding the lock of the watcher, so {@link #getDatabase()} returns
+ * the previous version until the reload has completed. A reload which fails
+ * is retried on the next check.
+ *
+ */
+public class DatabaseWatcher {
+
+    private final File keePassDatabaseFile;
+    private final String password;
+    private final ScheduledExecutorService executor;
+    private final List<DatabaseChangeListener> listeners = new CopyOnWriteArrayList<DatabaseChangeListener>();
+
+    private KeePassFile database;
+    private long size;
+    private long lastModified;
+
+    private boolean changePending;
+    private long pendingSize;
+    private long pendingLastModified;
+    private boolean reloading;
+
+    private ScheduledFuture<?> task;
+
+    /**
+     * Creates a watcher for the given database file.
+     *
+     * @param keePassDatabaseFile
+     *            a KeePass database file, must not be NULL
+     * @param password
+     *            the password to open the database
+     * @param executor
+     *            the executor which checks and reloads the file
+     */
+    public DatabaseWatcher(File keePassDatabaseFile, String password, ScheduledExecutorService executor) {
+        if (keePassDatabaseFile == null) {
+            throw new IllegalArgumentException("You must provide a valid KeePass database file.");
+        }
+        if (password == null) {
+            throw new IllegalArgumentException("The password for the database must not be null. Please provide a valid password.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("You must provide an executor.");
+        }
+
+        this.keePassDatabaseFile = keePassDatabaseFile;
+        this.password = password;
+        this.executor = executor;
+    }
+
+    public void addListener(DatabaseChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DatabaseChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Opens the database and starts watching it.
+     *
+     * @param interval
+     *            the interval in which the file is checked
+     * @param unit
+     *            the unit of the interval
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if (task != null) {
+            throw new IllegalStateException("The watcher has already been started.");
+        }
+
+        load();
+
+        task = executor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                checkForChanges();
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops watching the database.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    /**
+     * Returns the most recently loaded version of the database.
+     *
+     * @return the database or null if it has not been loaded yet
+     */
+    public synchronized KeePassFile getDatabase() {
+        return database;
+    }
+
+    /**
+     * Checks the file once and reloads it if it has changed and stayed the
+     * same since the previous check. This is called by the executor but may
+     * also be called directly to check on demand. A check which starts while
+     * another one reloads the file does nothing.
+     */
+    public void checkForChanges() {
+        KeePassFile previous;
+        long currentSize;
+        long currentLastModified;
+
+        synchronized (this) {
+            if (reloading) {
+                return;
+            }
+
+            currentSize = keePassDatabaseFile.length();
+            currentLastModified = keePassDatabaseFile.lastModified();
+
+            if (database != null) {
+                if (currentSize == size && currentLastModified == lastModified) {
+                    changePending = false;
+                    return;
+                }
+
+                if (!changePending || currentSize != pendingSize || currentLastModified != pendingLastModified) {
+                    changePending = true;
+                    pendingSize = currentSize;
+                    pendingLastModified = currentLastModified;
+                    return;
+                }
+            }
+
+            previous = database;
+            reloading = true;
+        }
+
+        KeePassFile reloaded;
+        try {
+            reloaded = KeePassDatabase.getInstance(keePassDatabaseFile).openDatabase(password);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                reloading = false;
+            }
+            if (previous == null) {
+                throw e;
+            }
+
+            // the change stays pending, so the next check tries again
+            for (DatabaseChangeListener listener : listeners) {
+                try {
+                    listener.onFailure(e);
+                } catch (RuntimeException listenerFailure) {
+                    // a failing listener must not stop the other listeners or
+                    // the scheduled checks
+                }
+            }
+            return;
+        }
+
+        synchronized (this) {
+            database = reloaded;
+            size = currentSize;
+            lastModified = currentLastModified;
+            changePending = false;
+            reloading = false;
+        }
+
+        if (previous == null) {
+            return;
+        }
+
+        DatabaseChanges changes = DatabaseChanges.between(previous, reloaded);
+        if (!changes.isEmpty()) {
+            for (DatabaseChangeListener listener : listeners) {
+                try {
+                    listener.onChange(changes);
+                } catch (RuntimeException e) {
+                    // a failing listener must not stop the other listeners or
+                    // the scheduled checks
+                }
+            }
+        }
+    }
+
+    private void load() {
+        size = keePassDatabaseFile.length();
+        lastModified = keePassDatabaseFile.lastModified();
+        database = KeePassDatabase.getInstance(keePassDatabaseFile).openDatabase(password);
+    }
+}
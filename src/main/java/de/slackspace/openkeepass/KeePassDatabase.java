@@ -1,5 +1,7 @@
 package de.slackspace.openkeepass;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -8,13 +10,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.Executor;
 
+import de.slackspace.openkeepass.api.KdfScheduler;
+import de.slackspace.openkeepass.api.KeePassDatabaseFeed;
 import de.slackspace.openkeepass.api.KeePassDatabaseReader;
 import de.slackspace.openkeepass.api.KeePassDatabaseWriter;
 import de.slackspace.openkeepass.api.KeyFileReader;
+import de.slackspace.openkeepass.crypto.KeyTransformer;
 import de.slackspace.openkeepass.crypto.Sha256;
+import de.slackspace.openkeepass.domain.Entry;
 import de.slackspace.openkeepass.domain.KeePassFile;
 import de.slackspace.openkeepass.domain.KeePassHeader;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.domain.ReadOptionsBuilder;
+import de.slackspace.openkeepass.domain.visitor.EntryVisitor;
 import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
 import de.slackspace.openkeepass.util.ByteUtils;
 import de.slackspace.openkeepass.util.StreamUtils;
@@ -72,6 +84,7 @@ public class KeePassDatabase {
 
     private KeePassHeader keepassHeader = new KeePassHeader();
     private byte[] keepassFile;
+    private File largeDatabaseFile;
 
     private KeePassDatabase(InputStream inputStream) {
         try {
@@ -83,6 +96,25 @@ public class KeePassDatabase {
         }
     }
 
+    private KeePassDatabase(File largeDatabaseFile) {
+        this.largeDatabaseFile = largeDatabaseFile;
+
+        InputStream databaseStream = openDatabaseStream();
+        try {
+            byte[] signature = new byte[KeePassHeader.VERSION_SIGNATURE_LENGTH];
+            databaseStream.mark(signature.length);
+            StreamUtils.read(databaseStream, signature);
+            keepassHeader.checkVersionSupport(signature);
+
+            databaseStream.reset();
+            keepassHeader.read(databaseStream);
+        } catch (IOException e) {
+            throw new KeePassDatabaseUnreadableException("Could not open database file", e);
+        } finally {
+            close(databaseStream);
+        }
+    }
+
     /**
      * Retrieves a KeePassDatabase instance. The instance returned is based on
      * the given database filename and tries to parse the database header of it.
@@ -125,6 +157,34 @@ public class KeePassDatabase {
         }
     }
 
+    /**
+     * Retrieves a KeePassDatabase instance for a database which may be larger
+     * than 2 GiB. Only the header is read when the instance is created.
+     * <p>
+     * Every read operation streams the database from the file, decrypting,
+     * verifying, decompressing and parsing it on the fly, so neither the file
+     * nor its decrypted payload is held in memory. Use
+     * {@link #openDatabase(String, EntryVisitor)} to process databases whose
+     * content does not fit on the heap. Lazy and concurrent parsing buffer the
+     * decompressed xml and are therefore still limited to 2 GiB of xml.
+     * <p>
+     * The file must not be modified as long as the instance is in use.
+     *
+     * @param keePassDatabaseFile
+     *            a KeePass database file, must not be NULL
+     * @return a KeePassDatabase
+     */
+    public static KeePassDatabase getLargeInstance(File keePassDatabaseFile) {
+        if (keePassDatabaseFile == null) {
+            throw new IllegalArgumentException("You must provide a valid KeePass database file.");
+        }
+        if (!keePassDatabaseFile.isFile()) {
+            throw new IllegalArgumentException("The KeePass database file could not be found. You must provide a valid KeePass database file.");
+        }
+
+        return new KeePassDatabase(keePassDatabaseFile);
+    }
+
     /**
      * Retrieves a KeePassDatabase instance. The instance returned is based on
      * the given input stream and tries to parse the database header of it.
@@ -162,7 +222,210 @@ public class KeePassDatabase {
             byte[] passwordBytes = password.getBytes(UTF_8);
             byte[] hashedPassword = Sha256.hash(passwordBytes);
 
-            return new KeePassDatabaseReader(keepassHeader).decryptAndParseDatabase(hashedPassword, keepassFile);
+            return decryptAndParseDatabase(hashedPassword);
+        } catch (UnsupportedEncodingException e) {
+            throw new UnsupportedOperationException(MSG_UTF8_NOT_SUPPORTED, e);
+        }
+    }
+
+    /**
+     * Opens a KeePass database with the given password and returns the
+     * KeePassFile with only the parts selected by the read options.
+     * <p>
+     * Use this to speed up read-only lookups which do not need the history,
+     * icons or timestamps of the database.
+     * <p>
+     * If the database cannot be decrypted with the provided password an
+     * exception will be thrown.
+     *
+     * @param password
+     *            the password to open the database
+     * @param readOptions
+     *            the parts of the database which should be loaded
+     * @return a KeePassFile
+     * @see ReadOptionsBuilder
+     */
+    public KeePassFile openDatabase(String password, ReadOptions readOptions) {
+        if (password == null) {
+            throw new IllegalArgumentException(MSG_EMPTY_MASTER_KEY);
+        }
+        if (readOptions == null) {
+            throw new IllegalArgumentException("You must provide read options.");
+        }
+
+        try {
+            byte[] passwordBytes = password.getBytes(UTF_8);
+            byte[] hashedPassword = Sha256.hash(passwordBytes);
+
+            return decryptAndParseDatabase(hashedPassword, readOptions);
+        } catch (UnsupportedEncodingException e) {
+            throw new UnsupportedOperationException(MSG_UTF8_NOT_SUPPORTED, e);
+        }
+    }
+
+    /**
+     * Opens a KeePass database with the given password and runs the key
+     * derivation with the given key transformer.
+     * <p>
+     * Use this together with a {@link KdfScheduler} to bound the number of
+     * concurrent key derivations when many databases are opened at once.
+     *
+     * @param password
+     *            the password to open the database
+     * @param readOptions
+     *            the parts of the database which should be loaded
+     * @param keyTransformer
+     *            the transformer which runs the key derivation
+     * @return a KeePassFile
+     * @see KdfScheduler#forTenant(String, long, java.util.concurrent.TimeUnit)
+     */
+    public KeePassFile openDatabase(String password, ReadOptions readOptions, KeyTransformer keyTransformer) {
+        if (password == null) {
+            throw new IllegalArgumentException(MSG_EMPTY_MASTER_KEY);
+        }
+        if (readOptions == null) {
+            throw new IllegalArgumentException("You must provide read options.");
+        }
+        if (keyTransformer == null) {
+            throw new IllegalArgumentException("You must provide a key transformer.");
+        }
+
+        InputStream databaseStream = openDatabaseStream();
+        try {
+            return new KeePassDatabaseReader(keepassHeader, keyTransformer).decryptAndParseDatabase(hashPassword(password), databaseStream, readOptions);
+        } finally {
+            close(databaseStream);
+        }
+    }
+
+    /**
+     * Searches the KeePass database for the entry with the given UUID.
+     * <p>
+     * In contrast to opening the database only the part of the payload up to
+     * the entry is decrypted and parsed, so this is the fastest way to
+     * retrieve a single secret. The returned entry is not enriched with icon
+     * data.
+     * <p>
+     * If the database cannot be decrypted with the provided password an
+     * exception will be thrown.
+     *
+     * @param password
+     *            the password to open the database
+     * @param uuid
+     *            the UUID of the entry
+     * @return the entry or null if there is no entry with the given UUID
+     */
+    public Entry findEntry(String password, UUID uuid) {
+        if (uuid == null) {
+            throw new IllegalArgumentException("You must provide a UUID to search for.");
+        }
+
+        InputStream databaseStream = openDatabaseStream();
+        try {
+            return new KeePassDatabaseReader(keepassHeader).decryptAndFindEntry(hashPassword(password), databaseStream, uuid);
+        } finally {
+            close(databaseStream);
+        }
+    }
+
+    /**
+     * Searches the KeePass database for the first entry with the given title.
+     * The title is compared ignoring case.
+     * <p>
+     * In contrast to opening the database only the part of the payload up to
+     * the entry is decrypted and parsed. The returned entry is not enriched
+     * with icon data.
+     * <p>
+     * If the database cannot be decrypted with the provided password an
+     * exception will be thrown.
+     *
+     * @param password
+     *            the password to open the database
+     * @param title
+     *            the title of the entry
+     * @return the entry or null if there is no entry with the given title
+     */
+    public Entry findEntryByTitle(String password, String title) {
+        if (title == null) {
+            throw new IllegalArgumentException("You must provide a title to search for.");
+        }
+
+        InputStream databaseStream = openDatabaseStream();
+        try {
+            return new KeePassDatabaseReader(keepassHeader).decryptAndFindEntryByTitle(hashPassword(password), databaseStream, title);
+        } finally {
+            close(databaseStream);
+        }
+    }
+
+    private static byte[] hashPassword(String password) {
+        if (password == null) {
+            throw new IllegalArgumentException(MSG_EMPTY_MASTER_KEY);
+        }
+
+        try {
+            return Sha256.hash(password.getBytes(UTF_8));
+        } catch (UnsupportedEncodingException e) {
+            throw new UnsupportedOperationException(MSG_UTF8_NOT_SUPPORTED, e);
+        }
+    }
+
+    /**
+     * Starts a push based session to open a KeePass database whose bytes
+     * arrive in chunks, e.g. on a non-blocking event loop.
+     * <p>
+     * The chunks are handed to {@link KeePassDatabaseFeed#feed(ByteBuffer)}
+     * and the end of the data is signaled with
+     * {@link KeePassDatabaseFeed#finish()}. Both calls return immediately, the
+     * key derivation and the parsing run on the given executor. The KeePass
+     * file is available from {@link KeePassDatabaseFeed#getResult()}.
+     *
+     * @param password
+     *            the password to open the database
+     * @param readOptions
+     *            the parts of the database which should be loaded
+     * @param executor
+     *            the executor which runs the key derivation and the parsing
+     * @return the session to feed the database into
+     */
+    public static KeePassDatabaseFeed openFeed(String password, ReadOptions readOptions, Executor executor) {
+        return new KeePassDatabaseFeed(hashPassword(password), readOptions, executor);
+    }
+
+    /**
+     * Opens a KeePass database with the given password and streams its groups
+     * and entries to the given visitor instead of building a KeePassFile.
+     * <p>
+     * Events are fired in document order while the database is decrypted and
+     * parsed, so only a single entry has to be held in memory at a time.
+     * <p>
+     * If the database cannot be decrypted with the provided password an
+     * exception will be thrown.
+     *
+     * @param password
+     *            the password to open the database
+     * @param visitor
+     *            the visitor which receives the groups and entries
+     * @see EntryVisitor
+     */
+    public void openDatabase(String password, EntryVisitor visitor) {
+        if (password == null) {
+            throw new IllegalArgumentException(MSG_EMPTY_MASTER_KEY);
+        }
+        if (visitor == null) {
+            throw new IllegalArgumentException("You must provide a visitor to receive the database content.");
+        }
+
+        try {
+            byte[] passwordBytes = password.getBytes(UTF_8);
+            byte[] hashedPassword = Sha256.hash(passwordBytes);
+
+            InputStream databaseStream = openDatabaseStream();
+            try {
+                new KeePassDatabaseReader(keepassHeader).decryptAndVisitDatabase(hashedPassword, databaseStream, visitor);
+            } finally {
+                close(databaseStream);
+            }
         } catch (UnsupportedEncodingException e) {
             throw new UnsupportedOperationException(MSG_UTF8_NOT_SUPPORTED, e);
         }
@@ -224,7 +487,7 @@ public class KeePassDatabase {
             byte[] hashedPassword = Sha256.hash(passwordBytes);
             byte[] protectedBuffer = new KeyFileReader().readKeyFile(keyFileStream);
 
-            return new KeePassDatabaseReader(keepassHeader).decryptAndParseDatabase(ByteUtils.concat(hashedPassword, protectedBuffer), keepassFile);
+            return decryptAndParseDatabase(ByteUtils.concat(hashedPassword, protectedBuffer));
         } catch (UnsupportedEncodingException e) {
             throw new UnsupportedOperationException(MSG_UTF8_NOT_SUPPORTED, e);
         }
@@ -272,7 +535,44 @@ public class KeePassDatabase {
         }
 
         byte[] protectedBuffer = new KeyFileReader().readKeyFile(keyFileStream);
-        return new KeePassDatabaseReader(keepassHeader).decryptAndParseDatabase(protectedBuffer, keepassFile);
+        return decryptAndParseDatabase(protectedBuffer);
+    }
+
+    private KeePassFile decryptAndParseDatabase(byte[] key) {
+        if (largeDatabaseFile == null) {
+            return new KeePassDatabaseReader(keepassHeader).decryptAndParseDatabase(key, keepassFile);
+        }
+
+        return decryptAndParseDatabase(key, ReadOptions.ALL);
+    }
+
+    private KeePassFile decryptAndParseDatabase(byte[] key, ReadOptions readOptions) {
+        InputStream databaseStream = openDatabaseStream();
+        try {
+            return new KeePassDatabaseReader(keepassHeader).decryptAndParseDatabase(key, databaseStream, readOptions);
+        } finally {
+            close(databaseStream);
+        }
+    }
+
+    private InputStream openDatabaseStream() {
+        if (largeDatabaseFile == null) {
+            return new ByteArrayInputStream(keepassFile);
+        }
+
+        try {
+            return new BufferedInputStream(new FileInputStream(largeDatabaseFile));
+        } catch (FileNotFoundException e) {
+            throw new KeePassDatabaseUnreadableException("Could not open database file", e);
+        }
+    }
+
+    private static void close(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // Ignore
+        }
     }
 
     /**
@@ -0,0 +1,306 @@
+package de.slackspace.openkeepass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import de.slackspace.openkeepass.api.AsyncResult;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnwriteableException;
+
+/**
+ * An asynchronous facade for {@link KeePassDatabase} which never blocks the
+ * calling thread.
+ * <p>
+ * Reading and writing files and streams runs on the I/O executor, while the
+ * key derivation, decryption and parsing run on the CPU executor. Every method
+ * returns an {@link AsyncResult} immediately. A typical use-case looks like
+ * this:
+ *
+ * <pre>
+ * KeePassDatabaseAsync async = new KeePassDatabaseAsync(cpuExecutor, ioExecutor);
+ *
+ * async.openDatabaseAsync(new File("keePassDatabasePath"), "secret").addCallback(new AsyncCallback&lt;KeePassFile&gt;() {
+ *     public void onSuccess(KeePassFile database) {
+ *         ...
+ *     }
+ *
+ *     public void onFailure(Throwable failure) {
+ *         ...
+ *     }
+ * });
+ * </pre>
+ *
+ * Callbacks are notified on the executor thread which completes the result.
+ *
+ * @see AsyncResult
+ */
+public class KeePassDatabaseAsync {
+
+    private final Executor cpuExecutor;
+    private final Executor ioExecutor;
+
+    /**
+     * Creates a new facade.
+     *
+     * @param cpuExecutor
+     *            the executor for the key derivation and parsing
+     * @param ioExecutor
+     *            the executor for reading and writing files and streams
+     */
+    public KeePassDatabaseAsync(Executor cpuExecutor, Executor ioExecutor) {
+        if (cpuExecutor == null || ioExecutor == null) {
+            throw new IllegalArgumentException("You must provide an executor for CPU bound and one for I/O bound work.");
+        }
+
+        this.cpuExecutor = cpuExecutor;
+        this.ioExecutor = ioExecutor;
+    }
+
+    /**
+     * Opens a KeePass database file with the given password.
+     *
+     * @param keePassDatabaseFile
+     *            a KeePass database file, must not be NULL
+     * @param password
+     *            the password to open the database
+     * @return the result which is completed with the KeePassFile
+     * @see KeePassDatabase#openDatabase(String)
+     */
+    public AsyncResult<KeePassFile> openDatabaseAsync(File keePassDatabaseFile, String password) {
+        return openDatabaseAsync(keePassDatabaseFile, password, null);
+    }
+
+    /**
+     * Opens a KeePass database file with the given password and loads only
+     * the parts selected by the read options.
+     *
+     * @param keePassDatabaseFile
+     *            a KeePass database file, must not be NULL
+     * @param password
+     *            the password to open the database
+     * @param readOptions
+     *            the parts of the database which should be loaded or null to
+     *            load everything
+     * @return the result which is completed with the KeePassFile
+     * @see KeePassDatabase#openDatabase(String, ReadOptions)
+     */
+    public AsyncResult<KeePassFile> openDatabaseAsync(final File keePassDatabaseFile, String password, ReadOptions readOptions) {
+        if (keePassDatabaseFile == null) {
+            throw new IllegalArgumentException("You must provide a valid KeePass database file.");
+        }
+
+        return openDatabaseAsync(new DatabaseSource() {
+
+            @Override
+            public KeePassDatabase load() {
+                return KeePassDatabase.getInstance(keePassDatabaseFile);
+            }
+        }, password, readOptions);
+    }
+
+    /**
+     * Opens a KeePass database from a stream with the given password and loads
+     * only the parts selected by the read options. The stream is read on the
+     * I/O executor.
+     *
+     * @param keePassDatabaseStream
+     *            an input stream of a KeePass database, must not be NULL
+     * @param password
+     *            the password to open the database
+     * @param readOptions
+     *            the parts of the database which should be loaded or null to
+     *            load everything
+     * @return the result which is completed with the KeePassFile
+     */
+    public AsyncResult<KeePassFile> openDatabaseAsync(final InputStream keePassDatabaseStream, String password, ReadOptions readOptions) {
+        if (keePassDatabaseStream == null) {
+            throw new IllegalArgumentException("You must provide a non-empty KeePass database stream.");
+        }
+
+        return openDatabaseAsync(new DatabaseSource() {
+
+            @Override
+            public KeePassDatabase load() {
+                return KeePassDatabase.getInstance(keePassDatabaseStream);
+            }
+        }, password, readOptions);
+    }
+
+    /**
+     * Encrypts a KeePassFile with the given password and writes it to the
+     * given file.
+     *
+     * @param keePassFile
+     *            the keePass model which should be written
+     * @param password
+     *            the password to encrypt the database
+     * @param keePassDatabaseFile
+     *            the target location where the database file will be written
+     * @return the result which is completed once the file has been written
+     */
+    public AsyncResult<Void> writeAsync(KeePassFile keePassFile, String password, final File keePassDatabaseFile) {
+        if (keePassDatabaseFile == null) {
+            throw new IllegalArgumentException("You must provide a file where the database should be written to.");
+        }
+
+        return writeAsync(keePassFile, password, new DatabaseTarget() {
+
+            @Override
+            public OutputStream open() throws IOException {
+                return new FileOutputStream(keePassDatabaseFile);
+            }
+        });
+    }
+
+    /**
+     * Encrypts a KeePassFile with the given password and writes it to the
+     * given stream. The stream is closed afterwards.
+     *
+     * @param keePassFile
+     *            the keePass model which should be written
+     * @param password
+     *            the password to encrypt the database
+     * @param stream
+     *            the target stream where the output will be written
+     * @return the result which is completed once the stream has been written
+     */
+    public AsyncResult<Void> writeAsync(KeePassFile keePassFile, String password, final OutputStream stream) {
+        if (stream == null) {
+            throw new IllegalArgumentException("You must provide a stream to write to.");
+        }
+
+        return writeAsync(keePassFile, password, new DatabaseTarget() {
+
+            @Override
+            public OutputStream open() {
+                return stream;
+            }
+        });
+    }
+
+    private AsyncResult<KeePassFile> openDatabaseAsync(final DatabaseSource source, final String password, final ReadOptions readOptions) {
+        if (password == null) {
+            throw new IllegalArgumentException("The password for the database must not be null. Please provide a valid password.");
+        }
+
+        final AsyncResult<KeePassFile> result = new AsyncResult<KeePassFile>();
+
+        submit(ioExecutor, result, new Runnable() {
+
+            @Override
+            public void run() {
+                final KeePassDatabase database = source.load();
+
+                submit(cpuExecutor, result, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (readOptions == null) {
+                            result.complete(database.openDatabase(password));
+                        } else {
+                            result.complete(database.openDatabase(password, readOptions));
+                        }
+                    }
+                });
+            }
+        });
+
+        return result;
+    }
+
+    private AsyncResult<Void> writeAsync(final KeePassFile keePassFile, final String password, final DatabaseTarget target) {
+        if (keePassFile == null) {
+            throw new IllegalArgumentException("You must provide a KeePassFile to write.");
+        }
+        if (password == null) {
+            throw new IllegalArgumentException("The password for the database must not be null. Please provide a valid password.");
+        }
+
+        final AsyncResult<Void> result = new AsyncResult<Void>();
+
+        submit(cpuExecutor, result, new Runnable() {
+
+            @Override
+            public void run() {
+                final ByteArrayOutputStream database = new ByteArrayOutputStream();
+                KeePassDatabase.write(keePassFile, password, database);
+
+                submit(ioExecutor, result, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        writeTo(target, database);
+                        result.complete(null);
+                    }
+                });
+            }
+        });
+
+        return result;
+    }
+
+    private static void writeTo(DatabaseTarget target, ByteArrayOutputStream database) {
+        OutputStream stream = null;
+        try {
+            stream = target.open();
+            database.writeTo(stream);
+        } catch (IOException e) {
+            throw new KeePassDatabaseUnwriteableException("Could not write database file", e);
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private static void submit(Executor executor, final AsyncResult<?> result, final Runnable task) {
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (result.isDone()) {
+                        return;
+                    }
+
+                    try {
+                        task.run();
+                    } catch (Throwable e) {
+                        // errors must fail the result as well, otherwise
+                        // it would never complete
+                        result.fail(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.fail(e);
+        }
+    }
+
+    /**
+     * Loads a database and its header.
+     */
+    private interface DatabaseSource {
+
+        KeePassDatabase load();
+    }
+
+    /**
+     * Opens the stream a database is written to.
+     */
+    private interface DatabaseTarget {
+
+        OutputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,26 @@
+package de.slackspace.openkeepass.api;
+
+/**
+ * Receives the outcome of an {@link AsyncResult}.
+ *
+ * @param <T>
+ *            the type of the result
+ */
+public interface AsyncCallback<T> {
+
+    /**
+     * Called when the operation completed successfully.
+     *
+     * @param result
+     *            the result of the operation
+     */
+    void onSuccess(T result);
+
+    /**
+     * Called when the operation failed or has been cancelled.
+     *
+     * @param failure
+     *            the cause of the failure
+     */
+    void onFailure(Throwable failure);
+}
@@ -0,0 +1,165 @@
+package de.slackspace.openkeepass.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The result of an asynchronous operation which is completed by the
+ * operation itself.
+ * <p>
+ * Besides blocking with {@link #get()}, callers can register an
+ * {@link AsyncCallback} which is notified on the thread which completes the
+ * result, or immediately if the result is already done. On Java 8 a result can
+ * be bridged to a <tt>CompletableFuture</tt> with such a callback.
+ *
+ * @param <T>
+ *            the type of the result
+ */
+public class AsyncResult<T> implements Future<T> {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<AsyncCallback<? super T>> callbacks = new ArrayList<AsyncCallback<? super T>>();
+    private T value;
+    private Throwable failure;
+    private boolean cancelled;
+
+    /**
+     * Completes the result with the given value. Has no effect if the result
+     * is already done.
+     *
+     * @param result
+     *            the value of the result
+     * @return true if the result has been completed by this call
+     */
+    public boolean complete(T result) {
+        List<AsyncCallback<? super T>> pending;
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+            value = result;
+            pending = finish();
+        }
+
+        for (AsyncCallback<? super T> callback : pending) {
+            callback.onSuccess(result);
+        }
+        return true;
+    }
+
+    /**
+     * Completes the result with the given failure. Has no effect if the result
+     * is already done.
+     *
+     * @param throwable
+     *            the cause of the failure
+     * @return true if the result has been completed by this call
+     */
+    public boolean fail(Throwable throwable) {
+        List<AsyncCallback<? super T>> pending;
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+            failure = throwable;
+            pending = finish();
+        }
+
+        for (AsyncCallback<? super T> callback : pending) {
+            callback.onFailure(throwable);
+        }
+        return true;
+    }
+
+    /**
+     * Registers a callback which is notified when the result is done.
+     *
+     * @param callback
+     *            the callback to notify
+     */
+    public void addCallback(AsyncCallback<? super T> callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("You must provide a callback.");
+        }
+
+        synchronized (this) {
+            if (!isDone()) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+
+        if (cancelled) {
+            callback.onFailure(new CancellationException());
+        } else if (failure != null) {
+            callback.onFailure(failure);
+        } else {
+            callback.onSuccess(value);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        List<AsyncCallback<? super T>> pending;
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+            cancelled = true;
+            pending = finish();
+        }
+
+        for (AsyncCallback<? super T> callback : pending) {
+            callback.onFailure(new CancellationException());
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        done.await();
+        return getValue();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getValue();
+    }
+
+    private List<AsyncCallback<? super T>> finish() {
+        done.countDown();
+
+        List<AsyncCallback<? super T>> pending = new ArrayList<AsyncCallback<? super T>>(callbacks);
+        callbacks.clear();
+        return pending;
+    }
+
+    private synchronized T getValue() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,27 @@
+package de.slackspace.openkeepass.api;
+
+/**
+ * Receives the changes of a database file which is watched by a
+ * {@link de.slackspace.openkeepass.DatabaseWatcher}.
+ */
+public interface DatabaseChangeListener {
+
+    /**
+     * Called after the database has been reloaded and differs from the
+     * previous version.
+     *
+     * @param changes
+     *            the changes from the previous to the reloaded version
+     */
+    void onChange(DatabaseChanges changes);
+
+    /**
+     * Called when the changed database file could not be reloaded. The
+     * previous version is kept and the file is reloaded again on the next
+     * check.
+     *
+     * @param failure
+     *            the cause of the failure
+     */
+    void onFailure(Throwable failure);
+}
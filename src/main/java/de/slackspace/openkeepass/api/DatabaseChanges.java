@@ -0,0 +1,202 @@
+package de.slackspace.openkeepass.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.KeePassFile;
+
+/**
+ * The differences between two versions of a KeePass database.
+ * <p>
+ * Entries and groups are matched by their UUID. An entry is modified if any
+ * of its values changed or if it has been moved to another group. A group
+ * is modified if its own attributes changed or if it has been moved; changes
+ * to the entries and subgroups of a group are reported for these and do not
+ * mark the group itself as modified.
+ *
+ */
+public class DatabaseChanges {
+
+    private final KeePassFile previous;
+    private final KeePassFile current;
+
+    private final List<Entry> addedEntries = new ArrayList<Entry>();
+    private final List<Entry> removedEntries = new ArrayList<Entry>();
+    private final List<Entry> modifiedEntries = new ArrayList<Entry>();
+    private final List<Group> addedGroups = new ArrayList<Group>();
+    private final List<Group> removedGroups = new ArrayList<Group>();
+    private final List<Group> modifiedGroups = new ArrayList<Group>();
+
+    private DatabaseChanges(KeePassFile previous, KeePassFile current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    /**
+     * Compares two versions of a database.
+     *
+     * @param previous
+     *            the previous version of the database
+     * @param current
+     *            the current version of the database
+     * @return the changes from the previous to the current version
+     */
+    public static DatabaseChanges between(KeePassFile previous, KeePassFile current) {
+        if (previous == null || current == null) {
+            throw new IllegalArgumentException("You must provide both versions of the database.");
+        }
+
+        DatabaseChanges changes = new DatabaseChanges(previous, current);
+
+        Map<UUID, Located<Entry>> previousEntries = new LinkedHashMap<UUID, Located<Entry>>();
+        Map<UUID, Located<Group>> previousGroups = new LinkedHashMap<UUID, Located<Group>>();
+        index(previous.getRoot(), previousGroups, previousEntries);
+
+        Map<UUID, Located<Entry>> currentEntries = new LinkedHashMap<UUID, Located<Entry>>();
+        Map<UUID, Located<Group>> currentGroups = new LinkedHashMap<UUID, Located<Group>>();
+        index(current.getRoot(), currentGroups, currentEntries);
+
+        for (Located<Group> group : currentGroups.values()) {
+            Located<Group> previousGroup = previousGroups.get(group.element.getUuid());
+            if (previousGroup == null) {
+                changes.addedGroups.add(group.element);
+            } else if (!isSameParent(previousGroup, group) || !hasSameAttributes(previousGroup.element, group.element)) {
+                changes.modifiedGroups.add(group.element);
+            }
+        }
+        for (Located<Group> group : previousGroups.values()) {
+            if (!currentGroups.containsKey(group.element.getUuid())) {
+                changes.removedGroups.add(group.element);
+            }
+        }
+
+        for (Located<Entry> entry : currentEntries.values()) {
+            Located<Entry> previousEntry = previousEntries.get(entry.element.getUuid());
+            if (previousEntry == null) {
+                changes.addedEntries.add(entry.element);
+            } else if (!isSameParent(previousEntry, entry) || !previousEntry.element.equals(entry.element)) {
+                changes.modifiedEntries.add(entry.element);
+            }
+        }
+        for (Located<Entry> entry : previousEntries.values()) {
+            if (!currentEntries.containsKey(entry.element.getUuid())) {
+                changes.removedEntries.add(entry.element);
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Returns whether the two versions are equal.
+     *
+     * @return true if nothing has been added, removed or modified
+     */
+    public boolean isEmpty() {
+        return addedEntries.isEmpty() && removedEntries.isEmpty() && modifiedEntries.isEmpty() && addedGroups.isEmpty() && removedGroups.isEmpty()
+                && modifiedGroups.isEmpty();
+    }
+
+    public KeePassFile getPrevious() {
+        return previous;
+    }
+
+    public KeePassFile getCurrent() {
+        return current;
+    }
+
+    public List<Entry> getAddedEntries() {
+        return Collections.unmodifiableList(addedEntries);
+    }
+
+    public List<Entry> getRemovedEntries() {
+        return Collections.unmodifiableList(removedEntries);
+    }
+
+    /**
+     * Returns the current version of every modified entry.
+     *
+     * @return the modified entries
+     */
+    public List<Entry> getModifiedEntries() {
+        return Collections.unmodifiableList(modifiedEntries);
+    }
+
+    public List<Group> getAddedGroups() {
+        return Collections.unmodifiableList(addedGroups);
+    }
+
+    public List<Group> getRemovedGroups() {
+        return Collections.unmodifiableList(removedGroups);
+    }
+
+    /**
+     * Returns the current version of every modified group.
+     *
+     * @return the modified groups
+     */
+    public List<Group> getModifiedGroups() {
+        return Collections.unmodifiableList(modifiedGroups);
+    }
+
+    @Override
+    public String toString() {
+        return "DatabaseChanges [addedEntries=" + addedEntries.size() + ", removedEntries=" + removedEntries.size() + ", modifiedEntries="
+                + modifiedEntries.size() + ", addedGroups=" + addedGroups.size() + ", removedGroups=" + removedGroups.size() + ", modifiedGroups="
+                + modifiedGroups.size() + "]";
+    }
+
+    private static void index(Group root, Map<UUID, Located<Group>> groupIndex, Map<UUID, Located<Entry>> entryIndex) {
+        // the root itself is not part of the database file
+        if (root != null) {
+            index(root.getGroups(), root.getEntries(), null, groupIndex, entryIndex);
+        }
+    }
+
+    private static void index(List<Group> groups, List<Entry> entries, UUID parent, Map<UUID, Located<Group>> groupIndex,
+            Map<UUID, Located<Entry>> entryIndex) {
+        for (Entry entry : entries) {
+            entryIndex.put(entry.getUuid(), new Located<Entry>(entry, parent));
+        }
+
+        for (Group group : groups) {
+            groupIndex.put(group.getUuid(), new Located<Group>(group, parent));
+            index(group.getGroups(), group.getEntries(), group.getUuid(), groupIndex, entryIndex);
+        }
+    }
+
+    private static boolean isSameParent(Located<?> previous, Located<?> current) {
+        return previous.parent == null ? current.parent == null : previous.parent.equals(current.parent);
+    }
+
+    private static boolean hasSameAttributes(Group previous, Group current) {
+        return equal(previous.getName(), current.getName()) && previous.getIconId() == current.getIconId()
+                && equal(previous.getCustomIconUuid(), current.getCustomIconUuid()) && equal(previous.getTimes(), current.getTimes())
+                && previous.isExpanded() == current.isExpanded();
+    }
+
+    private static boolean equal(Object previous, Object current) {
+        return previous == null ? current == null : previous.equals(current);
+    }
+
+    /**
+     * An element of the tree and the UUID of its parent group, which is null
+     * for the top group.
+     */
+    private static class Located<T> {
+
+        private final T element;
+        private final UUID parent;
+
+        Located(T element, UUID parent) {
+            this.element = element;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package de.slackspace.openkeepass.api;
+
+import java.util.List;
+
+/**
+ * Receives the entries or groups which have expired, from an
+ * {@link de.slackspace.openkeepass.domain.index.ExpiryScheduler}.
+ *
+ * @param <T>
+ *            the type of the expired elements
+ */
+public interface ExpiryListener<T> {
+
+    /**
+     * Called once the expiry time of the given elements has passed.
+     *
+     * @param expired
+     *            the expired elements, oldest expiry time first
+     */
+    void onExpired(List<T> expired);
+}
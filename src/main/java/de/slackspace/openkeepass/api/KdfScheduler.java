@@ -0,0 +1,430 @@
+package de.slackspace.openkeepass.api;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.crypto.Aes;
+import de.slackspace.openkeepass.crypto.KeyTransformer;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.exception.KeyDerivationTimeoutException;
+
+/**
+ * Schedules key derivations on a bounded pool of worker threads.
+ * <p>
+ * Deriving the key of a database is CPU bound and takes the same time no
+ * matter how many databases are unlocked at once. If every request derives
+ * its key on its own thread, a burst of unlocks oversubscribes the CPU and
+ * all of them become slow. The scheduler runs at most as many derivations
+ * as it has workers and queues the rest.
+ * <p>
+ * Every task belongs to a tenant. Each tenant has its own queue and the
+ * workers take tasks from the queues in turn, so a tenant with many
+ * pending unlocks cannot starve the others. Every task has a deadline; a
+ * task which is still queued when its deadline passes is dropped and fails
+ * with a {@link KeyDerivationTimeoutException}.
+ * <p>
+ * Use {@link #forTenant(String, long, TimeUnit)} to obtain a
+ * {@link KeyTransformer} for {@link KeePassDatabase#openDatabase(String, ReadOptions, KeyTransformer)}
+ * or {@link #openDatabases(String, Map, ReadOptions, Executor, long, TimeUnit)} to
+ * unlock many databases at once.
+ *
+ */
+public class KdfScheduler {
+
+    private final Map<String, LinkedList<Task<?>>> queues = new LinkedHashMap<String, LinkedList<Task<?>>>();
+    private final LinkedList<String> tenantOrder = new LinkedList<String>();
+    private final Thread[] workers;
+
+    private int queueDepth;
+    private int activeCount;
+    private long completedCount;
+    private long expiredCount;
+    private boolean shutdown;
+
+    /**
+     * Creates a scheduler with the given number of worker threads. The
+     * workers are daemon threads.
+     *
+     * @param workerCount
+     *            the maximum number of concurrent key derivations, usually
+     *            the number of available processors
+     */
+    public KdfScheduler(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("The scheduler needs at least one worker.");
+        }
+
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(new Worker(), "kdf-scheduler-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Returns a key transformer which runs every transformation as a task of
+     * the given tenant. The calling thread waits for the transformation and
+     * fails with a {@link KeyDerivationTimeoutException} if it does not
+     * complete within the timeout.
+     *
+     * @param tenant
+     *            the tenant the transformations belong to
+     * @param timeout
+     *            the maximum time to wait for each transformation
+     * @param unit
+     *            the unit of the timeout
+     * @return the key transformer
+     */
+    public KeyTransformer forTenant(final String tenant, final long timeout, final TimeUnit unit) {
+        if (tenant == null) {
+            throw new IllegalArgumentException("You must provide a tenant.");
+        }
+
+        return new KeyTransformer() {
+
+            @Override
+            public byte[] transformKey(final byte[] seed, final byte[] key, final long rounds) {
+                AsyncResult<byte[]> result = submit(tenant, timeout, unit, new Callable<byte[]>() {
+
+                    @Override
+                    public byte[] call() {
+                        return Aes.transformKey(seed, key, rounds);
+                    }
+                });
+
+                return await(result, timeout, unit);
+            }
+        };
+    }
+
+    /**
+     * Opens many databases at once. Every database is read and parsed on the
+     * given executor; only its key derivation runs as a task of the given
+     * tenant on the workers of this scheduler.
+     *
+     * @param tenant
+     *            the tenant the databases belong to
+     * @param passwords
+     *            the password of each database file
+     * @param readOptions
+     *            the parts of the databases which should be loaded
+     * @param executor
+     *            the executor which reads and parses the databases
+     * @param timeout
+     *            the maximum time to wait for the key derivation of each
+     *            database
+     * @param unit
+     *            the unit of the timeout
+     * @return the result for each database file, in the order of the given
+     *         map
+     */
+    public Map<File, AsyncResult<KeePassFile>> openDatabases(String tenant, Map<File, String> passwords, final ReadOptions readOptions,
+            Executor executor, long timeout, TimeUnit unit) {
+        if (passwords == null) {
+            throw new IllegalArgumentException("You must provide the databases to open.");
+        }
+        if (readOptions == null) {
+            throw new IllegalArgumentException("You must provide read options.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("You must provide an executor.");
+        }
+
+        final KeyTransformer keyTransformer = forTenant(tenant, timeout, unit);
+
+        Map<File, AsyncResult<KeePassFile>> results = new LinkedHashMap<File, AsyncResult<KeePassFile>>();
+        for (Map.Entry<File, String> database : passwords.entrySet()) {
+            final File file = database.getKey();
+            final String password = database.getValue();
+            final AsyncResult<KeePassFile> result = new AsyncResult<KeePassFile>();
+
+            try {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            result.complete(KeePassDatabase.getInstance(file).openDatabase(password, readOptions, keyTransformer));
+                        } catch (Throwable e) {
+                            result.fail(e);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.fail(e);
+            }
+
+            results.put(file, result);
+        }
+
+        return results;
+    }
+
+    /**
+     * Queues a task of the given tenant.
+     *
+     * @param tenant
+     *            the tenant the task belongs to
+     * @param timeout
+     *            the time within which the task must have been started
+     * @param unit
+     *            the unit of the timeout
+     * @param task
+     *            the task to run
+     * @return the result of the task
+     */
+    public <T> AsyncResult<T> submit(String tenant, long timeout, TimeUnit unit, Callable<T> task) {
+        if (tenant == null) {
+            throw new IllegalArgumentException("You must provide a tenant.");
+        }
+        if (task == null) {
+            throw new IllegalArgumentException("You must provide a task.");
+        }
+
+        Task<T> scheduledTask = new Task<T>(task, System.nanoTime() + unit.toNanos(timeout));
+
+        synchronized (this) {
+            if (shutdown) {
+                throw new IllegalStateException("The scheduler has been shut down.");
+            }
+
+            LinkedList<Task<?>> queue = queues.get(tenant);
+            if (queue == null) {
+                queue = new LinkedList<Task<?>>();
+                queues.put(tenant, queue);
+                tenantOrder.addLast(tenant);
+            }
+
+            queue.addLast(scheduledTask);
+            queueDepth++;
+            notifyAll();
+        }
+
+        return scheduledTask.result;
+    }
+
+    /**
+     * Returns the number of queued tasks of all tenants.
+     *
+     * @return the number of tasks which wait for a worker
+     */
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the number of queued tasks of the given tenant.
+     *
+     * @param tenant
+     *            the tenant
+     * @return the number of tasks of the tenant which wait for a worker
+     */
+    public synchronized int getQueueDepth(String tenant) {
+        LinkedList<Task<?>> queue = queues.get(tenant);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Returns the queue depth of every tenant with queued tasks.
+     *
+     * @return the number of queued tasks by tenant
+     */
+    public synchronized Map<String, Integer> getQueueDepthByTenant() {
+        Map<String, Integer> depths = new HashMap<String, Integer>();
+        for (Map.Entry<String, LinkedList<Task<?>>> queue : queues.entrySet()) {
+            depths.put(queue.getKey(), queue.getValue().size());
+        }
+        return depths;
+    }
+
+    /**
+     * Returns the number of tasks which are running right now.
+     *
+     * @return the number of busy workers
+     */
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * Returns the number of tasks which have been run.
+     *
+     * @return the number of completed tasks
+     */
+    public synchronized long getCompletedCount() {
+        return completedCount;
+    }
+
+    /**
+     * Returns the number of tasks which have been dropped because their
+     * deadline passed while they were queued.
+     *
+     * @return the number of expired tasks
+     */
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * Stops the workers. Queued tasks are failed, running tasks are completed.
+     */
+    public void shutdown() {
+        LinkedList<Task<?>> dropped = new LinkedList<Task<?>>();
+
+        synchronized (this) {
+            shutdown = true;
+            for (LinkedList<Task<?>> queue : queues.values()) {
+                dropped.addAll(queue);
+            }
+            queues.clear();
+            tenantOrder.clear();
+            queueDepth = 0;
+            notifyAll();
+        }
+
+        for (Task<?> task : dropped) {
+            task.result.fail(new IllegalStateException("The scheduler has been shut down."));
+        }
+    }
+
+    /**
+     * Takes the next task in round-robin order over the tenants, waiting
+     * until one is available.
+     *
+     * @return the next task or null if the scheduler has been shut down
+     */
+    private synchronized Task<?> take() throws InterruptedException {
+        while (!shutdown) {
+            if (tenantOrder.isEmpty()) {
+                wait();
+                continue;
+            }
+
+            String tenant = tenantOrder.removeFirst();
+            LinkedList<Task<?>> queue = queues.get(tenant);
+            Task<?> task = queue.removeFirst();
+            queueDepth--;
+
+            if (queue.isEmpty()) {
+                queues.remove(tenant);
+            } else {
+                tenantOrder.addLast(tenant);
+            }
+
+            if (task.result.isDone()) {
+                continue;
+            }
+            if (task.isExpired()) {
+                expiredCount++;
+                task.expire();
+                continue;
+            }
+
+            activeCount++;
+            return task;
+        }
+
+        return null;
+    }
+
+    private synchronized void finished() {
+        activeCount--;
+        completedCount++;
+    }
+
+    private static <T> T await(AsyncResult<T> result, long timeout, TimeUnit unit) {
+        try {
+            return result.get(timeout, unit);
+        } catch (TimeoutException e) {
+            result.cancel(false);
+            throw new KeyDerivationTimeoutException("The key derivation did not complete within " + timeout + " " + unit, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new KeyDerivationTimeoutException("Waiting for the key derivation has been interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new KeyDerivationTimeoutException("The key derivation failed", e.getCause());
+        }
+    }
+
+    /**
+     * A queued task and its result.
+     */
+    private static class Task<T> {
+
+        private final Callable<T> callable;
+        private final long deadline;
+        private final AsyncResult<T> result = new AsyncResult<T>();
+
+        Task(Callable<T> callable, long deadline) {
+            this.callable = callable;
+            this.deadline = deadline;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - deadline > 0;
+        }
+
+        void expire() {
+            result.fail(new KeyDerivationTimeoutException("The task has not been started before its deadline"));
+        }
+
+        /**
+         * Runs the task and updates the metrics of the scheduler before the
+         * result is published.
+         */
+        void run(KdfScheduler scheduler) {
+            T value = null;
+            Throwable failure = null;
+            try {
+                value = callable.call();
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                scheduler.finished();
+            }
+
+            if (failure != null) {
+                result.fail(failure);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+
+    /**
+     * Runs queued tasks until the scheduler is shut down.
+     */
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                Task<?> task;
+                while ((task = take()) != null) {
+                    task.run(KdfScheduler.this);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package de.slackspace.openkeepass.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+
+import de.slackspace.openkeepass.crypto.CryptoInformation;
+import de.slackspace.openkeepass.crypto.Decrypter;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassHeader;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.stream.HashedBlockDecoder;
+
+/**
+ * A push based session to open a KeePass database whose bytes arrive in
+ * chunks, e.g. from a non-blocking socket.
+ * <p>
+ * The caller hands every chunk to {@link #feed(ByteBuffer)} and calls
+ * {@link #finish()} once the end of the data has been reached. Neither call
+ * blocks: the header is parsed as soon as it is complete, the key
+ * derivation runs on the given executor and afterwards every chunk is
+ * decrypted and its hashed blocks are verified as it arrives. Chunks which
+ * arrive during the key derivation are buffered and decrypted on the
+ * executor once it is done. Once the last
+ * block has been verified the payload is decompressed and parsed on the
+ * executor and the {@link AsyncResult} returned by {@link #getResult()} is
+ * completed.
+ * <p>
+ * Errors do not surface from {@link #feed(ByteBuffer)} but complete the
+ * result exceptionally. Chunks which arrive after an error are ignored.
+ *
+ */
+public class KeePassDatabaseFeed {
+
+    private static final int FIELD_HEADER_LENGTH = 3;
+    private static final int START_BYTES_LENGTH = 32;
+
+    private final byte[] key;
+    private final ReadOptions readOptions;
+    private final Executor executor;
+    private final Decrypter decrypter = new Decrypter();
+    private final AsyncResult<KeePassFile> result = new AsyncResult<KeePassFile>();
+
+    private ByteArrayOutputStream header = new ByteArrayOutputStream();
+    private boolean signatureChecked;
+    private KeePassHeader keepassHeader;
+
+    private ByteArrayOutputStream pendingPayload = new ByteArrayOutputStream();
+    private Cipher cipher;
+
+    private byte[] startBytes = new byte[START_BYTES_LENGTH];
+    private int startBytesPos = 0;
+    private HashedBlockDecoder hashedBlockDecoder = new HashedBlockDecoder();
+
+    private boolean finished;
+
+    /**
+     * Creates a new session.
+     *
+     * @param key
+     *            the composite key of the database
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @param executor
+     *            the executor which runs the key derivation and the parsing
+     */
+    public KeePassDatabaseFeed(byte[] key, ReadOptions readOptions, Executor executor) {
+        if (key == null) {
+            throw new IllegalArgumentException("You must provide a key.");
+        }
+        if (readOptions == null) {
+            throw new IllegalArgumentException("You must provide read options.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("You must provide an executor.");
+        }
+
+        this.key = key;
+        this.readOptions = readOptions;
+        this.executor = executor;
+    }
+
+    /**
+     * Processes the next chunk of the database. All remaining bytes of the
+     * buffer are consumed.
+     *
+     * @param chunk
+     *            the next bytes of the database
+     */
+    public synchronized void feed(ByteBuffer chunk) {
+        if (chunk == null) {
+            throw new IllegalArgumentException("You must provide a chunk.");
+        }
+        if (finished) {
+            throw new IllegalStateException("The feed has already been finished.");
+        }
+
+        byte[] data = new byte[chunk.remaining()];
+        chunk.get(data);
+
+        if (result.isDone()) {
+            return;
+        }
+
+        try {
+            process(data);
+        } catch (IOException e) {
+            result.fail(new KeePassDatabaseUnreadableException("Could not open database file", e));
+        } catch (RuntimeException e) {
+            result.fail(e);
+        }
+    }
+
+    /**
+     * Signals that the end of the database has been reached.
+     */
+    public synchronized void finish() {
+        if (finished) {
+            throw new IllegalStateException("The feed has already been finished.");
+        }
+        finished = true;
+
+        if (result.isDone()) {
+            return;
+        }
+
+        if (keepassHeader == null) {
+            result.fail(new KeePassDatabaseUnreadableException("The database ended before its header was complete"));
+        } else if (cipher != null) {
+            completeSafely();
+        }
+        // otherwise the key derivation completes the feed
+    }
+
+    /**
+     * Returns the result which is completed with the KeePass file.
+     *
+     * @return the result of this session
+     */
+    public AsyncResult<KeePassFile> getResult() {
+        return result;
+    }
+
+    private void process(byte[] data) throws IOException {
+        if (keepassHeader == null) {
+            header.write(data, 0, data.length);
+            readHeaderIfComplete();
+        } else if (cipher == null) {
+            pendingPayload.write(data, 0, data.length);
+        } else {
+            decrypt(data);
+        }
+    }
+
+    private void readHeaderIfComplete() throws IOException {
+        byte[] bytes = header.toByteArray();
+
+        if (!signatureChecked && bytes.length >= KeePassHeader.VERSION_SIGNATURE_LENGTH) {
+            new KeePassHeader().checkVersionSupport(bytes);
+            signatureChecked = true;
+        }
+
+        int headerLength = findHeaderEnd(bytes);
+        if (headerLength < 0) {
+            return;
+        }
+
+        KeePassHeader completeHeader = new KeePassHeader();
+        completeHeader.read(bytes);
+        keepassHeader = completeHeader;
+        header = null;
+
+        pendingPayload.write(bytes, headerLength, bytes.length - headerLength);
+
+        final CryptoInformation cryptoInformation = new CryptoInformation(KeePassHeader.VERSION_SIGNATURE_LENGTH, keepassHeader.getMasterSeed(),
+                keepassHeader.getTransformSeed(), keepassHeader.getEncryptionIV(), keepassHeader.getTransformRounds(),
+                headerLength - KeePassHeader.VERSION_SIGNATURE_LENGTH);
+
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                deriveKey(cryptoInformation);
+            }
+        });
+    }
+
+    private static int findHeaderEnd(byte[] bytes) {
+        int pos = KeePassHeader.VERSION_SIGNATURE_LENGTH;
+
+        while (pos + FIELD_HEADER_LENGTH <= bytes.length) {
+            int fieldId = bytes[pos];
+            int fieldLength = (bytes[pos + 1] & 0xFF) | ((bytes[pos + 2] & 0xFF) << 8);
+
+            pos += FIELD_HEADER_LENGTH + fieldLength;
+            if (pos > bytes.length) {
+                return -1;
+            }
+            if (fieldId == 0) {
+                return pos;
+            }
+        }
+
+        return -1;
+    }
+
+    private void deriveKey(CryptoInformation cryptoInformation) {
+        Cipher decryptionCipher;
+        try {
+            decryptionCipher = decrypter.createDecryptionCipher(key, cryptoInformation);
+        } catch (RuntimeException e) {
+            result.fail(e);
+            return;
+        }
+
+        // The chunks which arrived during the key derivation are decrypted
+        // outside the lock, so feed() only appends to the backlog meanwhile.
+        // The cipher is published once the backlog is empty.
+        while (true) {
+            byte[] pending;
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+
+                if (pendingPayload.size() == 0) {
+                    cipher = decryptionCipher;
+                    pendingPayload = null;
+                    if (finished) {
+                        completeSafely();
+                    }
+                    return;
+                }
+
+                pending = pendingPayload.toByteArray();
+                pendingPayload.reset();
+            }
+
+            try {
+                decrypt(decryptionCipher, pending);
+            } catch (IOException e) {
+                result.fail(new KeePassDatabaseUnreadableException("Could not open database file", e));
+                return;
+            } catch (RuntimeException e) {
+                result.fail(e);
+                return;
+            }
+        }
+    }
+
+    private void decrypt(byte[] encrypted) throws IOException {
+        decrypt(cipher, encrypted);
+    }
+
+    private void decrypt(Cipher decryptionCipher, byte[] encrypted) throws IOException {
+        byte[] decrypted = decryptionCipher.update(encrypted);
+        if (decrypted != null) {
+            verify(decrypted);
+        }
+    }
+
+    private void verify(byte[] decrypted) throws IOException {
+        int offset = 0;
+
+        if (startBytesPos < START_BYTES_LENGTH) {
+            int count = Math.min(START_BYTES_LENGTH - startBytesPos, decrypted.length);
+            System.arraycopy(decrypted, 0, startBytes, startBytesPos, count);
+            startBytesPos += count;
+            offset = count;
+
+            if (startBytesPos == START_BYTES_LENGTH && !Arrays.equals(keepassHeader.getStreamStartBytes(), startBytes)) {
+                throw new KeePassDatabaseUnreadableException("The keepass database file seems to be corrupt or cannot be decrypted.");
+            }
+        }
+
+        hashedBlockDecoder.update(decrypted, offset, decrypted.length - offset);
+    }
+
+    private void completeSafely() {
+        try {
+            complete();
+        } catch (IOException e) {
+            result.fail(new KeePassDatabaseUnreadableException("Could not open database file", e));
+        } catch (RuntimeException e) {
+            result.fail(e);
+        }
+    }
+
+    private void complete() throws IOException {
+        try {
+            verify(cipher.doFinal());
+        } catch (IllegalBlockSizeException e) {
+            throw new KeePassDatabaseUnreadableException("Could not decrypt keepass file. Master key wrong?", e);
+        } catch (BadPaddingException e) {
+            throw new KeePassDatabaseUnreadableException("Could not decrypt keepass file. Master key wrong?", e);
+        }
+
+        if (startBytesPos < START_BYTES_LENGTH || !hashedBlockDecoder.isComplete()) {
+            throw new KeePassDatabaseUnreadableException("The database ended unexpectedly");
+        }
+
+        final byte[] payload = hashedBlockDecoder.getPayload();
+        final KeePassDatabaseReader reader = new KeePassDatabaseReader(keepassHeader);
+
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    result.complete(reader.parsePayload(new ByteArrayInputStream(payload), readOptions));
+                } catch (IOException e) {
+                    result.fail(new KeePassDatabaseUnreadableException("Could not open database file", e));
+                } catch (RuntimeException e) {
+                    result.fail(e);
+                }
+            }
+        });
+    }
+}
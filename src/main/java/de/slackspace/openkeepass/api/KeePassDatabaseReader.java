@@ -1,23 +1,39 @@
 package de.slackspace.openkeepass.api;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.GZIPInputStream;
 
 import de.slackspace.openkeepass.crypto.CryptoInformation;
 import de.slackspace.openkeepass.crypto.Decrypter;
+import de.slackspace.openkeepass.crypto.KeyTransformer;
 import de.slackspace.openkeepass.crypto.ProtectedStringCrypto;
 import de.slackspace.openkeepass.crypto.Salsa20;
+import de.slackspace.openkeepass.crypto.SeekableProtectedStringCrypto;
 import de.slackspace.openkeepass.domain.CompressionAlgorithm;
 import de.slackspace.openkeepass.domain.CrsAlgorithm;
+import de.slackspace.openkeepass.domain.Entry;
 import de.slackspace.openkeepass.domain.KeePassFile;
 import de.slackspace.openkeepass.domain.KeePassHeader;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.domain.visitor.EntryVisitor;
+import de.slackspace.openkeepass.domain.visitor.KeePassFileBuildingVisitor;
 import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlLazyParser;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlParallelParser;
 import de.slackspace.openkeepass.parser.KeePassDatabaseXmlParser;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlStreamParser;
 import de.slackspace.openkeepass.processor.DecryptionStrategy;
 import de.slackspace.openkeepass.processor.IconEnricher;
 import de.slackspace.openkeepass.processor.ProtectedValueProcessor;
+import de.slackspace.openkeepass.stream.GzipCheckpointIndex;
 import de.slackspace.openkeepass.stream.HashedBlockInputStream;
 import de.slackspace.openkeepass.util.SafeInputStream;
 import de.slackspace.openkeepass.util.StreamUtils;
@@ -26,6 +42,9 @@ public class KeePassDatabaseReader {
 
     protected Decrypter decrypter = new Decrypter();
     protected KeePassDatabaseXmlParser keePassDatabaseXmlParser = new KeePassDatabaseXmlParser();
+    protected KeePassDatabaseXmlStreamParser keePassDatabaseXmlStreamParser = new KeePassDatabaseXmlStreamParser();
+    protected KeePassDatabaseXmlLazyParser keePassDatabaseXmlLazyParser = new KeePassDatabaseXmlLazyParser();
+    protected KeePassDatabaseXmlParallelParser keePassDatabaseXmlParallelParser = new KeePassDatabaseXmlParallelParser();
 
     private KeePassHeader keepassHeader;
 
@@ -33,6 +52,20 @@ public class KeePassDatabaseReader {
         this.keepassHeader = keepassHeader;
     }
 
+    /**
+     * Creates a reader which runs the key transformation with the given
+     * transformer.
+     *
+     * @param keepassHeader
+     *            the header of the database
+     * @param keyTransformer
+     *            the transformer for the key derivation
+     */
+    public KeePassDatabaseReader(KeePassHeader keepassHeader, KeyTransformer keyTransformer) {
+        this.keepassHeader = keepassHeader;
+        this.decrypter = new Decrypter(keyTransformer);
+    }
+
     public KeePassFile decryptAndParseDatabase(byte[] key, byte[] keepassFile) {
         try {
             byte[] aesDecryptedDbFile = decryptStream(key, keepassFile);
@@ -48,6 +81,286 @@ public class KeePassDatabaseReader {
         }
     }
 
+    /**
+     * Decrypts the database and builds a KeePass file which contains only the
+     * parts selected by the read options. Skipped parts are never
+     * materialized.
+     *
+     * @param key
+     *            the composite key of the database
+     * @param keepassFile
+     *            the raw database file
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @return the KeePass file
+     */
+    public KeePassFile decryptAndParseDatabase(byte[] key, byte[] keepassFile, ReadOptions readOptions) {
+        return decryptAndParseDatabase(key, new ByteArrayInputStream(keepassFile), readOptions);
+    }
+
+    /**
+     * Decrypts a database from a stream and builds a KeePass file which
+     * contains only the parts selected by the read options.
+     * <p>
+     * The stream is decrypted, verified, decompressed and parsed on the fly,
+     * so the size of the database is not limited by the size of a byte array.
+     * Only lazy and concurrent parsing buffer the decompressed xml.
+     *
+     * @param key
+     *            the composite key of the database
+     * @param keepassFile
+     *            a stream which is positioned at the start of the database
+     *            file, will be closed
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @return the KeePass file
+     */
+    public KeePassFile decryptAndParseDatabase(byte[] key, InputStream keepassFile, ReadOptions readOptions) {
+        InputStream hashedBlockStream = null;
+        try {
+            hashedBlockStream = openHashedBlockStream(key, keepassFile);
+            return parsePayload(hashedBlockStream, readOptions);
+        } catch (IOException e) {
+            throw new KeePassDatabaseUnreadableException("Could not open database file", e);
+        } finally {
+            if (hashedBlockStream != null) {
+                try {
+                    hashedBlockStream.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a KeePass file from a payload which has already been decrypted
+     * and whose hashed blocks have already been verified. The payload is
+     * decompressed according to the header.
+     *
+     * @param payload
+     *            the decrypted and verified payload
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @return the KeePass file
+     * @throws IOException
+     *             if the payload cannot be read or decompressed
+     */
+    public KeePassFile parsePayload(InputStream payload, ReadOptions readOptions) throws IOException {
+        if (readOptions.isLazy()) {
+            return scanPayload(payload, readOptions);
+        }
+
+        KeePassFile parsedKeePassFile;
+        if (readOptions.getParserExecutor() != null || readOptions.getParallelism() > 1) {
+            parsedKeePassFile = parsePayloadConcurrently(payload, readOptions);
+        } else {
+            KeePassFileBuildingVisitor visitor = new KeePassFileBuildingVisitor();
+            keePassDatabaseXmlStreamParser.parse(decompress(payload), getProtectedStringCrypto(), visitor, readOptions);
+            parsedKeePassFile = visitor.getKeePassFile();
+        }
+
+        if (readOptions.isIconEnrichment()) {
+            return new IconEnricher().enrichNodesWithIconData(parsedKeePassFile);
+        }
+
+        return parsedKeePassFile;
+    }
+
+    /**
+     * Decrypts the database until the entry with the given UUID has been
+     * found. The rest of the payload is neither decrypted nor parsed.
+     *
+     * @param key
+     *            the composite key of the database
+     * @param keepassFile
+     *            the raw database file
+     * @param uuid
+     *            the UUID of the entry
+     * @return the entry or null if there is no entry with the given UUID
+     */
+    public Entry decryptAndFindEntry(byte[] key, byte[] keepassFile, UUID uuid) {
+        return decryptAndFindEntry(key, new ByteArrayInputStream(keepassFile), uuid);
+    }
+
+    /**
+     * Decrypts a database from a stream until the entry with the given UUID
+     * has been found.
+     *
+     * @param key
+     *            the composite key of the database
+     * @param keepassFile
+     *            a stream which is positioned at the start of the database
+     *            file, will be closed
+     * @param uuid
+     *            the UUID of the entry
+     * @return the entry or null if there is no entry with the given UUID
+     */
+    public Entry decryptAndFindEntry(byte[] key, InputStream keepassFile, UUID uuid) {
+        return decryptAndFindEntry(key, keepassFile, uuid, null);
+    }
+
+    /**
+     * Decrypts the database until the first entry with the given title has
+     * been found. The rest of the payload is neither decrypted nor parsed.
+     *
+     * @param key
+     *            the composite key of the database
+     * @param keepassFile
+     *            the raw database file
+     * @param title
+     *            the title of the entry, case is ignored
+     * @return the entry or null if there is no entry with the given title
+     */
+    public Entry decryptAndFindEntryByTitle(byte[] key, byte[] keepassFile, String title) {
+        return decryptAndFindEntryByTitle(key, new ByteArrayInputStream(keepassFile), title);
+    }
+
+    /**
+     * Decrypts a database from a stream until the first entry with the given
+     * title has been found.
+     *
+     * @param key
+     *            the composite key of the database
+     * @param keepassFile
+     *            a stream which is positioned at the start of the database
+     *            file, will be closed
+     * @param title
+     *            the title of the entry, case is ignored
+     * @return the entry or null if there is no entry with the given title
+     */
+    public Entry decryptAndFindEntryByTitle(byte[] key, InputStream keepassFile, String title) {
+        return decryptAndFindEntry(key, keepassFile, null, title);
+    }
+
+    private Entry decryptAndFindEntry(byte[] key, InputStream keepassFile, UUID uuid, String title) {
+        InputStream payloadStream = null;
+        try {
+            payloadStream = openPayloadStream(key, keepassFile);
+            if (uuid != null) {
+                return keePassDatabaseXmlStreamParser.findEntryByUuid(payloadStream, getProtectedStringCrypto(), uuid);
+            }
+            return keePassDatabaseXmlStreamParser.findEntryByTitle(payloadStream, getProtectedStringCrypto(), title);
+        } catch (IOException e) {
+            throw new KeePassDatabaseUnreadableException("Could not open database file", e);
+        } finally {
+            if (payloadStream != null) {
+                try {
+                    payloadStream.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private KeePassFile parsePayloadConcurrently(InputStream payload, ReadOptions readOptions) throws IOException {
+        byte[] decompressed = StreamUtils.toByteArray(decompress(payload));
+
+        if (readOptions.getParserExecutor() != null) {
+            return keePassDatabaseXmlParallelParser.parse(decompressed, getProtectedStringCrypto(), readOptions, readOptions.getParserExecutor());
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(readOptions.getParallelism());
+        try {
+            return keePassDatabaseXmlParallelParser.parse(decompressed, getProtectedStringCrypto(), readOptions, executorService);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private KeePassFile scanPayload(InputStream payload, ReadOptions readOptions) throws IOException {
+        if (readOptions.getCheckpointSpan() > 0 && keepassHeader.getCompression().equals(CompressionAlgorithm.Gzip)) {
+            byte[] compressed = StreamUtils.toByteArray(payload);
+
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            GzipCheckpointIndex checkpointIndex = GzipCheckpointIndex.build(compressed, readOptions.getCheckpointSpan(), decompressed);
+
+            return keePassDatabaseXmlLazyParser.parse(decompressed.toByteArray(), checkpointIndex, getProtectedStringCrypto(), readOptions);
+        }
+
+        byte[] decompressed = StreamUtils.toByteArray(decompress(payload));
+        return keePassDatabaseXmlLazyParser.parse(decompressed, getProtectedStringCrypto(), readOptions);
+    }
+
+    /**
+     * Decrypts the database and streams its content to the given visitor
+     * without building the tree.
+     * <p>
+     * The payload is decrypted, verified and decompressed on the fly, so only
+     * the encrypted database file is held in memory.
+     *
+     * @param key
+     *            the composite key of the database
+     * @param keepassFile
+     *            the raw database file
+     * @param visitor
+     *            the visitor which receives the events
+     */
+    public void decryptAndVisitDatabase(byte[] key, byte[] keepassFile, EntryVisitor visitor) {
+        decryptAndVisitDatabase(key, new ByteArrayInputStream(keepassFile), visitor);
+    }
+
+    /**
+     * Decrypts a database from a stream and streams its content to the given
+     * visitor. Neither the database nor its payload is held in memory.
+     *
+     * @param key
+     *            the composite key of the database
+     * @param keepassFile
+     *            a stream which is positioned at the start of the database
+     *            file, will be closed
+     * @param visitor
+     *            the visitor which receives the events
+     */
+    public void decryptAndVisitDatabase(byte[] key, InputStream keepassFile, EntryVisitor visitor) {
+        InputStream payloadStream = null;
+        try {
+            payloadStream = openPayloadStream(key, keepassFile);
+            keePassDatabaseXmlStreamParser.parse(payloadStream, getProtectedStringCrypto(), visitor, ReadOptions.ALL);
+        } catch (IOException e) {
+            throw new KeePassDatabaseUnreadableException("Could not open database file", e);
+        } finally {
+            if (payloadStream != null) {
+                try {
+                    payloadStream.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private InputStream openPayloadStream(byte[] key, InputStream keepassFile) throws IOException {
+        return decompress(openHashedBlockStream(key, keepassFile));
+    }
+
+    private InputStream decompress(InputStream payload) throws IOException {
+        if (keepassHeader.getCompression().equals(CompressionAlgorithm.Gzip)) {
+            return new GZIPInputStream(payload);
+        }
+
+        return payload;
+    }
+
+    private InputStream openHashedBlockStream(byte[] key, InputStream keepassFile) throws IOException {
+        StreamUtils.skip(keepassFile, KeePassHeader.VERSION_SIGNATURE_LENGTH + keepassHeader.getHeaderSize());
+
+        InputStream decryptedStream = new BufferedInputStream(decrypter.decryptStream(key, createCryptoInformation(), keepassFile));
+        checkStartBytes(decryptedStream);
+
+        return new HashedBlockInputStream(decryptedStream);
+    }
+
+    private void checkStartBytes(InputStream decryptedStream) throws IOException {
+        byte[] startBytes = new byte[32];
+        StreamUtils.read(decryptedStream, startBytes);
+
+        if (!Arrays.equals(keepassHeader.getStreamStartBytes(), startBytes)) {
+            throw new KeePassDatabaseUnreadableException("The keepass database file seems to be corrupt or cannot be decrypted.");
+        }
+    }
+
     private byte[] unHashBlockStream(SafeInputStream decryptedStream) throws IOException {
         HashedBlockInputStream hashedBlockInputStream = new HashedBlockInputStream(decryptedStream);
         return StreamUtils.toByteArray(hashedBlockInputStream);
@@ -60,8 +373,8 @@ public class KeePassDatabaseReader {
         return new IconEnricher().enrichNodesWithIconData(unprocessedKeepassFile);
     }
 
-    private ProtectedStringCrypto getProtectedStringCrypto() {
-        ProtectedStringCrypto protectedStringCrypto;
+    private SeekableProtectedStringCrypto getProtectedStringCrypto() {
+        SeekableProtectedStringCrypto protectedStringCrypto;
         if (keepassHeader.getCrsAlgorithm().equals(CrsAlgorithm.Salsa20)) {
             protectedStringCrypto = Salsa20.createInstance(keepassHeader.getProtectedStreamKey());
         } else {
@@ -100,8 +413,11 @@ public class KeePassDatabaseReader {
     }
 
     private byte[] decryptStream(byte[] key, byte[] keepassFile) throws IOException {
-        CryptoInformation cryptoInformation = new CryptoInformation(KeePassHeader.VERSION_SIGNATURE_LENGTH, keepassHeader.getMasterSeed(),
-                keepassHeader.getTransformSeed(), keepassHeader.getEncryptionIV(), keepassHeader.getTransformRounds(), keepassHeader.getHeaderSize());
-        return decrypter.decryptDatabase(key, cryptoInformation, keepassFile);
+        return decrypter.decryptDatabase(key, createCryptoInformation(), keepassFile);
+    }
+
+    private CryptoInformation createCryptoInformation() {
+        return new CryptoInformation(KeePassHeader.VERSION_SIGNATURE_LENGTH, keepassHeader.getMasterSeed(), keepassHeader.getTransformSeed(),
+                keepassHeader.getEncryptionIV(), keepassHeader.getTransformRounds(), keepassHeader.getHeaderSize());
     }
 }
@@ -35,9 +35,7 @@ public class KeePassDatabaseWriter {
             KeePassHeader header = new KeePassHeader(new RandomGenerator());
             byte[] hashedPassword = hashPassword(password);
 
-            byte[] keePassFilePayload = marshallXml(keePassFile, header);
-            ByteArrayOutputStream streamToZip = compressStream(keePassFilePayload);
-            ByteArrayOutputStream streamToHashBlock = hashBlockStream(streamToZip);
+            ByteArrayOutputStream streamToHashBlock = marshallCompressedXml(keePassFile, header);
             ByteArrayOutputStream streamToEncrypt = combineHeaderAndContent(header, streamToHashBlock);
             byte[] encryptedDatabase = encryptStream(header, hashedPassword, streamToEncrypt);
 
@@ -76,29 +74,20 @@ public class KeePassDatabaseWriter {
         return streamToEncrypt;
     }
 
-    private ByteArrayOutputStream hashBlockStream(ByteArrayOutputStream streamToUnzip) throws IOException {
-        ByteArrayOutputStream streamToHashBlock = new ByteArrayOutputStream();
-        HashedBlockOutputStream hashBlockOutputStream = new HashedBlockOutputStream(streamToHashBlock);
-        hashBlockOutputStream.write(streamToUnzip.toByteArray());
-        hashBlockOutputStream.close();
-        return streamToHashBlock;
-    }
-
-    private byte[] marshallXml(KeePassFile keePassFile, KeePassHeader header) {
+    private ByteArrayOutputStream marshallCompressedXml(KeePassFile keePassFile, KeePassHeader header) throws IOException {
         KeePassFile clonedKeePassFile = new GroupZipper(keePassFile).cloneKeePassFile();
 
         ProtectedStringCrypto protectedStringCrypto = Salsa20.createInstance(header.getProtectedStreamKey());
         new ProtectedValueProcessor().processProtectedValues(new EncryptionStrategy(protectedStringCrypto), clonedKeePassFile);
 
-        return new KeePassDatabaseXmlParser().toXml(keePassFile).toByteArray();
-    }
-
-    private ByteArrayOutputStream compressStream(byte[] keePassFilePayload) throws IOException {
-        ByteArrayOutputStream streamToZip = new ByteArrayOutputStream();
-        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(streamToZip);
-        gzipOutputStream.write(keePassFilePayload);
+        // Xml is written compact and directly through gzip into the hashed
+        // blocks, so the uncompressed payload is never held in memory
+        ByteArrayOutputStream streamToHashBlock = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(new HashedBlockOutputStream(streamToHashBlock));
+        new KeePassDatabaseXmlParser().toXml(clonedKeePassFile, gzipOutputStream);
         gzipOutputStream.close();
-        return streamToZip;
+
+        return streamToHashBlock;
     }
 
     private static boolean validateKeePassFile(KeePassFile keePassFile) {
@@ -1,5 +1,6 @@
 package de.slackspace.openkeepass.crypto;
 
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -8,6 +9,7 @@ import java.security.NoSuchAlgorithmException;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.ShortBufferException;
@@ -78,13 +80,70 @@ public class Aes {
         return transformData(key, ivRaw, data, Cipher.ENCRYPT_MODE);
     }
 
+    /**
+     * Returns a stream which decrypts the given encrypted stream on the fly.
+     *
+     * @param key
+     *            the aes key
+     * @param ivRaw
+     *            the initialization vector
+     * @param data
+     *            the encrypted stream
+     * @return a stream of decrypted data
+     */
+    public static InputStream decrypt(byte[] key, byte[] ivRaw, InputStream data) {
+        if (key == null) {
+            throw new IllegalArgumentException(MSG_KEY_MUST_NOT_BE_NULL);
+        }
+        if (ivRaw == null) {
+            throw new IllegalArgumentException(MSG_IV_MUST_NOT_BE_NULL);
+        }
+        if (data == null) {
+            throw new IllegalArgumentException(MSG_DATA_MUST_NOT_BE_NULL);
+        }
+
+        return new CipherInputStream(data, createCipher(key, ivRaw, Cipher.DECRYPT_MODE));
+    }
+
+    /**
+     * Returns a cipher which decrypts data incrementally with
+     * {@link Cipher#update(byte[], int, int)}.
+     *
+     * @param key
+     *            the aes key
+     * @param ivRaw
+     *            the initialization vector
+     * @return a cipher in decryption mode
+     */
+    public static Cipher createDecryptionCipher(byte[] key, byte[] ivRaw) {
+        if (key == null) {
+            throw new IllegalArgumentException(MSG_KEY_MUST_NOT_BE_NULL);
+        }
+        if (ivRaw == null) {
+            throw new IllegalArgumentException(MSG_IV_MUST_NOT_BE_NULL);
+        }
+
+        return createCipher(key, ivRaw, Cipher.DECRYPT_MODE);
+    }
+
     private static byte[] transformData(byte[] key, byte[] ivRaw, byte[] encryptedData, int operationMode) {
+        try {
+            Cipher cipher = createCipher(key, ivRaw, operationMode);
+            return cipher.doFinal(encryptedData);
+        } catch (IllegalBlockSizeException e) {
+            throw createCryptoException(e);
+        } catch (BadPaddingException e) {
+            throw createCryptoException(e);
+        }
+    }
+
+    private static Cipher createCipher(byte[] key, byte[] ivRaw, int operationMode) {
         try {
             Cipher cipher = Cipher.getInstance(DATA_TRANSFORMATION);
             Key aesKey = new SecretKeySpec(key, KEY_ALGORITHM);
             IvParameterSpec iv = new IvParameterSpec(ivRaw);
             cipher.init(operationMode, aesKey, iv);
-            return cipher.doFinal(encryptedData);
+            return cipher;
         } catch (NoSuchAlgorithmException e) {
             throw new UnsupportedOperationException("The specified algorithm is unknown", e);
         } catch (NoSuchPaddingException e) {
@@ -93,10 +152,6 @@ public class Aes {
             throw createCryptoException(e);
         } catch (InvalidAlgorithmParameterException e) {
             throw createCryptoException(e);
-        } catch (IllegalBlockSizeException e) {
-            throw createCryptoException(e);
-        } catch (BadPaddingException e) {
-            throw createCryptoException(e);
         }
     }
 
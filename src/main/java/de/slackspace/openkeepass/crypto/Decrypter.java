@@ -4,12 +4,33 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+
+import javax.crypto.Cipher;
 
 import de.slackspace.openkeepass.util.SafeInputStream;
 import de.slackspace.openkeepass.util.StreamUtils;
 
 public class Decrypter {
 
+    private final KeyTransformer keyTransformer;
+
+    public Decrypter() {
+        this(null);
+    }
+
+    /**
+     * Creates a decrypter which runs the key transformation with the given
+     * transformer, e.g. to schedule it on a shared pool.
+     *
+     * @param keyTransformer
+     *            the transformer or null to transform keys on the calling
+     *            thread
+     */
+    public Decrypter(KeyTransformer keyTransformer) {
+        this.keyTransformer = keyTransformer;
+    }
+
     public byte[] decryptDatabase(byte[] password, CryptoInformation cryptoInformation, byte[] database) throws IOException {
         byte[] aesKey = createAesKey(password, cryptoInformation);
 
@@ -22,6 +43,40 @@ public class Decrypter {
         return processDatabaseEncryption(true, database, cryptoInformation, aesKey);
     }
 
+    /**
+     * Returns a stream which decrypts the payload of a database on the fly.
+     *
+     * @param password
+     *            the composite key of the database
+     * @param cryptoInformation
+     *            the crypto information from the database header
+     * @param encryptedPayload
+     *            the encrypted payload which follows the database header
+     * @return a stream of the decrypted payload
+     */
+    public InputStream decryptStream(byte[] password, CryptoInformation cryptoInformation, InputStream encryptedPayload) {
+        byte[] aesKey = createAesKey(password, cryptoInformation);
+
+        return Aes.decrypt(aesKey, cryptoInformation.getEncryptionIV(), encryptedPayload);
+    }
+
+    /**
+     * Derives the aes key and returns a cipher which decrypts the payload of a
+     * database incrementally. Deriving the key runs all transform rounds,
+     * which is the expensive part of opening a database.
+     *
+     * @param password
+     *            the composite key of the database
+     * @param cryptoInformation
+     *            the crypto information from the database header
+     * @return a cipher in decryption mode
+     */
+    public Cipher createDecryptionCipher(byte[] password, CryptoInformation cryptoInformation) {
+        byte[] aesKey = createAesKey(password, cryptoInformation);
+
+        return Aes.createDecryptionCipher(aesKey, cryptoInformation.getEncryptionIV());
+    }
+
     private byte[] processDatabaseEncryption(boolean encrypt, byte[] database, CryptoInformation cryptoInformation, byte[] aesKey) throws IOException {
         byte[] metaData = new byte[cryptoInformation.getVersionSignatureLength() + cryptoInformation.getHeaderSize()];
         SafeInputStream inputStream = new SafeInputStream(new BufferedInputStream(new ByteArrayInputStream(database)));
@@ -45,7 +100,12 @@ public class Decrypter {
     private byte[] createAesKey(byte[] password, CryptoInformation cryptoInformation) {
         byte[] hashedPwd = Sha256.hash(password);
 
-        byte[] transformedPwd = Aes.transformKey(cryptoInformation.getTransformSeed(), hashedPwd, cryptoInformation.getTransformRounds());
+        byte[] transformedPwd;
+        if (keyTransformer == null) {
+            transformedPwd = Aes.transformKey(cryptoInformation.getTransformSeed(), hashedPwd, cryptoInformation.getTransformRounds());
+        } else {
+            transformedPwd = keyTransformer.transformKey(cryptoInformation.getTransformSeed(), hashedPwd, cryptoInformation.getTransformRounds());
+        }
         byte[] transformedHashedPwd = Sha256.hash(transformedPwd);
 
         ByteArrayOutputStream stream = new ByteArrayOutputStream();
@@ -0,0 +1,23 @@
+package de.slackspace.openkeepass.crypto;
+
+/**
+ * Runs the key transformation rounds of a database, which is the expensive
+ * part of deriving its key.
+ *
+ * @see Aes#transformKey(byte[], byte[], long)
+ */
+public interface KeyTransformer {
+
+    /**
+     * Transforms the given key with the given number of AES rounds.
+     *
+     * @param seed
+     *            the transform seed from the database header
+     * @param key
+     *            the key to transform
+     * @param rounds
+     *            the number of transform rounds
+     * @return the transformed key
+     */
+    byte[] transformKey(byte[] seed, byte[] key, long rounds);
+}
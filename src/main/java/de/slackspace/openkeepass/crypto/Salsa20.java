@@ -1,39 +1,31 @@
 package de.slackspace.openkeepass.crypto;
 
 import java.io.UnsupportedEncodingException;
-import java.security.Security;
 
-import javax.crypto.Cipher;
-import javax.crypto.ShortBufferException;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
-
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.crypto.engines.Salsa20Engine;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.bouncycastle.util.encoders.Base64;
 import org.bouncycastle.util.encoders.Hex;
 
-public class Salsa20 implements ProtectedStringCrypto {
+public class Salsa20 implements SeekableProtectedStringCrypto {
 
     private static final String MSG_UNKNOWN_UTF8_ENCODING = "The encoding UTF-8 is not supported";
-    private static final String SALSA20_ALGORITHM = "Salsa20";
     private static final String ENCODING = "UTF-8";
     private static final String SALSA20IV = "E830094B97205D2A";
 
-    private Cipher salsa20Engine;
+    private byte[] protectedStreamKey;
+    private Salsa20Engine salsa20Engine;
 
     private Salsa20() {
-        Security.addProvider(new BouncyCastleProvider());
     }
 
     private void initialize(byte[] protectedStreamKey) {
+        this.protectedStreamKey = protectedStreamKey;
         byte[] salsaKey = Sha256.hash(protectedStreamKey);
 
-        try {
-            salsa20Engine = Cipher.getInstance(SALSA20_ALGORITHM);
-            salsa20Engine.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(salsaKey, SALSA20_ALGORITHM), new IvParameterSpec(Hex.decode(SALSA20IV)));
-        } catch (Exception e) {
-            throw new UnsupportedOperationException("Could not find provider '" + SALSA20_ALGORITHM + "'", e);
-        }
+        salsa20Engine = new Salsa20Engine();
+        salsa20Engine.init(true, new ParametersWithIV(new KeyParameter(salsaKey), Hex.decode(SALSA20IV)));
     }
 
     public static Salsa20 createInstance(byte[] protectedStreamKey) {
@@ -57,10 +49,8 @@ public class Salsa20 implements ProtectedStringCrypto {
         byte[] plainText = new byte[protectedBuffer.length];
 
         try {
-            salsa20Engine.update(protectedBuffer, 0, protectedBuffer.length, plainText, 0);
+            salsa20Engine.processBytes(protectedBuffer, 0, protectedBuffer.length, plainText, 0);
             return new String(plainText, ENCODING);
-        } catch (ShortBufferException e) {
-            throw new AssertionError(e);
         } catch (UnsupportedEncodingException e) {
             throw new UnsupportedOperationException(MSG_UNKNOWN_UTF8_ENCODING, e);
         }
@@ -76,16 +66,55 @@ public class Salsa20 implements ProtectedStringCrypto {
             byte[] plainStringBytes = plainString.getBytes(ENCODING);
             byte[] encodedText = new byte[plainStringBytes.length];
 
-            salsa20Engine.update(plainStringBytes, 0, plainStringBytes.length, encodedText, 0);
+            salsa20Engine.processBytes(plainStringBytes, 0, plainStringBytes.length, encodedText, 0);
 
             byte[] protectedBuffer = Base64.encode(encodedText);
 
             return new String(protectedBuffer, ENCODING);
         } catch (UnsupportedEncodingException e) {
             throw new UnsupportedOperationException(MSG_UNKNOWN_UTF8_ENCODING, e);
-        } catch (ShortBufferException e) {
-            throw new AssertionError(e);
         }
     }
 
+    @Override
+    public void skip(String protectedString) {
+        if (protectedString == null) {
+            throw new IllegalArgumentException("ProtectedString must not be null");
+        }
+
+        salsa20Engine.skip(getDecodedLength(protectedString));
+    }
+
+    @Override
+    public long getPosition() {
+        return salsa20Engine.getPosition();
+    }
+
+    @Override
+    public void seekTo(long position) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Position must not be negative");
+        }
+
+        salsa20Engine.seekTo(position);
+    }
+
+    @Override
+    public Salsa20 copy() {
+        return createInstance(protectedStreamKey);
+    }
+
+    private static long getDecodedLength(String base64) {
+        long significantChars = 0;
+        for (int i = 0; i < base64.length(); i++) {
+            char c = base64.charAt(i);
+            if (c != '=' && !Character.isWhitespace(c)) {
+                significantChars++;
+            }
+        }
+
+        // every base64 character carries 6 bits
+        return significantChars * 6 / 8;
+    }
+
 }
@@ -0,0 +1,47 @@
+package de.slackspace.openkeepass.crypto;
+
+/**
+ * A {@link ProtectedStringCrypto} whose key stream can be advanced without
+ * decrypting and positioned at arbitrary offsets.
+ * <p>
+ * Protected values share one key stream in document order, so a value can
+ * only be decrypted if all preceding values have consumed their part of it.
+ * This allows to pass over values which are not needed without the cost of
+ * decoding them.
+ *
+ */
+public interface SeekableProtectedStringCrypto extends ProtectedStringCrypto {
+
+    /**
+     * Advances the key stream by the length of the given encrypted string
+     * without decrypting it.
+     *
+     * @param protectedString
+     *            the encrypted string which should be skipped
+     */
+    public void skip(String protectedString);
+
+    /**
+     * Returns the current offset in the key stream.
+     *
+     * @return the number of key stream bytes consumed so far
+     */
+    public long getPosition();
+
+    /**
+     * Moves the key stream to the given offset.
+     *
+     * @param position
+     *            the absolute offset in the key stream
+     */
+    public void seekTo(long position);
+
+    /**
+     * Creates an independent crypto on the same key stream, positioned at
+     * its start. This allows to decrypt different parts of a database in
+     * parallel.
+     *
+     * @return a new crypto instance
+     */
+    public SeekableProtectedStringCrypto copy();
+}
@@ -0,0 +1,118 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The entries or subgroups of a {@link Group}.
+ * <p>
+ * The list counts its modifications, including replacements, so a group can
+ * tell whether lookup maps it has built from the list are still up to date.
+ * A group and the {@link GroupBuilder} created from it share the same list.
+ * <p>
+ * Each modification also increments the {@link TreeVersion} of every
+ * database tree the list belongs to. A subgroup added to the list joins the
+ * trees of the list. A group keeps the trees it has left, so removing it from
+ * a database causes a needless index rebuild of that database at worst.
+ *
+ * @param <T>
+ *            the type of the children
+ */
+final class ChildList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final TreeVersion[] NO_TREES = new TreeVersion[0];
+
+    private final List<T> elements = new ArrayList<T>();
+    private volatile int version;
+    private volatile TreeVersion[] trees = NO_TREES;
+
+    @Override
+    public T get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public T set(int index, T element) {
+        T previous = elements.set(index, element);
+        adopt(element);
+        modified();
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        elements.add(index, element);
+        adopt(element);
+        modCount++;
+        modified();
+    }
+
+    @Override
+    public T remove(int index) {
+        T removed = elements.remove(index);
+        modCount++;
+        modified();
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        modCount++;
+        modified();
+    }
+
+    /**
+     * Returns a number which changes whenever the list is modified.
+     *
+     * @return the version of the list
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Adds the list to the given tree, so its modifications increment the
+     * version of the tree.
+     *
+     * @param tree
+     *            the version of the tree the list belongs to
+     * @return false if the list already belonged to the tree
+     */
+    synchronized boolean joinTree(TreeVersion tree) {
+        TreeVersion[] current = trees;
+        for (TreeVersion joined : current) {
+            if (joined == tree) {
+                return false;
+            }
+        }
+
+        TreeVersion[] joined = new TreeVersion[current.length + 1];
+        System.arraycopy(current, 0, joined, 0, current.length);
+        joined[current.length] = tree;
+        trees = joined;
+        return true;
+    }
+
+    private void adopt(T element) {
+        if (element instanceof Group) {
+            for (TreeVersion tree : trees) {
+                ((Group) element).joinTree(tree);
+            }
+        }
+    }
+
+    private void modified() {
+        version++;
+        for (TreeVersion tree : trees) {
+            tree.increment();
+        }
+    }
+}
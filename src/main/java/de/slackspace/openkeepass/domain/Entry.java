@@ -1,6 +1,5 @@
 package de.slackspace.openkeepass.domain;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -26,15 +25,6 @@ public class Entry implements KeePassFileElement {
     private static final String URL = "URL";
     private static final String PASSWORD = "Password";
     private static final String TITLE = "Title";
-    private static final List<String> PROPERTY_KEYS = new ArrayList<String>();
-
-    static {
-        PROPERTY_KEYS.add(USER_NAME);
-        PROPERTY_KEYS.add(NOTES);
-        PROPERTY_KEYS.add(URL);
-        PROPERTY_KEYS.add(PASSWORD);
-        PROPERTY_KEYS.add(TITLE);
-    }
 
     @XmlElement(name = "UUID")
     @XmlJavaTypeAdapter(UUIDXmlAdapter.class)
@@ -49,8 +39,11 @@ public class Entry implements KeePassFileElement {
     @XmlJavaTypeAdapter(UUIDXmlAdapter.class)
     private UUID customIconUUID;
 
+    @XmlElement(name = "Times")
+    private Times times;
+
     @XmlElement(name = "String")
-    private List<Property> properties = new ArrayList<Property>();
+    private List<Property> properties = new PropertyList();
 
     @XmlElement(name = "History")
     private History history;
@@ -72,7 +65,17 @@ public class Entry implements KeePassFileElement {
         setValue(false, USER_NAME, entryContract.getUsername());
         setValue(false, URL, entryContract.getUrl());
 
-        this.properties.addAll(entryContract.getCustomPropertyList());
+        propertyList().addAll(entryContract.getCustomPropertyList());
+    }
+
+    Entry(EntryBuilder entryBuilder) {
+        this.history = entryBuilder.getHistory();
+        this.uuid = entryBuilder.getUuid();
+        this.iconData = entryBuilder.getIconData();
+        this.iconId = entryBuilder.getIconId();
+        this.customIconUUID = entryBuilder.getCustomIconUUID();
+        this.times = entryBuilder.times;
+        this.properties = new PropertyList(entryBuilder.properties);
     }
 
     public UUID getUuid() {
@@ -107,63 +110,54 @@ public class Entry implements KeePassFileElement {
         return iconData;
     }
 
+    /**
+     * Returns the properties of this entry in document order. The list may be
+     * modified and is indexed by the keys of the properties.
+     *
+     * @return the properties of this entry
+     */
     public List<Property> getProperties() {
-        return properties;
+        return propertyList();
     }
 
     public List<Property> getCustomProperties() {
-        List<Property> customProperties = new ArrayList<Property>();
-
-        for (Property property : properties) {
-            if (!PROPERTY_KEYS.contains(property.getKey())) {
-                customProperties.add(property);
-            }
-        }
-
-        return customProperties;
+        return propertyList().getCustomProperties();
     }
 
     public String getTitle() {
-        return getValueFromProperty(TITLE);
+        return getValue(PropertyList.TITLE);
     }
 
     public String getPassword() {
-        return getValueFromProperty(PASSWORD);
+        return getValue(PropertyList.PASSWORD);
     }
 
     public String getUrl() {
-        return getValueFromProperty(URL);
+        return getValue(PropertyList.URL);
     }
 
     public String getNotes() {
-        return getValueFromProperty(NOTES);
+        return getValue(PropertyList.NOTES);
     }
 
     public String getUsername() {
-        return getValueFromProperty(USER_NAME);
+        return getValue(PropertyList.USER_NAME);
     }
 
     public boolean isTitleProtected() {
-        return getPropertyByName(TITLE).isProtected();
+        return propertyList().getStandard(PropertyList.TITLE).isProtected();
     }
 
     public boolean isPasswordProtected() {
-        return getPropertyByName(PASSWORD).isProtected();
+        return propertyList().getStandard(PropertyList.PASSWORD).isProtected();
     }
 
     private void setValue(boolean isProtected, String propertyName, String propertyValue) {
-        Property property = getPropertyByName(propertyName);
-        if (property == null) {
-            property = new Property(propertyName, propertyValue, isProtected);
-            properties.add(property);
-        } else {
-            properties.remove(property);
-            properties.add(new Property(propertyName, propertyValue, isProtected));
-        }
+        propertyList().put(new Property(propertyName, propertyValue, isProtected));
     }
 
-    private String getValueFromProperty(String name) {
-        Property property = getPropertyByName(name);
+    private String getValue(int slot) {
+        Property property = propertyList().getStandard(slot);
         if (property != null) {
             return property.getValue();
         }
@@ -171,6 +165,14 @@ public class Entry implements KeePassFileElement {
         return null;
     }
 
+    private PropertyList propertyList() {
+        // JAXB or reflection may have replaced the list with a plain one
+        if (!(properties instanceof PropertyList)) {
+            properties = properties == null ? new PropertyList() : new PropertyList(properties);
+        }
+        return (PropertyList) properties;
+    }
+
     /**
      * Retrieves a property by it's name (ignores case)
      *
@@ -179,25 +181,30 @@ public class Entry implements KeePassFileElement {
      * @return the property if found, null otherwise
      */
     public Property getPropertyByName(String name) {
-        for (Property property : properties) {
-            if (property.getKey().equalsIgnoreCase(name)) {
-                return property;
-            }
-        }
-
-        return null;
+        return propertyList().get(name);
     }
 
     public History getHistory() {
         return history;
     }
 
+    /**
+     * Returns the creation, modification, access and expiry times of this
+     * entry.
+     *
+     * @return the times of this entry or null if they have not been read
+     */
+    public Times getTimes() {
+        return times;
+    }
+
     @Override
     public final int hashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((history == null) ? 0 : history.hashCode());
         result = prime * result + ((properties == null) ? 0 : properties.hashCode());
+        result = prime * result + ((times == null) ? 0 : times.hashCode());
         result = prime * result + ((uuid == null) ? 0 : uuid.hashCode());
         return result;
     }
@@ -221,6 +228,11 @@ public class Entry implements KeePassFileElement {
                 return false;
         } else if (!properties.equals(other.properties))
             return false;
+        if (times == null) {
+            if (other.times != null)
+                return false;
+        } else if (!times.equals(other.times))
+            return false;
         if (uuid == null) {
             if (other.uuid != null)
                 return false;
@@ -1,6 +1,6 @@
 package de.slackspace.openkeepass.domain;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
 import java.util.UUID;
 
@@ -10,19 +10,17 @@ import java.util.UUID;
  */
 public class EntryBuilder implements EntryContract {
 
+    private static final String USER_NAME = "UserName";
+    private static final String NOTES = "Notes";
+    private static final String URL = "URL";
+    private static final String PASSWORD = "Password";
+    private static final String TITLE = "Title";
+
     private UUID uuid;
 
     private History history;
 
-    private String title;
-
-    private String username;
-
-    private String password;
-
-    private String notes;
-
-    private String url;
+    PropertyList properties;
 
     private Entry originalEntry;
 
@@ -32,13 +30,15 @@ public class EntryBuilder implements EntryContract {
 
     private UUID customIconUUID;
 
-    private List<Property> customPropertyList = new ArrayList<Property>();
+    Times times;
+
+    private final List<Property> customPropertyList = new CustomPropertyList();
 
     /**
      * Creates a new builder with a random UUID.
      */
     public EntryBuilder() {
-        this.uuid = UUID.randomUUID();
+        this(UUID.randomUUID());
     }
 
     /**
@@ -49,6 +49,13 @@ public class EntryBuilder implements EntryContract {
      */
     public EntryBuilder(UUID uuid) {
         this.uuid = uuid;
+        // new entries start with the standard properties in their usual order
+        this.properties = new PropertyList();
+        properties.add(new Property(NOTES, null, false));
+        properties.add(new Property(PASSWORD, null, true));
+        properties.add(new Property(TITLE, null, false));
+        properties.add(new Property(USER_NAME, null, false));
+        properties.add(new Property(URL, null, false));
     }
 
     /**
@@ -59,7 +66,7 @@ public class EntryBuilder implements EntryContract {
      */
     public EntryBuilder(String title) {
         this();
-        this.title = title;
+        title(title);
     }
 
     /**
@@ -74,20 +81,20 @@ public class EntryBuilder implements EntryContract {
         }
         this.originalEntry = entry;
         this.uuid = entry.getUuid();
-        this.title = entry.getTitle();
         this.history = entry.getHistory();
-        this.username = entry.getUsername();
-        this.password = entry.getPassword();
-        this.notes = entry.getNotes();
-        this.url = entry.getUrl();
+        this.properties = new PropertyList();
+        for (Property property : entry.getProperties()) {
+            // a missing protected flag becomes false, as for properties set on the builder
+            properties.add(new Property(property.getKey(), property.getValue(), property.isProtected()));
+        }
         this.iconId = entry.getIconId();
         this.iconData = entry.getIconData();
         this.customIconUUID = entry.getCustomIconUuid();
-        this.customPropertyList.addAll(entry.getCustomProperties());
+        this.times = entry.getTimes();
     }
 
     public EntryBuilder title(String title) {
-        this.title = title;
+        setValue(TITLE, title);
         return this;
     }
 
@@ -97,17 +104,17 @@ public class EntryBuilder implements EntryContract {
     }
 
     public EntryBuilder username(String username) {
-        this.username = username;
+        setValue(USER_NAME, username);
         return this;
     }
 
     public EntryBuilder password(String password) {
-        this.password = password;
+        setValue(PASSWORD, password);
         return this;
     }
 
     public EntryBuilder notes(String notes) {
-        this.notes = notes;
+        setValue(NOTES, notes);
         return this;
     }
 
@@ -117,7 +124,7 @@ public class EntryBuilder implements EntryContract {
     }
 
     public EntryBuilder url(String url) {
-        this.url = url;
+        setValue(URL, url);
         return this;
     }
 
@@ -136,6 +143,24 @@ public class EntryBuilder implements EntryContract {
         return this;
     }
 
+    public EntryBuilder times(Times times) {
+        this.times = times;
+        return this;
+    }
+
+    /**
+     * Replaces all properties of the entry, including the standard ones like
+     * the title, with the given ones. The entry keeps them in the given order.
+     *
+     * @param properties
+     *            the properties in document order
+     * @return this builder
+     */
+    public EntryBuilder properties(List<Property> properties) {
+        this.properties = new PropertyList(properties);
+        return this;
+    }
+
     /**
      * Builds a new entry with the values from the builder.
      *
@@ -185,27 +210,27 @@ public class EntryBuilder implements EntryContract {
 
     @Override
     public String getTitle() {
-        return title;
+        return getValue(TITLE);
     }
 
     @Override
     public String getUsername() {
-        return username;
+        return getValue(USER_NAME);
     }
 
     @Override
     public String getPassword() {
-        return password;
+        return getValue(PASSWORD);
     }
 
     @Override
     public String getNotes() {
-        return notes;
+        return getValue(NOTES);
     }
 
     @Override
     public String getUrl() {
-        return url;
+        return getValue(URL);
     }
 
     @Override
@@ -217,4 +242,71 @@ public class EntryBuilder implements EntryContract {
     public History getHistory() {
         return history;
     }
+
+    private void setValue(String key, String value) {
+        Property existing = properties.get(key);
+        boolean isProtected = existing != null ? existing.isProtected() : PASSWORD.equals(key);
+        properties.put(new Property(key, value, isProtected));
+    }
+
+    private String getValue(String key) {
+        Property property = properties.get(key);
+        if (property != null) {
+            return property.getValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * The custom properties of the builder as a view of all its properties,
+     * so added custom properties keep their position among the standard ones.
+     */
+    private final class CustomPropertyList extends AbstractList<Property> {
+
+        @Override
+        public Property get(int index) {
+            return properties.get(positionOf(index));
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (Property property : properties) {
+                if (!PropertyList.isStandardKey(property.getKey())) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public Property set(int index, Property property) {
+            return properties.set(positionOf(index), property);
+        }
+
+        @Override
+        public void add(int index, Property property) {
+            int position = index == size() ? properties.size() : positionOf(index);
+            properties.add(position, property);
+            modCount++;
+        }
+
+        @Override
+        public Property remove(int index) {
+            Property removed = properties.remove(positionOf(index));
+            modCount++;
+            return removed;
+        }
+
+        private int positionOf(int index) {
+            int customIndex = 0;
+            for (int i = 0; i < properties.size(); i++) {
+                if (!PropertyList.isStandardKey(properties.get(i).getKey()) && customIndex++ == index) {
+                    return i;
+                }
+            }
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
 }
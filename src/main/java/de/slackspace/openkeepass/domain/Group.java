@@ -1,7 +1,8 @@
 package de.slackspace.openkeepass.domain;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -47,10 +48,16 @@ public class Group implements KeePassFileElement {
     private Boolean isExpanded;
 
     @XmlElement(name = "Entry")
-    private List<Entry> entries = new ArrayList<Entry>();
+    private List<Entry> entries = new ChildList<Entry>();
 
     @XmlElement(name = "Group")
-    private List<Group> groups = new ArrayList<Group>();
+    private List<Group> groups = new ChildList<Group>();
+
+    private transient GroupChildrenLoader childrenLoader;
+
+    private transient ChildNames<Entry> entryTitles;
+
+    private transient ChildNames<Group> groupNames;
 
     Group() {
         uuid = UUID.randomUUID();
@@ -68,6 +75,12 @@ public class Group implements KeePassFileElement {
         customIconUUID = groupContract.getCustomIconUuid();
     }
 
+    Group(GroupBuilder groupBuilder) {
+        this((GroupContract) groupBuilder);
+        isExpanded = groupBuilder.getExpandedFlag();
+        childrenLoader = groupBuilder.childrenLoader;
+    }
+
     /**
      * Retrieves the Uuid of this group.
      *
@@ -92,6 +105,7 @@ public class Group implements KeePassFileElement {
      * @return all subgroups of this group
      */
     public List<Group> getGroups() {
+        loadChildren();
         return groups;
     }
 
@@ -102,6 +116,7 @@ public class Group implements KeePassFileElement {
      * @see Entry
      */
     public List<Entry> getEntries() {
+        loadChildren();
         return entries;
     }
 
@@ -113,7 +128,7 @@ public class Group implements KeePassFileElement {
      * @return an entry with matching title
      */
     public Entry getEntryByTitle(String title) {
-        for (Entry entry : entries) {
+        for (Entry entry : getEntries()) {
             if (entry.getTitle().equalsIgnoreCase(title)) {
                 return entry;
             }
@@ -121,6 +136,44 @@ public class Group implements KeePassFileElement {
         return null;
     }
 
+    /**
+     * Retrieves the subgroup with exactly the given name. If several
+     * subgroups have the name, the first one is returned.
+     * <p>
+     * The subgroups are looked up in a map of their names, which is rebuilt
+     * when the subgroups of this group have been modified.
+     *
+     * @param name
+     *            the name of the subgroup
+     * @return the subgroup or null
+     */
+    public Group getChildGroup(String name) {
+        if (name == null) {
+            return null;
+        }
+        return findChildGroup(name);
+    }
+
+    /**
+     * Retrieves the entry of this group with exactly the given title. If
+     * several entries have the title, the first one is returned.
+     * <p>
+     * The entries are looked up in a map of their titles, which is rebuilt
+     * when the entries of this group have been modified. A title which is
+     * changed through {@link Entry#getProperties()} after the lookup is only
+     * found once the entries have been modified.
+     *
+     * @param title
+     *            the title of the entry
+     * @return the entry or null
+     */
+    public Entry getChildEntry(String title) {
+        if (title == null) {
+            return null;
+        }
+        return findChildEntry(title);
+    }
+
     @Override
     public String toString() {
         return name;
@@ -171,6 +224,118 @@ public class Group implements KeePassFileElement {
         return isExpanded.booleanValue();
     }
 
+    /**
+     * Returns whether the expanded status is set at all. Databases written by
+     * other tools may omit it.
+     *
+     * @return true if the expanded status is set
+     */
+    public boolean hasExpandedFlag() {
+        return isExpanded != null;
+    }
+
+    /**
+     * Retrieves whether the entries and subgroups of this group have been
+     * loaded. Groups of a lazily opened database load their children on first
+     * access. Until then {@link #equals(Object)} and {@link #hashCode()} only
+     * take the attributes of the group into account.
+     *
+     * @return true if the children are available
+     */
+    public boolean isChildrenLoaded() {
+        return childrenLoader == null;
+    }
+
+    private synchronized Group findChildGroup(String name) {
+        List<Group> children = getGroups();
+        if (!(children instanceof ChildList)) {
+            for (Group group : children) {
+                if (group.getName() != null && group.getName().equals(name)) {
+                    return group;
+                }
+            }
+            return null;
+        }
+
+        ChildList<Group> childList = (ChildList<Group>) children;
+        if (groupNames == null || groupNames.version != childList.getVersion()) {
+            groupNames = new ChildNames<Group>(childList.getVersion());
+            for (Group group : childList) {
+                groupNames.put(group.getName(), group);
+            }
+        }
+        return groupNames.get(name);
+    }
+
+    private synchronized Entry findChildEntry(String title) {
+        List<Entry> children = getEntries();
+        if (!(children instanceof ChildList)) {
+            for (Entry entry : children) {
+                if (entry.getTitle() != null && entry.getTitle().equals(title)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        ChildList<Entry> childList = (ChildList<Entry>) children;
+        if (entryTitles == null || entryTitles.version != childList.getVersion()) {
+            indexEntryTitles(childList);
+        }
+
+        Entry entry = entryTitles.get(title);
+        if (entry != null && !title.equals(entry.getTitle())) {
+            // the title has been changed in place since the map was built
+            indexEntryTitles(childList);
+            entry = entryTitles.get(title);
+        }
+        return entry;
+    }
+
+    private void indexEntryTitles(ChildList<Entry> childList) {
+        entryTitles = new ChildNames<Entry>(childList.getVersion());
+        for (Entry child : childList) {
+            entryTitles.put(child.getTitle(), child);
+        }
+    }
+
+    /**
+     * Adds the child lists of this group and its subgroups to the given tree.
+     * Children which have not been loaded yet join the tree when they are
+     * added to the lists.
+     *
+     * @param tree
+     *            the version of the tree the group belongs to
+     */
+    void joinTree(TreeVersion tree) {
+        if (entries instanceof ChildList) {
+            ((ChildList<Entry>) entries).joinTree(tree);
+        }
+        if (groups instanceof ChildList && ((ChildList<Group>) groups).joinTree(tree)) {
+            for (Group group : groups) {
+                group.joinTree(tree);
+            }
+        }
+    }
+
+    private synchronized void loadChildren() {
+        if (childrenLoader == null) {
+            return;
+        }
+
+        int entryCount = entries.size();
+        int groupCount = groups.size();
+        try {
+            childrenLoader.loadChildren(entries, groups);
+        } catch (RuntimeException e) {
+            // drop the partially loaded children, so the next access retries
+            entries.subList(entryCount, entries.size()).clear();
+            groups.subList(groupCount, groups.size()).clear();
+            throw e;
+        }
+        childrenLoader = null;
+    }
+
     @Override
     public final int hashCode() {
         final int prime = 31;
@@ -235,4 +400,27 @@ public class Group implements KeePassFileElement {
         return true;
     }
 
+    /**
+     * The children of a group by name, built from a version of the list of
+     * children.
+     */
+    private static class ChildNames<T> {
+
+        private final int version;
+        private final Map<String, T> children = new HashMap<String, T>();
+
+        ChildNames(int version) {
+            this.version = version;
+        }
+
+        void put(String name, T child) {
+            if (name != null && !children.containsKey(name)) {
+                children.put(name, child);
+            }
+        }
+
+        T get(String name) {
+            return children.get(name);
+        }
+    }
 }
@@ -1,6 +1,5 @@
 package de.slackspace.openkeepass.domain;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -14,15 +13,17 @@ public class GroupBuilder implements GroupContract {
 
     private Times times;
 
-    private boolean isExpanded;
+    private Boolean isExpanded = Boolean.FALSE;
 
     private byte[] iconData;
 
     private UUID customIconUuid;
 
-    private List<Entry> entries = new ArrayList<Entry>();
+    private List<Entry> entries = new ChildList<Entry>();
 
-    private List<Group> groups = new ArrayList<Group>();
+    private List<Group> groups = new ChildList<Group>();
+
+    GroupChildrenLoader childrenLoader;
 
     public GroupBuilder() {
         this.uuid = UUID.randomUUID();
@@ -44,11 +45,16 @@ public class GroupBuilder implements GroupContract {
         this.iconData = group.getIconData();
         this.customIconUuid = group.getCustomIconUuid();
         this.times = group.getTimes();
-        this.isExpanded = group.isExpanded();
+        this.isExpanded = group.hasExpandedFlag() ? Boolean.valueOf(group.isExpanded()) : null;
         this.groups = group.getGroups();
         this.entries = group.getEntries();
     }
 
+    public GroupBuilder uuid(UUID uuid) {
+        this.uuid = uuid;
+        return this;
+    }
+
     public GroupBuilder name(String name) {
         this.name = name;
         return this;
@@ -69,13 +75,38 @@ public class GroupBuilder implements GroupContract {
         return this;
     }
 
+    /**
+     * Defers the loading of entries and subgroups until they are accessed
+     * for the first time. The children added by the loader are appended to
+     * the ones added to this builder.
+     *
+     * @param childrenLoader
+     *            the loader which provides the children of the group
+     * @return the builder
+     */
+    public GroupBuilder childrenLoader(GroupChildrenLoader childrenLoader) {
+        this.childrenLoader = childrenLoader;
+        return this;
+    }
+
     public GroupBuilder times(Times times) {
         this.times = times;
         return this;
     }
 
     public GroupBuilder isExpanded(boolean isExpanded) {
-        this.isExpanded = isExpanded;
+        this.isExpanded = Boolean.valueOf(isExpanded);
+        return this;
+    }
+
+    /**
+     * Leaves the expanded flag of the group unset, so it is not written to the
+     * database.
+     *
+     * @return this builder
+     */
+    public GroupBuilder withoutExpandedFlag() {
+        this.isExpanded = null;
         return this;
     }
 
@@ -135,6 +166,10 @@ public class GroupBuilder implements GroupContract {
 
     @Override
     public boolean isExpanded() {
+        return isExpanded != null && isExpanded.booleanValue();
+    }
+
+    Boolean getExpandedFlag() {
         return isExpanded;
     }
 
@@ -0,0 +1,24 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.List;
+
+/**
+ * Loads the entries and subgroups of a {@link Group} on first access.
+ * <p>
+ * This allows a group to be handed out before its children have been parsed.
+ * The loader is invoked at most once per group.
+ *
+ * @see GroupBuilder#childrenLoader(GroupChildrenLoader)
+ */
+public interface GroupChildrenLoader {
+
+    /**
+     * Adds the children of the group to the given lists.
+     *
+     * @param entries
+     *            the list which receives the entries of the group
+     * @param groups
+     *            the list which receives the subgroups of the group
+     */
+    void loadChildren(List<Entry> entries, List<Group> groups);
+}
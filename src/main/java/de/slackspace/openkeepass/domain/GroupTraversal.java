@@ -0,0 +1,173 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy views of the entries and groups below a group.
+ * <p>
+ * The returned iterables walk the tree while they are iterated instead of
+ * copying it into a list, so a search which stops at the first match only
+ * touches the groups up to that match. Every iterator keeps a stack with one
+ * position per level of the tree.
+ * <p>
+ * Each subgroup is a subtree of its own, so work over a large tree can be
+ * split by iterating the subtrees of {@link Group#getGroups()} separately.
+ * <p>
+ * The iterators do not support {@link Iterator#remove()} and must not be used
+ * while the tree is modified.
+ *
+ */
+public final class GroupTraversal {
+
+    private GroupTraversal() {
+    }
+
+    /**
+     * Returns all entries of the given group and its subgroups in the order of
+     * {@link KeePassFile#getEntries()}: the entries of a group, followed by
+     * the entries of each of its subgroups.
+     *
+     * @param group
+     *            the group whose entries should be iterated
+     * @return a lazy view of the entries
+     */
+    public static Iterable<Entry> entries(final Group group) {
+        return new Iterable<Entry>() {
+
+            @Override
+            public Iterator<Entry> iterator() {
+                return new EntryIterator(group);
+            }
+        };
+    }
+
+    /**
+     * Returns all subgroups of the given group at any depth in the order of
+     * {@link KeePassFile#getGroups()}: the subgroups of a group, followed by
+     * the subgroups of each of them.
+     *
+     * @param group
+     *            the group whose subgroups should be iterated
+     * @return a lazy view of the subgroups
+     */
+    public static Iterable<Group> groups(final Group group) {
+        return new Iterable<Group>() {
+
+            @Override
+            public Iterator<Group> iterator() {
+                return new GroupIterator(group);
+            }
+        };
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return list;
+    }
+
+    private static class EntryIterator implements Iterator<Entry> {
+
+        private final Deque<Iterator<Group>> subgroups = new ArrayDeque<Iterator<Group>>();
+        private Iterator<Entry> entries;
+
+        EntryIterator(Group group) {
+            if (group == null) {
+                entries = Collections.<Entry> emptyList().iterator();
+                return;
+            }
+
+            entries = nonNull(group.getEntries()).iterator();
+            subgroups.push(nonNull(group.getGroups()).iterator());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!entries.hasNext()) {
+                if (subgroups.isEmpty()) {
+                    return false;
+                }
+
+                Iterator<Group> siblings = subgroups.peek();
+                if (siblings.hasNext()) {
+                    Group group = siblings.next();
+                    entries = nonNull(group.getEntries()).iterator();
+                    subgroups.push(nonNull(group.getGroups()).iterator());
+                } else {
+                    subgroups.pop();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return entries.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("The tree cannot be modified through a traversal.");
+        }
+    }
+
+    private static class GroupIterator implements Iterator<Group> {
+
+        // groups whose subgroups have been returned but not yet descended into
+        private final Deque<Iterator<Group>> pending = new ArrayDeque<Iterator<Group>>();
+        private List<Group> current;
+        private Iterator<Group> groups;
+
+        GroupIterator(Group group) {
+            current = group == null ? Collections.<Group> emptyList() : nonNull(group.getGroups());
+            groups = current.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!groups.hasNext()) {
+                if (current != null) {
+                    pending.push(current.iterator());
+                    current = null;
+                }
+                if (pending.isEmpty()) {
+                    return false;
+                }
+
+                Iterator<Group> siblings = pending.peek();
+                if (siblings.hasNext()) {
+                    List<Group> children = nonNull(siblings.next().getGroups());
+                    if (!children.isEmpty()) {
+                        current = children;
+                        groups = children.iterator();
+                    }
+                } else {
+                    pending.pop();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Group next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return groups.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("The tree cannot be modified through a traversal.");
+        }
+    }
+}
@@ -8,9 +8,11 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 
-import de.slackspace.openkeepass.domain.filter.Filter;
-import de.slackspace.openkeepass.domain.filter.ListFilter;
+import de.slackspace.openkeepass.domain.index.AncestryIndex;
+import de.slackspace.openkeepass.domain.index.TextIndex;
+import de.slackspace.openkeepass.domain.index.UuidIndex;
 
 /**
  * A KeePassFile represents the structure of a KeePass database. This is the
@@ -26,6 +28,21 @@ public class KeePassFile implements KeePassFileElement {
     @XmlElement(name = "Root")
     private Group root;
 
+    @XmlTransient
+    private volatile TreeVersion treeVersion;
+
+    @XmlTransient
+    private volatile BuiltIndex<UuidIndex> uuidIndex;
+
+    @XmlTransient
+    private volatile BuiltIndex<AncestryIndex> ancestryIndex;
+
+    @XmlTransient
+    private volatile BuiltIndex<TextIndex<Entry>> titleIndex;
+
+    @XmlTransient
+    private volatile BuiltIndex<TextIndex<Group>> nameIndex;
+
     KeePassFile() {
     }
 
@@ -107,6 +124,9 @@ public class KeePassFile implements KeePassFileElement {
      * If the <tt>matchExactly</tt> flag is true, only entries which have an
      * exactly matching title will be returned, otherwise all entries which
      * contain the given title will be returned.
+     * <p>
+     * The titles of all entries are indexed on the first lookup, so the
+     * children of all groups of a lazily opened database are loaded then.
      *
      * @param title
      *            the title which should be searched
@@ -117,30 +137,27 @@ public class KeePassFile implements KeePassFileElement {
      * @see Entry
      */
     public List<Entry> getEntriesByTitle(final String title, final boolean matchExactly) {
-        List<Entry> allEntries = new ArrayList<Entry>();
-
-        if (root != null) {
-            getEntries(root, allEntries);
+        if (matchExactly) {
+            return getTitleIndex().findExact(title);
         }
 
-        return ListFilter.filter(allEntries, new Filter<Entry>() {
-
-            @Override
-            public boolean matches(Entry item) {
-                if (matchExactly) {
-                    if (item.getTitle() != null && item.getTitle().equalsIgnoreCase(title)) {
-                        return true;
-                    }
-                } else {
-                    if (item.getTitle() != null && item.getTitle().toLowerCase().contains(title.toLowerCase())) {
-                        return true;
-                    }
-                }
-
-                return false;
-            }
+        return getTitleIndex().findContaining(title);
+    }
 
-        });
+    /**
+     * Retrieves a list of entries whose titles start with the given prefix,
+     * ignoring case.
+     * <p>
+     * The titles of all entries are indexed on the first lookup, so the
+     * children of all groups of a lazily opened database are loaded then.
+     *
+     * @param prefix
+     *            the prefix which should be searched
+     * @return a list of entries with matching titles
+     * @see Entry
+     */
+    public List<Entry> getEntriesByTitlePrefix(String prefix) {
+        return getTitleIndex().findPrefix(prefix);
     }
 
     /**
@@ -149,6 +166,9 @@ public class KeePassFile implements KeePassFileElement {
      * If the <tt>matchExactly</tt> flag is true, only groups which have an
      * exactly matching name will be returned, otherwise all groups which
      * contain the given name will be returned.
+     * <p>
+     * The names of all groups are indexed on the first lookup, so the
+     * children of all groups of a lazily opened database are loaded then.
      *
      * @param name
      *            the name which should be searched
@@ -159,30 +179,27 @@ public class KeePassFile implements KeePassFileElement {
      * @see Group
      */
     public List<Group> getGroupsByName(final String name, final boolean matchExactly) {
-        List<Group> allGroups = new ArrayList<Group>();
-
-        if (root != null) {
-            getGroups(root, allGroups);
+        if (matchExactly) {
+            return getNameIndex().findExact(name);
         }
 
-        return ListFilter.filter(allGroups, new Filter<Group>() {
-
-            @Override
-            public boolean matches(Group item) {
-                if (matchExactly) {
-                    if (item.getName() != null && item.getName().equalsIgnoreCase(name)) {
-                        return true;
-                    }
-                } else {
-                    if (item.getName() != null && item.getName().toLowerCase().contains(name.toLowerCase())) {
-                        return true;
-                    }
-                }
-
-                return false;
-            }
+        return getNameIndex().findContaining(name);
+    }
 
-        });
+    /**
+     * Retrieves a list of groups whose names start with the given prefix,
+     * ignoring case.
+     * <p>
+     * The names of all groups are indexed on the first lookup, so the
+     * children of all groups of a lazily opened database are loaded then.
+     *
+     * @param prefix
+     *            the prefix which should be searched
+     * @return a list of groups with matching names
+     * @see Group
+     */
+    public List<Group> getGroupsByNamePrefix(String prefix) {
+        return getNameIndex().findPrefix(prefix);
     }
 
     /**
@@ -194,13 +211,27 @@ public class KeePassFile implements KeePassFileElement {
     public List<Entry> getEntries() {
         List<Entry> allEntries = new ArrayList<Entry>();
 
-        if (root != null) {
-            getEntries(root, allEntries);
+        for (Entry entry : iterateEntries()) {
+            allEntries.add(entry);
         }
 
         return allEntries;
     }
 
+    /**
+     * Returns a lazy view of all entries in the KeePass database.
+     * <p>
+     * Unlike {@link #getEntries()} the tree is not copied, it is walked while
+     * the view is iterated. Use this to scan large databases or to stop at
+     * the first match.
+     *
+     * @return all entries in the order of {@link #getEntries()}
+     * @see GroupTraversal
+     */
+    public Iterable<Entry> iterateEntries() {
+        return GroupTraversal.entries(root);
+    }
+
     /**
      * Retrieves a list of all groups in the KeePass database.
      *
@@ -210,13 +241,26 @@ public class KeePassFile implements KeePassFileElement {
     public List<Group> getGroups() {
         List<Group> allGroups = new ArrayList<Group>();
 
-        if (root != null) {
-            getGroups(root, allGroups);
+        for (Group group : iterateGroups()) {
+            allGroups.add(group);
         }
 
         return allGroups;
     }
 
+    /**
+     * Returns a lazy view of all groups in the KeePass database.
+     * <p>
+     * Unlike {@link #getGroups()} the tree is not copied, it is walked while
+     * the view is iterated.
+     *
+     * @return all groups in the order of {@link #getGroups()}
+     * @see GroupTraversal
+     */
+    public Iterable<Group> iterateGroups() {
+        return GroupTraversal.groups(root);
+    }
+
     /**
      * Retrieves a single group with an exactly matching name.
      * <p>
@@ -238,62 +282,232 @@ public class KeePassFile implements KeePassFileElement {
         return null;
     }
 
-    private void getEntries(Group parentGroup, List<Entry> entries) {
-        List<Group> groups = parentGroup.getGroups();
-        entries.addAll(parentGroup.getEntries());
+    /**
+     * Retrieves a group by its path, e.g.
+     * <tt>Database/Infrastructure/Databases</tt>.
+     * <p>
+     * The path consists of the names of the groups from the top group down to
+     * the group, separated by <tt>/</tt>. A <tt>/</tt> or <tt>\</tt> in a
+     * name is escaped with a backslash. Names are matched exactly. If a group
+     * has several subgroups with the same name, the first one is used.
+     * <p>
+     * Each level is looked up in a map of the subgroups by name, so the
+     * lookup takes time proportional to the depth of the path.
+     *
+     * @param path
+     *            the path of the group
+     * @return the group or null if there is no group at the path
+     * @see Group#getChildGroup(String)
+     */
+    public Group getGroupByPath(String path) {
+        List<String> names = splitPath(path);
+        if (names.isEmpty()) {
+            return null;
+        }
+
+        return getGroupByPath(names);
+    }
+
+    /**
+     * Retrieves an entry by its path, which is the path of its group followed
+     * by its title, e.g. <tt>Database/Infrastructure/Databases/Prod</tt>.
+     * Titles are matched exactly.
+     *
+     * @param path
+     *            the path of the entry
+     * @return the entry or null if there is no entry at the path
+     * @see #getGroupByPath(String)
+     * @see Group#getChildEntry(String)
+     */
+    public Entry getEntryByPath(String path) {
+        List<String> names = splitPath(path);
+        if (names.size() < 2) {
+            return null;
+        }
 
-        if (!groups.isEmpty()) {
-            for (Group group : groups) {
-                getEntries(group, entries);
+        Group group = getGroupByPath(names.subList(0, names.size() - 1));
+        if (group == null) {
+            return null;
+        }
+
+        return group.getChildEntry(names.get(names.size() - 1));
+    }
+
+    private Group getGroupByPath(List<String> names) {
+        Group group = root;
+        for (String name : names) {
+            if (group == null) {
+                return null;
             }
+            group = group.getChildGroup(name);
         }
+        return group;
+    }
 
-        return;
+    /**
+     * Retrieves the group which contains the given entry.
+     *
+     * @param entry
+     *            an entry of this database
+     * @return the parent group or null if the entry is not part of this
+     *         database
+     */
+    public Group getParent(Entry entry) {
+        return getAncestryIndex().getParent(entry);
     }
 
-    private void getGroups(Group parentGroup, List<Group> groups) {
-        List<Group> parentGroups = parentGroup.getGroups();
-        groups.addAll(parentGroups);
+    /**
+     * Retrieves the group which contains the given group.
+     *
+     * @param group
+     *            a group of this database
+     * @return the parent group or null if the group is the top group or not
+     *         part of this database
+     */
+    public Group getParent(Group group) {
+        return getAncestryIndex().getParent(group);
+    }
 
-        if (!parentGroups.isEmpty()) {
-            for (Group group : parentGroups) {
-                getGroups(group, groups);
-            }
+    /**
+     * Retrieves the groups from the top group down to the given group,
+     * including the group itself, e.g. for breadcrumbs.
+     *
+     * @param group
+     *            a group of this database
+     * @return the groups on the path or an empty list if the group is not part
+     *         of this database
+     */
+    public List<Group> getAncestors(Group group) {
+        return getAncestryIndex().getPath(group);
+    }
+
+    /**
+     * Retrieves the path of the given group which can be resolved with
+     * {@link #getGroupByPath(String)}.
+     *
+     * @param group
+     *            a group of this database
+     * @return the path of the group or null if the group is not part of this
+     *         database
+     */
+    public String getPath(Group group) {
+        List<Group> ancestors = getAncestors(group);
+        if (ancestors.isEmpty()) {
+            return null;
         }
 
-        return;
+        StringBuilder path = new StringBuilder();
+        for (Group ancestor : ancestors) {
+            appendName(path, ancestor.getName());
+        }
+        return path.toString();
     }
 
     /**
-     * Retrieves an entry based on its UUID.
+     * Retrieves the path of the given entry which can be resolved with
+     * {@link #getEntryByPath(String)}.
      *
-     * @param UUID
-     *            the uuid which should be searched
-     * @return the found entry or null
+     * @param entry
+     *            an entry of this database
+     * @return the path of the entry or null if the entry is not part of this
+     *         database
      */
-    public Entry getEntryByUUID(final UUID UUID) {
-        List<Entry> allEntries = getEntries();
+    public String getPath(Entry entry) {
+        Group parent = getParent(entry);
+        if (parent == null) {
+            return null;
+        }
+
+        StringBuilder path = new StringBuilder(getPath(parent));
+        appendName(path, entry.getTitle());
+        return path.toString();
+    }
 
-        List<Entry> entries = ListFilter.filter(allEntries, new Filter<Entry>() {
+    /**
+     * Returns whether the given group is contained in the given ancestor or
+     * one of its subgroups.
+     *
+     * @param ancestor
+     *            a group of this database
+     * @param group
+     *            a group of this database
+     * @return true if the group is below the ancestor
+     */
+    public boolean isDescendant(Group ancestor, Group group) {
+        return getAncestryIndex().isDescendant(ancestor, group);
+    }
 
-            @Override
-            public boolean matches(Entry item) {
+    /**
+     * Returns whether the given entry is contained in the given group or one
+     * of its subgroups.
+     *
+     * @param ancestor
+     *            a group of this database
+     * @param entry
+     *            an entry of this database
+     * @return true if the entry is below the ancestor
+     */
+    public boolean isDescendant(Group ancestor, Entry entry) {
+        return getAncestryIndex().isDescendant(ancestor, entry);
+    }
 
-                if (item.getUuid() != null && item.getUuid().compareTo(UUID) == 0) {
-                    return true;
-                } else {
-                    return false;
+    private static void appendName(StringBuilder path, String name) {
+        if (path.length() > 0) {
+            path.append('/');
+        }
+
+        if (name != null) {
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c == '/' || c == '\\') {
+                    path.append('\\');
                 }
+                path.append(c);
             }
-        });
+        }
+    }
 
-        if (entries.size() == 1) {
-            return entries.get(0);
-        } else {
-            return null;
+    private static List<String> splitPath(String path) {
+        List<String> names = new ArrayList<String>();
+        if (path == null) {
+            return names;
+        }
+
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' && i + 1 < path.length()) {
+                name.append(path.charAt(++i));
+            } else if (c == '/') {
+                addName(names, name);
+            } else {
+                name.append(c);
+            }
+        }
+        addName(names, name);
+
+        return names;
+    }
+
+    private static void addName(List<String> names, StringBuilder name) {
+        // empty names stem from leading, trailing or doubled separators
+        if (name.length() > 0) {
+            names.add(name.toString());
+            name.setLength(0);
         }
     }
 
+    /**
+     * Retrieves an entry based on its UUID.
+     *
+     * @param UUID
+     *            the uuid which should be searched
+     * @return the found entry or null
+     */
+    public Entry getEntryByUUID(final UUID UUID) {
+        return getUuidIndex().getEntry(UUID);
+    }
+
     /**
      * Retrieves a group based on its UUID.
      *
@@ -302,25 +516,155 @@ public class KeePassFile implements KeePassFileElement {
      * @return the found group or null
      */
     public Group getGroupByUUID(final UUID UUID) {
-        List<Group> allGroups = getGroups();
+        return getUuidIndex().getGroup(UUID);
+    }
 
-        List<Group> groups = ListFilter.filter(allGroups, new Filter<Group>() {
+    /**
+     * Discards the lookup indexes of this database so that they are rebuilt
+     * from the current tree on the next lookup.
+     * <p>
+     * The indexes are built on the first lookup and rebuilt after the entries
+     * or subgroups of any group of this database have been changed through its
+     * builder. Changes to other databases keep the indexes. Call
+     * this only after a group whose children are not kept in lists created by
+     * the builders has been modified in place.
+     */
+    public void invalidateIndexes() {
+        uuidIndex = null;
+        ancestryIndex = null;
+        titleIndex = null;
+        nameIndex = null;
+    }
 
-            @Override
-            public boolean matches(Group item) {
+    UuidIndex getUuidIndex() {
+        TreeVersion tree = getTreeVersion();
+        BuiltIndex<UuidIndex> index = uuidIndex;
+        if (index == null || !index.isCurrent(tree)) {
+            index = build(tree, new IndexFactory<UuidIndex>() {
+                @Override
+                UuidIndex create() {
+                    return new UuidIndex(root);
+                }
+            });
+            uuidIndex = index;
+        }
+        return index.index;
+    }
+
+    AncestryIndex getAncestryIndex() {
+        TreeVersion tree = getTreeVersion();
+        BuiltIndex<AncestryIndex> index = ancestryIndex;
+        if (index == null || !index.isCurrent(tree)) {
+            index = build(tree, new IndexFactory<AncestryIndex>() {
+                @Override
+                AncestryIndex create() {
+                    return new AncestryIndex(root);
+                }
+            });
+            ancestryIndex = index;
+        }
+        return index.index;
+    }
+
+    TextIndex<Entry> getTitleIndex() {
+        TreeVersion tree = getTreeVersion();
+        BuiltIndex<TextIndex<Entry>> index = titleIndex;
+        if (index == null || !index.isCurrent(tree)) {
+            index = build(tree, new IndexFactory<TextIndex<Entry>>() {
+                @Override
+                TextIndex<Entry> create() {
+                    List<Entry> entries = getEntries();
+                    List<String> titles = new ArrayList<String>(entries.size());
+                    for (Entry entry : entries) {
+                        titles.add(entry.getTitle());
+                    }
+                    return new TextIndex<Entry>(entries, titles);
+                }
+            });
+            titleIndex = index;
+        }
+        return index.index;
+    }
+
+    private TextIndex<Group> getNameIndex() {
+        TreeVersion tree = getTreeVersion();
+        BuiltIndex<TextIndex<Group>> index = nameIndex;
+        if (index == null || !index.isCurrent(tree)) {
+            index = build(tree, new IndexFactory<TextIndex<Group>>() {
+                @Override
+                TextIndex<Group> create() {
+                    List<Group> groups = getGroups();
+                    List<String> names = new ArrayList<String>(groups.size());
+                    for (Group group : groups) {
+                        names.add(group.getName());
+                    }
+                    return new TextIndex<Group>(groups, names);
+                }
+            });
+            nameIndex = index;
+        }
+        return index.index;
+    }
 
-                if (item.getUuid() != null && item.getUuid().compareTo(UUID) == 0) {
-                    return true;
-                } else {
-                    return false;
+    /**
+     * Returns the version of the tree of this database. The groups of the
+     * tree join it on the first lookup, which is after the tree has been
+     * unmarshalled or built.
+     */
+    private TreeVersion getTreeVersion() {
+        TreeVersion tree = treeVersion;
+        if (tree == null) {
+            synchronized (this) {
+                tree = treeVersion;
+                if (tree == null) {
+                    tree = new TreeVersion();
+                    if (root != null) {
+                        root.joinTree(tree);
+                    }
+                    treeVersion = tree;
                 }
             }
-        });
+        }
+        return tree;
+    }
 
-        if (groups.size() == 1) {
-            return groups.get(0);
-        } else {
-            return null;
+    /**
+     * Builds an index at the current version of the tree. The version is read
+     * before the tree is walked, so a change made while the index is built
+     * causes another rebuild on the next lookup. Walking the tree may load the
+     * children of lazily loaded groups, which changes the version as well, so
+     * the index is then built once more from the loaded tree.
+     */
+    private static <T> BuiltIndex<T> build(TreeVersion tree, IndexFactory<T> factory) {
+        long version = tree.get();
+        T index = factory.create();
+        if (version != tree.get()) {
+            version = tree.get();
+            index = factory.create();
+        }
+        return new BuiltIndex<T>(index, version);
+    }
+
+    private abstract static class IndexFactory<T> {
+
+        abstract T create();
+    }
+
+    /**
+     * An index and the version of the tree it has been built at.
+     */
+    private static final class BuiltIndex<T> {
+
+        private final T index;
+        private final long version;
+
+        BuiltIndex(T index, long version) {
+            this.index = index;
+            this.version = version;
+        }
+
+        boolean isCurrent(TreeVersion tree) {
+            return version == tree.get();
         }
     }
 }
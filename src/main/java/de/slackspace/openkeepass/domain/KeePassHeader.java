@@ -4,6 +4,7 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -151,9 +152,22 @@ public class KeePassHeader {
      * @throws IOException
      *             if the header cannot be read
      */
-    @SuppressWarnings("resource")
     public void read(byte[] keepassFile) throws IOException {
-        SafeInputStream inputStream = new SafeInputStream(new BufferedInputStream(new ByteArrayInputStream(keepassFile)));
+        read(new ByteArrayInputStream(keepassFile));
+    }
+
+    /**
+     * Initializes the header values from a stream which is positioned at the
+     * start of a database file. Only the header is consumed from the stream.
+     *
+     * @param keepassFile
+     *            the stream to read from
+     * @throws IOException
+     *             if the header cannot be read
+     */
+    @SuppressWarnings("resource")
+    public void read(InputStream keepassFile) throws IOException {
+        SafeInputStream inputStream = new SafeInputStream(keepassFile);
         inputStream.skipSafe(VERSION_SIGNATURE_LENGTH); // skip version
 
         while (true) {
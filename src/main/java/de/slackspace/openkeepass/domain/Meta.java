@@ -7,14 +7,19 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import de.slackspace.openkeepass.domain.xml.adapter.BooleanXmlAdapter;
 import de.slackspace.openkeepass.domain.xml.adapter.UUIDXmlAdapter;
+import de.slackspace.openkeepass.util.TimestampUtils;
 
 /**
  * Represents the metadata of the KeePass database like database name, custom
  * icons or how much history entries will be preserved.
+ * <p>
+ * Timestamps are stored as milliseconds since the epoch. The
+ * {@link Calendar} getters create a new calendar in UTC on every call.
  *
  */
 @XmlRootElement
@@ -30,11 +35,11 @@ public class Meta {
     @XmlElement(name = "DatabaseDescription")
     private String databaseDescription;
 
-    @XmlElement(name = "DatabaseNameChanged")
-    private Calendar databaseNameChanged;
+    @XmlTransient
+    private long databaseNameChanged = TimestampUtils.NONE;
 
-    @XmlElement(name = "DatabaseDescriptionChanged")
-    private Calendar databaseDescriptionChanged;
+    @XmlTransient
+    private long databaseDescriptionChanged = TimestampUtils.NONE;
 
     @XmlElement(name = "MaintenanceHistoryDays")
     private int maintenanceHistoryDays;
@@ -43,8 +48,8 @@ public class Meta {
     @XmlJavaTypeAdapter(UUIDXmlAdapter.class)
     private UUID recycleBinUuid;
 
-    @XmlElement(name = "RecycleBinChanged")
-    private Calendar recycleBinChanged;
+    @XmlTransient
+    private long recycleBinChanged = TimestampUtils.NONE;
 
     @XmlElement(name = "RecycleBinEnabled")
     @XmlJavaTypeAdapter(BooleanXmlAdapter.class)
@@ -63,15 +68,27 @@ public class Meta {
     }
 
     public Meta(MetaContract metaContract) {
+        this(metaContract, TimestampUtils.fromCalendar(metaContract.getDatabaseDescriptionChanged()),
+                TimestampUtils.fromCalendar(metaContract.getDatabaseNameChanged()), TimestampUtils.fromCalendar(metaContract.getRecycleBinChanged()));
+    }
+
+    Meta(MetaBuilder metaBuilder) {
+        // skip the calendars of the builder
+        this(metaBuilder, metaBuilder.getDatabaseDescriptionChangedMillis(), metaBuilder.getDatabaseNameChangedMillis(),
+                metaBuilder.getRecycleBinChangedMillis());
+        this.recycleBinEnabled = metaBuilder.recycleBinEnabled;
+    }
+
+    private Meta(MetaContract metaContract, long databaseDescriptionChanged, long databaseNameChanged, long recycleBinChanged) {
+        this.databaseDescriptionChanged = databaseDescriptionChanged;
+        this.databaseNameChanged = databaseNameChanged;
+        this.recycleBinChanged = recycleBinChanged;
         this.databaseDescription = metaContract.getDatabaseDescription();
-        this.databaseDescriptionChanged = metaContract.getDatabaseDescriptionChanged();
         this.databaseName = metaContract.getDatabaseName();
-        this.databaseNameChanged = metaContract.getDatabaseNameChanged();
         this.generator = metaContract.getGenerator();
         this.historyMaxItems = metaContract.getHistoryMaxItems();
         this.historyMaxSize = metaContract.getHistoryMaxSize();
         this.maintenanceHistoryDays = metaContract.getMaintenanceHistoryDays();
-        this.recycleBinChanged = metaContract.getRecycleBinChanged();
         this.recycleBinEnabled = metaContract.getRecycleBinEnabled();
         this.recycleBinUuid = metaContract.getRecycleBinUuid();
         this.customIcons = metaContract.getCustomIcons();
@@ -90,10 +107,18 @@ public class Meta {
     }
 
     public Calendar getDatabaseNameChanged() {
+        return TimestampUtils.toCalendar(databaseNameChanged);
+    }
+
+    public long getDatabaseNameChangedMillis() {
         return databaseNameChanged;
     }
 
     public Calendar getDatabaseDescriptionChanged() {
+        return TimestampUtils.toCalendar(databaseDescriptionChanged);
+    }
+
+    public long getDatabaseDescriptionChangedMillis() {
         return databaseDescriptionChanged;
     }
 
@@ -106,6 +131,10 @@ public class Meta {
     }
 
     public Calendar getRecycleBinChanged() {
+        return TimestampUtils.toCalendar(recycleBinChanged);
+    }
+
+    public long getRecycleBinChangedMillis() {
         return recycleBinChanged;
     }
 
@@ -118,27 +147,64 @@ public class Meta {
     }
 
     public boolean getRecycleBinEnabled() {
-        return recycleBinEnabled;
+        if (recycleBinEnabled == null) {
+            return false;
+        }
+        return recycleBinEnabled.booleanValue();
+    }
+
+    public boolean hasRecycleBinEnabledFlag() {
+        return recycleBinEnabled != null;
     }
 
     public CustomIcons getCustomIcons() {
         return customIcons;
     }
 
+    @XmlElement(name = "DatabaseNameChanged")
+    private String getXmlDatabaseNameChanged() {
+        return TimestampUtils.print(databaseNameChanged);
+    }
+
+    @SuppressWarnings("unused")
+    private void setXmlDatabaseNameChanged(String text) {
+        databaseNameChanged = TimestampUtils.parse(text);
+    }
+
+    @XmlElement(name = "DatabaseDescriptionChanged")
+    private String getXmlDatabaseDescriptionChanged() {
+        return TimestampUtils.print(databaseDescriptionChanged);
+    }
+
+    @SuppressWarnings("unused")
+    private void setXmlDatabaseDescriptionChanged(String text) {
+        databaseDescriptionChanged = TimestampUtils.parse(text);
+    }
+
+    @XmlElement(name = "RecycleBinChanged")
+    private String getXmlRecycleBinChanged() {
+        return TimestampUtils.print(recycleBinChanged);
+    }
+
+    @SuppressWarnings("unused")
+    private void setXmlRecycleBinChanged(String text) {
+        recycleBinChanged = TimestampUtils.parse(text);
+    }
+
     @Override
     public final int hashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((customIcons == null) ? 0 : customIcons.hashCode());
         result = prime * result + ((databaseDescription == null) ? 0 : databaseDescription.hashCode());
-        result = prime * result + ((databaseDescriptionChanged == null) ? 0 : databaseDescriptionChanged.hashCode());
+        result = prime * result + (int) (databaseDescriptionChanged ^ (databaseDescriptionChanged >>> 32));
         result = prime * result + ((databaseName == null) ? 0 : databaseName.hashCode());
-        result = prime * result + ((databaseNameChanged == null) ? 0 : databaseNameChanged.hashCode());
+        result = prime * result + (int) (databaseNameChanged ^ (databaseNameChanged >>> 32));
         result = prime * result + ((generator == null) ? 0 : generator.hashCode());
         result = prime * result + (int) (historyMaxItems ^ (historyMaxItems >>> 32));
         result = prime * result + (int) (historyMaxSize ^ (historyMaxSize >>> 32));
         result = prime * result + maintenanceHistoryDays;
-        result = prime * result + ((recycleBinChanged == null) ? 0 : recycleBinChanged.hashCode());
+        result = prime * result + (int) (recycleBinChanged ^ (recycleBinChanged >>> 32));
         result = prime * result + ((recycleBinEnabled == null) ? 0 : recycleBinEnabled.hashCode());
         result = prime * result + ((recycleBinUuid == null) ? 0 : recycleBinUuid.hashCode());
         return result;
@@ -163,20 +229,14 @@ public class Meta {
                 return false;
         } else if (!databaseDescription.equals(other.databaseDescription))
             return false;
-        if (databaseDescriptionChanged == null) {
-            if (other.databaseDescriptionChanged != null)
-                return false;
-        } else if (!databaseDescriptionChanged.equals(other.databaseDescriptionChanged))
+        if (databaseDescriptionChanged != other.databaseDescriptionChanged)
             return false;
         if (databaseName == null) {
             if (other.databaseName != null)
                 return false;
         } else if (!databaseName.equals(other.databaseName))
             return false;
-        if (databaseNameChanged == null) {
-            if (other.databaseNameChanged != null)
-                return false;
-        } else if (!databaseNameChanged.equals(other.databaseNameChanged))
+        if (databaseNameChanged != other.databaseNameChanged)
             return false;
         if (generator == null) {
             if (other.generator != null)
@@ -189,10 +249,7 @@ public class Meta {
             return false;
         if (maintenanceHistoryDays != other.maintenanceHistoryDays)
             return false;
-        if (recycleBinChanged == null) {
-            if (other.recycleBinChanged != null)
-                return false;
-        } else if (!recycleBinChanged.equals(other.recycleBinChanged))
+        if (recycleBinChanged != other.recycleBinChanged)
             return false;
         if (recycleBinEnabled == null) {
             if (other.recycleBinEnabled != null)
@@ -3,6 +3,8 @@ package de.slackspace.openkeepass.domain;
 import java.util.Calendar;
 import java.util.UUID;
 
+import de.slackspace.openkeepass.util.TimestampUtils;
+
 /**
  * A builder to create {@link Meta} objects.
  *
@@ -15,17 +17,17 @@ public class MetaBuilder implements MetaContract {
 
     String databaseDescription;
 
-    Calendar databaseNameChanged;
+    long databaseNameChanged = TimestampUtils.NONE;
 
-    Calendar databaseDescriptionChanged;
+    long databaseDescriptionChanged = TimestampUtils.NONE;
 
     int maintenanceHistoryDays;
 
     UUID recycleBinUuid;
 
-    Calendar recycleBinChanged;
+    long recycleBinChanged = TimestampUtils.NONE;
 
-    boolean recycleBinEnabled;
+    Boolean recycleBinEnabled = Boolean.FALSE;
 
     long historyMaxItems;
 
@@ -53,12 +55,12 @@ public class MetaBuilder implements MetaContract {
         this.generator = meta.getGenerator();
         this.databaseName = meta.getDatabaseName();
         this.databaseDescription = meta.getDatabaseDescription();
-        this.databaseNameChanged = meta.getDatabaseNameChanged();
-        this.databaseDescriptionChanged = meta.getDatabaseDescriptionChanged();
+        this.databaseNameChanged = meta.getDatabaseNameChangedMillis();
+        this.databaseDescriptionChanged = meta.getDatabaseDescriptionChangedMillis();
         this.maintenanceHistoryDays = meta.getMaintenanceHistoryDays();
         this.recycleBinUuid = meta.getRecycleBinUuid();
-        this.recycleBinEnabled = meta.getRecycleBinEnabled();
-        this.recycleBinChanged = meta.getRecycleBinChanged();
+        this.recycleBinEnabled = meta.hasRecycleBinEnabledFlag() ? Boolean.valueOf(meta.getRecycleBinEnabled()) : null;
+        this.recycleBinChanged = meta.getRecycleBinChangedMillis();
         this.historyMaxItems = meta.getHistoryMaxItems();
         this.historyMaxSize = meta.getHistoryMaxSize();
         this.customIcons = meta.getCustomIcons();
@@ -80,12 +82,22 @@ public class MetaBuilder implements MetaContract {
     }
 
     public MetaBuilder databaseNameChanged(Calendar databaseNameChanged) {
-        this.databaseNameChanged = databaseNameChanged;
+        this.databaseNameChanged = TimestampUtils.fromCalendar(databaseNameChanged);
+        return this;
+    }
+
+    public MetaBuilder databaseNameChanged(long databaseNameChangedMillis) {
+        this.databaseNameChanged = databaseNameChangedMillis;
         return this;
     }
 
     public MetaBuilder databaseDescriptionChanged(Calendar databaseDescriptionChanged) {
-        this.databaseDescriptionChanged = databaseDescriptionChanged;
+        this.databaseDescriptionChanged = TimestampUtils.fromCalendar(databaseDescriptionChanged);
+        return this;
+    }
+
+    public MetaBuilder databaseDescriptionChanged(long databaseDescriptionChangedMillis) {
+        this.databaseDescriptionChanged = databaseDescriptionChangedMillis;
         return this;
     }
 
@@ -100,12 +112,17 @@ public class MetaBuilder implements MetaContract {
     }
 
     public MetaBuilder recycleBinChanged(Calendar recycleBinChanged) {
-        this.recycleBinChanged = recycleBinChanged;
+        this.recycleBinChanged = TimestampUtils.fromCalendar(recycleBinChanged);
+        return this;
+    }
+
+    public MetaBuilder recycleBinChanged(long recycleBinChangedMillis) {
+        this.recycleBinChanged = recycleBinChangedMillis;
         return this;
     }
 
     public MetaBuilder recycleBinEnabled(boolean recycleBinEnabled) {
-        this.recycleBinEnabled = recycleBinEnabled;
+        this.recycleBinEnabled = Boolean.valueOf(recycleBinEnabled);
         return this;
     }
 
@@ -150,11 +167,19 @@ public class MetaBuilder implements MetaContract {
 
     @Override
     public Calendar getDatabaseNameChanged() {
+        return TimestampUtils.toCalendar(databaseNameChanged);
+    }
+
+    public long getDatabaseNameChangedMillis() {
         return databaseNameChanged;
     }
 
     @Override
     public Calendar getDatabaseDescriptionChanged() {
+        return TimestampUtils.toCalendar(databaseDescriptionChanged);
+    }
+
+    public long getDatabaseDescriptionChangedMillis() {
         return databaseDescriptionChanged;
     }
 
@@ -170,12 +195,16 @@ public class MetaBuilder implements MetaContract {
 
     @Override
     public Calendar getRecycleBinChanged() {
+        return TimestampUtils.toCalendar(recycleBinChanged);
+    }
+
+    public long getRecycleBinChangedMillis() {
         return recycleBinChanged;
     }
 
     @Override
     public boolean getRecycleBinEnabled() {
-        return recycleBinEnabled;
+        return recycleBinEnabled != null && recycleBinEnabled.booleanValue();
     }
 
     @Override
@@ -0,0 +1,246 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import de.slackspace.openkeepass.util.StringUtils;
+
+/**
+ * The properties of an {@link Entry} in document order, indexed by their
+ * keys.
+ * <p>
+ * The standard properties are kept in dedicated slots and all other
+ * properties in a map of their case folded keys, so looking up a property by
+ * its key does not scan the list. Keys are compared ignoring case. If several
+ * properties have the same key, the first one in the list is found.
+ * <p>
+ * The list can be modified like any other list and keeps its index up to
+ * date.
+ *
+ */
+final class PropertyList extends AbstractList<Property> implements RandomAccess {
+
+    static final int TITLE = 0;
+    static final int USER_NAME = 1;
+    static final int PASSWORD = 2;
+    static final int URL = 3;
+    static final int NOTES = 4;
+
+    private static final String[] STANDARD_KEYS = { "Title", "UserName", "Password", "URL", "Notes" };
+
+    private final List<Property> elements;
+    private final Property[] standardProperties = new Property[STANDARD_KEYS.length];
+    private Map<String, Property> customProperties;
+    private boolean hasDuplicateKeys;
+
+    PropertyList() {
+        elements = new ArrayList<Property>();
+    }
+
+    PropertyList(Collection<Property> properties) {
+        elements = new ArrayList<Property>(properties.size());
+        addAll(properties);
+    }
+
+    /**
+     * Returns the standard property in the given slot.
+     *
+     * @param slot
+     *            one of the slot constants, e.g. {@link #TITLE}
+     * @return the property or null
+     */
+    Property getStandard(int slot) {
+        return standardProperties[slot];
+    }
+
+    /**
+     * Returns the first property with the given key, ignoring case.
+     *
+     * @param key
+     *            the key of the property
+     * @return the property or null
+     */
+    Property get(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            return standardProperties[slot];
+        }
+        if (customProperties == null) {
+            return null;
+        }
+        return customProperties.get(StringUtils.foldCase(key));
+    }
+
+    /**
+     * Replaces the first property with the same key as the given one or
+     * appends the property if there is none.
+     *
+     * @param property
+     *            the new property
+     */
+    void put(Property property) {
+        Property existing = get(property.getKey());
+        if (existing == null) {
+            add(property);
+        } else {
+            set(indexOf(existing), property);
+        }
+    }
+
+    /**
+     * Returns the properties whose keys are not exactly one of the keys of the
+     * standard properties, in document order.
+     *
+     * @return the custom properties
+     */
+    List<Property> getCustomProperties() {
+        List<Property> result = new ArrayList<Property>();
+
+        for (Property property : elements) {
+            if (!isStandardKey(property.getKey())) {
+                result.add(property);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Property get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public void add(int index, Property property) {
+        elements.add(index, property);
+        modCount++;
+        register(property, index);
+    }
+
+    @Override
+    public Property set(int index, Property property) {
+        Property previous = elements.set(index, property);
+        unregister(previous);
+        register(property, index);
+        return previous;
+    }
+
+    @Override
+    public Property remove(int index) {
+        Property removed = elements.remove(index);
+        modCount++;
+        unregister(removed);
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        modCount++;
+        for (int i = 0; i < standardProperties.length; i++) {
+            standardProperties[i] = null;
+        }
+        customProperties = null;
+        hasDuplicateKeys = false;
+    }
+
+    private void register(Property property, int index) {
+        String key = property.getKey();
+        if (key == null) {
+            return;
+        }
+
+        Property existing = get(key);
+        if (existing != null && existing != property) {
+            hasDuplicateKeys = true;
+            if (indexOfIdentity(existing) < index) {
+                return;
+            }
+        }
+
+        index(key, property);
+    }
+
+    private void unregister(Property property) {
+        String key = property.getKey();
+        if (key == null || get(key) != property) {
+            return;
+        }
+
+        Property replacement = null;
+        if (hasDuplicateKeys) {
+            for (Property candidate : elements) {
+                if (key.equalsIgnoreCase(candidate.getKey())) {
+                    replacement = candidate;
+                    break;
+                }
+            }
+        }
+
+        if (replacement != null) {
+            index(key, replacement);
+            return;
+        }
+
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            standardProperties[slot] = null;
+        } else {
+            customProperties.remove(StringUtils.foldCase(key));
+        }
+    }
+
+    private void index(String key, Property property) {
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            standardProperties[slot] = property;
+            return;
+        }
+
+        if (customProperties == null) {
+            customProperties = new HashMap<String, Property>(4);
+        }
+        customProperties.put(StringUtils.foldCase(key), property);
+    }
+
+    private int indexOfIdentity(Property property) {
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i) == property) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int slotOf(String key) {
+        for (int i = 0; i < STANDARD_KEYS.length; i++) {
+            if (STANDARD_KEYS[i].equalsIgnoreCase(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static boolean isStandardKey(String key) {
+        for (String standardKey : STANDARD_KEYS) {
+            if (standardKey.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,121 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Describes which parts of a KeePass database should be loaded when it is
+ * opened.
+ * <p>
+ * By default everything is loaded. Parts which are switched off are skipped
+ * by the parser without being materialized, which makes read-only lookups
+ * faster and lighter on the heap. Use the {@link ReadOptionsBuilder} to
+ * create instances.
+ *
+ * @see ReadOptionsBuilder
+ */
+public class ReadOptions {
+
+    /**
+     * Loads the complete database.
+     */
+    public static final ReadOptions ALL = new ReadOptionsBuilder().build();
+
+    private final boolean history;
+    private final boolean iconEnrichment;
+    private final boolean customIconData;
+    private final boolean times;
+    private final boolean lazy;
+    private final int checkpointSpan;
+    private final int parallelism;
+    private final ExecutorService parserExecutor;
+
+    ReadOptions(ReadOptionsBuilder readOptionsBuilder) {
+        history = readOptionsBuilder.history;
+        iconEnrichment = readOptionsBuilder.iconEnrichment;
+        customIconData = readOptionsBuilder.customIconData;
+        times = readOptionsBuilder.times;
+        lazy = readOptionsBuilder.lazy;
+        checkpointSpan = readOptionsBuilder.checkpointSpan;
+        parallelism = readOptionsBuilder.parallelism;
+        parserExecutor = readOptionsBuilder.parserExecutor;
+    }
+
+    /**
+     * Returns whether the history of entries should be loaded.
+     *
+     * @return true if the history should be loaded
+     */
+    public boolean isHistory() {
+        return history;
+    }
+
+    /**
+     * Returns whether the icon data of groups and entries should be resolved.
+     *
+     * @return true if the nodes should be enriched with icon data
+     */
+    public boolean isIconEnrichment() {
+        return iconEnrichment;
+    }
+
+    /**
+     * Returns whether the image data of custom icons should be loaded.
+     *
+     * @return true if the custom icon data should be loaded
+     */
+    public boolean isCustomIconData() {
+        return customIconData;
+    }
+
+    /**
+     * Returns whether timestamps should be parsed.
+     *
+     * @return true if timestamps should be loaded
+     */
+    public boolean isTimes() {
+        return times;
+    }
+
+    /**
+     * Returns whether the entries and subgroups of a group should only be
+     * parsed when they are accessed for the first time.
+     *
+     * @return true if groups should be loaded lazily
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Returns the distance in uncompressed bytes between two checkpoints of
+     * the gzip index which is used in lazy mode.
+     *
+     * @return the checkpoint span or 0 if no index should be built
+     */
+    public int getCheckpointSpan() {
+        return checkpointSpan;
+    }
+
+    /**
+     * Returns the number of threads which parse the groups of the database
+     * concurrently.
+     *
+     * @return the number of parser threads, 1 if the database is parsed by
+     *         the calling thread only
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the executor which parses the groups of the database
+     * concurrently.
+     *
+     * @return the executor or null if a thread pool of the size
+     *         {@link #getParallelism()} should be used
+     */
+    public ExecutorService getParserExecutor() {
+        return parserExecutor;
+    }
+
+}
@@ -0,0 +1,149 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A builder to create {@link ReadOptions}.
+ * <p>
+ * All parts of the database are loaded unless they are switched off.
+ *
+ */
+public class ReadOptionsBuilder {
+
+    boolean history = true;
+    boolean iconEnrichment = true;
+    boolean customIconData = true;
+    boolean times = true;
+    boolean lazy = false;
+    int checkpointSpan = 0;
+    int parallelism = 1;
+    ExecutorService parserExecutor;
+
+    /**
+     * Defines whether the history of entries should be loaded.
+     *
+     * @param history
+     *            false to skip the history
+     * @return the builder
+     */
+    public ReadOptionsBuilder history(boolean history) {
+        this.history = history;
+        return this;
+    }
+
+    /**
+     * Defines whether groups and entries should be enriched with their icon
+     * data.
+     *
+     * @param iconEnrichment
+     *            false to skip the icon enrichment
+     * @return the builder
+     */
+    public ReadOptionsBuilder iconEnrichment(boolean iconEnrichment) {
+        this.iconEnrichment = iconEnrichment;
+        return this;
+    }
+
+    /**
+     * Defines whether the image data of custom icons should be loaded. The
+     * custom icons themselves are still available by their UUID.
+     *
+     * @param customIconData
+     *            false to skip the custom icon data
+     * @return the builder
+     */
+    public ReadOptionsBuilder customIconData(boolean customIconData) {
+        this.customIconData = customIconData;
+        return this;
+    }
+
+    /**
+     * Defines whether timestamps of groups and metadata should be parsed.
+     *
+     * @param times
+     *            false to skip all timestamps
+     * @return the builder
+     */
+    public ReadOptionsBuilder times(boolean times) {
+        this.times = times;
+        return this;
+    }
+
+    /**
+     * Defines whether groups should be loaded lazily. In lazy mode opening a
+     * database only scans the structure of its xml. The entries and subgroups
+     * of a group are parsed when {@link Group#getEntries()} or
+     * {@link Group#getGroups()} is called for the first time.
+     *
+     * @param lazy
+     *            true to load groups on first access
+     * @return the builder
+     */
+    public ReadOptionsBuilder lazy(boolean lazy) {
+        this.lazy = lazy;
+        return this;
+    }
+
+    /**
+     * Defines that a random access index over the gzip compressed payload
+     * should be built in lazy mode, with a checkpoint about every
+     * <tt>span</tt> bytes of xml. Groups are then loaded by decompressing
+     * their range from the nearest checkpoint, so the decompressed xml does
+     * not have to be kept in memory. Has no effect if the database is not
+     * compressed or not opened lazily.
+     *
+     * @param span
+     *            the distance between checkpoints in bytes or 0 to keep the
+     *            decompressed xml in memory instead
+     * @return the builder
+     * @see de.slackspace.openkeepass.stream.GzipCheckpointIndex#DEFAULT_SPAN
+     */
+    public ReadOptionsBuilder checkpointSpan(int span) {
+        if (span < 0) {
+            throw new IllegalArgumentException("The checkpoint span must not be negative.");
+        }
+
+        this.checkpointSpan = span;
+        return this;
+    }
+
+    /**
+     * Defines the number of threads which parse the database. With more than
+     * one thread the xml is split at the top groups and their subtrees are
+     * parsed concurrently, which speeds up opening large databases on
+     * multi-core machines. Has no effect in lazy mode.
+     *
+     * @param parallelism
+     *            the number of parser threads, 1 to parse on the calling
+     *            thread only
+     * @return the builder
+     */
+    public ReadOptionsBuilder parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be at least 1.");
+        }
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Defines the executor which parses the database concurrently. This
+     * enables the concurrent parsing like {@link #parallelism(int)}, but
+     * reuses the given executor instead of creating a thread pool for every
+     * database which is opened. The executor is not shut down. Has no effect
+     * in lazy mode.
+     *
+     * @param parserExecutor
+     *            the executor which parses the group subtrees
+     * @return the builder
+     */
+    public ReadOptionsBuilder parserExecutor(ExecutorService parserExecutor) {
+        this.parserExecutor = parserExecutor;
+        return this;
+    }
+
+    public ReadOptions build() {
+        return new ReadOptions(this);
+    }
+}
@@ -6,29 +6,34 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import de.slackspace.openkeepass.domain.xml.adapter.BooleanXmlAdapter;
+import de.slackspace.openkeepass.util.TimestampUtils;
 
 /**
  * Represents statistical information of an {@link Entry}.
+ * <p>
+ * Timestamps are stored as milliseconds since the epoch. The
+ * {@link Calendar} getters create a new calendar in UTC on every call.
  *
  */
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Times {
 
-    @XmlElement(name = "LastModificationTime")
-    private Calendar lastModificationTime;
+    @XmlTransient
+    private long lastModificationTime = TimestampUtils.NONE;
 
-    @XmlElement(name = "CreationTime")
-    private Calendar creationTime;
+    @XmlTransient
+    private long creationTime = TimestampUtils.NONE;
 
-    @XmlElement(name = "LastAccessTime")
-    private Calendar lastAccessTime;
+    @XmlTransient
+    private long lastAccessTime = TimestampUtils.NONE;
 
-    @XmlElement(name = "ExpiryTime")
-    private Calendar expiryTime;
+    @XmlTransient
+    private long expiryTime = TimestampUtils.NONE;
 
     @XmlElement(name = "Expires")
     @XmlJavaTypeAdapter(BooleanXmlAdapter.class)
@@ -37,41 +42,101 @@ public class Times {
     @XmlElement(name = "UsageCount")
     private int usageCount;
 
-    @XmlElement(name = "LocationChanged")
-    private Calendar locationChanged;
+    @XmlTransient
+    private long locationChanged = TimestampUtils.NONE;
 
     Times() {
         // default no-args constructor
     }
 
     public Times(TimesContract timesContract) {
-        this.creationTime = timesContract.getCreationTime();
+        this.creationTime = TimestampUtils.fromCalendar(timesContract.getCreationTime());
+        this.expiryTime = TimestampUtils.fromCalendar(timesContract.getExpiryTime());
+        this.lastAccessTime = TimestampUtils.fromCalendar(timesContract.getLastAccessTime());
+        this.lastModificationTime = TimestampUtils.fromCalendar(timesContract.getLastModificationTime());
+        this.locationChanged = TimestampUtils.fromCalendar(timesContract.getLocationChanged());
         this.expires = timesContract.getExpires();
-        this.expiryTime = timesContract.getExpiryTime();
-        this.lastAccessTime = timesContract.getLastAccessTime();
-        this.lastModificationTime = timesContract.getLastModificationTime();
-        this.locationChanged = timesContract.getLocationChanged();
         this.usageCount = timesContract.getUsageCount();
     }
 
+    Times(TimesBuilder timesBuilder) {
+        // skip the calendars of the builder
+        this.creationTime = timesBuilder.getCreationTimeMillis();
+        this.expiryTime = timesBuilder.getExpiryTimeMillis();
+        this.lastAccessTime = timesBuilder.getLastAccessTimeMillis();
+        this.lastModificationTime = timesBuilder.getLastModificationTimeMillis();
+        this.locationChanged = timesBuilder.getLocationChangedMillis();
+        this.expires = timesBuilder.getExpires();
+        this.usageCount = timesBuilder.getUsageCount();
+    }
+
     public Calendar getLastModificationTime() {
-        return lastModificationTime;
+        return TimestampUtils.toCalendar(lastModificationTime);
     }
 
     public Calendar getCreationTime() {
-        return creationTime;
+        return TimestampUtils.toCalendar(creationTime);
     }
 
     public Calendar getLastAccessTime() {
-        return lastAccessTime;
+        return TimestampUtils.toCalendar(lastAccessTime);
     }
 
     public Calendar getExpiryTime() {
+        return TimestampUtils.toCalendar(expiryTime);
+    }
+
+    /**
+     * Returns the last modification time without creating a calendar.
+     *
+     * @return the milliseconds since the epoch or {@link TimestampUtils#NONE}
+     */
+    public long getLastModificationTimeMillis() {
+        return lastModificationTime;
+    }
+
+    /**
+     * Returns the creation time without creating a calendar.
+     *
+     * @return the milliseconds since the epoch or {@link TimestampUtils#NONE}
+     */
+    public long getCreationTimeMillis() {
+        return creationTime;
+    }
+
+    /**
+     * Returns the last access time without creating a calendar.
+     *
+     * @return the milliseconds since the epoch or {@link TimestampUtils#NONE}
+     */
+    public long getLastAccessTimeMillis() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Returns the expiry time without creating a calendar.
+     *
+     * @return the milliseconds since the epoch or {@link TimestampUtils#NONE}
+     */
+    public long getExpiryTimeMillis() {
         return expiryTime;
     }
 
     public boolean expires() {
-        return expires;
+        if (expires == null) {
+            return false;
+        }
+        return expires.booleanValue();
+    }
+
+    /**
+     * Returns whether the expires flag is set at all. Databases written by
+     * other tools may omit it.
+     *
+     * @return true if the expires flag is set
+     */
+    public boolean hasExpiresFlag() {
+        return expires != null;
     }
 
     public int getUsageCount() {
@@ -79,19 +144,78 @@ public class Times {
     }
 
     public Calendar getLocationChanged() {
+        return TimestampUtils.toCalendar(locationChanged);
+    }
+
+    /**
+     * Returns the time of the last move without creating a calendar.
+     *
+     * @return the milliseconds since the epoch or {@link TimestampUtils#NONE}
+     */
+    public long getLocationChangedMillis() {
         return locationChanged;
     }
 
+    @XmlElement(name = "LastModificationTime")
+    private String getXmlLastModificationTime() {
+        return TimestampUtils.print(lastModificationTime);
+    }
+
+    @SuppressWarnings("unused")
+    private void setXmlLastModificationTime(String text) {
+        lastModificationTime = TimestampUtils.parse(text);
+    }
+
+    @XmlElement(name = "CreationTime")
+    private String getXmlCreationTime() {
+        return TimestampUtils.print(creationTime);
+    }
+
+    @SuppressWarnings("unused")
+    private void setXmlCreationTime(String text) {
+        creationTime = TimestampUtils.parse(text);
+    }
+
+    @XmlElement(name = "LastAccessTime")
+    private String getXmlLastAccessTime() {
+        return TimestampUtils.print(lastAccessTime);
+    }
+
+    @SuppressWarnings("unused")
+    private void setXmlLastAccessTime(String text) {
+        lastAccessTime = TimestampUtils.parse(text);
+    }
+
+    @XmlElement(name = "ExpiryTime")
+    private String getXmlExpiryTime() {
+        return TimestampUtils.print(expiryTime);
+    }
+
+    @SuppressWarnings("unused")
+    private void setXmlExpiryTime(String text) {
+        expiryTime = TimestampUtils.parse(text);
+    }
+
+    @XmlElement(name = "LocationChanged")
+    private String getXmlLocationChanged() {
+        return TimestampUtils.print(locationChanged);
+    }
+
+    @SuppressWarnings("unused")
+    private void setXmlLocationChanged(String text) {
+        locationChanged = TimestampUtils.parse(text);
+    }
+
     @Override
     public final int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((creationTime == null) ? 0 : creationTime.hashCode());
+        result = prime * result + (int) (creationTime ^ (creationTime >>> 32));
         result = prime * result + ((expires == null) ? 0 : expires.hashCode());
-        result = prime * result + ((expiryTime == null) ? 0 : expiryTime.hashCode());
-        result = prime * result + ((lastAccessTime == null) ? 0 : lastAccessTime.hashCode());
-        result = prime * result + ((lastModificationTime == null) ? 0 : lastModificationTime.hashCode());
-        result = prime * result + ((locationChanged == null) ? 0 : locationChanged.hashCode());
+        result = prime * result + (int) (expiryTime ^ (expiryTime >>> 32));
+        result = prime * result + (int) (lastAccessTime ^ (lastAccessTime >>> 32));
+        result = prime * result + (int) (lastModificationTime ^ (lastModificationTime >>> 32));
+        result = prime * result + (int) (locationChanged ^ (locationChanged >>> 32));
         result = prime * result + usageCount;
         return result;
     }
@@ -105,35 +229,20 @@ public class Times {
         if (!(obj instanceof Times))
             return false;
         Times other = (Times) obj;
-        if (creationTime == null) {
-            if (other.creationTime != null)
-                return false;
-        } else if (!creationTime.equals(other.creationTime))
+        if (creationTime != other.creationTime)
             return false;
         if (expires == null) {
             if (other.expires != null)
                 return false;
         } else if (!expires.equals(other.expires))
             return false;
-        if (expiryTime == null) {
-            if (other.expiryTime != null)
-                return false;
-        } else if (!expiryTime.equals(other.expiryTime))
+        if (expiryTime != other.expiryTime)
             return false;
-        if (lastAccessTime == null) {
-            if (other.lastAccessTime != null)
-                return false;
-        } else if (!lastAccessTime.equals(other.lastAccessTime))
+        if (lastAccessTime != other.lastAccessTime)
             return false;
-        if (lastModificationTime == null) {
-            if (other.lastModificationTime != null)
-                return false;
-        } else if (!lastModificationTime.equals(other.lastModificationTime))
+        if (lastModificationTime != other.lastModificationTime)
             return false;
-        if (locationChanged == null) {
-            if (other.locationChanged != null)
-                return false;
-        } else if (!locationChanged.equals(other.locationChanged))
+        if (locationChanged != other.locationChanged)
             return false;
         if (usageCount != other.usageCount)
             return false;
@@ -142,7 +251,7 @@ public class Times {
 
     @Override
     public String toString() {
-        return "Times [lastModificationTime=" + lastModificationTime + ", creationTime=" + creationTime + "]";
+        return "Times [lastModificationTime=" + TimestampUtils.print(lastModificationTime) + ", creationTime=" + TimestampUtils.print(creationTime) + "]";
     }
 
 }
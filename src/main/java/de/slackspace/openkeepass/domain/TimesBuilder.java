@@ -2,57 +2,79 @@ package de.slackspace.openkeepass.domain;
 
 import java.util.Calendar;
 
+import de.slackspace.openkeepass.util.TimestampUtils;
+
 /**
  * A builder to create {@link Times} objects.
  *
  */
 public class TimesBuilder implements TimesContract {
 
-    private Calendar lastModificationTime;
+    private long lastModificationTime = TimestampUtils.NONE;
 
-    private Calendar creationTime;
+    private long creationTime = TimestampUtils.NONE;
 
-    private Calendar lastAccessTime;
+    private long lastAccessTime = TimestampUtils.NONE;
 
-    private Calendar expiryTime;
+    private long expiryTime = TimestampUtils.NONE;
 
     private boolean expires;
 
     private int usageCount;
 
-    private Calendar locationChanged;
+    private long locationChanged = TimestampUtils.NONE;
 
     public TimesBuilder() {
         // default no-args constructor
     }
 
     public TimesBuilder(Times times) {
-        this.lastModificationTime = times.getLastModificationTime();
-        this.creationTime = times.getCreationTime();
-        this.lastAccessTime = times.getLastAccessTime();
-        this.expiryTime = times.getExpiryTime();
+        this.lastModificationTime = times.getLastModificationTimeMillis();
+        this.creationTime = times.getCreationTimeMillis();
+        this.lastAccessTime = times.getLastAccessTimeMillis();
+        this.expiryTime = times.getExpiryTimeMillis();
         this.expires = times.expires();
         this.usageCount = times.getUsageCount();
-        this.locationChanged = times.getLocationChanged();
+        this.locationChanged = times.getLocationChangedMillis();
     }
 
     public TimesBuilder lastModificationTime(Calendar lastModificationTime) {
-        this.lastModificationTime = lastModificationTime;
+        this.lastModificationTime = TimestampUtils.fromCalendar(lastModificationTime);
+        return this;
+    }
+
+    public TimesBuilder lastModificationTime(long lastModificationTimeMillis) {
+        this.lastModificationTime = lastModificationTimeMillis;
         return this;
     }
 
     public TimesBuilder creationTime(Calendar creationTime) {
-        this.creationTime = creationTime;
+        this.creationTime = TimestampUtils.fromCalendar(creationTime);
+        return this;
+    }
+
+    public TimesBuilder creationTime(long creationTimeMillis) {
+        this.creationTime = creationTimeMillis;
         return this;
     }
 
     public TimesBuilder lastAccessTime(Calendar lastAccessTime) {
-        this.lastAccessTime = lastAccessTime;
+        this.lastAccessTime = TimestampUtils.fromCalendar(lastAccessTime);
+        return this;
+    }
+
+    public TimesBuilder lastAccessTime(long lastAccessTimeMillis) {
+        this.lastAccessTime = lastAccessTimeMillis;
         return this;
     }
 
     public TimesBuilder expiryTime(Calendar expiryTime) {
-        this.expiryTime = expiryTime;
+        this.expiryTime = TimestampUtils.fromCalendar(expiryTime);
+        return this;
+    }
+
+    public TimesBuilder expiryTime(long expiryTimeMillis) {
+        this.expiryTime = expiryTimeMillis;
         return this;
     }
 
@@ -67,7 +89,12 @@ public class TimesBuilder implements TimesContract {
     }
 
     public TimesBuilder locationChanged(Calendar locationChanged) {
-        this.locationChanged = locationChanged;
+        this.locationChanged = TimestampUtils.fromCalendar(locationChanged);
+        return this;
+    }
+
+    public TimesBuilder locationChanged(long locationChangedMillis) {
+        this.locationChanged = locationChangedMillis;
         return this;
     }
 
@@ -82,21 +109,37 @@ public class TimesBuilder implements TimesContract {
 
     @Override
     public Calendar getLastModificationTime() {
+        return TimestampUtils.toCalendar(lastModificationTime);
+    }
+
+    public long getLastModificationTimeMillis() {
         return lastModificationTime;
     }
 
     @Override
     public Calendar getCreationTime() {
+        return TimestampUtils.toCalendar(creationTime);
+    }
+
+    public long getCreationTimeMillis() {
         return creationTime;
     }
 
     @Override
     public Calendar getLastAccessTime() {
+        return TimestampUtils.toCalendar(lastAccessTime);
+    }
+
+    public long getLastAccessTimeMillis() {
         return lastAccessTime;
     }
 
     @Override
     public Calendar getExpiryTime() {
+        return TimestampUtils.toCalendar(expiryTime);
+    }
+
+    public long getExpiryTimeMillis() {
         return expiryTime;
     }
 
@@ -112,6 +155,10 @@ public class TimesBuilder implements TimesContract {
 
     @Override
     public Calendar getLocationChanged() {
+        return TimestampUtils.toCalendar(locationChanged);
+    }
+
+    public long getLocationChangedMillis() {
         return locationChanged;
     }
 }
@@ -0,0 +1,24 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the modifications of the child lists of one tree of groups.
+ * <p>
+ * A {@link KeePassFile} owns a version for its tree and compares it with the
+ * one its indexes have been built at. The child lists of the tree increment
+ * it, so changes made through a {@link GroupBuilder} are picked up without
+ * walking the tree, while changes to other databases leave it untouched.
+ */
+final class TreeVersion {
+
+    private final AtomicLong modifications = new AtomicLong();
+
+    long get() {
+        return modifications.get();
+    }
+
+    void increment() {
+        modifications.incrementAndGet();
+    }
+}
@@ -0,0 +1,406 @@
+package de.slackspace.openkeepass.domain.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.KeePassFile;
+
+/**
+ * Evaluates a {@link Filter} over the entries or groups of a tree on several
+ * threads.
+ * <p>
+ * The tree is split into group subtrees, level by level, until there are
+ * enough subtrees to keep the threads of the executor busy. Each subtree is
+ * scanned by a task of the given executor and the results are merged in
+ * document order, i.e. depth first with the entries of a group before the
+ * entries of its subgroups:
+ *
+ * <pre>
+ * List&lt;Entry&gt; entries = ParallelQuery.entries(keePassFile, executor).filter(filter).limit(10).list();
+ * </pre>
+ *
+ * {@link #findAny()} stops all tasks as soon as one of them has found a
+ * match. {@link #findFirst()} and {@link #limit(int)} stop the remaining
+ * tasks once enough matches have been collected from the preceding subtrees.
+ * <p>
+ * The filter is called concurrently and must be thread safe. The tree must
+ * not be modified while a query runs.
+ *
+ * @param <T>
+ *            the type of the queried elements, {@link Entry} or {@link Group}
+ */
+public class ParallelQuery<T> {
+
+    private static final int TASKS_PER_PROCESSOR = 4;
+
+    private final Group group;
+    private final Elements<T> elements;
+    private final ExecutorService executorService;
+
+    private Filter<T> filter;
+    private int limit = Integer.MAX_VALUE;
+
+    private ParallelQuery(Group group, Elements<T> elements, ExecutorService executorService) {
+        if (executorService == null) {
+            throw new IllegalArgumentException("You must provide an executor service.");
+        }
+
+        this.group = group;
+        this.elements = elements;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Creates a query over all entries of the given database.
+     *
+     * @param keePassFile
+     *            the database which should be queried
+     * @param executorService
+     *            the executor which scans the subtrees
+     * @return the query
+     */
+    public static ParallelQuery<Entry> entries(KeePassFile keePassFile, ExecutorService executorService) {
+        return entries(keePassFile.getRoot(), executorService);
+    }
+
+    /**
+     * Creates a query over all entries of the given group and its subgroups.
+     *
+     * @param group
+     *            the group which should be queried
+     * @param executorService
+     *            the executor which scans the subtrees
+     * @return the query
+     */
+    public static ParallelQuery<Entry> entries(Group group, ExecutorService executorService) {
+        return new ParallelQuery<Entry>(group, new EntryElements(), executorService);
+    }
+
+    /**
+     * Creates a query over all groups of the given database.
+     *
+     * @param keePassFile
+     *            the database which should be queried
+     * @param executorService
+     *            the executor which scans the subtrees
+     * @return the query
+     */
+    public static ParallelQuery<Group> groups(KeePassFile keePassFile, ExecutorService executorService) {
+        return groups(keePassFile.getRoot(), executorService);
+    }
+
+    /**
+     * Creates a query over all subgroups of the given group at any depth.
+     *
+     * @param group
+     *            the group which should be queried
+     * @param executorService
+     *            the executor which scans the subtrees
+     * @return the query
+     */
+    public static ParallelQuery<Group> groups(Group group, ExecutorService executorService) {
+        return new ParallelQuery<Group>(group, new GroupElements(), executorService);
+    }
+
+    /**
+     * Restricts the query to elements which match the given filter. If this
+     * is called more than once, elements must match all filters.
+     *
+     * @param filter
+     *            the filter which should be evaluated
+     * @return this query
+     */
+    public ParallelQuery<T> filter(final Filter<T> filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("You must provide a filter.");
+        }
+
+        final Filter<T> previous = this.filter;
+        if (previous == null) {
+            this.filter = filter;
+        } else {
+            this.filter = new Filter<T>() {
+
+                @Override
+                public boolean matches(T item) {
+                    return previous.matches(item) && filter.matches(item);
+                }
+            };
+        }
+        return this;
+    }
+
+    /**
+     * Restricts the query to the first matches in document order.
+     *
+     * @param maxResults
+     *            the maximum number of results
+     * @return this query
+     */
+    public ParallelQuery<T> limit(int maxResults) {
+        if (maxResults < 0) {
+            throw new IllegalArgumentException("The limit must not be negative.");
+        }
+
+        this.limit = maxResults;
+        return this;
+    }
+
+    /**
+     * Runs the query.
+     *
+     * @return the matching elements in document order
+     */
+    public List<T> list() {
+        return collect(limit);
+    }
+
+    /**
+     * Runs the query and returns the first match in document order.
+     *
+     * @return the first matching element or null
+     */
+    public T findFirst() {
+        List<T> result = collect(Math.min(limit, 1));
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Runs the query and returns the match which has been found first by any
+     * of the tasks. This is faster than {@link #findFirst()} but the result
+     * may differ between runs.
+     *
+     * @return a matching element or null
+     */
+    public T findAny() {
+        if (limit == 0) {
+            return null;
+        }
+
+        List<Subtree> subtrees = split();
+        AtomicBoolean done = new AtomicBoolean();
+
+        CompletionService<List<T>> completionService = new ExecutorCompletionService<List<T>>(executorService);
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(subtrees.size());
+        for (Subtree subtree : subtrees) {
+            futures.add(completionService.submit(new ScanTask(subtree, 1, done)));
+        }
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                List<T> result = await(completionService.take());
+                if (!result.isEmpty()) {
+                    return result.get(0);
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The query has been interrupted", e);
+        } finally {
+            cancel(done, futures);
+        }
+    }
+
+    private List<T> collect(int maxResults) {
+        List<T> result = new ArrayList<T>();
+        if (maxResults == 0) {
+            return result;
+        }
+
+        List<Subtree> subtrees = split();
+        AtomicBoolean done = new AtomicBoolean();
+
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(subtrees.size());
+        for (Subtree subtree : subtrees) {
+            futures.add(executorService.submit(new ScanTask(subtree, maxResults, done)));
+        }
+
+        try {
+            for (Future<List<T>> future : futures) {
+                result.addAll(await(future));
+                if (result.size() >= maxResults) {
+                    return new ArrayList<T>(result.subList(0, maxResults));
+                }
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The query has been interrupted", e);
+        } finally {
+            cancel(done, futures);
+        }
+    }
+
+    /**
+     * Splits the tree into subtrees in document order. A subtree is expanded
+     * into the group itself and the subtrees of its subgroups until there are
+     * enough subtrees or no subtree can be split any further.
+     */
+    private List<Subtree> split() {
+        List<Subtree> subtrees = new ArrayList<Subtree>();
+        if (group == null) {
+            return subtrees;
+        }
+
+        if (elements.includesOwnElements()) {
+            subtrees.add(new Subtree(group, false));
+        }
+        for (Group child : group.getGroups()) {
+            subtrees.add(new Subtree(child, true));
+        }
+
+        int targetSize = TASKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+        boolean expanded = true;
+        while (subtrees.size() < targetSize && expanded) {
+            expanded = false;
+
+            List<Subtree> next = new ArrayList<Subtree>();
+            for (Subtree subtree : subtrees) {
+                List<Group> children = subtree.recursive ? subtree.group.getGroups() : Collections.<Group> emptyList();
+                if (children.isEmpty() || next.size() + children.size() >= targetSize * 2) {
+                    next.add(subtree);
+                    continue;
+                }
+
+                next.add(new Subtree(subtree.group, false));
+                for (Group child : children) {
+                    next.add(new Subtree(child, true));
+                }
+                expanded = true;
+            }
+            subtrees = next;
+        }
+
+        return subtrees;
+    }
+
+    private List<T> await(Future<List<T>> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("The query has failed", e.getCause());
+        }
+    }
+
+    private static <T> void cancel(AtomicBoolean done, List<Future<List<T>>> futures) {
+        done.set(true);
+        for (Future<List<T>> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * A group and, if recursive, all of its subgroups.
+     */
+    private static class Subtree {
+
+        private final Group group;
+        private final boolean recursive;
+
+        Subtree(Group group, boolean recursive) {
+            this.group = group;
+            this.recursive = recursive;
+        }
+    }
+
+    /**
+     * Scans a subtree in document order until it has found enough matches or
+     * the query is done.
+     */
+    private class ScanTask implements Callable<List<T>> {
+
+        private final Subtree subtree;
+        private final int maxResults;
+        private final AtomicBoolean done;
+        private final List<T> result = new ArrayList<T>();
+
+        ScanTask(Subtree subtree, int maxResults, AtomicBoolean done) {
+            this.subtree = subtree;
+            this.maxResults = maxResults;
+            this.done = done;
+        }
+
+        @Override
+        public List<T> call() {
+            scan(subtree.group, subtree.recursive);
+            return result;
+        }
+
+        private boolean scan(Group current, boolean recursive) {
+            for (T element : elements.of(current)) {
+                if (done.get()) {
+                    return false;
+                }
+                if (filter == null || filter.matches(element)) {
+                    result.add(element);
+                    if (result.size() >= maxResults) {
+                        return false;
+                    }
+                }
+            }
+
+            if (recursive) {
+                for (Group child : current.getGroups()) {
+                    if (!scan(child, true)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The elements a group contributes to a query.
+     */
+    private interface Elements<T> {
+
+        List<T> of(Group group);
+
+        boolean includesOwnElements();
+    }
+
+    private static class EntryElements implements Elements<Entry> {
+
+        @Override
+        public List<Entry> of(Group group) {
+            return group.getEntries();
+        }
+
+        @Override
+        public boolean includesOwnElements() {
+            return true;
+        }
+    }
+
+    private static class GroupElements implements Elements<Group> {
+
+        @Override
+        public List<Group> of(Group group) {
+            return Collections.singletonList(group);
+        }
+
+        @Override
+        public boolean includesOwnElements() {
+            // the queried group itself is not part of the result
+            return false;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+
+/**
+ * Maps every entry and group below a root group to the group which contains
+ * it.
+ * <p>
+ * Entries and groups are identified by identity rather than by
+ * {@link Object#equals(Object)}, so equal copies in different places of the
+ * tree have different parents. The root group itself is not indexed and the
+ * groups directly below it have no parent. Walking up to the top of the tree
+ * takes one lookup per level.
+ *
+ */
+public class AncestryIndex {
+
+    private final Map<Entry, Group> entryParents = new IdentityHashMap<Entry, Group>();
+    private final Map<Group, Group> groupParents = new IdentityHashMap<Group, Group>();
+
+    /**
+     * Indexes all entries and groups below the given root group.
+     *
+     * @param root
+     *            the root group or null for an empty index
+     */
+    public AncestryIndex(Group root) {
+        if (root == null) {
+            return;
+        }
+
+        for (Group group : root.getGroups()) {
+            groupParents.put(group, null);
+            index(group);
+        }
+    }
+
+    /**
+     * Returns the group which contains the given entry.
+     *
+     * @param entry
+     *            the entry
+     * @return the parent group or null if the entry is not part of the tree
+     */
+    public Group getParent(Entry entry) {
+        return entryParents.get(entry);
+    }
+
+    /**
+     * Returns the group which contains the given group.
+     *
+     * @param group
+     *            the group
+     * @return the parent group or null if the group is a top level group or
+     *         not part of the tree
+     */
+    public Group getParent(Group group) {
+        return groupParents.get(group);
+    }
+
+    /**
+     * Returns whether the given entry is part of the tree.
+     *
+     * @param entry
+     *            the entry
+     * @return true if the entry is indexed
+     */
+    public boolean contains(Entry entry) {
+        return entryParents.containsKey(entry);
+    }
+
+    /**
+     * Returns whether the given group is part of the tree.
+     *
+     * @param group
+     *            the group
+     * @return true if the group is indexed
+     */
+    public boolean contains(Group group) {
+        return groupParents.containsKey(group);
+    }
+
+    /**
+     * Returns the groups from the top of the tree down to the given group,
+     * including the group itself.
+     *
+     * @param group
+     *            the group
+     * @return the path to the group or an empty list if the group is not part
+     *         of the tree
+     */
+    public List<Group> getPath(Group group) {
+        if (!contains(group)) {
+            return new ArrayList<Group>();
+        }
+
+        List<Group> path = new ArrayList<Group>();
+        for (Group current = group; current != null; current = groupParents.get(current)) {
+            path.add(current);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Returns whether the given group is contained in the ancestor or one of
+     * its subgroups.
+     *
+     * @param ancestor
+     *            the possible ancestor
+     * @param group
+     *            the group
+     * @return true if the group is below the ancestor
+     */
+    public boolean isDescendant(Group ancestor, Group group) {
+        if (!contains(group)) {
+            return false;
+        }
+
+        for (Group current = groupParents.get(group); current != null; current = groupParents.get(current)) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the given entry is part of the given group or one of its
+     * subgroups.
+     *
+     * @param ancestor
+     *            the possible ancestor
+     * @param entry
+     *            the entry
+     * @return true if the entry is below the ancestor
+     */
+    public boolean isDescendant(Group ancestor, Entry entry) {
+        Group parent = entryParents.get(entry);
+        return parent != null && (parent == ancestor || isDescendant(ancestor, parent));
+    }
+
+    private void index(Group parentGroup) {
+        for (Entry entry : parentGroup.getEntries()) {
+            entryParents.put(entry, parentGroup);
+        }
+
+        for (Group group : parentGroup.getGroups()) {
+            groupParents.put(group, parentGroup);
+            index(group);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.slackspace.openkeepass.api.ExpiryListener;
+
+/**
+ * Notifies listeners when entries or groups of a {@link TimeIndex} on the
+ * {@link TimeField#EXPIRY} expire.
+ * <p>
+ * Instead of polling, a single task is scheduled on the given executor for
+ * the next expiry time in the index. When it runs, all elements which have
+ * expired since the previous run are published and the task is scheduled for
+ * the next expiry time. Updates of the index reschedule the task, so elements
+ * added after the start are picked up:
+ *
+ * <pre>
+ * TimeIndex&lt;Entry&gt; index = TimeIndex.forEntries(keePassFile, TimeField.EXPIRY);
+ * ExpiryScheduler&lt;Entry&gt; scheduler = new ExpiryScheduler&lt;Entry&gt;(index, executor);
+ * scheduler.addListener(listener);
+ * scheduler.start();
+ * </pre>
+ *
+ * Only elements which expire after the start are published. Listeners are
+ * notified on the executor thread.
+ *
+ * @param <T>
+ *            the type of the indexed elements
+ */
+public class ExpiryScheduler<T> {
+
+    private final TimeIndex<T> index;
+    private final ScheduledExecutorService executor;
+    private final List<ExpiryListener<T>> listeners = new CopyOnWriteArrayList<ExpiryListener<T>>();
+
+    private final Runnable check = new Runnable() {
+
+        @Override
+        public void run() {
+            checkForExpired();
+        }
+    };
+
+    private final Runnable reschedule = new Runnable() {
+
+        @Override
+        public void run() {
+            synchronized (ExpiryScheduler.this) {
+                if (started) {
+                    schedule();
+                }
+            }
+        }
+    };
+
+    private boolean started;
+    private long checkedUntil;
+    private ScheduledFuture<?> task;
+
+    /**
+     * Creates a scheduler for the given index.
+     *
+     * @param index
+     *            an index on the expiry time
+     * @param executor
+     *            the executor which runs the checks and notifies the listeners
+     */
+    public ExpiryScheduler(TimeIndex<T> index, ScheduledExecutorService executor) {
+        if (index == null || index.getField() != TimeField.EXPIRY) {
+            throw new IllegalArgumentException("You must provide an index on the expiry time.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("You must provide an executor.");
+        }
+
+        this.index = index;
+        this.executor = executor;
+    }
+
+    public void addListener(ExpiryListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ExpiryListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching for elements which expire from now on.
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("The scheduler has already been started.");
+        }
+
+        started = true;
+        checkedUntil = System.currentTimeMillis();
+        index.addUpdateListener(reschedule);
+        schedule();
+    }
+
+    /**
+     * Stops watching for expired elements.
+     */
+    public synchronized void stop() {
+        started = false;
+        index.removeUpdateListener(reschedule);
+        cancel();
+    }
+
+    /**
+     * Publishes the elements which have expired since the previous check. This
+     * is called by the executor but may also be called directly to check on
+     * demand.
+     */
+    public void checkForExpired() {
+        List<T> expired;
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now < checkedUntil) {
+                schedule();
+                return;
+            }
+
+            expired = index.findBetween(checkedUntil, now + 1);
+            checkedUntil = now + 1;
+            schedule();
+        }
+
+        if (!expired.isEmpty()) {
+            for (ExpiryListener<T> listener : listeners) {
+                listener.onExpired(expired);
+            }
+        }
+    }
+
+    private void schedule() {
+        cancel();
+
+        Long next = index.nextTime(checkedUntil);
+        if (next == null) {
+            return;
+        }
+
+        long delay = Math.max(0, next - System.currentTimeMillis());
+        task = executor.schedule(check, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancel() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.Property;
+
+/**
+ * An inverted index over the fields of entries for full-text search.
+ * <p>
+ * The title, username, URL, notes and all custom properties of an entry are
+ * split into lower case tokens at every character which is neither a letter
+ * nor a digit. Passwords and other protected values are not indexed.
+ * <p>
+ * A query is tokenized the same way and matches entries which contain all
+ * ({@link Operator#AND}) or any ({@link Operator#OR}) of its tokens. Results
+ * are ranked by the sum of the weights of the matched tokens, where a token
+ * in the title counts more than one in the username or URL, which count more
+ * than one in the notes or custom properties, and rare tokens count more
+ * than common ones. Entries with the same score are returned in the order
+ * they have been added.
+ * <p>
+ * The index is updated incrementally by {@link #add(Entry)} and
+ * {@link #remove(UUID)}, e.g. from the changes published by a
+ * {@link de.slackspace.openkeepass.DatabaseWatcher}.
+ *
+ */
+public class FullTextIndex {
+
+    /**
+     * How the tokens of a query are combined.
+     */
+    public enum Operator {
+        /** Entries must contain every token of the query. */
+        AND,
+        /** Entries must contain at least one token of the query. */
+        OR
+    }
+
+    private static final String TITLE = "Title";
+    private static final String USER_NAME = "UserName";
+    private static final String URL = "URL";
+    private static final String PASSWORD = "Password";
+
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float USER_NAME_WEIGHT = 2f;
+    private static final float URL_WEIGHT = 2f;
+    private static final float DEFAULT_WEIGHT = 1f;
+
+    private static final int MIN_COMPACTION_SIZE = 1024;
+
+    private final Map<String, Postings> postings = new HashMap<String, Postings>();
+    private final Map<UUID, Integer> documentIds = new HashMap<UUID, Integer>();
+
+    // indexed by document id, null once a document has been removed
+    private List<Entry> documents = new ArrayList<Entry>();
+    private List<String[]> documentTerms = new ArrayList<String[]>();
+    private int removedCount;
+
+    /**
+     * Creates an empty index.
+     */
+    public FullTextIndex() {
+    }
+
+    /**
+     * Creates an index of all entries of the given database.
+     *
+     * @param keePassFile
+     *            the database which should be indexed
+     */
+    public FullTextIndex(KeePassFile keePassFile) {
+        for (Entry entry : keePassFile.iterateEntries()) {
+            add(entry);
+        }
+    }
+
+    /**
+     * Adds an entry to the index. An entry with the same UUID which has been
+     * added before is replaced.
+     *
+     * @param entry
+     *            the entry which should be indexed
+     */
+    public synchronized void add(Entry entry) {
+        if (entry == null || entry.getUuid() == null) {
+            throw new IllegalArgumentException("You must provide an entry with a UUID.");
+        }
+
+        remove(entry.getUuid());
+
+        Map<String, Float> weights = weighTerms(entry);
+        int documentId = documents.size();
+        String[] terms = new String[weights.size()];
+
+        int i = 0;
+        for (Map.Entry<String, Float> weight : weights.entrySet()) {
+            Postings termPostings = postings.get(weight.getKey());
+            if (termPostings == null) {
+                termPostings = new Postings();
+                postings.put(weight.getKey(), termPostings);
+            }
+            termPostings.add(documentId, weight.getValue());
+            terms[i++] = weight.getKey();
+        }
+
+        documents.add(entry);
+        documentTerms.add(terms);
+        documentIds.put(entry.getUuid(), documentId);
+    }
+
+    /**
+     * Removes the entry with the given UUID from the index.
+     *
+     * @param uuid
+     *            the UUID of the entry
+     * @return true if the entry has been indexed
+     */
+    public synchronized boolean remove(UUID uuid) {
+        Integer documentId = documentIds.remove(uuid);
+        if (documentId == null) {
+            return false;
+        }
+
+        for (String term : documentTerms.get(documentId)) {
+            Postings termPostings = postings.get(term);
+            termPostings.liveCount--;
+            if (termPostings.liveCount == 0) {
+                postings.remove(term);
+            }
+        }
+
+        documents.set(documentId, null);
+        documentTerms.set(documentId, null);
+        removedCount++;
+
+        if (removedCount >= MIN_COMPACTION_SIZE && removedCount > documentIds.size()) {
+            compact();
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of indexed entries.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return documentIds.size();
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param query
+     *            the text which should be searched
+     * @param operator
+     *            whether all or any of the tokens of the query must match
+     * @return the matching entries, best matches first
+     */
+    public synchronized List<Entry> search(String query, Operator operator) {
+        if (operator == null) {
+            throw new IllegalArgumentException("You must provide an operator.");
+        }
+
+        List<Postings> queryPostings = new ArrayList<Postings>();
+        for (String term : tokenize(query)) {
+            Postings termPostings = postings.get(term);
+            if (termPostings != null) {
+                queryPostings.add(termPostings);
+            } else if (operator == Operator.AND) {
+                return new ArrayList<Entry>();
+            }
+        }
+
+        if (queryPostings.isEmpty()) {
+            return new ArrayList<Entry>();
+        }
+
+        final Map<Integer, Float> scores = operator == Operator.AND ? scoreAll(queryPostings) : scoreAny(queryPostings);
+
+        List<Integer> matches = new ArrayList<Integer>(scores.keySet());
+        Collections.sort(matches, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer first, Integer second) {
+                int result = scores.get(second).compareTo(scores.get(first));
+                return result != 0 ? result : first.compareTo(second);
+            }
+        });
+
+        List<Entry> result = new ArrayList<Entry>(matches.size());
+        for (Integer documentId : matches) {
+            result.add(documents.get(documentId));
+        }
+        return result;
+    }
+
+    /**
+     * Splits a text into lower case tokens at every character which is
+     * neither a letter nor a digit.
+     *
+     * @param text
+     *            the text which should be split
+     * @return the distinct tokens in the order of their first occurrence
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<String>();
+        if (text == null) {
+            return tokens;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+
+    private Map<Integer, Float> scoreAll(List<Postings> queryPostings) {
+        Postings[] sorted = queryPostings.toArray(new Postings[queryPostings.size()]);
+        Arrays.sort(sorted, new Comparator<Postings>() {
+
+            @Override
+            public int compare(Postings first, Postings second) {
+                return first.size - second.size;
+            }
+        });
+
+        // start with the rarest term and look up the candidates in the others
+        Map<Integer, Float> scores = new LinkedHashMap<Integer, Float>();
+        float rarestIdf = idf(sorted[0]);
+        for (int i = 0; i < sorted[0].size; i++) {
+            int documentId = sorted[0].documentIds[i];
+            if (documents.get(documentId) != null) {
+                scores.put(documentId, sorted[0].weights[i] * rarestIdf);
+            }
+        }
+
+        for (int p = 1; p < sorted.length && !scores.isEmpty(); p++) {
+            float idf = idf(sorted[p]);
+            Map<Integer, Float> remaining = new LinkedHashMap<Integer, Float>();
+            for (Map.Entry<Integer, Float> score : scores.entrySet()) {
+                int index = Arrays.binarySearch(sorted[p].documentIds, 0, sorted[p].size, score.getKey());
+                if (index >= 0) {
+                    remaining.put(score.getKey(), score.getValue() + sorted[p].weights[index] * idf);
+                }
+            }
+            scores = remaining;
+        }
+
+        return scores;
+    }
+
+    private Map<Integer, Float> scoreAny(List<Postings> queryPostings) {
+        Map<Integer, Float> scores = new HashMap<Integer, Float>();
+
+        for (Postings termPostings : queryPostings) {
+            float idf = idf(termPostings);
+            for (int i = 0; i < termPostings.size; i++) {
+                int documentId = termPostings.documentIds[i];
+                if (documents.get(documentId) == null) {
+                    continue;
+                }
+
+                Float score = scores.get(documentId);
+                float weight = termPostings.weights[i] * idf;
+                scores.put(documentId, score == null ? weight : score + weight);
+            }
+        }
+
+        return scores;
+    }
+
+    private float idf(Postings termPostings) {
+        return (float) Math.log(1 + (double) documentIds.size() / termPostings.liveCount);
+    }
+
+    /**
+     * Drops removed documents from the postings by indexing the remaining
+     * entries again.
+     */
+    private void compact() {
+        List<Entry> remaining = new ArrayList<Entry>(documentIds.size());
+        for (Entry entry : documents) {
+            if (entry != null) {
+                remaining.add(entry);
+            }
+        }
+
+        postings.clear();
+        documentIds.clear();
+        documents = new ArrayList<Entry>(remaining.size());
+        documentTerms = new ArrayList<String[]>(remaining.size());
+        removedCount = 0;
+
+        for (Entry entry : remaining) {
+            add(entry);
+        }
+    }
+
+    private static Map<String, Float> weighTerms(Entry entry) {
+        Map<String, Float> weights = new LinkedHashMap<String, Float>();
+
+        for (Property property : entry.getProperties()) {
+            if (PASSWORD.equals(property.getKey()) || property.isProtected()) {
+                continue;
+            }
+
+            float fieldWeight = weighField(property.getKey());
+            for (String token : tokenize(property.getValue())) {
+                Float weight = weights.get(token);
+                weights.put(token, weight == null ? fieldWeight : weight + fieldWeight);
+            }
+        }
+
+        return weights;
+    }
+
+    private static float weighField(String key) {
+        if (TITLE.equals(key)) {
+            return TITLE_WEIGHT;
+        }
+        if (USER_NAME.equals(key)) {
+            return USER_NAME_WEIGHT;
+        }
+        if (URL.equals(key)) {
+            return URL_WEIGHT;
+        }
+        return DEFAULT_WEIGHT;
+    }
+
+    /**
+     * The documents which contain a term, sorted by document id, and the
+     * weight of the term in each document. Removed documents stay in the
+     * postings until the index is compacted.
+     */
+    private static class Postings {
+
+        private int[] documentIds = new int[1];
+        private float[] weights = new float[1];
+        private int size;
+        private int liveCount;
+
+        void add(int documentId, float weight) {
+            if (size == documentIds.length) {
+                documentIds = Arrays.copyOf(documentIds, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+
+            documentIds[size] = documentId;
+            weights[size] = weight;
+            size++;
+            liveCount++;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.slackspace.openkeepass.util.StringUtils;
+
+/**
+ * A case insensitive search index over one text of each of a list of
+ * elements, e.g. the titles of entries.
+ * <p>
+ * Exact matches are looked up in a hash map of the case folded texts,
+ * prefixes with a binary search over the sorted texts and substrings through
+ * an index of all character n-grams up to a length of three. Longer
+ * substrings are looked up by the rarest of their trigrams and the
+ * candidates are verified.
+ * <p>
+ * Matching follows {@link String#equalsIgnoreCase(String)} for exact queries
+ * and compares the {@link String#toLowerCase()} forms for prefix and
+ * substring queries. Results are returned in the order of the indexed
+ * elements. Elements without a text are never found.
+ *
+ * @param <T>
+ *            the type of the indexed elements
+ */
+public class TextIndex<T> {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final List<T> elements;
+    private final String[] lowerCaseTexts;
+    private final Map<String, List<Integer>> exactTexts = new HashMap<String, List<Integer>>();
+    private final Map<String, List<Integer>> grams = new HashMap<String, List<Integer>>();
+    private final Integer[] sortedPositions;
+
+    /**
+     * Indexes the given elements.
+     *
+     * @param elements
+     *            the elements to index
+     * @param texts
+     *            the text of each element, null if the element has no text
+     */
+    public TextIndex(List<T> elements, List<String> texts) {
+        if (elements.size() != texts.size()) {
+            throw new IllegalArgumentException("Every element needs exactly one text.");
+        }
+
+        this.elements = new ArrayList<T>(elements);
+        this.lowerCaseTexts = new String[elements.size()];
+
+        List<Integer> positions = new ArrayList<Integer>();
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null) {
+                continue;
+            }
+
+            lowerCaseTexts[i] = text.toLowerCase();
+            positions.add(i);
+
+            add(exactTexts, StringUtils.foldCase(text), i);
+            for (int length = 1; length <= GRAM_LENGTH; length++) {
+                for (int start = 0; start + length <= lowerCaseTexts[i].length(); start++) {
+                    add(grams, lowerCaseTexts[i].substring(start, start + length), i);
+                }
+            }
+        }
+
+        sortedPositions = positions.toArray(new Integer[positions.size()]);
+        Arrays.sort(sortedPositions, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer first, Integer second) {
+                return lowerCaseTexts[first].compareTo(lowerCaseTexts[second]);
+            }
+        });
+    }
+
+    /**
+     * Returns the elements whose text equals the query, ignoring case.
+     *
+     * @param query
+     *            the text which should be searched
+     * @return the matching elements
+     */
+    public List<T> findExact(String query) {
+        if (query == null) {
+            return new ArrayList<T>();
+        }
+
+        return toElements(exactTexts.get(StringUtils.foldCase(query)));
+    }
+
+    /**
+     * Returns the elements whose text starts with the query, ignoring case.
+     *
+     * @param query
+     *            the prefix which should be searched
+     * @return the matching elements
+     */
+    public List<T> findPrefix(String query) {
+        if (query == null) {
+            return new ArrayList<T>();
+        }
+
+        String prefix = query.toLowerCase();
+
+        int low = 0;
+        int high = sortedPositions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lowerCaseTexts[sortedPositions[middle]].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        List<Integer> matches = new ArrayList<Integer>();
+        for (int i = low; i < sortedPositions.length && lowerCaseTexts[sortedPositions[i]].startsWith(prefix); i++) {
+            matches.add(sortedPositions[i]);
+        }
+        Collections.sort(matches);
+
+        return toElements(matches);
+    }
+
+    /**
+     * Returns the elements whose text contains the query, ignoring case.
+     *
+     * @param query
+     *            the text which should be searched
+     * @return the matching elements
+     */
+    public List<T> findContaining(String query) {
+        if (query == null) {
+            return new ArrayList<T>();
+        }
+
+        String substring = query.toLowerCase();
+        if (substring.isEmpty()) {
+            List<Integer> all = new ArrayList<Integer>(Arrays.asList(sortedPositions));
+            Collections.sort(all);
+            return toElements(all);
+        }
+        if (substring.length() <= GRAM_LENGTH) {
+            return toElements(grams.get(substring));
+        }
+
+        List<Integer> candidates = null;
+        for (int start = 0; start + GRAM_LENGTH <= substring.length(); start++) {
+            List<Integer> positions = grams.get(substring.substring(start, start + GRAM_LENGTH));
+            if (positions == null) {
+                return new ArrayList<T>();
+            }
+            if (candidates == null || positions.size() < candidates.size()) {
+                candidates = positions;
+            }
+        }
+
+        List<Integer> matches = new ArrayList<Integer>();
+        for (Integer candidate : candidates) {
+            if (lowerCaseTexts[candidate].contains(substring)) {
+                matches.add(candidate);
+            }
+        }
+
+        return toElements(matches);
+    }
+
+    private List<T> toElements(List<Integer> positions) {
+        List<T> result = new ArrayList<T>();
+
+        if (positions != null) {
+            for (Integer position : positions) {
+                result.add(elements.get(position));
+            }
+        }
+
+        return result;
+    }
+
+    private static void add(Map<String, List<Integer>> index, String key, int position) {
+        List<Integer> positions = index.get(key);
+        if (positions == null) {
+            positions = new ArrayList<Integer>();
+            index.put(key, positions);
+        }
+
+        // a text can contain the same n-gram more than once
+        if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+            positions.add(position);
+        }
+    }
+}
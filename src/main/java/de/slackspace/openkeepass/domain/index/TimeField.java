@@ -0,0 +1,99 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.Calendar;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.Times;
+import de.slackspace.openkeepass.util.TimestampUtils;
+
+/**
+ * The timestamps of entries and groups which can be indexed and queried.
+ *
+ */
+public enum TimeField {
+
+    CREATION {
+        @Override
+        long millisOf(Times times) {
+            return times.getCreationTimeMillis();
+        }
+    },
+    LAST_MODIFICATION {
+        @Override
+        long millisOf(Times times) {
+            return times.getLastModificationTimeMillis();
+        }
+    },
+    LAST_ACCESS {
+        @Override
+        long millisOf(Times times) {
+            return times.getLastAccessTimeMillis();
+        }
+    },
+    /**
+     * The expiry time, only for entries and groups which expire at all.
+     * KeePass stores an expiry time for all of them.
+     */
+    EXPIRY {
+        @Override
+        long millisOf(Times times) {
+            return times.expires() ? times.getExpiryTimeMillis() : TimestampUtils.NONE;
+        }
+    };
+
+    abstract long millisOf(Times times);
+
+    /**
+     * Returns this timestamp of the given entry.
+     *
+     * @param entry
+     *            the entry
+     * @return the timestamp or null if the entry has no such timestamp
+     */
+    public Calendar of(Entry entry) {
+        return TimestampUtils.toCalendar(millisOf(entry));
+    }
+
+    /**
+     * Returns this timestamp of the given group.
+     *
+     * @param group
+     *            the group
+     * @return the timestamp or null if the group has no such timestamp
+     */
+    public Calendar of(Group group) {
+        return TimestampUtils.toCalendar(millisOf(group));
+    }
+
+    /**
+     * Returns this timestamp of the given entry without creating a calendar.
+     *
+     * @param entry
+     *            the entry
+     * @return the milliseconds since the epoch or {@link TimestampUtils#NONE}
+     *         if the entry has no such timestamp
+     */
+    public long millisOf(Entry entry) {
+        return millisOfTimes(entry.getTimes());
+    }
+
+    /**
+     * Returns this timestamp of the given group without creating a calendar.
+     *
+     * @param group
+     *            the group
+     * @return the milliseconds since the epoch or {@link TimestampUtils#NONE}
+     *         if the group has no such timestamp
+     */
+    public long millisOf(Group group) {
+        return millisOfTimes(group.getTimes());
+    }
+
+    private long millisOfTimes(Times times) {
+        if (times == null) {
+            return TimestampUtils.NONE;
+        }
+        return millisOf(times);
+    }
+}
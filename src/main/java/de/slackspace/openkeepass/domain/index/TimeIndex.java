@@ -0,0 +1,372 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.util.TimestampUtils;
+
+/**
+ * Indexes entries or groups by one of their timestamps for range queries,
+ * e.g. for reports like "expiring in the next 7 days" or "not modified for a
+ * year".
+ * <p>
+ * The elements are kept in a skip list sorted by the timestamp in
+ * milliseconds, so a range is found in logarithmic time and read without
+ * comparing {@link Calendar} objects. Elements without the timestamp are not
+ * indexed. Elements with the same timestamp keep the order in which they
+ * have been added.
+ * <p>
+ * The index can be updated incrementally by {@link #add(Object)} and
+ * {@link #remove(UUID)}, e.g. from the changes published by a
+ * {@link de.slackspace.openkeepass.DatabaseWatcher}. Queries may run
+ * concurrently with updates.
+ *
+ * @param <T>
+ *            the type of the indexed elements, {@link Entry} or {@link Group}
+ * @see ExpiryScheduler
+ */
+public class TimeIndex<T> {
+
+    private final TimeField field;
+    private final Accessor<T> accessor;
+    private final ConcurrentSkipListMap<Key, T> elements = new ConcurrentSkipListMap<Key, T>();
+    private final Map<UUID, Key> keys = new HashMap<UUID, Key>();
+    private final List<Runnable> updateListeners = new CopyOnWriteArrayList<Runnable>();
+    private long sequence;
+
+    private TimeIndex(TimeField field, Accessor<T> accessor) {
+        if (field == null) {
+            throw new IllegalArgumentException("You must provide a time field.");
+        }
+
+        this.field = field;
+        this.accessor = accessor;
+    }
+
+    /**
+     * Indexes the given timestamp of all entries of the given database.
+     *
+     * @param keePassFile
+     *            the database which should be indexed
+     * @param field
+     *            the timestamp which should be indexed
+     * @return the index
+     */
+    public static TimeIndex<Entry> forEntries(KeePassFile keePassFile, TimeField field) {
+        return forEntries(keePassFile.iterateEntries(), field);
+    }
+
+    /**
+     * Indexes the given timestamp of the given entries.
+     *
+     * @param entries
+     *            the entries which should be indexed
+     * @param field
+     *            the timestamp which should be indexed
+     * @return the index
+     */
+    public static TimeIndex<Entry> forEntries(Iterable<Entry> entries, TimeField field) {
+        TimeIndex<Entry> index = new TimeIndex<Entry>(field, new EntryAccessor());
+        for (Entry entry : entries) {
+            index.add(entry);
+        }
+        return index;
+    }
+
+    /**
+     * Indexes the given timestamp of all groups of the given database.
+     *
+     * @param keePassFile
+     *            the database which should be indexed
+     * @param field
+     *            the timestamp which should be indexed
+     * @return the index
+     */
+    public static TimeIndex<Group> forGroups(KeePassFile keePassFile, TimeField field) {
+        return forGroups(keePassFile.iterateGroups(), field);
+    }
+
+    /**
+     * Indexes the given timestamp of the given groups.
+     *
+     * @param groups
+     *            the groups which should be indexed
+     * @param field
+     *            the timestamp which should be indexed
+     * @return the index
+     */
+    public static TimeIndex<Group> forGroups(Iterable<Group> groups, TimeField field) {
+        TimeIndex<Group> index = new TimeIndex<Group>(field, new GroupAccessor());
+        for (Group group : groups) {
+            index.add(group);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the indexed timestamp.
+     *
+     * @return the timestamp of the elements
+     */
+    public TimeField getField() {
+        return field;
+    }
+
+    /**
+     * Adds an element to the index. An element with the same UUID which has
+     * been added before is replaced. An element without the timestamp only
+     * removes the previous version.
+     *
+     * @param element
+     *            the element which should be indexed
+     */
+    public void add(T element) {
+        if (element == null) {
+            throw new IllegalArgumentException("You must provide an element.");
+        }
+
+        synchronized (this) {
+            UUID uuid = accessor.getUuid(element);
+            removeKey(uuid);
+
+            long time = accessor.getTime(field, element);
+            if (time != TimestampUtils.NONE) {
+                Key key = new Key(time, sequence++);
+                elements.put(key, element);
+                if (uuid != null) {
+                    keys.put(uuid, key);
+                }
+            }
+        }
+
+        fireUpdate();
+    }
+
+    /**
+     * Removes the element with the given UUID from the index.
+     *
+     * @param uuid
+     *            the UUID of the element
+     * @return true if the element has been indexed
+     */
+    public boolean remove(UUID uuid) {
+        boolean removed;
+        synchronized (this) {
+            removed = removeKey(uuid);
+        }
+
+        if (removed) {
+            fireUpdate();
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of indexed elements.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * Returns the elements whose timestamp is in the given range, oldest
+     * first.
+     *
+     * @param from
+     *            the start of the range (inclusive) or null for no lower bound
+     * @param to
+     *            the end of the range (exclusive) or null for no upper bound
+     * @return the matching elements
+     */
+    public List<T> findBetween(Calendar from, Calendar to) {
+        return new ArrayList<T>(range(from, to).values());
+    }
+
+    /**
+     * Returns the number of elements whose timestamp is in the given range.
+     * This takes time proportional to the number of matching elements.
+     *
+     * @param from
+     *            the start of the range (inclusive) or null for no lower bound
+     * @param to
+     *            the end of the range (exclusive) or null for no upper bound
+     * @return the number of matching elements
+     */
+    public int countBetween(Calendar from, Calendar to) {
+        return range(from, to).size();
+    }
+
+    /**
+     * Returns the elements with the most recent timestamps, newest first,
+     * e.g. the recently accessed entries.
+     *
+     * @param maxResults
+     *            the maximum number of elements
+     * @return the newest elements
+     */
+    public List<T> findLatest(int maxResults) {
+        List<T> result = new ArrayList<T>();
+
+        for (T element : elements.descendingMap().values()) {
+            if (result.size() >= maxResults) {
+                break;
+            }
+            result.add(element);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the elements whose timestamp is in the given range of
+     * milliseconds, oldest first.
+     */
+    List<T> findBetween(long from, long to) {
+        return new ArrayList<T>(elements.subMap(Key.first(from), true, Key.first(to), false).values());
+    }
+
+    /**
+     * Returns the first timestamp at or after the given time in
+     * milliseconds, or null if there is none.
+     */
+    Long nextTime(long from) {
+        Key key = elements.ceilingKey(Key.first(from));
+        return key == null ? null : key.time;
+    }
+
+    void addUpdateListener(Runnable listener) {
+        updateListeners.add(listener);
+    }
+
+    void removeUpdateListener(Runnable listener) {
+        updateListeners.remove(listener);
+    }
+
+    private NavigableMap<Key, T> range(Calendar from, Calendar to) {
+        if (from != null && to != null) {
+            if (from.getTimeInMillis() >= to.getTimeInMillis()) {
+                return new ConcurrentSkipListMap<Key, T>();
+            }
+            return elements.subMap(Key.first(from.getTimeInMillis()), true, Key.first(to.getTimeInMillis()), false);
+        }
+        if (from != null) {
+            return elements.tailMap(Key.first(from.getTimeInMillis()), true);
+        }
+        if (to != null) {
+            return elements.headMap(Key.first(to.getTimeInMillis()), false);
+        }
+        return elements;
+    }
+
+    private boolean removeKey(UUID uuid) {
+        if (uuid == null) {
+            return false;
+        }
+
+        Key key = keys.remove(uuid);
+        if (key == null) {
+            return false;
+        }
+
+        elements.remove(key);
+        return true;
+    }
+
+    private void fireUpdate() {
+        for (Runnable listener : updateListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * The position of an element in the skip list: its timestamp and the
+     * order in which it has been added.
+     */
+    private static class Key implements Comparable<Key> {
+
+        private final long time;
+        private final long sequence;
+
+        Key(long time, long sequence) {
+            this.time = time;
+            this.sequence = sequence;
+        }
+
+        static Key first(long time) {
+            return new Key(time, Long.MIN_VALUE);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            if (sequence != other.sequence) {
+                return sequence < other.sequence ? -1 : 1;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return time == other.time && sequence == other.sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (time ^ (time >>> 32)) * 31 + (int) (sequence ^ (sequence >>> 32));
+        }
+    }
+
+    /**
+     * Reads the UUID and timestamps of an element.
+     */
+    private interface Accessor<T> {
+
+        UUID getUuid(T element);
+
+        long getTime(TimeField field, T element);
+    }
+
+    private static class EntryAccessor implements Accessor<Entry> {
+
+        @Override
+        public UUID getUuid(Entry element) {
+            return element.getUuid();
+        }
+
+        @Override
+        public long getTime(TimeField field, Entry element) {
+            return field.millisOf(element);
+        }
+    }
+
+    private static class GroupAccessor implements Accessor<Group> {
+
+        @Override
+        public UUID getUuid(Group element) {
+            return element.getUuid();
+        }
+
+        @Override
+        public long getTime(TimeField field, Group element) {
+            return field.millisOf(element);
+        }
+    }
+}
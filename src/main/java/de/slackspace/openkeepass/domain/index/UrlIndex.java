@@ -0,0 +1,339 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.net.IDN;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.KeePassFile;
+
+/**
+ * Indexes entries by the host of their URL for credential matching.
+ * <p>
+ * The URL of every entry is parsed once: scheme, user info, port, path,
+ * query and fragment are dropped and the host is lower cased and converted
+ * to its ASCII form. The labels of the host are stored in a trie in reverse
+ * order, so <tt>https://login.example.com/</tt> is stored under
+ * <tt>com → example → login</tt>. A host which starts with <tt>*.</tt> is a
+ * wildcard which matches all subdomains. IP addresses are stored as a single
+ * label.
+ * <p>
+ * All lookups walk one trie node per label of the queried host. The host of
+ * every entry is kept with it, so an entry is removed from the node it has
+ * been added to even if its URL has changed since, and nodes left without
+ * entries are pruned.
+ *
+ */
+public class UrlIndex {
+
+    private static final String WILDCARD_PREFIX = "*.";
+
+    private final Node root = new Node();
+    private final Map<UUID, IndexedEntry> entries = new HashMap<UUID, IndexedEntry>();
+
+    /**
+     * Creates an empty index.
+     */
+    public UrlIndex() {
+    }
+
+    /**
+     * Creates an index of all entries of the given database.
+     *
+     * @param keePassFile
+     *            the database which should be indexed
+     */
+    public UrlIndex(KeePassFile keePassFile) {
+        for (Entry entry : keePassFile.iterateEntries()) {
+            add(entry);
+        }
+    }
+
+    /**
+     * Adds an entry to the index. An entry with the same UUID which has been
+     * added before is replaced. Entries without a URL with a host are not
+     * indexed.
+     *
+     * @param entry
+     *            the entry which should be indexed
+     */
+    public synchronized void add(Entry entry) {
+        if (entry == null || entry.getUuid() == null) {
+            throw new IllegalArgumentException("You must provide an entry with a UUID.");
+        }
+
+        remove(entry.getUuid());
+
+        String host = normalizeHost(entry.getUrl());
+        if (host == null) {
+            return;
+        }
+
+        if (host.startsWith(WILDCARD_PREFIX)) {
+            getOrCreate(host.substring(WILDCARD_PREFIX.length())).wildcardEntries.add(entry);
+        } else {
+            getOrCreate(host).entries.add(entry);
+        }
+        entries.put(entry.getUuid(), new IndexedEntry(entry, host));
+    }
+
+    /**
+     * Removes the entry with the given UUID from the index.
+     *
+     * @param uuid
+     *            the UUID of the entry
+     * @return true if the entry has been indexed
+     */
+    public synchronized boolean remove(UUID uuid) {
+        IndexedEntry indexed = entries.remove(uuid);
+        if (indexed == null) {
+            return false;
+        }
+
+        boolean wildcard = indexed.host.startsWith(WILDCARD_PREFIX);
+        String[] labels = reverseLabels(wildcard ? indexed.host.substring(WILDCARD_PREFIX.length()) : indexed.host);
+
+        List<Node> path = new ArrayList<Node>(labels.length + 1);
+        path.add(root);
+        for (String label : labels) {
+            path.add(path.get(path.size() - 1).children.get(label));
+        }
+
+        Node node = path.get(path.size() - 1);
+        removeByIdentity(wildcard ? node.wildcardEntries : node.entries, indexed.entry);
+
+        for (int i = labels.length; i > 0 && path.get(i).isEmpty(); i--) {
+            path.get(i - 1).children.remove(labels[i - 1]);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the entries whose URL has exactly the given host.
+     *
+     * @param hostOrUrl
+     *            a host or a URL
+     * @return the matching entries
+     */
+    public synchronized List<Entry> findByHost(String hostOrUrl) {
+        Node node = find(normalizeHost(hostOrUrl));
+        if (node == null) {
+            return new ArrayList<Entry>();
+        }
+
+        return new ArrayList<Entry>(node.entries);
+    }
+
+    /**
+     * Returns the entries whose URL has the given domain or any of its
+     * subdomains as host, including wildcard entries below the domain.
+     *
+     * @param domain
+     *            a domain, e.g. <tt>example.com</tt>
+     * @return the matching entries
+     */
+    public synchronized List<Entry> findByDomain(String domain) {
+        List<Entry> result = new ArrayList<Entry>();
+
+        Node node = find(normalizeHost(domain));
+        if (node != null) {
+            collect(node, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the entries which should be offered for the given host: the
+     * entries for exactly that host first, followed by wildcard entries and
+     * entries for its parent domains, nearest domain first.
+     * <p>
+     * An entry for <tt>example.com</tt> or <tt>*.example.com</tt> matches the
+     * host <tt>login.example.com</tt>.
+     *
+     * @param hostOrUrl
+     *            a host or a URL
+     * @return the matching entries
+     */
+    public synchronized List<Entry> findMatching(String hostOrUrl) {
+        String host = normalizeHost(hostOrUrl);
+        List<Entry> result = new ArrayList<Entry>();
+        if (host == null || host.startsWith(WILDCARD_PREFIX)) {
+            return result;
+        }
+
+        String[] labels = reverseLabels(host);
+        List<Node> path = new ArrayList<Node>(labels.length);
+
+        Node node = root;
+        for (String label : labels) {
+            node = node.children.get(label);
+            if (node == null) {
+                break;
+            }
+            path.add(node);
+        }
+
+        if (path.size() == labels.length) {
+            result.addAll(path.get(path.size() - 1).entries);
+        }
+
+        // the host itself is never matched by a wildcard of its own name
+        for (int i = Math.min(path.size(), labels.length - 1) - 1; i >= 0; i--) {
+            result.addAll(path.get(i).wildcardEntries);
+            result.addAll(path.get(i).entries);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the normalized host of the given URL.
+     *
+     * @param url
+     *            a URL or a host
+     * @return the host or null if the URL does not contain one
+     */
+    public static String normalizeHost(String url) {
+        if (url == null) {
+            return null;
+        }
+
+        String host = url.trim();
+
+        int schemeEnd = host.indexOf("://");
+        if (schemeEnd >= 0) {
+            host = host.substring(schemeEnd + 3);
+        } else if (host.startsWith("//")) {
+            host = host.substring(2);
+        }
+
+        host = cutAt(host, '/');
+        host = cutAt(host, '?');
+        host = cutAt(host, '#');
+        host = host.substring(host.lastIndexOf('@') + 1);
+
+        if (host.startsWith("[")) {
+            int end = host.indexOf(']');
+            host = end < 0 ? host : host.substring(0, end + 1);
+        } else {
+            host = cutAt(host, ':');
+        }
+
+        while (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+
+        if (host.isEmpty() || host.indexOf(' ') >= 0 || host.startsWith(".") || host.contains("..")) {
+            return null;
+        }
+
+        if (!host.startsWith("[")) {
+            try {
+                host = IDN.toASCII(host, IDN.ALLOW_UNASSIGNED);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        return host.toLowerCase(Locale.ENGLISH);
+    }
+
+    private Node getOrCreate(String host) {
+        Node node = root;
+        for (String label : reverseLabels(host)) {
+            Node child = node.children.get(label);
+            if (child == null) {
+                child = new Node();
+                node.children.put(label, child);
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private Node find(String host) {
+        if (host == null) {
+            return null;
+        }
+
+        Node node = root;
+        for (String label : reverseLabels(host)) {
+            node = node.children.get(label);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private static void removeByIdentity(List<Entry> list, Entry entry) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == entry) {
+                list.remove(i);
+                return;
+            }
+        }
+    }
+
+    private static void collect(Node node, List<Entry> result) {
+        result.addAll(node.entries);
+        result.addAll(node.wildcardEntries);
+
+        for (Node child : node.children.values()) {
+            collect(child, result);
+        }
+    }
+
+    private static String[] reverseLabels(String host) {
+        if (host.startsWith("[") || host.matches("[0-9.]+")) {
+            return new String[] { host };
+        }
+
+        String[] labels = host.split("\\.");
+        for (int i = 0; i < labels.length / 2; i++) {
+            String label = labels[i];
+            labels[i] = labels[labels.length - 1 - i];
+            labels[labels.length - 1 - i] = label;
+        }
+        return labels;
+    }
+
+    private static String cutAt(String text, char delimiter) {
+        int index = text.indexOf(delimiter);
+        return index < 0 ? text : text.substring(0, index);
+    }
+
+    /**
+     * A label of a host and the entries whose host ends at this label.
+     */
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private final List<Entry> entries = new ArrayList<Entry>();
+        private final List<Entry> wildcardEntries = new ArrayList<Entry>();
+
+        boolean isEmpty() {
+            return children.isEmpty() && entries.isEmpty() && wildcardEntries.isEmpty();
+        }
+    }
+
+    /**
+     * An indexed entry and the normalized host it has been added under.
+     */
+    private static class IndexedEntry {
+
+        private final Entry entry;
+        private final String host;
+
+        IndexedEntry(Entry entry, String host) {
+            this.entry = entry;
+            this.host = host;
+        }
+    }
+}
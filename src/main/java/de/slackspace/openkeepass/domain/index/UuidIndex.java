@@ -0,0 +1,79 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+
+/**
+ * Maps the UUIDs of all entries and groups below a root group to the
+ * elements.
+ * <p>
+ * The root group itself is not indexed. If multiple elements share a UUID the
+ * UUID is mapped to null, so lookups of ambiguous UUIDs find nothing.
+ *
+ */
+public class UuidIndex {
+
+    private final Map<UUID, Entry> entries = new HashMap<UUID, Entry>();
+    private final Map<UUID, Group> groups = new HashMap<UUID, Group>();
+
+    /**
+     * Indexes all entries and groups below the given root group.
+     *
+     * @param root
+     *            the root group or null for an empty index
+     */
+    public UuidIndex(Group root) {
+        if (root != null) {
+            index(root);
+        }
+    }
+
+    /**
+     * Returns the entry with the given UUID.
+     *
+     * @param uuid
+     *            the uuid which should be searched
+     * @return the found entry or null
+     */
+    public Entry getEntry(UUID uuid) {
+        return entries.get(uuid);
+    }
+
+    /**
+     * Returns the group with the given UUID.
+     *
+     * @param uuid
+     *            the uuid which should be searched
+     * @return the found group or null
+     */
+    public Group getGroup(UUID uuid) {
+        return groups.get(uuid);
+    }
+
+    private void index(Group parentGroup) {
+        for (Entry entry : parentGroup.getEntries()) {
+            put(entries, entry.getUuid(), entry);
+        }
+
+        for (Group group : parentGroup.getGroups()) {
+            put(groups, group.getUuid(), group);
+            index(group);
+        }
+    }
+
+    private static <T> void put(Map<UUID, T> index, UUID uuid, T element) {
+        if (uuid == null) {
+            return;
+        }
+
+        if (index.containsKey(uuid)) {
+            index.put(uuid, null);
+        } else {
+            index.put(uuid, element);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package de.slackspace.openkeepass.domain.query;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.xml.bind.DatatypeConverter;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupTraversal;
+import de.slackspace.openkeepass.domain.Property;
+import de.slackspace.openkeepass.domain.filter.Filter;
+import de.slackspace.openkeepass.domain.index.TimeField;
+import de.slackspace.openkeepass.domain.index.UrlIndex;
+import de.slackspace.openkeepass.util.TimestampUtils;
+
+/**
+ * A condition on entries which can be combined with other conditions and
+ * executed by a {@link QueryPlanner}.
+ * <p>
+ * Unlike a plain {@link Filter} the structure of a query is known to the
+ * planner, so it can answer a query from an index instead of scanning all
+ * entries:
+ *
+ * <pre>
+ * EntryQuery query = EntryQuery.titleStartsWith("mail").and(EntryQuery.modifiedBetween(lastWeek, null));
+ * List&lt;Entry&gt; entries = new QueryPlanner(keePassFile).plan(query).execute();
+ * </pre>
+ *
+ * Field values are compared ignoring case, exact values like
+ * {@link String#equalsIgnoreCase(String)} and prefixes and substrings by
+ * their {@link String#toLowerCase()} forms. Time ranges include their start
+ * and exclude their end. Entries without the queried field or timestamp do
+ * not match.
+ * <p>
+ * A query is also a {@link Filter} and can be used wherever a filter is
+ * expected.
+ *
+ */
+public abstract class EntryQuery implements Filter<Entry> {
+
+    private static final String TITLE = "Title";
+    private static final String USER_NAME = "UserName";
+
+    EntryQuery() {
+    }
+
+    /**
+     * Matches the entry with the given UUID.
+     *
+     * @param uuid
+     *            the UUID of the entry
+     * @return the query
+     */
+    public static EntryQuery uuid(UUID uuid) {
+        if (uuid == null) {
+            throw new IllegalArgumentException("You must provide a UUID.");
+        }
+        return new UuidQuery(uuid);
+    }
+
+    /**
+     * Matches entries whose property with the given key equals the value.
+     *
+     * @param key
+     *            the key of the property, e.g. <tt>UserName</tt>
+     * @param value
+     *            the value which should be matched
+     * @return the query
+     */
+    public static EntryQuery fieldEquals(String key, String value) {
+        return new FieldQuery(key, FieldQuery.Operator.EQUALS, value);
+    }
+
+    /**
+     * Matches entries whose property with the given key starts with the
+     * prefix.
+     *
+     * @param key
+     *            the key of the property
+     * @param prefix
+     *            the prefix which should be matched
+     * @return the query
+     */
+    public static EntryQuery fieldStartsWith(String key, String prefix) {
+        return new FieldQuery(key, FieldQuery.Operator.STARTS_WITH, prefix);
+    }
+
+    /**
+     * Matches entries whose property with the given key contains the text.
+     *
+     * @param key
+     *            the key of the property
+     * @param text
+     *            the text which should be matched
+     * @return the query
+     */
+    public static EntryQuery fieldContains(String key, String text) {
+        return new FieldQuery(key, FieldQuery.Operator.CONTAINS, text);
+    }
+
+    public static EntryQuery titleEquals(String title) {
+        return fieldEquals(TITLE, title);
+    }
+
+    public static EntryQuery titleStartsWith(String prefix) {
+        return fieldStartsWith(TITLE, prefix);
+    }
+
+    public static EntryQuery titleContains(String text) {
+        return fieldContains(TITLE, text);
+    }
+
+    public static EntryQuery usernameEquals(String username) {
+        return fieldEquals(USER_NAME, username);
+    }
+
+    /**
+     * Matches entries whose URL has exactly the given host.
+     *
+     * @param hostOrUrl
+     *            a host or a URL
+     * @return the query
+     */
+    public static EntryQuery host(String hostOrUrl) {
+        String host = UrlIndex.normalizeHost(hostOrUrl);
+        if (host == null) {
+            throw new IllegalArgumentException("You must provide a valid host.");
+        }
+        return new HostQuery(host);
+    }
+
+    /**
+     * Matches entries whose timestamp is in the given range.
+     *
+     * @param field
+     *            the timestamp which should be compared
+     * @param from
+     *            the start of the range (inclusive) or null for no lower bound
+     * @param to
+     *            the end of the range (exclusive) or null for no upper bound
+     * @return the query
+     */
+    public static EntryQuery timeBetween(TimeField field, Calendar from, Calendar to) {
+        if (field == null) {
+            throw new IllegalArgumentException("You must provide a time field.");
+        }
+        return new TimeRangeQuery(field, from, to);
+    }
+
+    public static EntryQuery createdBetween(Calendar from, Calendar to) {
+        return timeBetween(TimeField.CREATION, from, to);
+    }
+
+    public static EntryQuery modifiedBetween(Calendar from, Calendar to) {
+        return timeBetween(TimeField.LAST_MODIFICATION, from, to);
+    }
+
+    public static EntryQuery expiresBetween(Calendar from, Calendar to) {
+        return timeBetween(TimeField.EXPIRY, from, to);
+    }
+
+    /**
+     * Matches the entries of the given group and its subgroups.
+     *
+     * @param group
+     *            the group which should be searched
+     * @return the query
+     */
+    public static EntryQuery inGroup(Group group) {
+        if (group == null) {
+            throw new IllegalArgumentException("You must provide a group.");
+        }
+        return new GroupQuery(group);
+    }
+
+    /**
+     * Matches entries which do not match the given query.
+     *
+     * @param query
+     *            the query which should be negated
+     * @return the query
+     */
+    public static EntryQuery not(EntryQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("You must provide a query.");
+        }
+        return new NotQuery(query);
+    }
+
+    /**
+     * Matches entries which match this and the given query.
+     *
+     * @param other
+     *            the other query
+     * @return the combined query
+     */
+    public EntryQuery and(EntryQuery other) {
+        if (other == null) {
+            throw new IllegalArgumentException("You must provide a query.");
+        }
+        List<EntryQuery> queries = new ArrayList<EntryQuery>();
+        addOperands(queries, this, AndQuery.class);
+        addOperands(queries, other, AndQuery.class);
+        return new AndQuery(queries);
+    }
+
+    /**
+     * Matches entries which match this or the given query.
+     *
+     * @param other
+     *            the other query
+     * @return the combined query
+     */
+    public EntryQuery or(EntryQuery other) {
+        if (other == null) {
+            throw new IllegalArgumentException("You must provide a query.");
+        }
+        List<EntryQuery> queries = new ArrayList<EntryQuery>();
+        addOperands(queries, this, OrQuery.class);
+        addOperands(queries, other, OrQuery.class);
+        return new OrQuery(queries);
+    }
+
+    private static void addOperands(List<EntryQuery> queries, EntryQuery query, Class<? extends EntryQuery> type) {
+        // a AND (b AND c) is flattened into a AND b AND c
+        if (query instanceof AndQuery && type == AndQuery.class) {
+            queries.addAll(((AndQuery) query).queries);
+        } else if (query instanceof OrQuery && type == OrQuery.class) {
+            queries.addAll(((OrQuery) query).queries);
+        } else {
+            queries.add(query);
+        }
+    }
+
+    private static String quote(String value) {
+        return value == null ? "null" : "'" + value + "'";
+    }
+
+    private static String format(Calendar time) {
+        return time == null ? "*" : DatatypeConverter.printDateTime(time);
+    }
+
+    static final class UuidQuery extends EntryQuery {
+
+        final UUID uuid;
+
+        UuidQuery(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        @Override
+        public boolean matches(Entry item) {
+            return uuid.equals(item.getUuid());
+        }
+
+        @Override
+        public String toString() {
+            return "UUID = " + uuid;
+        }
+    }
+
+    static final class FieldQuery extends EntryQuery {
+
+        enum Operator {
+            EQUALS("="), STARTS_WITH("starts with"), CONTAINS("contains");
+
+            private final String symbol;
+
+            Operator(String symbol) {
+                this.symbol = symbol;
+            }
+        }
+
+        final String key;
+        final Operator operator;
+        final String value;
+        private final String lowerCaseValue;
+
+        FieldQuery(String key, Operator operator, String value) {
+            if (key == null) {
+                throw new IllegalArgumentException("You must provide the key of a field.");
+            }
+            if (value == null) {
+                throw new IllegalArgumentException("You must provide a value.");
+            }
+
+            this.key = key;
+            this.operator = operator;
+            this.value = value;
+            this.lowerCaseValue = value.toLowerCase();
+        }
+
+        boolean isTitle() {
+            return TITLE.equalsIgnoreCase(key);
+        }
+
+        @Override
+        public boolean matches(Entry item) {
+            Property property = item.getPropertyByName(key);
+            if (property == null || property.getValue() == null) {
+                return false;
+            }
+
+            switch (operator) {
+            case EQUALS:
+                return property.getValue().equalsIgnoreCase(value);
+            case STARTS_WITH:
+                return property.getValue().toLowerCase().startsWith(lowerCaseValue);
+            default:
+                return property.getValue().toLowerCase().contains(lowerCaseValue);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return key + " " + operator.symbol + " " + quote(value);
+        }
+    }
+
+    static final class HostQuery extends EntryQuery {
+
+        final String host;
+
+        HostQuery(String host) {
+            this.host = host;
+        }
+
+        @Override
+        public boolean matches(Entry item) {
+            return host.equals(UrlIndex.normalizeHost(item.getUrl()));
+        }
+
+        @Override
+        public String toString() {
+            return "host = " + quote(host);
+        }
+    }
+
+    static final class TimeRangeQuery extends EntryQuery {
+
+        final TimeField field;
+        final Calendar from;
+        final Calendar to;
+
+        TimeRangeQuery(TimeField field, Calendar from, Calendar to) {
+            this.field = field;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean matches(Entry item) {
+            long millis = field.millisOf(item);
+            if (millis == TimestampUtils.NONE) {
+                return false;
+            }
+
+            return (from == null || millis >= from.getTimeInMillis()) && (to == null || millis < to.getTimeInMillis());
+        }
+
+        @Override
+        public String toString() {
+            return field + " in [" + format(from) + ", " + format(to) + ")";
+        }
+    }
+
+    static final class GroupQuery extends EntryQuery {
+
+        final Group group;
+        private volatile Set<Entry> entries;
+
+        GroupQuery(Group group) {
+            this.group = group;
+        }
+
+        @Override
+        public boolean matches(Entry item) {
+            Set<Entry> scope = entries;
+            if (scope == null) {
+                // entries are compared by identity, equal copies elsewhere in the tree do not match
+                scope = Collections.newSetFromMap(new IdentityHashMap<Entry, Boolean>());
+                for (Entry entry : GroupTraversal.entries(group)) {
+                    scope.add(entry);
+                }
+                entries = scope;
+            }
+            return scope.contains(item);
+        }
+
+        @Override
+        public String toString() {
+            return "in group " + quote(group.getName());
+        }
+    }
+
+    static final class NotQuery extends EntryQuery {
+
+        final EntryQuery query;
+
+        NotQuery(EntryQuery query) {
+            this.query = query;
+        }
+
+        @Override
+        public boolean matches(Entry item) {
+            return !query.matches(item);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + query;
+        }
+    }
+
+    static final class AndQuery extends EntryQuery {
+
+        final List<EntryQuery> queries;
+
+        AndQuery(List<EntryQuery> queries) {
+            this.queries = queries;
+        }
+
+        @Override
+        public boolean matches(Entry item) {
+            for (EntryQuery query : queries) {
+                if (!query.matches(item)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return join(queries, " AND ");
+        }
+    }
+
+    static final class OrQuery extends EntryQuery {
+
+        final List<EntryQuery> queries;
+
+        OrQuery(List<EntryQuery> queries) {
+            this.queries = queries;
+        }
+
+        @Override
+        public boolean matches(Entry item) {
+            for (EntryQuery query : queries) {
+                if (query.matches(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return join(queries, " OR ");
+        }
+    }
+
+    private static String join(List<EntryQuery> queries, String separator) {
+        StringBuilder builder = new StringBuilder("(");
+        for (int i = 0; i < queries.size(); i++) {
+            if (i > 0) {
+                builder.append(separator);
+            }
+            builder.append(queries.get(i));
+        }
+        return builder.append(')').toString();
+    }
+}
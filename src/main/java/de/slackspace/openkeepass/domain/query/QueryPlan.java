@@ -0,0 +1,85 @@
+package de.slackspace.openkeepass.domain.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.query.QueryPlanner.AccessPath;
+
+/**
+ * A query together with the access path the {@link QueryPlanner} has chosen
+ * for it.
+ *
+ */
+public class QueryPlan {
+
+    private static final String INDENT = "  ";
+
+    private final EntryQuery query;
+    private final AccessPath accessPath;
+
+    QueryPlan(EntryQuery query, AccessPath accessPath) {
+        this.query = query;
+        this.accessPath = accessPath;
+    }
+
+    /**
+     * Evaluates the query on the candidates of the access path.
+     *
+     * @return the matching entries in the order of the access path
+     */
+    public List<Entry> execute() {
+        List<Entry> result = new ArrayList<Entry>();
+
+        for (Entry candidate : accessPath.getCandidates()) {
+            if (query.matches(candidate)) {
+                result.add(candidate);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of entries the query is evaluated on.
+     *
+     * @return the number of candidates
+     */
+    public int getCandidateCount() {
+        return accessPath.getCandidates().size();
+    }
+
+    /**
+     * Describes the plan, one step per line. The first line shows the query
+     * which is evaluated, the following lines the access path which produces
+     * the candidates, e.g.
+     *
+     * <pre>
+     * Filter (Title starts with 'mail' AND LAST_MODIFICATION in [2016-01-01T00:00:00Z, *))
+     *   Title index prefix 'mail' (3 candidates)
+     * </pre>
+     *
+     * @return a description of the plan
+     */
+    public String explain() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Filter ").append(query);
+        explain(accessPath, INDENT, builder);
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    private static void explain(AccessPath accessPath, String indent, StringBuilder builder) {
+        int count = accessPath.getCandidates().size();
+        builder.append('\n').append(indent).append(accessPath.description);
+        builder.append(" (").append(count).append(count == 1 ? " candidate)" : " candidates)");
+
+        for (AccessPath operand : accessPath.operands) {
+            explain(operand, indent + INDENT, builder);
+        }
+    }
+}
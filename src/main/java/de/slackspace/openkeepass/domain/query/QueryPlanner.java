@@ -0,0 +1,305 @@
+package de.slackspace.openkeepass.domain.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupTraversal;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.index.TimeField;
+import de.slackspace.openkeepass.domain.index.TimeIndex;
+import de.slackspace.openkeepass.domain.index.UrlIndex;
+import de.slackspace.openkeepass.domain.query.EntryQuery.AndQuery;
+import de.slackspace.openkeepass.domain.query.EntryQuery.FieldQuery;
+import de.slackspace.openkeepass.domain.query.EntryQuery.GroupQuery;
+import de.slackspace.openkeepass.domain.query.EntryQuery.HostQuery;
+import de.slackspace.openkeepass.domain.query.EntryQuery.OrQuery;
+import de.slackspace.openkeepass.domain.query.EntryQuery.TimeRangeQuery;
+import de.slackspace.openkeepass.domain.query.EntryQuery.UuidQuery;
+
+/**
+ * Chooses how an {@link EntryQuery} is answered.
+ * <p>
+ * For every condition of a query the planner looks for an index which can
+ * produce candidates for it:
+ * <ul>
+ * <li>the UUID index of the database for {@link EntryQuery#uuid}</li>
+ * <li>the title index of the database for exact, prefix and substring
+ * conditions on the title</li>
+ * <li>a {@link UrlIndex} for {@link EntryQuery#host}, if one has been
+ * registered</li>
+ * <li>a {@link TimeIndex} for time ranges on its timestamp, if one has been
+ * registered</li>
+ * <li>the subtree of a group for {@link EntryQuery#inGroup}</li>
+ * </ul>
+ * The access paths are ranked by a fixed estimate of how many candidates
+ * they produce, from the UUID index over exact titles, hosts and time ranges,
+ * title prefixes and substrings to group scans. A conjunction uses the
+ * condition with the best ranked access path, a disjunction the union of the
+ * candidates if every operand has an index. Everything else falls back to a
+ * scan of all entries. The whole query is then evaluated on the candidates,
+ * so the result is the same whichever access path has been chosen.
+ * <p>
+ * Only the chosen access path is looked up, when the plan is executed or
+ * explained for the first time. The plan keeps these candidates, so it
+ * should be executed right after it has been created.
+ *
+ */
+public class QueryPlanner {
+
+    // estimated cost of the access paths, lower is cheaper
+    private static final int UUID_LOOKUP = 0;
+    private static final int EXACT_LOOKUP = 1;
+    private static final int RANGE_LOOKUP = 2;
+    private static final int PARTIAL_LOOKUP = 3;
+    private static final int GROUP_SCAN = 4;
+    private static final int FULL_SCAN = 5;
+
+    private final KeePassFile keePassFile;
+    private final Map<TimeField, TimeIndex<Entry>> timeIndexes = new EnumMap<TimeField, TimeIndex<Entry>>(TimeField.class);
+    private UrlIndex urlIndex;
+
+    /**
+     * Creates a planner for queries over the entries of the given database.
+     *
+     * @param keePassFile
+     *            the database which should be queried
+     */
+    public QueryPlanner(KeePassFile keePassFile) {
+        if (keePassFile == null) {
+            throw new IllegalArgumentException("You must provide a KeePass file.");
+        }
+
+        this.keePassFile = keePassFile;
+    }
+
+    /**
+     * Lets the planner answer host conditions from the given index.
+     *
+     * @param urlIndex
+     *            an index of the entries of the database
+     * @return this planner
+     */
+    public QueryPlanner withUrlIndex(UrlIndex urlIndex) {
+        this.urlIndex = urlIndex;
+        return this;
+    }
+
+    /**
+     * Lets the planner answer time ranges on the timestamp of the given index
+     * from it.
+     *
+     * @param timeIndex
+     *            an index of the entries of the database
+     * @return this planner
+     */
+    public QueryPlanner withTimeIndex(TimeIndex<Entry> timeIndex) {
+        timeIndexes.put(timeIndex.getField(), timeIndex);
+        return this;
+    }
+
+    /**
+     * Plans the given query.
+     *
+     * @param query
+     *            the query which should be answered
+     * @return the plan, which can be executed and explained
+     */
+    public QueryPlan plan(EntryQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("You must provide a query.");
+        }
+
+        AccessPath accessPath = choose(query);
+        if (accessPath == null) {
+            accessPath = new AccessPath("Full scan", FULL_SCAN) {
+
+                @Override
+                List<Entry> lookUp() {
+                    return keePassFile.getEntries();
+                }
+            };
+        }
+
+        return new QueryPlan(query, accessPath);
+    }
+
+    private AccessPath choose(EntryQuery query) {
+        if (query instanceof UuidQuery) {
+            final UUID uuid = ((UuidQuery) query).uuid;
+            return new AccessPath("UUID index", UUID_LOOKUP) {
+
+                @Override
+                List<Entry> lookUp() {
+                    Entry entry = keePassFile.getEntryByUUID(uuid);
+                    return entry == null ? Collections.<Entry> emptyList() : Collections.singletonList(entry);
+                }
+            };
+        }
+
+        if (query instanceof FieldQuery && ((FieldQuery) query).isTitle()) {
+            return chooseTitle((FieldQuery) query);
+        }
+
+        if (query instanceof HostQuery && urlIndex != null) {
+            final String host = ((HostQuery) query).host;
+            return new AccessPath("URL index", RANGE_LOOKUP) {
+
+                @Override
+                List<Entry> lookUp() {
+                    return urlIndex.findByHost(host);
+                }
+            };
+        }
+
+        if (query instanceof TimeRangeQuery) {
+            final TimeRangeQuery timeRange = (TimeRangeQuery) query;
+            final TimeIndex<Entry> timeIndex = timeIndexes.get(timeRange.field);
+            if (timeIndex != null) {
+                return new AccessPath("Time index " + timeRange.field, RANGE_LOOKUP) {
+
+                    @Override
+                    List<Entry> lookUp() {
+                        return timeIndex.findBetween(timeRange.from, timeRange.to);
+                    }
+                };
+            }
+        }
+
+        if (query instanceof GroupQuery) {
+            final Group group = ((GroupQuery) query).group;
+            return new AccessPath("Group scan '" + group.getName() + "'", GROUP_SCAN) {
+
+                @Override
+                List<Entry> lookUp() {
+                    List<Entry> entries = new ArrayList<Entry>();
+                    for (Entry entry : GroupTraversal.entries(group)) {
+                        entries.add(entry);
+                    }
+                    return entries;
+                }
+            };
+        }
+
+        if (query instanceof AndQuery) {
+            return chooseCheapest(((AndQuery) query).queries);
+        }
+
+        if (query instanceof OrQuery) {
+            return chooseUnion(((OrQuery) query).queries);
+        }
+
+        return null;
+    }
+
+    private AccessPath chooseTitle(final FieldQuery query) {
+        switch (query.operator) {
+        case EQUALS:
+            return new AccessPath("Title index exact '" + query.value + "'", EXACT_LOOKUP) {
+
+                @Override
+                List<Entry> lookUp() {
+                    return keePassFile.getEntriesByTitle(query.value, true);
+                }
+            };
+        case STARTS_WITH:
+            return new AccessPath("Title index prefix '" + query.value + "'", PARTIAL_LOOKUP) {
+
+                @Override
+                List<Entry> lookUp() {
+                    return keePassFile.getEntriesByTitlePrefix(query.value);
+                }
+            };
+        default:
+            return new AccessPath("Title index substring '" + query.value + "'", PARTIAL_LOOKUP) {
+
+                @Override
+                List<Entry> lookUp() {
+                    return keePassFile.getEntriesByTitle(query.value, false);
+                }
+            };
+        }
+    }
+
+    private AccessPath chooseCheapest(List<EntryQuery> queries) {
+        AccessPath cheapest = null;
+
+        for (EntryQuery operand : queries) {
+            AccessPath accessPath = choose(operand);
+            if (accessPath != null && (cheapest == null || accessPath.cost < cheapest.cost)) {
+                cheapest = accessPath;
+            }
+        }
+
+        return cheapest;
+    }
+
+    private AccessPath chooseUnion(List<EntryQuery> queries) {
+        final List<AccessPath> operands = new ArrayList<AccessPath>();
+        int cost = UUID_LOOKUP;
+
+        for (EntryQuery operand : queries) {
+            AccessPath accessPath = choose(operand);
+            if (accessPath == null) {
+                return null;
+            }
+            operands.add(accessPath);
+            cost = Math.max(cost, accessPath.cost);
+        }
+
+        return new AccessPath("Union", cost, operands) {
+
+            @Override
+            List<Entry> lookUp() {
+                List<Entry> candidates = new ArrayList<Entry>();
+                Set<Entry> seen = Collections.newSetFromMap(new IdentityHashMap<Entry, Boolean>());
+                for (AccessPath operand : operands) {
+                    for (Entry entry : operand.getCandidates()) {
+                        if (seen.add(entry)) {
+                            candidates.add(entry);
+                        }
+                    }
+                }
+                return candidates;
+            }
+        };
+    }
+
+    /**
+     * A way to produce the candidates of a query. The candidates are looked
+     * up on first access.
+     */
+    abstract static class AccessPath {
+
+        final String description;
+        final int cost;
+        final List<AccessPath> operands;
+        private List<Entry> candidates;
+
+        AccessPath(String description, int cost) {
+            this(description, cost, Collections.<AccessPath> emptyList());
+        }
+
+        AccessPath(String description, int cost, List<AccessPath> operands) {
+            this.description = description;
+            this.cost = cost;
+            this.operands = operands;
+        }
+
+        List<Entry> getCandidates() {
+            if (candidates == null) {
+                candidates = lookUp();
+            }
+            return candidates;
+        }
+
+        abstract List<Entry> lookUp();
+    }
+}
@@ -0,0 +1,55 @@
+package de.slackspace.openkeepass.domain.visitor;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.Meta;
+
+/**
+ * A visitor which receives the content of a KeePass database as a stream of
+ * events while the database is parsed.
+ * <p>
+ * Events are pushed in document order. Groups passed to
+ * {@link #enterGroup(Group)} carry their own attributes like name and times,
+ * but no entries or subgroups. Those are reported afterwards by
+ * {@link #visitEntry(Entry)} and nested enter/exit events until
+ * {@link #exitGroup(Group)} is called with the same group.
+ * <p>
+ * Protected values of the visited entries are already decrypted.
+ *
+ * @see EntryVisitorAdapter
+ */
+public interface EntryVisitor {
+
+    /**
+     * Called once when the meta section of the database has been read.
+     *
+     * @param meta
+     *            the meta section of the database
+     */
+    void visitMeta(Meta meta);
+
+    /**
+     * Called when the parser enters a group.
+     *
+     * @param group
+     *            the group without entries and subgroups
+     */
+    void enterGroup(Group group);
+
+    /**
+     * Called for every entry of the current group.
+     *
+     * @param entry
+     *            the entry with decrypted values
+     */
+    void visitEntry(Entry entry);
+
+    /**
+     * Called when the parser leaves a group.
+     *
+     * @param group
+     *            the same group which has been passed to
+     *            {@link #enterGroup(Group)}
+     */
+    void exitGroup(Group group);
+}
@@ -0,0 +1,33 @@
+package de.slackspace.openkeepass.domain.visitor;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.Meta;
+
+/**
+ * An {@link EntryVisitor} with empty methods. Extend this class to receive
+ * only the events you are interested in.
+ *
+ */
+public abstract class EntryVisitorAdapter implements EntryVisitor {
+
+    @Override
+    public void visitMeta(Meta meta) {
+        // empty by default
+    }
+
+    @Override
+    public void enterGroup(Group group) {
+        // empty by default
+    }
+
+    @Override
+    public void visitEntry(Entry entry) {
+        // empty by default
+    }
+
+    @Override
+    public void exitGroup(Group group) {
+        // empty by default
+    }
+}
@@ -0,0 +1,75 @@
+package de.slackspace.openkeepass.domain.visitor;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.Meta;
+import de.slackspace.openkeepass.domain.MetaBuilder;
+
+/**
+ * An {@link EntryVisitor} which assembles the visited groups and entries into
+ * a {@link KeePassFile}.
+ *
+ */
+public class KeePassFileBuildingVisitor implements EntryVisitor {
+
+    private Meta meta;
+    private List<Group> topGroups = new ArrayList<Group>();
+    private LinkedList<Group> openGroups = new LinkedList<Group>();
+
+    @Override
+    public void visitMeta(Meta meta) {
+        this.meta = meta;
+    }
+
+    @Override
+    public void enterGroup(Group group) {
+        if (openGroups.isEmpty()) {
+            topGroups.add(group);
+        } else {
+            openGroups.getFirst().getGroups().add(group);
+        }
+
+        openGroups.addFirst(group);
+    }
+
+    @Override
+    public void visitEntry(Entry entry) {
+        openGroups.getFirst().getEntries().add(entry);
+    }
+
+    @Override
+    public void exitGroup(Group group) {
+        openGroups.removeFirst();
+    }
+
+    /**
+     * Returns the outermost groups which have been visited, e.g. the root of
+     * a single parsed group subtree.
+     *
+     * @return the visited groups without a parent
+     */
+    public List<Group> getTopGroups() {
+        return topGroups;
+    }
+
+    /**
+     * Returns the KeePass file which has been assembled from the visited
+     * nodes.
+     *
+     * @return the assembled KeePass file
+     */
+    public KeePassFile getKeePassFile() {
+        Meta fileMeta = meta;
+        if (fileMeta == null) {
+            fileMeta = new MetaBuilder((String) null).build();
+        }
+
+        return new KeePassFileBuilder(fileMeta).addTopGroups(topGroups.toArray(new Group[topGroups.size()])).build();
+    }
+}
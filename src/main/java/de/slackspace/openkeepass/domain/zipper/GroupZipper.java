@@ -30,6 +30,7 @@ import de.slackspace.openkeepass.domain.Meta;
 public class GroupZipper {
 
     private Meta meta;
+    private KeePassFile keePassFile;
     private int index = 0;
     private Group node;
     private GroupZipper parent;
@@ -42,6 +43,7 @@ public class GroupZipper {
      */
     public GroupZipper(KeePassFile keePassFile) {
         this.meta = keePassFile.getMeta();
+        this.keePassFile = keePassFile;
         this.node = keePassFile.getRoot().getGroups().get(0);
     }
 
@@ -215,6 +217,8 @@ public class GroupZipper {
             node = group;
         } else {
             parent.getNode().getGroups().set(index, group);
+            // the tree of the original file has been changed in place
+            keePassFile.invalidateIndexes();
         }
 
         return this;
@@ -0,0 +1,13 @@
+package de.slackspace.openkeepass.exception;
+
+public class KeyDerivationTimeoutException extends KeePassDatabaseUnreadableException {
+
+    public KeyDerivationTimeoutException(String message) {
+        super(message);
+    }
+
+    public KeyDerivationTimeoutException(String message, Throwable e) {
+        super(message, e);
+    }
+
+}
@@ -0,0 +1,215 @@
+package de.slackspace.openkeepass.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.slackspace.openkeepass.crypto.SeekableProtectedStringCrypto;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.GroupChildrenLoader;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.Meta;
+import de.slackspace.openkeepass.domain.MetaBuilder;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlScanner.EntryRange;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlScanner.GroupRange;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlScanner.Structure;
+import de.slackspace.openkeepass.processor.IconEnricher;
+import de.slackspace.openkeepass.stream.GzipCheckpointIndex;
+
+/**
+ * Creates a {@link KeePassFile} from decompressed KeePass XML whose groups
+ * load their entries and subgroups on first access.
+ * <p>
+ * Opening only performs a structural scan of the document with the
+ * {@link KeePassDatabaseXmlScanner} and parses the metadata and the top
+ * groups. The entries and subgroups of a group are parsed from their recorded
+ * byte ranges as soon as {@link Group#getEntries()} or
+ * {@link Group#getGroups()} is called for the first time. Protected values
+ * are decrypted by positioning the key stream at the recorded offset of each
+ * entry.
+ *
+ */
+public class KeePassDatabaseXmlLazyParser {
+
+    private static final byte[] GROUP_END_TAG = new byte[] { '<', '/', 'G', 'r', 'o', 'u', 'p', '>' };
+
+    private KeePassDatabaseXmlScanner scanner = new KeePassDatabaseXmlScanner();
+    private KeePassDatabaseXmlStreamParser streamParser = new KeePassDatabaseXmlStreamParser();
+
+    /**
+     * Scans the given KeePass XML and returns a KeePass file whose groups are
+     * loaded lazily.
+     * <p>
+     * The returned file keeps a reference to the xml and the crypto until
+     * all groups have been loaded.
+     *
+     * @param xml
+     *            the decompressed KeePass XML
+     * @param protectedStringCrypto
+     *            the crypto to decrypt protected values, positioned at the
+     *            start of the key stream
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @return a lazily loaded KeePass file
+     */
+    public KeePassFile parse(byte[] xml, SeekableProtectedStringCrypto protectedStringCrypto, ReadOptions readOptions) {
+        return parse(xml, null, protectedStringCrypto, readOptions);
+    }
+
+    /**
+     * Scans the given KeePass XML and returns a KeePass file whose groups are
+     * loaded lazily from the compressed payload.
+     * <p>
+     * The xml is only needed during this call. Afterwards the returned file
+     * reads the ranges of its groups and entries through the checkpoint index,
+     * so only the compressed payload stays in memory.
+     *
+     * @param xml
+     *            the decompressed KeePass XML
+     * @param checkpointIndex
+     *            the index over the compressed payload the xml was
+     *            decompressed from
+     * @param protectedStringCrypto
+     *            the crypto to decrypt protected values, positioned at the
+     *            start of the key stream
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @return a lazily loaded KeePass file
+     */
+    public KeePassFile parse(byte[] xml, GzipCheckpointIndex checkpointIndex, SeekableProtectedStringCrypto protectedStringCrypto, ReadOptions readOptions) {
+        if (readOptions == null) {
+            throw new IllegalArgumentException("You must provide read options.");
+        }
+
+        Structure structure = scanner.scan(xml);
+        LazyDocument document = new LazyDocument(xml, protectedStringCrypto, readOptions);
+
+        Meta meta;
+        if (structure.metaStart >= 0) {
+            meta = streamParser.parseMeta(document.range(structure.metaStart, structure.metaEnd), readOptions);
+        } else {
+            meta = new MetaBuilder((String) null).build();
+        }
+        document.meta = meta;
+
+        List<Group> topGroups = new ArrayList<Group>();
+        for (GroupRange groupRange : structure.topGroups) {
+            topGroups.add(document.createGroup(groupRange));
+        }
+
+        if (checkpointIndex != null) {
+            document.switchTo(checkpointIndex);
+        }
+
+        return new KeePassFileBuilder(meta).addTopGroups(topGroups.toArray(new Group[topGroups.size()])).build();
+    }
+
+    /**
+     * The shared state of all groups of one lazily loaded document.
+     */
+    private class LazyDocument {
+
+        private byte[] xml;
+        private GzipCheckpointIndex checkpointIndex;
+        private final SeekableProtectedStringCrypto protectedStringCrypto;
+        private final ReadOptions readOptions;
+        private final IconEnricher iconEnricher = new IconEnricher();
+        private Meta meta;
+
+        LazyDocument(byte[] xml, SeekableProtectedStringCrypto protectedStringCrypto, ReadOptions readOptions) {
+            this.xml = xml;
+            this.protectedStringCrypto = protectedStringCrypto;
+            this.readOptions = readOptions;
+        }
+
+        Group createGroup(GroupRange groupRange) {
+            InputStream header;
+            if (groupRange.selfClosing) {
+                header = range(groupRange.start, groupRange.end);
+            } else {
+                header = new SequenceInputStream(range(groupRange.start, groupRange.headerEnd), new ByteArrayInputStream(GROUP_END_TAG));
+            }
+
+            GroupBuilder groupBuilder = streamParser.parseGroupHeader(header, readOptions);
+            if (readOptions.isIconEnrichment()) {
+                groupBuilder.iconData(iconEnricher.getIconData(groupBuilder.getCustomIconUuid(), groupBuilder.getIconId(), meta.getCustomIcons()));
+            }
+
+            if (!groupRange.entries.isEmpty() || !groupRange.groups.isEmpty()) {
+                groupBuilder.childrenLoader(new LazyChildren(this, groupRange));
+            }
+
+            return groupBuilder.build();
+        }
+
+        Entry createEntry(EntryRange entryRange) {
+            Entry entry;
+            synchronized (protectedStringCrypto) {
+                protectedStringCrypto.seekTo(entryRange.keyStreamOffset);
+                entry = streamParser.parseEntry(range(entryRange.start, entryRange.end), protectedStringCrypto, readOptions);
+            }
+
+            if (readOptions.isIconEnrichment()) {
+                byte[] iconData = iconEnricher.getIconData(entry.getCustomIconUuid(), entry.getIconId(), meta.getCustomIcons());
+                entry = new EntryBuilder(entry).iconData(iconData).build();
+            }
+
+            return entry;
+        }
+
+        /**
+         * Releases the xml and reads all further ranges through the given
+         * index.
+         */
+        void switchTo(GzipCheckpointIndex checkpointIndex) {
+            this.checkpointIndex = checkpointIndex;
+            this.xml = null;
+        }
+
+        InputStream range(int start, int end) {
+            if (checkpointIndex == null) {
+                return new ByteArrayInputStream(xml, start, end - start);
+            }
+
+            try {
+                return checkpointIndex.openStream(start, end - start);
+            } catch (IOException e) {
+                throw new KeePassDatabaseUnreadableException("Could not decompress database payload", e);
+            }
+        }
+    }
+
+    /**
+     * Loads the direct children of a single group.
+     */
+    private static class LazyChildren implements GroupChildrenLoader {
+
+        private final LazyDocument document;
+        private final GroupRange groupRange;
+
+        LazyChildren(LazyDocument document, GroupRange groupRange) {
+            this.document = document;
+            this.groupRange = groupRange;
+        }
+
+        @Override
+        public void loadChildren(List<Entry> entries, List<Group> groups) {
+            for (EntryRange entryRange : groupRange.entries) {
+                entries.add(document.createEntry(entryRange));
+            }
+
+            for (GroupRange childRange : groupRange.groups) {
+                groups.add(document.createGroup(childRange));
+            }
+        }
+    }
+}
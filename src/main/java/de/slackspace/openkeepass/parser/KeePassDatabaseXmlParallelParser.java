@@ -0,0 +1,164 @@
+package de.slackspace.openkeepass.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.slackspace.openkeepass.crypto.SeekableProtectedStringCrypto;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.Meta;
+import de.slackspace.openkeepass.domain.MetaBuilder;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.domain.visitor.KeePassFileBuildingVisitor;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlScanner.EntryRange;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlScanner.GroupRange;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlScanner.Structure;
+
+/**
+ * Parses decompressed KeePass XML by splitting it into group subtrees which
+ * are parsed concurrently.
+ * <p>
+ * The document is split with the {@link KeePassDatabaseXmlScanner} at the
+ * subgroups of the groups below Root, which are the groups returned by
+ * {@link KeePassFile#getTopGroups()}. Each subtree is parsed by a task of
+ * the given executor with its own copy of the crypto, positioned at the key
+ * stream offset the scanner recorded for the subtree. The headers and
+ * direct entries of the groups below Root are parsed by the calling thread
+ * while the tasks run, and the results are stitched together in document
+ * order.
+ *
+ */
+public class KeePassDatabaseXmlParallelParser {
+
+    private static final byte[] GROUP_END_TAG = new byte[] { '<', '/', 'G', 'r', 'o', 'u', 'p', '>' };
+
+    private KeePassDatabaseXmlScanner scanner = new KeePassDatabaseXmlScanner();
+    private KeePassDatabaseXmlStreamParser streamParser = new KeePassDatabaseXmlStreamParser();
+
+    /**
+     * Parses the given KeePass XML using the given executor.
+     *
+     * @param xml
+     *            the decompressed KeePass XML
+     * @param protectedStringCrypto
+     *            the crypto to decrypt protected values, positioned at the
+     *            start of the key stream
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @param executorService
+     *            the executor which parses the group subtrees
+     * @return the KeePass file
+     */
+    public KeePassFile parse(byte[] xml, SeekableProtectedStringCrypto protectedStringCrypto, ReadOptions readOptions, ExecutorService executorService) {
+        if (readOptions == null) {
+            throw new IllegalArgumentException("You must provide read options.");
+        }
+        if (executorService == null) {
+            throw new IllegalArgumentException("You must provide an executor service.");
+        }
+
+        Structure structure = scanner.scan(xml);
+
+        List<List<Future<Group>>> subtrees = new ArrayList<List<Future<Group>>>();
+        for (GroupRange groupRange : structure.topGroups) {
+            List<Future<Group>> groups = new ArrayList<Future<Group>>();
+            for (GroupRange childRange : groupRange.groups) {
+                groups.add(executorService.submit(new SubtreeTask(xml, childRange, protectedStringCrypto.copy(), readOptions)));
+            }
+            subtrees.add(groups);
+        }
+
+        Meta meta;
+        if (structure.metaStart >= 0) {
+            meta = streamParser.parseMeta(range(xml, structure.metaStart, structure.metaEnd), readOptions);
+        } else {
+            meta = new MetaBuilder((String) null).build();
+        }
+
+        List<Group> topGroups = new ArrayList<Group>();
+        for (int i = 0; i < structure.topGroups.size(); i++) {
+            GroupRange groupRange = structure.topGroups.get(i);
+            GroupBuilder groupBuilder = parseHeader(xml, groupRange, readOptions);
+
+            for (EntryRange entryRange : groupRange.entries) {
+                protectedStringCrypto.seekTo(entryRange.keyStreamOffset);
+                groupBuilder.addEntry(streamParser.parseEntry(range(xml, entryRange.start, entryRange.end), protectedStringCrypto, readOptions));
+            }
+
+            for (Future<Group> group : subtrees.get(i)) {
+                groupBuilder.addGroup(await(group));
+            }
+
+            topGroups.add(groupBuilder.build());
+        }
+
+        return new KeePassFileBuilder(meta).addTopGroups(topGroups.toArray(new Group[topGroups.size()])).build();
+    }
+
+    private GroupBuilder parseHeader(byte[] xml, GroupRange groupRange, ReadOptions readOptions) {
+        InputStream header;
+        if (groupRange.selfClosing) {
+            header = range(xml, groupRange.start, groupRange.end);
+        } else {
+            header = new SequenceInputStream(range(xml, groupRange.start, groupRange.headerEnd), new ByteArrayInputStream(GROUP_END_TAG));
+        }
+
+        return streamParser.parseGroupHeader(header, readOptions);
+    }
+
+    private static Group await(Future<Group> group) {
+        try {
+            return group.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KeePassDatabaseUnreadableException("Parsing of the database xml was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new KeePassDatabaseUnreadableException("Could not parse database xml", e.getCause());
+        }
+    }
+
+    private static InputStream range(byte[] xml, int start, int end) {
+        return new ByteArrayInputStream(xml, start, end - start);
+    }
+
+    /**
+     * Parses a single group subtree with its own crypto.
+     */
+    private class SubtreeTask implements Callable<Group> {
+
+        private final byte[] xml;
+        private final GroupRange groupRange;
+        private final SeekableProtectedStringCrypto protectedStringCrypto;
+        private final ReadOptions readOptions;
+
+        SubtreeTask(byte[] xml, GroupRange groupRange, SeekableProtectedStringCrypto protectedStringCrypto, ReadOptions readOptions) {
+            this.xml = xml;
+            this.groupRange = groupRange;
+            this.protectedStringCrypto = protectedStringCrypto;
+            this.readOptions = readOptions;
+        }
+
+        @Override
+        public Group call() {
+            protectedStringCrypto.seekTo(groupRange.keyStreamOffset);
+
+            KeePassFileBuildingVisitor visitor = new KeePassFileBuildingVisitor();
+            streamParser.parseGroup(range(xml, groupRange.start, groupRange.end), protectedStringCrypto, visitor, readOptions);
+
+            return visitor.getTopGroups().get(0);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package de.slackspace.openkeepass.parser;
 
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 import javax.xml.bind.JAXB;
 
@@ -15,8 +16,21 @@ public class KeePassDatabaseXmlParser {
 
     public ByteArrayOutputStream toXml(KeePassFile keePassFile) {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        JAXB.marshal(keePassFile, outputStream);
+        new KeePassDatabaseXmlSerializer().serialize(keePassFile, outputStream);
 
         return outputStream;
     }
+
+    /**
+     * Writes the given KeePass file as compact xml without indentation
+     * directly to the given stream.
+     *
+     * @param keePassFile
+     *            the KeePass file which should be written
+     * @param outputStream
+     *            the target stream, will not be closed
+     */
+    public void toXml(KeePassFile keePassFile, OutputStream outputStream) {
+        new KeePassDatabaseXmlSerializer(true).serialize(keePassFile, outputStream);
+    }
 }
@@ -0,0 +1,348 @@
+package de.slackspace.openkeepass.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+
+/**
+ * Performs a fast structural scan over decompressed KeePass XML without
+ * building any objects for its content.
+ * <p>
+ * The scan records the byte ranges of the metadata, of every group and of
+ * every entry which belongs directly to a group, together with the offset in
+ * the protected value key stream at which each entry starts. Every element
+ * with a Protected attribute advances the key stream, not only values. With this
+ * information single entries and group headers can be parsed later on
+ * without reading the rest of the document.
+ * <p>
+ * The scanner relies on the fact that a '&lt;' in well-formed XML always
+ * starts markup, except inside comments and CDATA sections which are skipped.
+ *
+ */
+public class KeePassDatabaseXmlScanner {
+
+    private static final int OTHER = 0;
+    private static final int META = 1;
+    private static final int ROOT = 2;
+    private static final int GROUP = 3;
+    private static final int ENTRY = 4;
+
+    private static final byte[] META_TAG = bytes("Meta");
+    private static final byte[] ROOT_TAG = bytes("Root");
+    private static final byte[] GROUP_TAG = bytes("Group");
+    private static final byte[] ENTRY_TAG = bytes("Entry");
+    private static final byte[] PROTECTED_ATTRIBUTE = bytes("Protected");
+    private static final byte[] TRUE = bytes("true");
+
+    private static final byte[] COMMENT_START = bytes("<!--");
+    private static final byte[] COMMENT_END = bytes("-->");
+    private static final byte[] CDATA_START = bytes("<![CDATA[");
+    private static final byte[] CDATA_END = bytes("]]>");
+    private static final byte[] PROCESSING_INSTRUCTION_END = bytes("?>");
+
+    /**
+     * The byte range of a group and its direct children, together with the
+     * key stream offset at the start of the group.
+     */
+    static class GroupRange {
+
+        final int start;
+        final long keyStreamOffset;
+        int headerEnd = -1;
+        int end;
+        boolean selfClosing;
+        final List<EntryRange> entries = new ArrayList<EntryRange>();
+        final List<GroupRange> groups = new ArrayList<GroupRange>();
+
+        GroupRange(int start, long keyStreamOffset) {
+            this.start = start;
+            this.keyStreamOffset = keyStreamOffset;
+        }
+    }
+
+    /**
+     * The byte range of an entry and the key stream offset of its first
+     * protected value.
+     */
+    static class EntryRange {
+
+        final int start;
+        final long keyStreamOffset;
+        int end;
+
+        EntryRange(int start, long keyStreamOffset) {
+            this.start = start;
+            this.keyStreamOffset = keyStreamOffset;
+        }
+    }
+
+    /**
+     * The result of a scan.
+     */
+    static class Structure {
+
+        int metaStart = -1;
+        int metaEnd = -1;
+        final List<GroupRange> topGroups = new ArrayList<GroupRange>();
+    }
+
+    /**
+     * Scans the given KeePass XML.
+     *
+     * @param xml
+     *            the decompressed KeePass XML
+     * @return the structure of the document
+     */
+    Structure scan(byte[] xml) {
+        Structure structure = new Structure();
+
+        int[] types = new int[16];
+        Object[] ranges = new Object[16];
+        int depth = 0;
+        long keyStreamOffset = 0;
+
+        int pos = indexOf(xml, (byte) '<', 0);
+        while (pos >= 0) {
+            if (startsWith(xml, pos, COMMENT_START)) {
+                pos = indexOf(xml, (byte) '<', skipPast(xml, pos, COMMENT_END));
+                continue;
+            }
+            if (startsWith(xml, pos, CDATA_START)) {
+                pos = indexOf(xml, (byte) '<', skipPast(xml, pos, CDATA_END));
+                continue;
+            }
+            if (pos + 1 < xml.length && (xml[pos + 1] == '?' || xml[pos + 1] == '!')) {
+                byte[] end = xml[pos + 1] == '?' ? PROCESSING_INSTRUCTION_END : new byte[] { '>' };
+                pos = indexOf(xml, (byte) '<', skipPast(xml, pos, end));
+                continue;
+            }
+
+            int tagEnd = findTagEnd(xml, pos);
+
+            if (xml[pos + 1] == '/') {
+                depth--;
+                if (depth < 0) {
+                    throw new KeePassDatabaseUnreadableException("Unbalanced end tag in database xml at offset " + pos);
+                }
+
+                int type = types[depth];
+                if (type == GROUP) {
+                    GroupRange group = (GroupRange) ranges[depth];
+                    if (group.headerEnd < 0) {
+                        group.headerEnd = pos;
+                    }
+                    group.end = tagEnd + 1;
+                } else if (type == ENTRY) {
+                    ((EntryRange) ranges[depth]).end = tagEnd + 1;
+                } else if (type == META) {
+                    structure.metaEnd = tagEnd + 1;
+                }
+                ranges[depth] = null;
+            } else {
+                boolean selfClosing = xml[tagEnd - 1] == '/';
+                int parentType = depth > 0 ? types[depth - 1] : OTHER;
+                int nameEnd = findNameEnd(xml, pos + 1, tagEnd);
+
+                int type = OTHER;
+                Object range = null;
+
+                if (depth == 1 && isName(xml, pos + 1, nameEnd, META_TAG)) {
+                    type = META;
+                    structure.metaStart = pos;
+                } else if (depth == 1 && isName(xml, pos + 1, nameEnd, ROOT_TAG)) {
+                    type = ROOT;
+                } else if ((parentType == ROOT || parentType == GROUP) && isName(xml, pos + 1, nameEnd, GROUP_TAG)) {
+                    type = GROUP;
+                    GroupRange group = new GroupRange(pos, keyStreamOffset);
+                    if (parentType == ROOT) {
+                        structure.topGroups.add(group);
+                    } else {
+                        GroupRange parent = (GroupRange) ranges[depth - 1];
+                        closeHeader(parent, pos);
+                        parent.groups.add(group);
+                    }
+                    range = group;
+                } else if (parentType == GROUP && isName(xml, pos + 1, nameEnd, ENTRY_TAG)) {
+                    type = ENTRY;
+                    GroupRange parent = (GroupRange) ranges[depth - 1];
+                    closeHeader(parent, pos);
+                    EntryRange entry = new EntryRange(pos, keyStreamOffset);
+                    parent.entries.add(entry);
+                    range = entry;
+                } else if (!selfClosing && isProtected(xml, nameEnd, tagEnd)) {
+                    // like the stream parser every protected element consumes
+                    // the key stream, e.g. protected binaries in the metadata
+                    int valueEnd = indexOf(xml, (byte) '<', tagEnd + 1);
+                    keyStreamOffset += getDecodedLength(xml, tagEnd + 1, valueEnd < 0 ? xml.length : valueEnd);
+                }
+
+                if (!selfClosing) {
+                    if (depth == types.length) {
+                        types = Arrays.copyOf(types, depth * 2);
+                        ranges = Arrays.copyOf(ranges, depth * 2);
+                    }
+                    types[depth] = type;
+                    ranges[depth] = range;
+                    depth++;
+                } else if (type == GROUP) {
+                    GroupRange group = (GroupRange) range;
+                    group.selfClosing = true;
+                    group.headerEnd = tagEnd + 1;
+                    group.end = tagEnd + 1;
+                } else if (type == ENTRY) {
+                    ((EntryRange) range).end = tagEnd + 1;
+                }
+            }
+
+            pos = indexOf(xml, (byte) '<', tagEnd + 1);
+        }
+
+        if (depth != 0) {
+            throw new KeePassDatabaseUnreadableException("The database xml ended unexpectedly");
+        }
+
+        return structure;
+    }
+
+    private static void closeHeader(GroupRange group, int pos) {
+        if (group.headerEnd < 0) {
+            group.headerEnd = pos;
+        }
+    }
+
+    private static int findTagEnd(byte[] xml, int pos) {
+        byte quote = 0;
+        for (int i = pos + 1; i < xml.length; i++) {
+            byte b = xml[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+        }
+
+        throw new KeePassDatabaseUnreadableException("Unterminated tag in database xml at offset " + pos);
+    }
+
+    private static int findNameEnd(byte[] xml, int start, int tagEnd) {
+        int i = start;
+        while (i < tagEnd && xml[i] != '/' && !isWhitespace(xml[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isName(byte[] xml, int start, int end, byte[] name) {
+        return end - start == name.length && startsWith(xml, start, name);
+    }
+
+    private static boolean isProtected(byte[] xml, int start, int tagEnd) {
+        int i = start;
+        while (i < tagEnd) {
+            while (i < tagEnd && isWhitespace(xml[i])) {
+                i++;
+            }
+
+            int nameEnd = i;
+            while (nameEnd < tagEnd && xml[nameEnd] != '=' && !isWhitespace(xml[nameEnd])) {
+                nameEnd++;
+            }
+
+            int quoteStart = nameEnd;
+            while (quoteStart < tagEnd && xml[quoteStart] != '"' && xml[quoteStart] != '\'') {
+                quoteStart++;
+            }
+            if (quoteStart >= tagEnd) {
+                return false;
+            }
+
+            int quoteEnd = indexOf(xml, xml[quoteStart], quoteStart + 1);
+            if (quoteEnd < 0 || quoteEnd > tagEnd) {
+                return false;
+            }
+
+            if (isName(xml, i, nameEnd, PROTECTED_ATTRIBUTE)) {
+                return equalsIgnoreCase(xml, quoteStart + 1, quoteEnd, TRUE);
+            }
+            i = quoteEnd + 1;
+        }
+
+        return false;
+    }
+
+    private static long getDecodedLength(byte[] xml, int start, int end) {
+        long significantChars = 0;
+        for (int i = start; i < end; i++) {
+            byte b = xml[i];
+            if (b != '=' && !isWhitespace(b)) {
+                significantChars++;
+            }
+        }
+
+        // every base64 character carries 6 bits
+        return significantChars * 6 / 8;
+    }
+
+    private static int skipPast(byte[] xml, int pos, byte[] terminator) {
+        for (int i = pos; i <= xml.length - terminator.length; i++) {
+            if (startsWith(xml, i, terminator)) {
+                return i + terminator.length;
+            }
+        }
+
+        throw new KeePassDatabaseUnreadableException("Unterminated markup in database xml at offset " + pos);
+    }
+
+    private static int indexOf(byte[] xml, byte value, int start) {
+        for (int i = start; i < xml.length; i++) {
+            if (xml[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] xml, int pos, byte[] prefix) {
+        if (pos + prefix.length > xml.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (xml[pos + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] xml, int start, int end, byte[] lowerCaseValue) {
+        if (end - start != lowerCaseValue.length) {
+            return false;
+        }
+
+        for (int i = 0; i < lowerCaseValue.length; i++) {
+            if (Character.toLowerCase((char) xml[start + i]) != lowerCaseValue[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static byte[] bytes(String value) {
+        byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < value.length(); i++) {
+            bytes[i] = (byte) value.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,283 @@
+package de.slackspace.openkeepass.parser;
+
+import java.io.OutputStream;
+import java.util.UUID;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import de.slackspace.openkeepass.domain.CustomIcon;
+import de.slackspace.openkeepass.domain.CustomIcons;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.History;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.Meta;
+import de.slackspace.openkeepass.domain.Property;
+import de.slackspace.openkeepass.domain.Times;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnwriteableException;
+import de.slackspace.openkeepass.util.ByteUtils;
+import de.slackspace.openkeepass.util.TimestampUtils;
+
+/**
+ * Serializes a {@link KeePassFile} to KeePass XML with a {@link XMLStreamWriter}.
+ * <p>
+ * In contrast to JAXB marshalling the document is written straight to the
+ * given output stream without reflection and without building it in memory
+ * first. In compact mode no indentation is written, which keeps the payload
+ * small before it gets compressed.
+ *
+ */
+public class KeePassDatabaseXmlSerializer {
+
+    private static final String UTF_8 = "UTF-8";
+    private static final String XML_VERSION = "1.0";
+    private static final String INDENT = "    ";
+    private static final String TRUE = "True";
+    private static final String FALSE = "False";
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final boolean compact;
+
+    /**
+     * Creates a serializer which writes indented xml.
+     */
+    public KeePassDatabaseXmlSerializer() {
+        this(false);
+    }
+
+    /**
+     * Creates a serializer.
+     *
+     * @param compact
+     *            if true no indentation will be written
+     */
+    public KeePassDatabaseXmlSerializer(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Writes the given KeePass file as xml to the given stream. The stream
+     * will not be closed.
+     *
+     * @param keePassFile
+     *            the KeePass file which should be written
+     * @param outputStream
+     *            the target stream
+     */
+    public void serialize(KeePassFile keePassFile, OutputStream outputStream) {
+        if (keePassFile == null) {
+            throw new IllegalArgumentException("You must provide a KeePass file to serialize.");
+        }
+
+        try {
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(outputStream, UTF_8);
+            new Serialization(writer).writeKeePassFile(keePassFile);
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new KeePassDatabaseUnwriteableException("Could not serialize database to xml", e);
+        }
+    }
+
+    /**
+     * Holds the state of a single serialization run, so that the serializer
+     * itself can be shared between threads.
+     */
+    private class Serialization {
+
+        private final XMLStreamWriter writer;
+        private int depth = 0;
+
+        Serialization(XMLStreamWriter writer) {
+            this.writer = writer;
+        }
+
+        void writeKeePassFile(KeePassFile keePassFile) throws XMLStreamException {
+            writer.writeStartDocument(UTF_8, XML_VERSION);
+
+            startElement("KeePassFile");
+            if (keePassFile.getMeta() != null) {
+                writeMeta(keePassFile.getMeta());
+            }
+            if (keePassFile.getRoot() != null) {
+                writeGroup("Root", keePassFile.getRoot());
+            }
+            endElement();
+
+            writer.writeEndDocument();
+        }
+
+        private void writeMeta(Meta meta) throws XMLStreamException {
+            startElement("Meta");
+            writeElement("Generator", meta.getGenerator());
+            writeElement("DatabaseName", meta.getDatabaseName());
+            writeElement("DatabaseDescription", meta.getDatabaseDescription());
+            writeTimestamp("DatabaseNameChanged", meta.getDatabaseNameChangedMillis());
+            writeTimestamp("DatabaseDescriptionChanged", meta.getDatabaseDescriptionChangedMillis());
+            writeElement("MaintenanceHistoryDays", String.valueOf(meta.getMaintenanceHistoryDays()));
+            writeElement("RecycleBinUUID", meta.getRecycleBinUuid());
+            writeTimestamp("RecycleBinChanged", meta.getRecycleBinChangedMillis());
+            if (meta.hasRecycleBinEnabledFlag()) {
+                writeElement("RecycleBinEnabled", meta.getRecycleBinEnabled());
+            }
+            writeElement("HistoryMaxItems", String.valueOf(meta.getHistoryMaxItems()));
+            writeElement("HistoryMaxSize", String.valueOf(meta.getHistoryMaxSize()));
+            writeCustomIcons(meta.getCustomIcons());
+            endElement();
+        }
+
+        private void writeCustomIcons(CustomIcons customIcons) throws XMLStreamException {
+            if (customIcons == null) {
+                return;
+            }
+
+            startElement("CustomIcons");
+            for (CustomIcon customIcon : customIcons.getIcons()) {
+                startElement("Icon");
+                writeElement("UUID", customIcon.getUuid());
+                writeElement("Data", customIcon.getData());
+                endElement();
+            }
+            endElement();
+        }
+
+        private void writeGroup(String elementName, Group group) throws XMLStreamException {
+            startElement(elementName);
+            writeElement("UUID", group.getUuid());
+            writeElement("Name", group.getName());
+            writeElement("IconID", String.valueOf(group.getIconId()));
+            writeElement("CustomIconUUID", group.getCustomIconUuid());
+            writeTimes(group.getTimes());
+            if (group.hasExpandedFlag()) {
+                writeElement("IsExpanded", group.isExpanded());
+            }
+
+            for (Entry entry : group.getEntries()) {
+                writeEntry(entry);
+            }
+            for (Group childGroup : group.getGroups()) {
+                writeGroup("Group", childGroup);
+            }
+            endElement();
+        }
+
+        private void writeEntry(Entry entry) throws XMLStreamException {
+            startElement("Entry");
+            writeElement("UUID", entry.getUuid());
+            writeElement("IconID", String.valueOf(entry.getIconId()));
+            writeElement("CustomIconUUID", entry.getCustomIconUuid());
+            writeTimes(entry.getTimes());
+
+            for (Property property : entry.getProperties()) {
+                writeProperty(property);
+            }
+
+            writeHistory(entry.getHistory());
+            endElement();
+        }
+
+        private void writeProperty(Property property) throws XMLStreamException {
+            startElement("String");
+            writeElement("Key", property.getKey());
+
+            newLine();
+            writer.writeStartElement("Value");
+            if (property.isProtected()) {
+                writer.writeAttribute("Protected", TRUE);
+            }
+            if (property.getValue() != null) {
+                writer.writeCharacters(property.getValue());
+            }
+            writer.writeEndElement();
+
+            endElement();
+        }
+
+        private void writeHistory(History history) throws XMLStreamException {
+            if (history == null) {
+                return;
+            }
+
+            startElement("History");
+            for (Entry historicEntry : history.getHistoricEntries()) {
+                writeEntry(historicEntry);
+            }
+            endElement();
+        }
+
+        private void writeTimes(Times times) throws XMLStreamException {
+            if (times == null) {
+                return;
+            }
+
+            startElement("Times");
+            writeTimestamp("LastModificationTime", times.getLastModificationTimeMillis());
+            writeTimestamp("CreationTime", times.getCreationTimeMillis());
+            writeTimestamp("LastAccessTime", times.getLastAccessTimeMillis());
+            writeTimestamp("ExpiryTime", times.getExpiryTimeMillis());
+            if (times.hasExpiresFlag()) {
+                writeElement("Expires", times.expires());
+            }
+            writeElement("UsageCount", String.valueOf(times.getUsageCount()));
+            writeTimestamp("LocationChanged", times.getLocationChangedMillis());
+            endElement();
+        }
+
+        private void writeElement(String name, UUID value) throws XMLStreamException {
+            if (value != null) {
+                writeElement(name, ByteUtils.uuidToBytes(value));
+            }
+        }
+
+        private void writeElement(String name, byte[] value) throws XMLStreamException {
+            if (value != null) {
+                writeElement(name, DatatypeConverter.printBase64Binary(value));
+            }
+        }
+
+        private void writeTimestamp(String name, long value) throws XMLStreamException {
+            writeElement(name, TimestampUtils.print(value));
+        }
+
+        private void writeElement(String name, boolean value) throws XMLStreamException {
+            writeElement(name, value ? TRUE : FALSE);
+        }
+
+        private void writeElement(String name, String value) throws XMLStreamException {
+            if (value == null) {
+                return;
+            }
+
+            newLine();
+            writer.writeStartElement(name);
+            writer.writeCharacters(value);
+            writer.writeEndElement();
+        }
+
+        private void startElement(String name) throws XMLStreamException {
+            newLine();
+            writer.writeStartElement(name);
+            depth++;
+        }
+
+        private void endElement() throws XMLStreamException {
+            depth--;
+            newLine();
+            writer.writeEndElement();
+        }
+
+        private void newLine() throws XMLStreamException {
+            if (compact) {
+                return;
+            }
+
+            writer.writeCharacters("\n");
+            for (int i = 0; i < depth; i++) {
+                writer.writeCharacters(INDENT);
+            }
+        }
+    }
+}
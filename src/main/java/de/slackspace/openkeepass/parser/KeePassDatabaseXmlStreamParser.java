@@ -0,0 +1,743 @@
+package de.slackspace.openkeepass.parser;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.slackspace.openkeepass.crypto.ProtectedStringCrypto;
+import de.slackspace.openkeepass.crypto.SeekableProtectedStringCrypto;
+import de.slackspace.openkeepass.domain.CustomIconBuilder;
+import de.slackspace.openkeepass.domain.CustomIcons;
+import de.slackspace.openkeepass.domain.CustomIconsBuilder;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.History;
+import de.slackspace.openkeepass.domain.Meta;
+import de.slackspace.openkeepass.domain.MetaBuilder;
+import de.slackspace.openkeepass.domain.Property;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.domain.Times;
+import de.slackspace.openkeepass.domain.TimesBuilder;
+import de.slackspace.openkeepass.domain.visitor.EntryVisitor;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.util.ByteUtils;
+import de.slackspace.openkeepass.util.TimestampUtils;
+
+/**
+ * Parses KeePass XML with a {@link XMLStreamReader} and pushes the content as
+ * events to an {@link EntryVisitor}.
+ * <p>
+ * In contrast to {@link KeePassDatabaseXmlParser} no tree is built. Every
+ * entry is handed to the visitor as soon as its closing tag has been read and
+ * protected values are decrypted inline in document order.
+ *
+ */
+public class KeePassDatabaseXmlStreamParser {
+
+    private static final String PROTECTED = "Protected";
+    private static final String TITLE = "Title";
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return inputFactory;
+    }
+
+    /**
+     * Parses the given KeePass XML stream and reports its content to the
+     * visitor.
+     *
+     * @param inputStream
+     *            the decompressed KeePass XML
+     * @param protectedStringCrypto
+     *            the crypto to decrypt protected values
+     * @param visitor
+     *            the visitor which receives the events
+     */
+    public void parse(InputStream inputStream, ProtectedStringCrypto protectedStringCrypto, EntryVisitor visitor) {
+        parse(inputStream, protectedStringCrypto, visitor, ReadOptions.ALL);
+    }
+
+    /**
+     * Parses the given KeePass XML stream and reports its content to the
+     * visitor. Parts which are switched off in the read options are skipped
+     * without being materialized.
+     *
+     * @param inputStream
+     *            the decompressed KeePass XML
+     * @param protectedStringCrypto
+     *            the crypto to decrypt protected values
+     * @param visitor
+     *            the visitor which receives the events
+     * @param readOptions
+     *            the parts of the database which should be read
+     */
+    public void parse(InputStream inputStream, ProtectedStringCrypto protectedStringCrypto, EntryVisitor visitor, ReadOptions readOptions) {
+        if (readOptions == null) {
+            throw new IllegalArgumentException("You must provide read options.");
+        }
+
+        try {
+            XMLStreamReader reader = createReader(inputStream);
+            new Parse(reader, protectedStringCrypto, visitor, readOptions).parseDocument();
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new KeePassDatabaseUnreadableException("Could not parse database xml", e);
+        }
+    }
+
+    /**
+     * Parses a single Meta element.
+     *
+     * @param inputStream
+     *            the xml of a Meta element
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @return the parsed metadata
+     */
+    public Meta parseMeta(InputStream inputStream, ReadOptions readOptions) {
+        try {
+            Parse parse = startFragment(inputStream, null, readOptions);
+            Meta meta = parse.parseMeta();
+            parse.reader.close();
+            return meta;
+        } catch (XMLStreamException e) {
+            throw new KeePassDatabaseUnreadableException("Could not parse database xml", e);
+        }
+    }
+
+    /**
+     * Parses the attributes of a single Group element. Entries and subgroups
+     * of the group are skipped.
+     *
+     * @param inputStream
+     *            the xml of a Group element
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @return a builder initialized with the attributes of the group
+     */
+    public GroupBuilder parseGroupHeader(InputStream inputStream, ReadOptions readOptions) {
+        try {
+            Parse parse = startFragment(inputStream, null, readOptions);
+            GroupBuilder groupBuilder = new GroupBuilder();
+            while (parse.parseGroupHeader(groupBuilder)) {
+                parse.skipElement();
+            }
+            parse.reader.close();
+            return groupBuilder;
+        } catch (XMLStreamException e) {
+            throw new KeePassDatabaseUnreadableException("Could not parse database xml", e);
+        }
+    }
+
+    /**
+     * Parses a single Group element including all of its entries and
+     * subgroups and reports them to the visitor. The crypto must be
+     * positioned at the key stream offset of the first protected value of the
+     * group.
+     *
+     * @param inputStream
+     *            the xml of a Group element
+     * @param protectedStringCrypto
+     *            the crypto to decrypt protected values
+     * @param visitor
+     *            the visitor which receives the events
+     * @param readOptions
+     *            the parts of the database which should be read
+     */
+    public void parseGroup(InputStream inputStream, ProtectedStringCrypto protectedStringCrypto, EntryVisitor visitor, ReadOptions readOptions) {
+        try {
+            Parse parse = startFragment(inputStream, protectedStringCrypto, readOptions, visitor);
+            parse.parseGroup();
+            parse.reader.close();
+        } catch (XMLStreamException e) {
+            throw new KeePassDatabaseUnreadableException("Could not parse database xml", e);
+        }
+    }
+
+    /**
+     * Parses a single Entry element. The crypto must be positioned at the
+     * key stream offset of the first protected value of the entry.
+     *
+     * @param inputStream
+     *            the xml of an Entry element
+     * @param protectedStringCrypto
+     *            the crypto to decrypt protected values
+     * @param readOptions
+     *            the parts of the database which should be read
+     * @return the parsed entry
+     */
+    public Entry parseEntry(InputStream inputStream, ProtectedStringCrypto protectedStringCrypto, ReadOptions readOptions) {
+        try {
+            Parse parse = startFragment(inputStream, protectedStringCrypto, readOptions);
+            Entry entry = parse.parseEntry();
+            parse.reader.close();
+            return entry;
+        } catch (XMLStreamException e) {
+            throw new KeePassDatabaseUnreadableException("Could not parse database xml", e);
+        }
+    }
+
+    /**
+     * Searches the given KeePass XML for the entry with the given UUID.
+     * Parsing stops as soon as the entry has been read. Protected values of
+     * other entries only advance the key stream and are not decoded.
+     *
+     * @param inputStream
+     *            the decompressed KeePass XML
+     * @param protectedStringCrypto
+     *            the crypto to decrypt protected values
+     * @param uuid
+     *            the UUID of the entry
+     * @return the entry or null if there is no entry with the given UUID
+     */
+    public Entry findEntryByUuid(InputStream inputStream, SeekableProtectedStringCrypto protectedStringCrypto, UUID uuid) {
+        if (uuid == null) {
+            throw new IllegalArgumentException("You must provide a UUID to search for.");
+        }
+
+        return findEntry(inputStream, protectedStringCrypto, uuid, null);
+    }
+
+    /**
+     * Searches the given KeePass XML for the first entry with the given title,
+     * ignoring case. Parsing stops as soon as the entry has been read.
+     * Protected values of other entries only advance the key stream and are
+     * not decoded.
+     *
+     * @param inputStream
+     *            the decompressed KeePass XML
+     * @param protectedStringCrypto
+     *            the crypto to decrypt protected values
+     * @param title
+     *            the title of the entry
+     * @return the entry or null if there is no entry with the given title
+     */
+    public Entry findEntryByTitle(InputStream inputStream, SeekableProtectedStringCrypto protectedStringCrypto, String title) {
+        if (title == null) {
+            throw new IllegalArgumentException("You must provide a title to search for.");
+        }
+
+        return findEntry(inputStream, protectedStringCrypto, null, title);
+    }
+
+    private Entry findEntry(InputStream inputStream, SeekableProtectedStringCrypto protectedStringCrypto, UUID uuid, String title) {
+        try {
+            XMLStreamReader reader = createReader(inputStream);
+            Entry entry = new Parse(reader, protectedStringCrypto, null, ReadOptions.ALL).findEntry(uuid, title);
+            reader.close();
+            return entry;
+        } catch (XMLStreamException e) {
+            throw new KeePassDatabaseUnreadableException("Could not parse database xml", e);
+        }
+    }
+
+    private Parse startFragment(InputStream inputStream, ProtectedStringCrypto protectedStringCrypto, ReadOptions readOptions) throws XMLStreamException {
+        return startFragment(inputStream, protectedStringCrypto, readOptions, null);
+    }
+
+    private Parse startFragment(InputStream inputStream, ProtectedStringCrypto protectedStringCrypto, ReadOptions readOptions, EntryVisitor visitor)
+            throws XMLStreamException {
+        XMLStreamReader reader = createReader(inputStream);
+        reader.nextTag();
+        return new Parse(reader, protectedStringCrypto, visitor, readOptions);
+    }
+
+    private static XMLStreamReader createReader(InputStream inputStream) throws XMLStreamException {
+        // factories are not guaranteed to be thread safe
+        synchronized (INPUT_FACTORY) {
+            return INPUT_FACTORY.createXMLStreamReader(inputStream);
+        }
+    }
+
+    /**
+     * A property whose protected value has not been decrypted yet.
+     */
+    private static class PendingProperty {
+
+        private String key;
+        private String value;
+        private boolean isProtected;
+        private long keyStreamPosition = -1;
+    }
+
+    /**
+     * Holds the state of a single parse run, so that the parser itself can be
+     * shared between threads.
+     */
+    private static class Parse {
+
+        private final XMLStreamReader reader;
+        private final ProtectedStringCrypto protectedStringCrypto;
+        private final EntryVisitor visitor;
+        private final ReadOptions readOptions;
+
+        Parse(XMLStreamReader reader, ProtectedStringCrypto protectedStringCrypto, EntryVisitor visitor, ReadOptions readOptions) {
+            this.reader = reader;
+            this.protectedStringCrypto = protectedStringCrypto;
+            this.visitor = visitor;
+            this.readOptions = readOptions;
+        }
+
+        void parseDocument() throws XMLStreamException {
+            reader.nextTag();
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("Meta".equals(name)) {
+                    visitor.visitMeta(parseMeta());
+                } else if ("Root".equals(name)) {
+                    parseRoot();
+                } else {
+                    skipElement();
+                }
+            }
+        }
+
+        Entry findEntry(UUID uuid, String title) throws XMLStreamException {
+            reader.nextTag();
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                if ("Root".equals(reader.getLocalName())) {
+                    return findEntryInChildren(uuid, title);
+                }
+                skipElement();
+            }
+
+            return null;
+        }
+
+        private Entry findEntryInChildren(UUID uuid, String title) throws XMLStreamException {
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+
+                Entry entry = null;
+                if ("Entry".equals(name)) {
+                    entry = parseEntryIfMatching(uuid, title);
+                } else if ("Group".equals(name)) {
+                    entry = findEntryInChildren(uuid, title);
+                } else {
+                    skipElement();
+                }
+
+                if (entry != null) {
+                    return entry;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Parses the current entry if it matches the given UUID or title.
+         * Protected values are only skipped in the key stream until it is
+         * known that the entry matches, then they are decrypted by seeking
+         * back to their recorded key stream positions.
+         */
+        private Entry parseEntryIfMatching(UUID uuid, String title) throws XMLStreamException {
+            SeekableProtectedStringCrypto crypto = (SeekableProtectedStringCrypto) protectedStringCrypto;
+            EntryBuilder entryBuilder = new EntryBuilder();
+            List<PendingProperty> properties = new ArrayList<PendingProperty>();
+            boolean uuidMatches = uuid == null;
+            boolean titleMatches = title == null;
+            boolean rejected = false;
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+
+                if (rejected) {
+                    skipElement();
+                } else if ("UUID".equals(name)) {
+                    UUID entryUuid = readUuid();
+                    entryBuilder.uuid(entryUuid);
+                    if (uuid != null) {
+                        uuidMatches = uuid.equals(entryUuid);
+                        rejected = !uuidMatches;
+                    }
+                } else if ("IconID".equals(name)) {
+                    entryBuilder.iconId(readInt());
+                } else if ("CustomIconUUID".equals(name)) {
+                    entryBuilder.customIconUuid(readUuid());
+                } else if ("Times".equals(name) && readOptions.isTimes()) {
+                    entryBuilder.times(parseTimes());
+                } else if ("String".equals(name)) {
+                    PendingProperty property = readPendingProperty(crypto);
+                    properties.add(property);
+                    if (title != null && TITLE.equals(property.key)) {
+                        titleMatches = title.equalsIgnoreCase(property.value);
+                        rejected = !titleMatches;
+                    }
+                } else if ("History".equals(name)) {
+                    entryBuilder.history(parseHistory());
+                } else {
+                    skipElement();
+                }
+            }
+
+            if (rejected || !uuidMatches || !titleMatches) {
+                return null;
+            }
+
+            List<Property> decrypted = new ArrayList<Property>(properties.size());
+            for (PendingProperty property : properties) {
+                String value = property.value;
+                if (property.keyStreamPosition >= 0) {
+                    crypto.seekTo(property.keyStreamPosition);
+                    value = crypto.decrypt(value);
+                }
+                if (property.key != null) {
+                    decrypted.add(new Property(property.key, value, property.isProtected));
+                }
+            }
+
+            return entryBuilder.properties(decrypted).build();
+        }
+
+        /**
+         * Reads a property without decrypting its value. The key stream is
+         * advanced past a protected value and its position is recorded. A
+         * protected title is decrypted right away, because it is needed to
+         * decide whether the entry matches.
+         */
+        private PendingProperty readPendingProperty(SeekableProtectedStringCrypto crypto) throws XMLStreamException {
+            PendingProperty property = new PendingProperty();
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+
+                if ("Key".equals(name)) {
+                    property.key = reader.getElementText();
+                } else if ("Value".equals(name)) {
+                    property.isProtected = isProtected();
+                    property.value = reader.getElementText();
+                    if (property.isProtected && !property.value.isEmpty()) {
+                        if (TITLE.equals(property.key)) {
+                            property.value = crypto.decrypt(property.value);
+                        } else {
+                            property.keyStreamPosition = crypto.getPosition();
+                            crypto.skip(property.value);
+                        }
+                    }
+                } else {
+                    skipElement();
+                }
+            }
+
+            return property;
+        }
+
+        private void parseRoot() throws XMLStreamException {
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                if ("Group".equals(reader.getLocalName())) {
+                    parseGroup();
+                } else {
+                    skipElement();
+                }
+            }
+        }
+
+        void parseGroup() throws XMLStreamException {
+            GroupBuilder groupBuilder = new GroupBuilder();
+            boolean hasChildren = parseGroupHeader(groupBuilder);
+
+            // Attributes of a group precede its children
+            Group group = groupBuilder.build();
+            visitor.enterGroup(group);
+
+            if (hasChildren) {
+                do {
+                    String name = reader.getLocalName();
+
+                    if ("Entry".equals(name)) {
+                        visitor.visitEntry(parseEntry());
+                    } else if ("Group".equals(name)) {
+                        parseGroup();
+                    } else {
+                        skipElement();
+                    }
+                } while (reader.nextTag() == XMLStreamConstants.START_ELEMENT);
+            }
+
+            visitor.exitGroup(group);
+        }
+
+        /**
+         * Reads the attributes of a group into the builder and stops at the
+         * first child node.
+         *
+         * @return true if the reader stopped at an entry or subgroup, false if
+         *         the end of the group has been reached
+         */
+        boolean parseGroupHeader(GroupBuilder groupBuilder) throws XMLStreamException {
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+
+                if ("Entry".equals(name) || "Group".equals(name)) {
+                    return true;
+                } else if ("UUID".equals(name)) {
+                    groupBuilder.uuid(readUuid());
+                } else if ("Name".equals(name)) {
+                    groupBuilder.name(reader.getElementText());
+                } else if ("IconID".equals(name)) {
+                    groupBuilder.iconId(readInt());
+                } else if ("CustomIconUUID".equals(name)) {
+                    groupBuilder.customIconUuid(readUuid());
+                } else if ("Times".equals(name) && readOptions.isTimes()) {
+                    groupBuilder.times(parseTimes());
+                } else if ("IsExpanded".equals(name)) {
+                    groupBuilder.isExpanded(readBoolean());
+                } else {
+                    skipElement();
+                }
+            }
+
+            return false;
+        }
+
+        Entry parseEntry() throws XMLStreamException {
+            EntryBuilder entryBuilder = new EntryBuilder();
+            List<Property> properties = new ArrayList<Property>();
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+
+                if ("UUID".equals(name)) {
+                    entryBuilder.uuid(readUuid());
+                } else if ("IconID".equals(name)) {
+                    entryBuilder.iconId(readInt());
+                } else if ("CustomIconUUID".equals(name)) {
+                    entryBuilder.customIconUuid(readUuid());
+                } else if ("Times".equals(name) && readOptions.isTimes()) {
+                    entryBuilder.times(parseTimes());
+                } else if ("String".equals(name)) {
+                    Property property = parseProperty();
+                    if (property != null) {
+                        properties.add(property);
+                    }
+                } else if ("History".equals(name) && readOptions.isHistory()) {
+                    entryBuilder.history(parseHistory());
+                } else {
+                    skipElement();
+                }
+            }
+
+            return entryBuilder.properties(properties).build();
+        }
+
+        private Property parseProperty() throws XMLStreamException {
+            String key = null;
+            String value = null;
+            boolean isProtected = false;
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+
+                if ("Key".equals(name)) {
+                    key = reader.getElementText();
+                } else if ("Value".equals(name)) {
+                    isProtected = isProtected();
+                    value = reader.getElementText();
+                    if (isProtected && !value.isEmpty()) {
+                        value = protectedStringCrypto.decrypt(value);
+                    }
+                } else {
+                    skipElement();
+                }
+            }
+
+            if (key == null) {
+                return null;
+            }
+            return new Property(key, value, isProtected);
+        }
+
+        private History parseHistory() throws XMLStreamException {
+            History history = new History();
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                if ("Entry".equals(reader.getLocalName())) {
+                    history.getHistoricEntries().add(parseEntry());
+                } else {
+                    skipElement();
+                }
+            }
+
+            return history;
+        }
+
+        Meta parseMeta() throws XMLStreamException {
+            MetaBuilder metaBuilder = new MetaBuilder((String) null);
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+
+                if ("Generator".equals(name)) {
+                    metaBuilder.generator(reader.getElementText());
+                } else if ("DatabaseName".equals(name)) {
+                    metaBuilder.databaseName(reader.getElementText());
+                } else if ("DatabaseDescription".equals(name)) {
+                    metaBuilder.databaseDescription(reader.getElementText());
+                } else if ("DatabaseNameChanged".equals(name) && readOptions.isTimes()) {
+                    metaBuilder.databaseNameChanged(readTimestamp());
+                } else if ("DatabaseDescriptionChanged".equals(name) && readOptions.isTimes()) {
+                    metaBuilder.databaseDescriptionChanged(readTimestamp());
+                } else if ("MaintenanceHistoryDays".equals(name)) {
+                    metaBuilder.maintenanceHistoryDays(readInt());
+                } else if ("RecycleBinUUID".equals(name)) {
+                    metaBuilder.recycleBinUuid(readUuid());
+                } else if ("RecycleBinChanged".equals(name) && readOptions.isTimes()) {
+                    metaBuilder.recycleBinChanged(readTimestamp());
+                } else if ("RecycleBinEnabled".equals(name)) {
+                    metaBuilder.recycleBinEnabled(readBoolean());
+                } else if ("HistoryMaxItems".equals(name)) {
+                    metaBuilder.historyMaxItems(readLong());
+                } else if ("HistoryMaxSize".equals(name)) {
+                    metaBuilder.historyMaxSize(readLong());
+                } else if ("CustomIcons".equals(name)) {
+                    metaBuilder.customIcons(parseCustomIcons());
+                } else {
+                    skipElement();
+                }
+            }
+
+            return metaBuilder.build();
+        }
+
+        private CustomIcons parseCustomIcons() throws XMLStreamException {
+            CustomIconsBuilder customIconsBuilder = new CustomIconsBuilder();
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                if (!"Icon".equals(reader.getLocalName())) {
+                    skipElement();
+                    continue;
+                }
+
+                CustomIconBuilder customIconBuilder = new CustomIconBuilder();
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+
+                    if ("UUID".equals(name)) {
+                        customIconBuilder.uuid(readUuid());
+                    } else if ("Data".equals(name) && readOptions.isCustomIconData()) {
+                        customIconBuilder.data(DatatypeConverter.parseBase64Binary(reader.getElementText()));
+                    } else {
+                        skipElement();
+                    }
+                }
+                customIconsBuilder.addIcon(customIconBuilder.build());
+            }
+
+            return customIconsBuilder.build();
+        }
+
+        private Times parseTimes() throws XMLStreamException {
+            TimesBuilder timesBuilder = new TimesBuilder();
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+
+                if ("LastModificationTime".equals(name)) {
+                    timesBuilder.lastModificationTime(readTimestamp());
+                } else if ("CreationTime".equals(name)) {
+                    timesBuilder.creationTime(readTimestamp());
+                } else if ("LastAccessTime".equals(name)) {
+                    timesBuilder.lastAccessTime(readTimestamp());
+                } else if ("ExpiryTime".equals(name)) {
+                    timesBuilder.expiryTime(readTimestamp());
+                } else if ("Expires".equals(name)) {
+                    timesBuilder.expires(readBoolean());
+                } else if ("UsageCount".equals(name)) {
+                    timesBuilder.usageCount(readInt());
+                } else if ("LocationChanged".equals(name)) {
+                    timesBuilder.locationChanged(readTimestamp());
+                } else {
+                    skipElement();
+                }
+            }
+
+            return timesBuilder.build();
+        }
+
+        /**
+         * Skips the current element including all of its children. Protected
+         * values inside the skipped element still have to consume the inner
+         * random stream, so the crypto is advanced past them.
+         */
+        void skipElement() throws XMLStreamException {
+            int depth = 1;
+
+            while (depth > 0) {
+                if (reader.getEventType() == XMLStreamConstants.START_ELEMENT && isProtected()) {
+                    skipProtectedValue(reader.getElementText());
+                    depth--;
+                }
+
+                if (depth == 0) {
+                    break;
+                }
+
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        }
+
+        private void skipProtectedValue(String value) {
+            // fragments like the metadata are parsed without a key stream,
+            // the scanner has already accounted for their protected values
+            if (value.isEmpty() || protectedStringCrypto == null) {
+                return;
+            }
+
+            if (protectedStringCrypto instanceof SeekableProtectedStringCrypto) {
+                ((SeekableProtectedStringCrypto) protectedStringCrypto).skip(value);
+            } else {
+                protectedStringCrypto.decrypt(value);
+            }
+        }
+
+        private boolean isProtected() {
+            return "true".equalsIgnoreCase(reader.getAttributeValue(null, PROTECTED));
+        }
+
+        private UUID readUuid() throws XMLStreamException {
+            String text = reader.getElementText().trim();
+            if (text.isEmpty()) {
+                return null;
+            }
+
+            return ByteUtils.bytesToUUID(DatatypeConverter.parseBase64Binary(text));
+        }
+
+        private long readTimestamp() throws XMLStreamException {
+            return TimestampUtils.parse(reader.getElementText());
+        }
+
+        private boolean readBoolean() throws XMLStreamException {
+            return "true".equalsIgnoreCase(reader.getElementText().trim());
+        }
+
+        private int readInt() throws XMLStreamException {
+            return Integer.parseInt(reader.getElementText().trim());
+        }
+
+        private long readLong() throws XMLStreamException {
+            return Long.parseLong(reader.getElementText().trim());
+        }
+    }
+}
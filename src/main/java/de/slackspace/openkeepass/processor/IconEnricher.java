@@ -74,7 +74,20 @@ public class IconEnricher {
         group.getEntries().addAll(addList);
     }
 
-    private byte[] getIconData(UUID customIconUuid, int stockIconId, CustomIcons iconLibrary) {
+    /**
+     * Retrieves the raw icon data of a single node. Custom icons are looked up
+     * in the given icon library, stock icons are read from the bundled
+     * resources.
+     *
+     * @param customIconUuid
+     *            the uuid of the custom icon of the node or null if it has none
+     * @param stockIconId
+     *            the id of the stock icon of the node
+     * @param iconLibrary
+     *            the custom icons of the database
+     * @return the raw icon data or null if none is available
+     */
+    public byte[] getIconData(UUID customIconUuid, int stockIconId, CustomIcons iconLibrary) {
         byte[] iconData;
 
         if (customIconUuid != null) {
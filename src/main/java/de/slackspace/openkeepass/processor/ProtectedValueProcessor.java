@@ -1,7 +1,6 @@
 package de.slackspace.openkeepass.processor;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ListIterator;
 
 import de.slackspace.openkeepass.domain.Entry;
 import de.slackspace.openkeepass.domain.History;
@@ -13,8 +12,7 @@ public class ProtectedValueProcessor {
 
     public void processProtectedValues(ProtectionStrategy strategy, KeePassFile keePassFile) {
         // Decrypt/Encrypt all protected values
-        List<Entry> entries = keePassFile.getEntries();
-        for (Entry entry : entries) {
+        for (Entry entry : keePassFile.iterateEntries()) {
             encryptOrDecryptProtectedValues(strategy, entry);
 
             // Also process historic password values
@@ -28,26 +26,16 @@ public class ProtectedValueProcessor {
     }
 
     private void encryptOrDecryptProtectedValues(ProtectionStrategy strategy, Entry entry) {
-        List<Property> removeList = new ArrayList<Property>();
-        List<Property> addList = new ArrayList<Property>();
-
-        List<Property> properties = entry.getProperties();
-        for (Property property : properties) {
-            handleProtectedValue(strategy, removeList, addList, property);
-        }
-
-        properties.removeAll(removeList);
-        properties.addAll(addList);
-    }
-
-    private void handleProtectedValue(ProtectionStrategy strategy, List<Property> removeList, List<Property> addList, Property property) {
-        PropertyValue propertyValue = property.getPropertyValue();
-
-        if (isPropertyValueProtected(propertyValue)) {
-            String processedValue = strategy.apply(propertyValue.getValue());
-
-            removeList.add(property);
-            addList.add(new Property(property.getKey(), processedValue, property.isProtected()));
+        // replace the values in place, so the properties keep their document order
+        ListIterator<Property> properties = entry.getProperties().listIterator();
+        while (properties.hasNext()) {
+            Property property = properties.next();
+            PropertyValue propertyValue = property.getPropertyValue();
+
+            if (isPropertyValueProtected(propertyValue)) {
+                String processedValue = strategy.apply(propertyValue.getValue());
+                properties.set(new Property(property.getKey(), processedValue, property.isProtected()));
+            }
         }
     }
 
@@ -0,0 +1,404 @@
+package de.slackspace.openkeepass.stream;
+
+import java.util.zip.ZipException;
+
+/**
+ * A decoder for raw deflate data (RFC 1951) which can be suspended at block
+ * boundaries and resumed from there later on.
+ * <p>
+ * In contrast to {@link java.util.zip.Inflater} the decoder exposes the exact
+ * bit position in the input and the sliding window, which is everything that
+ * is needed to continue decoding in the middle of a stream. The decoding
+ * itself follows the reference implementation puff by Mark Adler.
+ *
+ */
+class DeflateDecoder {
+
+    static final int WINDOW_SIZE = 32768;
+
+    private static final int RING_SIZE = 2 * WINDOW_SIZE;
+    private static final int RING_MASK = RING_SIZE - 1;
+
+    private static final int MAX_BITS = 15;
+    private static final int MAX_LENGTH_CODES = 286;
+    private static final int MAX_DISTANCE_CODES = 30;
+    private static final int FIXED_LENGTH_CODES = 288;
+
+    private static final short[] LENGTH_BASE = { 3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163,
+            195, 227, 258 };
+    private static final short[] LENGTH_EXTRA = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0 };
+    private static final short[] DISTANCE_BASE = { 1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049,
+            3073, 4097, 6145, 8193, 12289, 16385, 24577 };
+    private static final short[] DISTANCE_EXTRA = { 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13 };
+    private static final short[] CODE_LENGTH_ORDER = { 16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15 };
+
+    private static final Huffman FIXED_LENGTH_CODE = new Huffman(FIXED_LENGTH_CODES);
+    private static final Huffman FIXED_DISTANCE_CODE = new Huffman(MAX_DISTANCE_CODES);
+
+    static {
+        short[] lengths = new short[FIXED_LENGTH_CODES];
+        for (int symbol = 0; symbol < FIXED_LENGTH_CODES; symbol++) {
+            if (symbol < 144) {
+                lengths[symbol] = 8;
+            } else if (symbol < 256) {
+                lengths[symbol] = 9;
+            } else if (symbol < 280) {
+                lengths[symbol] = 7;
+            } else {
+                lengths[symbol] = 8;
+            }
+        }
+        FIXED_LENGTH_CODE.construct(lengths, 0, FIXED_LENGTH_CODES);
+
+        for (int symbol = 0; symbol < MAX_DISTANCE_CODES; symbol++) {
+            lengths[symbol] = 5;
+        }
+        FIXED_DISTANCE_CODE.construct(lengths, 0, MAX_DISTANCE_CODES);
+    }
+
+    /**
+     * Receives the decoded data in order.
+     */
+    interface Sink {
+
+        void write(byte[] buffer, int offset, int length);
+    }
+
+    private final byte[] input;
+    private final int inputEnd;
+    private final Sink sink;
+
+    private int inputPos;
+    private int bitBuffer;
+    private int bitCount;
+
+    private final byte[] ring = new byte[RING_SIZE];
+    private long outputPos;
+    private long flushedPos;
+    private boolean lastBlock;
+
+    private final Huffman lengthCode = new Huffman(MAX_LENGTH_CODES);
+    private final Huffman distanceCode = new Huffman(MAX_DISTANCE_CODES);
+
+    DeflateDecoder(byte[] input, int inputStart, int inputEnd, Sink sink) {
+        this.input = input;
+        this.inputPos = inputStart;
+        this.inputEnd = inputEnd;
+        this.sink = sink;
+    }
+
+    /**
+     * Positions the decoder at a block boundary inside the stream.
+     *
+     * @param bitOffset
+     *            the offset of the block in bits, relative to the start of the
+     *            input array
+     * @param outputOffset
+     *            the number of bytes that have been decoded up to the block
+     * @param window
+     *            the decoded bytes directly preceding the block, at most
+     *            {@link #WINDOW_SIZE} bytes
+     */
+    void prime(long bitOffset, long outputOffset, byte[] window) throws ZipException {
+        inputPos = (int) (bitOffset >>> 3);
+        bitBuffer = 0;
+        bitCount = 0;
+        bits((int) (bitOffset & 7));
+
+        for (int i = 0; i < window.length; i++) {
+            ring[(int) ((outputOffset - window.length + i) & RING_MASK)] = window[i];
+        }
+        outputPos = outputOffset;
+        flushedPos = outputOffset;
+    }
+
+    /**
+     * Decodes the next block of the stream.
+     *
+     * @param stopAt
+     *            the output offset after which decoding may stop in the
+     *            middle of the block, the decoder cannot be resumed then
+     * @return false if the last block has been decoded
+     */
+    boolean decodeBlock(long stopAt) throws ZipException {
+        if (lastBlock) {
+            return false;
+        }
+
+        lastBlock = bits(1) == 1;
+        int type = bits(2);
+
+        if (type == 0) {
+            stored();
+        } else if (type == 1) {
+            codes(FIXED_LENGTH_CODE, FIXED_DISTANCE_CODE, stopAt);
+        } else if (type == 2) {
+            dynamic(stopAt);
+        } else {
+            throw new ZipException("Invalid deflate block type");
+        }
+
+        flush();
+        return !lastBlock;
+    }
+
+    /**
+     * Returns the position of the next unread bit, relative to the start of
+     * the input array.
+     */
+    long getBitOffset() {
+        return ((long) inputPos << 3) - bitCount;
+    }
+
+    /**
+     * Returns the offset of the next input byte after the last decoded block.
+     * Remaining bits of a partially consumed byte are discarded.
+     */
+    int getInputPos() {
+        return inputPos;
+    }
+
+    long getOutputPos() {
+        return outputPos;
+    }
+
+    /**
+     * Returns a copy of the last decoded bytes which are needed to resume
+     * decoding at the current position.
+     */
+    byte[] getWindow() {
+        int length = (int) Math.min(WINDOW_SIZE, outputPos);
+        byte[] window = new byte[length];
+        for (int i = 0; i < length; i++) {
+            window[i] = ring[(int) ((outputPos - length + i) & RING_MASK)];
+        }
+        return window;
+    }
+
+    private int bits(int need) throws ZipException {
+        int value = bitBuffer;
+        while (bitCount < need) {
+            if (inputPos >= inputEnd) {
+                throw new ZipException("Unexpected end of deflate stream");
+            }
+            value |= (input[inputPos++] & 0xFF) << bitCount;
+            bitCount += 8;
+        }
+
+        bitBuffer = value >>> need;
+        bitCount -= need;
+        return value & ((1 << need) - 1);
+    }
+
+    private void stored() throws ZipException {
+        // skip to the next byte boundary
+        bitBuffer = 0;
+        bitCount = 0;
+
+        if (inputPos + 4 > inputEnd) {
+            throw new ZipException("Unexpected end of deflate stream");
+        }
+
+        int length = (input[inputPos] & 0xFF) | ((input[inputPos + 1] & 0xFF) << 8);
+        int complement = (input[inputPos + 2] & 0xFF) | ((input[inputPos + 3] & 0xFF) << 8);
+        inputPos += 4;
+
+        if (length != (~complement & 0xFFFF)) {
+            throw new ZipException("Invalid stored block length");
+        }
+        if (inputPos + length > inputEnd) {
+            throw new ZipException("Unexpected end of deflate stream");
+        }
+
+        for (int i = 0; i < length; i++) {
+            output(input[inputPos++]);
+        }
+    }
+
+    private void dynamic(long stopAt) throws ZipException {
+        int lengthCodes = bits(5) + 257;
+        int distanceCodes = bits(5) + 1;
+        int codeLengthCodes = bits(4) + 4;
+        if (lengthCodes > MAX_LENGTH_CODES || distanceCodes > MAX_DISTANCE_CODES) {
+            throw new ZipException("Invalid dynamic block code counts");
+        }
+
+        short[] lengths = new short[MAX_LENGTH_CODES + MAX_DISTANCE_CODES];
+        for (int index = 0; index < codeLengthCodes; index++) {
+            lengths[CODE_LENGTH_ORDER[index]] = (short) bits(3);
+        }
+
+        if (lengthCode.construct(lengths, 0, 19) != 0) {
+            throw new ZipException("Invalid code lengths code");
+        }
+
+        int index = 0;
+        while (index < lengthCodes + distanceCodes) {
+            int symbol = lengthCode.decode(this);
+            if (symbol < 16) {
+                lengths[index++] = (short) symbol;
+                continue;
+            }
+
+            short length = 0;
+            int repeat;
+            if (symbol == 16) {
+                if (index == 0) {
+                    throw new ZipException("Repeat without previous code length");
+                }
+                length = lengths[index - 1];
+                repeat = 3 + bits(2);
+            } else if (symbol == 17) {
+                repeat = 3 + bits(3);
+            } else {
+                repeat = 11 + bits(7);
+            }
+
+            if (index + repeat > lengthCodes + distanceCodes) {
+                throw new ZipException("Too many code lengths");
+            }
+            while (repeat-- > 0) {
+                lengths[index++] = length;
+            }
+        }
+
+        if (lengths[256] == 0) {
+            throw new ZipException("Missing end of block code");
+        }
+
+        int left = lengthCode.construct(lengths, 0, lengthCodes);
+        if (left < 0 || (left > 0 && lengthCodes - lengthCode.count[0] != 1)) {
+            throw new ZipException("Invalid literal/length code lengths");
+        }
+
+        left = distanceCode.construct(lengths, lengthCodes, distanceCodes);
+        if (left < 0 || (left > 0 && distanceCodes - distanceCode.count[0] != 1)) {
+            throw new ZipException("Invalid distance code lengths");
+        }
+
+        codes(lengthCode, distanceCode, stopAt);
+    }
+
+    private void codes(Huffman lengths, Huffman distances, long stopAt) throws ZipException {
+        while (outputPos < stopAt) {
+            int symbol = lengths.decode(this);
+
+            if (symbol < 256) {
+                output((byte) symbol);
+            } else if (symbol == 256) {
+                return;
+            } else {
+                symbol -= 257;
+                if (symbol >= 29) {
+                    throw new ZipException("Invalid literal/length symbol");
+                }
+                int length = LENGTH_BASE[symbol] + bits(LENGTH_EXTRA[symbol]);
+
+                symbol = distances.decode(this);
+                if (symbol >= MAX_DISTANCE_CODES) {
+                    throw new ZipException("Invalid distance symbol");
+                }
+                int distance = DISTANCE_BASE[symbol] + bits(DISTANCE_EXTRA[symbol]);
+                if (distance > outputPos) {
+                    throw new ZipException("Distance too far back");
+                }
+
+                while (length-- > 0) {
+                    output(ring[(int) ((outputPos - distance) & RING_MASK)]);
+                }
+            }
+        }
+    }
+
+    private void output(byte value) {
+        ring[(int) (outputPos & RING_MASK)] = value;
+        outputPos++;
+
+        if (outputPos - flushedPos == WINDOW_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        while (flushedPos < outputPos) {
+            int start = (int) (flushedPos & RING_MASK);
+            int length = (int) Math.min(outputPos - flushedPos, RING_SIZE - start);
+            sink.write(ring, start, length);
+            flushedPos += length;
+        }
+    }
+
+    /**
+     * A canonical huffman code given by the number of codes per length and
+     * the symbols ordered by their code.
+     */
+    private static class Huffman {
+
+        private final short[] count = new short[MAX_BITS + 1];
+        private final short[] symbol;
+        private final short[] offsets = new short[MAX_BITS + 1];
+
+        Huffman(int symbols) {
+            symbol = new short[symbols];
+        }
+
+        /**
+         * Builds the code from the given code lengths.
+         *
+         * @return 0 for a complete code, a positive number for an incomplete
+         *         code and a negative number for an over-subscribed code
+         */
+        int construct(short[] lengths, int offset, int symbols) {
+            for (int length = 0; length <= MAX_BITS; length++) {
+                count[length] = 0;
+            }
+            for (int i = 0; i < symbols; i++) {
+                count[lengths[offset + i]]++;
+            }
+            if (count[0] == symbols) {
+                return 0;
+            }
+
+            int left = 1;
+            for (int length = 1; length <= MAX_BITS; length++) {
+                left <<= 1;
+                left -= count[length];
+                if (left < 0) {
+                    return left;
+                }
+            }
+
+            offsets[1] = 0;
+            for (int length = 1; length < MAX_BITS; length++) {
+                offsets[length + 1] = (short) (offsets[length] + count[length]);
+            }
+            for (int i = 0; i < symbols; i++) {
+                if (lengths[offset + i] != 0) {
+                    symbol[offsets[lengths[offset + i]]++] = (short) i;
+                }
+            }
+
+            return left;
+        }
+
+        int decode(DeflateDecoder decoder) throws ZipException {
+            int code = 0;
+            int first = 0;
+            int index = 0;
+
+            for (int length = 1; length <= MAX_BITS; length++) {
+                code |= decoder.bits(1);
+                int codes = count[length];
+                if (code - codes < first) {
+                    return symbol[index + (code - first)];
+                }
+                index += codes;
+                first += codes;
+                first <<= 1;
+                code <<= 1;
+            }
+
+            throw new ZipException("Invalid huffman code");
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package de.slackspace.openkeepass.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * A random access index over a gzip compressed stream.
+ * <p>
+ * Gzip cannot be seeked, so reading from the middle of the uncompressed data
+ * normally requires to inflate everything before it. While the stream is
+ * decompressed once, this index records a checkpoint about every
+ * <tt>span</tt> bytes of output. A checkpoint consists of the bit position of
+ * a deflate block in the compressed data and the preceding 32 KiB of output,
+ * which is the dictionary the block may refer to. Later reads resume
+ * decompression at the nearest checkpoint instead of the start of the stream.
+ * <p>
+ * The approach is the one of zran.c from the zlib examples. The index and the
+ * compressed data are kept in memory, which is usually much smaller than the
+ * uncompressed data.
+ *
+ */
+public class GzipCheckpointIndex {
+
+    /**
+     * The default distance between checkpoints of 1 MiB.
+     */
+    public static final int DEFAULT_SPAN = 1024 * 1024;
+
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    private final byte[] compressed;
+    private final int deflateEnd;
+    private final List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+    private long uncompressedSize;
+
+    private static class Checkpoint {
+
+        private final long outputOffset;
+        private final long bitOffset;
+        private final byte[] window;
+
+        Checkpoint(long outputOffset, long bitOffset, byte[] window) {
+            this.outputOffset = outputOffset;
+            this.bitOffset = bitOffset;
+            this.window = window;
+        }
+    }
+
+    private GzipCheckpointIndex(byte[] compressed) {
+        this.compressed = compressed;
+        this.deflateEnd = compressed.length - 8;
+    }
+
+    /**
+     * Decompresses the given gzip data to the output stream and builds an
+     * index with a checkpoint about every <tt>span</tt> bytes of output.
+     *
+     * @param compressed
+     *            the gzip compressed data, must not be modified afterwards
+     * @param span
+     *            the minimum number of uncompressed bytes between two
+     *            checkpoints
+     * @param outputStream
+     *            receives the complete uncompressed data, will not be closed
+     * @return the index
+     * @throws IOException
+     *             if the data is not valid gzip or the output stream fails
+     */
+    public static GzipCheckpointIndex build(byte[] compressed, int span, final OutputStream outputStream) throws IOException {
+        if (compressed == null) {
+            throw new IllegalArgumentException("You must provide gzip compressed data.");
+        }
+        if (span <= 0) {
+            throw new IllegalArgumentException("The span between checkpoints must be positive.");
+        }
+
+        GzipCheckpointIndex index = new GzipCheckpointIndex(compressed);
+        int deflateStart = readHeader(compressed);
+
+        final CRC32 crc = new CRC32();
+        final IOException[] writeFailure = new IOException[1];
+        DeflateDecoder decoder = new DeflateDecoder(compressed, deflateStart, index.deflateEnd, new DeflateDecoder.Sink() {
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) {
+                crc.update(buffer, offset, length);
+                if (writeFailure[0] == null) {
+                    try {
+                        outputStream.write(buffer, offset, length);
+                    } catch (IOException e) {
+                        writeFailure[0] = e;
+                    }
+                }
+            }
+        });
+
+        index.checkpoints.add(new Checkpoint(0, (long) deflateStart << 3, new byte[0]));
+        long lastCheckpoint = 0;
+
+        while (decoder.decodeBlock(Long.MAX_VALUE)) {
+            if (writeFailure[0] != null) {
+                throw writeFailure[0];
+            }
+
+            long outputPos = decoder.getOutputPos();
+            if (outputPos - lastCheckpoint >= span) {
+                index.checkpoints.add(new Checkpoint(outputPos, decoder.getBitOffset(), decoder.getWindow()));
+                lastCheckpoint = outputPos;
+            }
+        }
+        if (writeFailure[0] != null) {
+            throw writeFailure[0];
+        }
+
+        index.uncompressedSize = decoder.getOutputPos();
+        index.verifyTrailer(decoder.getInputPos(), crc.getValue());
+
+        return index;
+    }
+
+    /**
+     * Reads a range of the uncompressed data, starting decompression at the
+     * nearest checkpoint before the range.
+     *
+     * @param offset
+     *            the offset in the uncompressed data
+     * @param length
+     *            the number of bytes to read
+     * @return the uncompressed bytes of the range
+     * @throws IOException
+     *             if the compressed data is corrupt
+     */
+    public byte[] read(final long offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > uncompressedSize) {
+            throw new IllegalArgumentException("The range " + offset + "+" + length + " is outside of the uncompressed data.");
+        }
+
+        final byte[] range = new byte[length];
+        if (length == 0) {
+            return range;
+        }
+
+        Checkpoint checkpoint = findCheckpoint(offset);
+        final long[] position = new long[] { checkpoint.outputOffset };
+
+        DeflateDecoder decoder = new DeflateDecoder(compressed, 0, deflateEnd, new DeflateDecoder.Sink() {
+
+            @Override
+            public void write(byte[] buffer, int bufferOffset, int bufferLength) {
+                long start = Math.max(position[0], offset);
+                long end = Math.min(position[0] + bufferLength, offset + range.length);
+                if (start < end) {
+                    System.arraycopy(buffer, bufferOffset + (int) (start - position[0]), range, (int) (start - offset), (int) (end - start));
+                }
+                position[0] += bufferLength;
+            }
+        });
+        decoder.prime(checkpoint.bitOffset, checkpoint.outputOffset, checkpoint.window);
+
+        long end = offset + length;
+        while (decoder.getOutputPos() < end && decoder.decodeBlock(end)) {
+            // decode until the range is complete
+        }
+
+        return range;
+    }
+
+    /**
+     * Returns a stream over a range of the uncompressed data.
+     *
+     * @param offset
+     *            the offset in the uncompressed data
+     * @param length
+     *            the number of bytes to read
+     * @return a stream of the uncompressed range
+     * @throws IOException
+     *             if the compressed data is corrupt
+     */
+    public InputStream openStream(long offset, int length) throws IOException {
+        return new ByteArrayInputStream(read(offset, length));
+    }
+
+    /**
+     * Returns the size of the uncompressed data.
+     *
+     * @return the number of uncompressed bytes
+     */
+    public long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    /**
+     * Returns the number of checkpoints including the one at the start of the
+     * stream.
+     *
+     * @return the number of checkpoints
+     */
+    public int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
+    private Checkpoint findCheckpoint(long offset) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (checkpoints.get(middle).outputOffset <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return checkpoints.get(low);
+    }
+
+    private void verifyTrailer(int trailerStart, long crc) throws ZipException {
+        if (trailerStart != deflateEnd) {
+            throw new ZipException("Unexpected data after deflate stream");
+        }
+
+        long expectedCrc = readUnsignedInt(compressed, trailerStart);
+        long expectedSize = readUnsignedInt(compressed, trailerStart + 4);
+
+        if (expectedCrc != crc) {
+            throw new ZipException("Corrupt gzip trailer: crc mismatch");
+        }
+        if (expectedSize != (uncompressedSize & 0xFFFFFFFFL)) {
+            throw new ZipException("Corrupt gzip trailer: size mismatch");
+        }
+    }
+
+    private static int readHeader(byte[] data) throws ZipException {
+        if (data.length < 18 || (data[0] & 0xFF) != 0x1f || (data[1] & 0xFF) != 0x8b) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (data[2] != 8) {
+            throw new ZipException("Unsupported gzip compression method");
+        }
+
+        int flags = data[3] & 0xFF;
+        int pos = 10;
+
+        if ((flags & FLAG_EXTRA) != 0) {
+            pos += 2 + ((data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8));
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            pos = skipZeroTerminated(data, pos);
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            pos = skipZeroTerminated(data, pos);
+        }
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            pos += 2;
+        }
+
+        if (pos >= data.length - 8) {
+            throw new ZipException("Truncated gzip header");
+        }
+
+        return pos;
+    }
+
+    private static int skipZeroTerminated(byte[] data, int pos) throws ZipException {
+        while (pos < data.length && data[pos] != 0) {
+            pos++;
+        }
+        if (pos >= data.length) {
+            throw new ZipException("Truncated gzip header");
+        }
+        return pos + 1;
+    }
+
+    private static long readUnsignedInt(byte[] data, int pos) {
+        return (data[pos] & 0xFFL) | ((data[pos + 1] & 0xFFL) << 8) | ((data[pos + 2] & 0xFFL) << 16) | ((data[pos + 3] & 0xFFL) << 24);
+    }
+}
@@ -0,0 +1,134 @@
+package de.slackspace.openkeepass.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import de.slackspace.openkeepass.crypto.Sha256;
+
+/**
+ * A push based counterpart of the {@link HashedBlockInputStream}.
+ * <p>
+ * Decrypted bytes are handed to {@link #update(byte[], int, int)} in chunks of
+ * any size. Every block is verified against its hash as soon as it is
+ * complete and its data is appended to the payload.
+ *
+ */
+public class HashedBlockDecoder {
+
+    private static final String MSG_INVALID_DATA_FORMAT = "Invalid data format";
+
+    private static final int HASH_SIZE = 32;
+    private static final int BLOCK_HEADER_SIZE = 4 + HASH_SIZE + 4;
+
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+    private byte[] blockHeader = new byte[BLOCK_HEADER_SIZE];
+    private int blockHeaderPos = 0;
+    private byte[] block;
+    private int blockPos = 0;
+    private long blockIndex = 0;
+    private boolean atEnd = false;
+
+    /**
+     * Processes the next chunk of the decrypted hashed block stream.
+     *
+     * @param buffer
+     *            the buffer which contains the chunk
+     * @param offset
+     *            the offset of the chunk in the buffer
+     * @param length
+     *            the length of the chunk
+     * @throws IOException
+     *             if a block is malformed or its hash does not match
+     */
+    public void update(byte[] buffer, int offset, int length) throws IOException {
+        int pos = offset;
+        int end = offset + length;
+
+        while (pos < end) {
+            if (atEnd) {
+                throw new IOException("Unexpected data after the last block");
+            }
+
+            if (block == null) {
+                int count = Math.min(BLOCK_HEADER_SIZE - blockHeaderPos, end - pos);
+                System.arraycopy(buffer, pos, blockHeader, blockHeaderPos, count);
+                blockHeaderPos += count;
+                pos += count;
+
+                if (blockHeaderPos == BLOCK_HEADER_SIZE) {
+                    startBlock();
+                }
+            } else {
+                int count = Math.min(block.length - blockPos, end - pos);
+                System.arraycopy(buffer, pos, block, blockPos, count);
+                blockPos += count;
+                pos += count;
+            }
+
+            if (block != null && blockPos == block.length) {
+                finishBlock();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the terminating empty block has been read.
+     *
+     * @return true if the hashed block stream is complete
+     */
+    public boolean isComplete() {
+        return atEnd;
+    }
+
+    /**
+     * Returns the verified payload of all blocks which have been read so far.
+     *
+     * @return the payload
+     */
+    public byte[] getPayload() {
+        return payload.toByteArray();
+    }
+
+    private void startBlock() throws IOException {
+        if (readInt(0) != blockIndex) {
+            throw new IOException(MSG_INVALID_DATA_FORMAT);
+        }
+
+        int blockSize = readInt(4 + HASH_SIZE);
+        if (blockSize < 0) {
+            throw new IOException(MSG_INVALID_DATA_FORMAT);
+        }
+
+        block = new byte[blockSize];
+        blockPos = 0;
+    }
+
+    private void finishBlock() throws IOException {
+        byte[] storedHash = Arrays.copyOfRange(blockHeader, 4, 4 + HASH_SIZE);
+
+        if (block.length == 0) {
+            for (int i = 0; i < HASH_SIZE; i++) {
+                if (storedHash[i] != 0) {
+                    throw new IOException(MSG_INVALID_DATA_FORMAT);
+                }
+            }
+            atEnd = true;
+        } else {
+            if (!Arrays.equals(storedHash, Sha256.hash(block))) {
+                throw new IOException("Hashes didn't match");
+            }
+            payload.write(block, 0, block.length);
+        }
+
+        blockIndex++;
+        blockHeaderPos = 0;
+        block = null;
+    }
+
+    private int readInt(int offset) {
+        return (blockHeader[offset] & 0xFF) | ((blockHeader[offset + 1] & 0xFF) << 8) | ((blockHeader[offset + 2] & 0xFF) << 16)
+                | ((blockHeader[offset + 3] & 0xFF) << 24);
+    }
+}
@@ -41,7 +41,8 @@ public class HashedBlockInputStream extends InputStream {
         while (remaining > 0) {
             // Get more from the source into the buffer
             if (bufferPos == buffer.length && !readHashedBlock()) {
-                return length - remaining;
+                int readBytes = length - remaining;
+                return readBytes == 0 ? -1 : readBytes;
             }
 
             // Copy from buffer out
@@ -154,7 +155,7 @@ public class HashedBlockInputStream extends InputStream {
             return -1;
         }
 
-        int output = buffer[bufferPos];
+        int output = buffer[bufferPos] & 0xFF;
         bufferPos++;
 
         return output;
@@ -36,8 +36,8 @@ public class ByteUtils {
 
     public static int readInt(InputStream inputStream) throws IOException {
         byte[] bytesToRead = new byte[4];
-        int readBytes = inputStream.read(bytesToRead);
-        if (readBytes == -1) {
+        int readBytes = StreamUtils.read(inputStream, bytesToRead);
+        if (readBytes == 0) {
             return -1;
         }
 
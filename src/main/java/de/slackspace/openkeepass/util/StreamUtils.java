@@ -26,6 +26,30 @@ public class StreamUtils {
         return buffer.length - remaining;
     }
 
+    /**
+     * Skips exactly the given number of bytes.
+     *
+     * @param input
+     *            the stream to skip in
+     * @param count
+     *            the number of bytes to skip
+     * @throws IOException
+     *             if the stream ends before the bytes have been skipped
+     */
+    public static void skip(InputStream input, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                if (input.read() == EOF) {
+                    throw new IOException("Could not skip '" + count + "' bytes in stream");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
     public static byte[] toByteArray(InputStream input) throws IOException {
         ByteArrayOutputStream output = new ByteArrayOutputStream();
         copyLarge(input, output, new byte[BUFFER_SIZE]);
@@ -0,0 +1,24 @@
+package de.slackspace.openkeepass.util;
+
+public class StringUtils {
+
+    private StringUtils() {
+    }
+
+    /**
+     * Folds the case of every character the same way as
+     * {@link String#equalsIgnoreCase(String)} compares them, so two strings
+     * are equal ignoring case if and only if their folded forms are equal.
+     *
+     * @param text
+     *            the text to fold
+     * @return the folded text
+     */
+    public static String foldCase(String text) {
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,291 @@
+package de.slackspace.openkeepass.util;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Converts the timestamps of a KeePass database from and to milliseconds
+ * since the epoch.
+ * <p>
+ * KDBX 3 files store timestamps as ISO-8601 strings like
+ * <tt>2014-11-22T18:59:39Z</tt>, KDBX 4 files as base64 encoded seconds
+ * since 0001-01-01. Both are parsed by hand without creating a
+ * {@link Calendar}, which is much cheaper for the thousands of timestamps of
+ * a large database. Strings with an unusual format, e.g. without a time zone,
+ * are parsed by {@link DatatypeConverter} as before.
+ * <p>
+ * Dates are calculated in the proleptic Gregorian calendar like KeePass
+ * does, also before 1582.
+ */
+public class TimestampUtils {
+
+    /**
+     * The value of a timestamp which is not set.
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final long SECONDS_FROM_YEAR_ONE_TO_EPOCH = 62135596800L;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private TimestampUtils() {
+    }
+
+    /**
+     * Parses an ISO-8601 or base64 encoded timestamp.
+     *
+     * @param text
+     *            the timestamp as written in the database
+     * @return the milliseconds since the epoch or {@link #NONE} if the text is
+     *         empty
+     */
+    public static long parse(String text) {
+        if (text == null) {
+            return NONE;
+        }
+
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return NONE;
+        }
+
+        if (trimmed.length() == 12 && trimmed.charAt(11) == '=') {
+            return parseBase64(trimmed);
+        }
+
+        long millis = parseIso(trimmed);
+        if (millis != NONE) {
+            return millis;
+        }
+
+        return DatatypeConverter.parseDateTime(trimmed).getTimeInMillis();
+    }
+
+    /**
+     * Formats a timestamp as ISO-8601 string in UTC. Milliseconds are only
+     * written if there are any.
+     *
+     * @param millis
+     *            the milliseconds since the epoch
+     * @return the formatted timestamp or null for {@link #NONE}
+     */
+    public static String print(long millis) {
+        if (millis == NONE) {
+            return null;
+        }
+
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        int millisOfDay = (int) (millis - days * MILLIS_PER_DAY);
+
+        // civil date from days since the epoch, see
+        // http://howardhinnant.github.io/date_algorithms.html
+        long shifted = days + 719468;
+        long era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+        long dayOfEra = shifted - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder builder = new StringBuilder(24);
+        if (year < 0) {
+            builder.append('-');
+            year = -year;
+        }
+        appendDigits(builder, year, 4);
+        builder.append('-');
+        appendDigits(builder, month, 2);
+        builder.append('-');
+        appendDigits(builder, day, 2);
+        builder.append('T');
+        appendDigits(builder, millisOfDay / 3600000, 2);
+        builder.append(':');
+        appendDigits(builder, millisOfDay / 60000 % 60, 2);
+        builder.append(':');
+        appendDigits(builder, millisOfDay / 1000 % 60, 2);
+        if (millisOfDay % 1000 != 0) {
+            builder.append('.');
+            appendDigits(builder, millisOfDay % 1000, 3);
+        }
+        builder.append('Z');
+
+        return builder.toString();
+    }
+
+    /**
+     * Formats a timestamp as base64 encoded seconds since 0001-01-01 like KDBX
+     * 4 files do. Milliseconds are dropped.
+     *
+     * @param millis
+     *            the milliseconds since the epoch
+     * @return the encoded timestamp or null for {@link #NONE}
+     */
+    public static String printBase64(long millis) {
+        if (millis == NONE) {
+            return null;
+        }
+
+        long seconds = floorDiv(millis, 1000) + SECONDS_FROM_YEAR_ONE_TO_EPOCH;
+
+        byte[] bytes = new byte[8];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (seconds >>> (8 * i));
+        }
+
+        return DatatypeConverter.printBase64Binary(bytes);
+    }
+
+    /**
+     * Creates a calendar in UTC for a timestamp.
+     *
+     * @param millis
+     *            the milliseconds since the epoch
+     * @return a new calendar or null for {@link #NONE}
+     */
+    public static Calendar toCalendar(long millis) {
+        if (millis == NONE) {
+            return null;
+        }
+
+        GregorianCalendar calendar = new GregorianCalendar(UTC);
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+
+    /**
+     * Returns the timestamp of a calendar.
+     *
+     * @param calendar
+     *            the calendar or null
+     * @return the milliseconds since the epoch or {@link #NONE} for null
+     */
+    public static long fromCalendar(Calendar calendar) {
+        if (calendar == null) {
+            return NONE;
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    private static long parseBase64(String text) {
+        byte[] bytes = DatatypeConverter.parseBase64Binary(text);
+        if (bytes.length != 8) {
+            throw new IllegalArgumentException("Timestamp '" + text + "' is not a valid base64 encoded timestamp.");
+        }
+
+        long seconds = 0;
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            seconds = (seconds << 8) | (bytes[i] & 0xFF);
+        }
+
+        return (seconds - SECONDS_FROM_YEAR_ONE_TO_EPOCH) * 1000;
+    }
+
+    /**
+     * Parses yyyy-MM-ddTHH:mm:ss with optional fractional seconds and a
+     * mandatory time zone. Returns NONE for anything else.
+     */
+    private static long parseIso(String text) {
+        int length = text.length();
+        if (length < 20 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T' || text.charAt(13) != ':'
+                || text.charAt(16) != ':') {
+            return NONE;
+        }
+
+        int year = parseDigits(text, 0, 4);
+        int month = parseDigits(text, 5, 2);
+        int day = parseDigits(text, 8, 2);
+        int hour = parseDigits(text, 11, 2);
+        int minute = parseDigits(text, 14, 2);
+        int second = parseDigits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0
+                || second > 59) {
+            return NONE;
+        }
+
+        int position = 19;
+        int millis = 0;
+        if (text.charAt(position) == '.') {
+            position++;
+            int start = position;
+            int scale = 100;
+            while (position < length && isDigit(text.charAt(position))) {
+                millis += (text.charAt(position) - '0') * scale;
+                scale /= 10;
+                position++;
+            }
+            if (position == start || position == length) {
+                return NONE;
+            }
+        }
+
+        int offsetMinutes;
+        char zone = text.charAt(position);
+        if (zone == 'Z' && position + 1 == length) {
+            offsetMinutes = 0;
+        } else if ((zone == '+' || zone == '-') && position + 6 == length && text.charAt(position + 3) == ':') {
+            int offsetHours = parseDigits(text, position + 1, 2);
+            int offsetMinutesOfHour = parseDigits(text, position + 4, 2);
+            if (offsetHours < 0 || offsetMinutesOfHour < 0) {
+                return NONE;
+            }
+            offsetMinutes = (offsetHours * 60 + offsetMinutesOfHour) * (zone == '-' ? -1 : 1);
+        } else {
+            return NONE;
+        }
+
+        long seconds = daysFromCivil(year, month, day) * 86400 + hour * 3600 + minute * 60 + second - offsetMinutes * 60;
+        return seconds * 1000 + millis;
+    }
+
+    /**
+     * Days since the epoch of a date, see
+     * http://howardhinnant.github.io/date_algorithms.html
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        long shiftedYear = month <= 2 ? year - 1 : year;
+        long era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+        long yearOfEra = shiftedYear - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int parseDigits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static void appendDigits(StringBuilder builder, long value, int minDigits) {
+        String digits = String.valueOf(value);
+        for (int i = digits.length(); i < minDigits; i++) {
+            builder.append('0');
+        }
+        builder.append(digits);
+    }
+
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        if ((dividend % divisor != 0) && ((dividend < 0) != (divisor < 0))) {
+            quotient--;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,182 @@
+package de.slackspace.openkeepass.api;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.DatabaseCache;
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.util.StreamUtils;
+
+public class DatabaseCacheTest {
+
+    private static final File FULL_BLOWN_DATABASE = new File("target/test-classes/fullBlownDatabase.kdbx");
+    private static final File TEST_DATABASE = new File("target/test-classes/testDatabase.kdbx");
+
+    private File databaseCopy;
+
+    @Before
+    public void copyDatabase() throws IOException {
+        databaseCopy = File.createTempFile("cachedDatabase", ".kdbx");
+        copy(TEST_DATABASE, databaseCopy);
+    }
+
+    @After
+    public void deleteDatabase() {
+        databaseCopy.delete();
+    }
+
+    @Test
+    public void whenOpeningUnchangedFileTwiceShouldReturnCachedDatabase() {
+        DatabaseCache cache = new DatabaseCache(10, Long.MAX_VALUE);
+
+        KeePassFile first = cache.openDatabase(FULL_BLOWN_DATABASE, "123456");
+        KeePassFile second = cache.openDatabase(FULL_BLOWN_DATABASE, "123456");
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(first.getEntries(), second.getEntries());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(KeePassDatabase.getInstance(FULL_BLOWN_DATABASE).openDatabase("123456").getEntries(), first.getEntries());
+    }
+
+    @Test
+    public void whenChangingReturnedDatabaseShouldNotChangeCachedDatabase() {
+        DatabaseCache cache = new DatabaseCache(10, Long.MAX_VALUE);
+
+        KeePassFile first = cache.openDatabase(FULL_BLOWN_DATABASE, "123456");
+        int entryCount = first.getEntries().size();
+        new GroupBuilder(first.getRoot().getGroups().get(0)).addEntry(new EntryBuilder("Added").build());
+        KeePassFile second = cache.openDatabase(FULL_BLOWN_DATABASE, "123456");
+
+        Assert.assertEquals(entryCount + 1, first.getEntries().size());
+        Assert.assertEquals(entryCount, second.getEntries().size());
+        Assert.assertNull(second.getEntryByTitle("Added"));
+    }
+
+    @Test
+    public void whenBuildingHistoryOfReturnedEntryShouldNotChangeCachedDatabase() {
+        DatabaseCache cache = new DatabaseCache(10, Long.MAX_VALUE);
+
+        Entry first = findEntryWithHistory(cache.openDatabase(FULL_BLOWN_DATABASE, "123456"));
+        int historySize = first.getHistory().getHistoricEntries().size();
+        new EntryBuilder(first).title("Changed").buildWithHistory();
+        Entry second = findEntryWithHistory(cache.openDatabase(FULL_BLOWN_DATABASE, "123456"));
+
+        Assert.assertEquals(historySize + 1, first.getHistory().getHistoricEntries().size());
+        Assert.assertEquals(historySize, second.getHistory().getHistoricEntries().size());
+        Assert.assertNotSame(first.getHistory(), second.getHistory());
+    }
+
+    @Test
+    public void whenExpandedFlagIsMissingShouldNotSetItOnCopy() {
+        Group group = new GroupBuilder("Unset").withoutExpandedFlag().build();
+        KeePassDatabase.write(new KeePassFileBuilder("flagDB").addTopGroups(group).build(), "abcdefg", databaseCopy.getPath());
+        DatabaseCache cache = new DatabaseCache(10, Long.MAX_VALUE);
+
+        cache.openDatabase(databaseCopy, "abcdefg");
+        KeePassFile cached = cache.openDatabase(databaseCopy, "abcdefg");
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertFalse(cached.getGroupByUUID(group.getUuid()).hasExpandedFlag());
+    }
+
+    @Test
+    public void whenFileHasChangedShouldOpenItAgain() throws IOException {
+        DatabaseCache cache = new DatabaseCache(10, Long.MAX_VALUE);
+
+        KeePassFile first = cache.openDatabase(databaseCopy, "abcdefg");
+        copy(TEST_DATABASE, databaseCopy);
+        databaseCopy.setLastModified(databaseCopy.lastModified() + 10000);
+        KeePassFile second = cache.openDatabase(databaseCopy, "abcdefg");
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test(expected = KeePassDatabaseUnreadableException.class)
+    public void whenOpeningCachedFileWithWrongPasswordShouldNotReturnCachedDatabase() {
+        DatabaseCache cache = new DatabaseCache(10, Long.MAX_VALUE);
+
+        cache.openDatabase(databaseCopy, "abcdefg");
+        cache.openDatabase(databaseCopy, "wrong");
+    }
+
+    @Test
+    public void whenMaxEntriesIsExceededShouldEvictLeastRecentlyUsedDatabase() {
+        DatabaseCache cache = new DatabaseCache(2, Long.MAX_VALUE);
+
+        cache.openDatabase(FULL_BLOWN_DATABASE, "123456");
+        cache.openDatabase(databaseCopy, "abcdefg");
+        cache.openDatabase(FULL_BLOWN_DATABASE, "123456");
+        cache.openDatabase(TEST_DATABASE, "abcdefg");
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+
+        cache.openDatabase(FULL_BLOWN_DATABASE, "123456");
+        Assert.assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void whenMaxWeightIsExceededShouldEvictDatabases() {
+        DatabaseCache cache = new DatabaseCache(10, FULL_BLOWN_DATABASE.length());
+
+        cache.openDatabase(databaseCopy, "abcdefg");
+        cache.openDatabase(FULL_BLOWN_DATABASE, "123456");
+
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(FULL_BLOWN_DATABASE.length(), cache.getWeight());
+        Assert.assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void whenInvalidatingFileShouldOpenItAgain() {
+        DatabaseCache cache = new DatabaseCache(10, Long.MAX_VALUE);
+
+        cache.openDatabase(databaseCopy, "abcdefg");
+        cache.invalidate(databaseCopy);
+        cache.openDatabase(databaseCopy, "abcdefg");
+
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(databaseCopy.length(), cache.getWeight());
+    }
+
+    private static Entry findEntryWithHistory(KeePassFile keePassFile) {
+        for (Entry entry : keePassFile.getEntries()) {
+            if (entry.getHistory() != null) {
+                return entry;
+            }
+        }
+        throw new AssertionError("Expected an entry with history");
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        FileInputStream input = new FileInputStream(source);
+        try {
+            FileOutputStream output = new FileOutputStream(target);
+            try {
+                output.write(StreamUtils.toByteArray(input));
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package de.slackspace.openkeepass.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.zipper.GroupZipper;
+
+public class DatabaseChangesTest {
+
+    private static final String DATABASE = "target/test-classes/fullBlownDatabase.kdbx";
+
+    @Test
+    public void whenComparingSameDatabaseShouldBeEmpty() {
+        KeePassFile previous = KeePassDatabase.getInstance(DATABASE).openDatabase("123456");
+        KeePassFile current = KeePassDatabase.getInstance(DATABASE).openDatabase("123456");
+
+        Assert.assertTrue(DatabaseChanges.between(previous, current).isEmpty());
+    }
+
+    @Test
+    public void whenEntryIsAddedShouldReportAddedEntryOnly() {
+        KeePassFile previous = KeePassDatabase.getInstance(DATABASE).openDatabase("123456");
+        Entry added = new EntryBuilder("added").build();
+
+        GroupZipper zipper = new GroupZipper(KeePassDatabase.getInstance(DATABASE).openDatabase("123456"));
+        KeePassFile current = zipper.replace(new GroupBuilder(zipper.getNode()).addEntry(added).build()).close();
+
+        DatabaseChanges changes = DatabaseChanges.between(previous, current);
+
+        Assert.assertEquals(1, changes.getAddedEntries().size());
+        Assert.assertEquals(added, changes.getAddedEntries().get(0));
+        Assert.assertTrue(changes.getModifiedGroups().isEmpty());
+        Assert.assertTrue(changes.getModifiedEntries().isEmpty());
+    }
+
+    @Test
+    public void whenGroupIsRenamedAndEntryRemovedShouldReportBoth() {
+        KeePassFile previous = KeePassDatabase.getInstance(DATABASE).openDatabase("123456");
+
+        GroupZipper zipper = new GroupZipper(KeePassDatabase.getInstance(DATABASE).openDatabase("123456")).down();
+        while (zipper.getNode().getEntries().isEmpty()) {
+            zipper = zipper.right();
+        }
+        Group group = zipper.getNode();
+        Entry removed = group.getEntries().get(0);
+        KeePassFile current = zipper.replace(new GroupBuilder(group).name("renamed").removeEntry(removed).build()).close();
+
+        DatabaseChanges changes = DatabaseChanges.between(previous, current);
+
+        Assert.assertEquals(1, changes.getModifiedGroups().size());
+        Assert.assertEquals("renamed", changes.getModifiedGroups().get(0).getName());
+        Assert.assertEquals(1, changes.getRemovedEntries().size());
+        Assert.assertEquals(removed, changes.getRemovedEntries().get(0));
+        Assert.assertTrue(changes.getAddedGroups().isEmpty());
+        Assert.assertTrue(changes.getRemovedGroups().isEmpty());
+    }
+}
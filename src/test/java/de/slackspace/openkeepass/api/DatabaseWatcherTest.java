@@ -0,0 +1,179 @@
+package de.slackspace.openkeepass.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.DatabaseWatcher;
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.zipper.GroupZipper;
+
+public class DatabaseWatcherTest {
+
+    private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private File databaseFile;
+    private KeePassFile original;
+
+    private List<DatabaseChanges> changes = new CopyOnWriteArrayList<DatabaseChanges>();
+    private List<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+
+    @Before
+    public void writeDatabase() throws IOException {
+        databaseFile = File.createTempFile("watchedDatabase", ".kdbx");
+        original = KeePassDatabase.getInstance("target/test-classes/testDatabase.kdbx").openDatabase("abcdefg");
+        KeePassDatabase.write(original, "abcdefg", databaseFile.getPath());
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+        databaseFile.delete();
+    }
+
+    @Test
+    public void whenFileChangesShouldPublishChangesAfterItIsStable() {
+        DatabaseWatcher watcher = createWatcher();
+
+        GroupZipper zipper = new GroupZipper(KeePassDatabase.getInstance(databaseFile).openDatabase("abcdefg"));
+        KeePassFile modified = zipper.replace(new GroupBuilder(zipper.getNode()).addEntry(new EntryBuilder("added").build()).build()).close();
+        KeePassDatabase.write(modified, "abcdefg", databaseFile.getPath());
+        databaseFile.setLastModified(databaseFile.lastModified() + 10000);
+
+        watcher.checkForChanges();
+        Assert.assertTrue(changes.isEmpty());
+
+        watcher.checkForChanges();
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(1, changes.get(0).getAddedEntries().size());
+        Assert.assertEquals("added", changes.get(0).getAddedEntries().get(0).getTitle());
+        Assert.assertNotNull(watcher.getDatabase().getEntryByTitle("added"));
+    }
+
+    @Test
+    public void whenFileIsUnchangedShouldNotPublishChanges() {
+        DatabaseWatcher watcher = createWatcher();
+
+        watcher.checkForChanges();
+        watcher.checkForChanges();
+
+        Assert.assertTrue(changes.isEmpty());
+        Assert.assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void whenChangedFileCannotBeReadShouldNotifyFailureAndKeepDatabase() {
+        DatabaseWatcher watcher = createWatcher();
+
+        KeePassFile expected = KeePassDatabase.getInstance(databaseFile).openDatabase("abcdefg");
+        KeePassDatabase.write(original, "other", databaseFile.getPath());
+        databaseFile.setLastModified(databaseFile.lastModified() + 10000);
+
+        watcher.checkForChanges();
+        watcher.checkForChanges();
+
+        Assert.assertEquals(1, failures.size());
+        Assert.assertTrue(changes.isEmpty());
+        Assert.assertEquals(expected.getEntries(), watcher.getDatabase().getEntries());
+    }
+
+    @Test
+    public void whenReloadFailsShouldRetryOnNextCheck() throws IOException {
+        DatabaseWatcher watcher = createWatcher();
+
+        GroupZipper zipper = new GroupZipper(KeePassDatabase.getInstance(databaseFile).openDatabase("abcdefg"));
+        KeePassFile modified = zipper.replace(new GroupBuilder(zipper.getNode()).addEntry(new EntryBuilder("added").build()).build()).close();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        KeePassDatabase.write(modified, "abcdefg", stream);
+        byte[] content = stream.toByteArray();
+        long lastModified = databaseFile.lastModified() + 10000;
+
+        // a broken file with the same size and modification time as the
+        // final one, e.g. read while it was being written
+        write(new byte[content.length], lastModified);
+        watcher.checkForChanges();
+        watcher.checkForChanges();
+        Assert.assertEquals(1, failures.size());
+
+        write(content, lastModified);
+        watcher.checkForChanges();
+
+        Assert.assertEquals(1, changes.size());
+        Assert.assertNotNull(watcher.getDatabase().getEntryByTitle("added"));
+    }
+
+    @Test
+    public void whenListenerThrowsShouldNotifyOtherListeners() {
+        DatabaseWatcher watcher = new DatabaseWatcher(databaseFile, "abcdefg", executor);
+        watcher.addListener(new DatabaseChangeListener() {
+
+            @Override
+            public void onChange(DatabaseChanges databaseChanges) {
+                throw new IllegalStateException("Broken listener");
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                throw new IllegalStateException("Broken listener");
+            }
+        });
+        addRecordingListener(watcher);
+        watcher.start(1, TimeUnit.HOURS);
+
+        GroupZipper zipper = new GroupZipper(KeePassDatabase.getInstance(databaseFile).openDatabase("abcdefg"));
+        KeePassFile modified = zipper.replace(new GroupBuilder(zipper.getNode()).addEntry(new EntryBuilder("added").build()).build()).close();
+        KeePassDatabase.write(modified, "abcdefg", databaseFile.getPath());
+        databaseFile.setLastModified(databaseFile.lastModified() + 10000);
+
+        watcher.checkForChanges();
+        watcher.checkForChanges();
+
+        Assert.assertEquals(1, changes.size());
+        Assert.assertNotNull(watcher.getDatabase().getEntryByTitle("added"));
+    }
+
+    private void write(byte[] content, long lastModified) throws IOException {
+        FileOutputStream output = new FileOutputStream(databaseFile);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+        databaseFile.setLastModified(lastModified);
+    }
+
+    private DatabaseWatcher createWatcher() {
+        DatabaseWatcher watcher = new DatabaseWatcher(databaseFile, "abcdefg", executor);
+        addRecordingListener(watcher);
+        watcher.start(1, TimeUnit.HOURS);
+        return watcher;
+    }
+
+    private void addRecordingListener(DatabaseWatcher watcher) {
+        watcher.addListener(new DatabaseChangeListener() {
+
+            @Override
+            public void onChange(DatabaseChanges databaseChanges) {
+                changes.add(databaseChanges);
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                failures.add(failure);
+            }
+        });
+    }
+}
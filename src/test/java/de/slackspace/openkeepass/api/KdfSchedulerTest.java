@@ -0,0 +1,231 @@
+package de.slackspace.openkeepass.api;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.exception.KeyDerivationTimeoutException;
+
+public class KdfSchedulerTest {
+
+    private static final File FULL_BLOWN_DATABASE = new File("target/test-classes/fullBlownDatabase.kdbx");
+    private static final File TEST_DATABASE = new File("target/test-classes/testDatabase.kdbx");
+
+    private KdfScheduler scheduler = new KdfScheduler(2);
+    private ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutdown() {
+        scheduler.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void whenOpeningDatabasesShouldLoadSameEntriesAsWhenOpening() throws Exception {
+        Map<File, String> passwords = new LinkedHashMap<File, String>();
+        passwords.put(FULL_BLOWN_DATABASE, "123456");
+        passwords.put(TEST_DATABASE, "abcdefg");
+
+        Map<File, AsyncResult<KeePassFile>> results = scheduler.openDatabases("tenant", passwords, ReadOptions.ALL, executor, 10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(2, results.size());
+        for (Map.Entry<File, String> database : passwords.entrySet()) {
+            KeePassFile expected = KeePassDatabase.getInstance(database.getKey()).openDatabase(database.getValue());
+            KeePassFile opened = results.get(database.getKey()).get(10, TimeUnit.SECONDS);
+
+            Assert.assertEquals(expected.getEntries(), opened.getEntries());
+        }
+    }
+
+    @Test
+    public void whenOpeningDatabasesShouldOnlyRunKeyDerivationsOnWorkers() throws Exception {
+        Map<File, String> passwords = new LinkedHashMap<File, String>();
+        passwords.put(FULL_BLOWN_DATABASE, "123456");
+
+        final List<String> openingThreads = new CopyOnWriteArrayList<String>();
+        Executor recordingExecutor = new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        openingThreads.add(Thread.currentThread().getName());
+                        command.run();
+                    }
+                });
+            }
+        };
+
+        scheduler.openDatabases("tenant", passwords, ReadOptions.ALL, recordingExecutor, 10, TimeUnit.SECONDS).get(FULL_BLOWN_DATABASE).get(10,
+                TimeUnit.SECONDS);
+
+        Assert.assertEquals(1, openingThreads.size());
+        Assert.assertFalse(openingThreads.get(0).startsWith("kdf-scheduler"));
+        Assert.assertEquals(1, scheduler.getCompletedCount());
+    }
+
+    @Test
+    public void whenOpeningDatabasesWithWrongPasswordShouldFailOnlyThatDatabase() throws Exception {
+        Map<File, String> passwords = new LinkedHashMap<File, String>();
+        passwords.put(FULL_BLOWN_DATABASE, "wrong");
+        passwords.put(TEST_DATABASE, "abcdefg");
+
+        Map<File, AsyncResult<KeePassFile>> results = scheduler.openDatabases("tenant", passwords, ReadOptions.ALL, executor, 10, TimeUnit.SECONDS);
+
+        try {
+            results.get(FULL_BLOWN_DATABASE).get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the database to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof KeePassDatabaseUnreadableException);
+        }
+        Assert.assertNotNull(results.get(TEST_DATABASE).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void whenOpeningWithTenantTransformerShouldLoadSameEntriesAsWhenOpening() {
+        KeePassDatabase database = KeePassDatabase.getInstance(FULL_BLOWN_DATABASE);
+        KeePassFile expected = database.openDatabase("123456");
+
+        KeePassFile opened = database.openDatabase("123456", ReadOptions.ALL, scheduler.forTenant("tenant", 10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(expected.getEntries(), opened.getEntries());
+        Assert.assertEquals(1, scheduler.getCompletedCount());
+    }
+
+    @Test
+    public void whenTenantsAreQueuedShouldTakeTasksInTurn() throws Exception {
+        KdfScheduler singleWorker = new KdfScheduler(1);
+        try {
+            CountDownLatch blocker = block(singleWorker);
+
+            List<String> order = new CopyOnWriteArrayList<String>();
+            singleWorker.submit("a", 10, TimeUnit.SECONDS, record(order, "a1"));
+            singleWorker.submit("a", 10, TimeUnit.SECONDS, record(order, "a2"));
+            singleWorker.submit("a", 10, TimeUnit.SECONDS, record(order, "a3"));
+            AsyncResult<String> last = singleWorker.submit("b", 10, TimeUnit.SECONDS, record(order, "b1"));
+
+            Assert.assertEquals(4, singleWorker.getQueueDepth());
+            Assert.assertEquals(3, singleWorker.getQueueDepth("a"));
+            Assert.assertEquals(1, singleWorker.getQueueDepth("b"));
+            Assert.assertEquals(1, singleWorker.getActiveCount());
+
+            blocker.countDown();
+            last.get(10, TimeUnit.SECONDS);
+
+            Assert.assertEquals("a1", order.get(0));
+            Assert.assertEquals("b1", order.get(1));
+        } finally {
+            singleWorker.shutdown();
+        }
+    }
+
+    @Test
+    public void whenDeadlinePassesWhileQueuedShouldFailWithTimeout() throws Exception {
+        KdfScheduler singleWorker = new KdfScheduler(1);
+        try {
+            CountDownLatch blocker = block(singleWorker);
+            AsyncResult<String> expired = singleWorker.submit("tenant", 1, TimeUnit.MILLISECONDS, record(new CopyOnWriteArrayList<String>(), "x"));
+
+            Thread.sleep(20);
+            blocker.countDown();
+
+            try {
+                expired.get(10, TimeUnit.SECONDS);
+                Assert.fail("Expected the task to expire");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof KeyDerivationTimeoutException);
+            }
+            Assert.assertEquals(1, singleWorker.getExpiredCount());
+        } finally {
+            singleWorker.shutdown();
+        }
+    }
+
+    @Test
+    public void whenTaskThrowsErrorShouldFailResultAndKeepWorker() throws Exception {
+        KdfScheduler singleWorker = new KdfScheduler(1);
+        try {
+            final Error error = new Error("Broken task");
+            AsyncResult<String> failed = singleWorker.submit("tenant", 10, TimeUnit.SECONDS, new Callable<String>() {
+
+                @Override
+                public String call() {
+                    throw error;
+                }
+            });
+
+            try {
+                failed.get(10, TimeUnit.SECONDS);
+                Assert.fail("Expected the task to fail");
+            } catch (ExecutionException e) {
+                Assert.assertSame(error, e.getCause());
+            }
+
+            AsyncResult<String> next = singleWorker.submit("tenant", 10, TimeUnit.SECONDS, record(new CopyOnWriteArrayList<String>(), "next"));
+            Assert.assertEquals("next", next.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(0, singleWorker.getActiveCount());
+        } finally {
+            singleWorker.shutdown();
+        }
+    }
+
+    @Test(expected = KeyDerivationTimeoutException.class)
+    public void whenTransformerTimesOutShouldThrowKeyDerivationTimeoutException() throws InterruptedException {
+        KdfScheduler singleWorker = new KdfScheduler(1);
+        CountDownLatch blocker = block(singleWorker);
+        try {
+            singleWorker.forTenant("tenant", 10, TimeUnit.MILLISECONDS).transformKey(new byte[32], new byte[32], 1);
+        } finally {
+            blocker.countDown();
+            singleWorker.shutdown();
+        }
+    }
+
+    private static CountDownLatch block(KdfScheduler scheduler) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+
+        scheduler.submit("blocker", 10, TimeUnit.SECONDS, new Callable<Void>() {
+
+            @Override
+            public Void call() throws InterruptedException {
+                started.countDown();
+                blocker.await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        });
+
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        return blocker;
+    }
+
+    private static Callable<String> record(final List<String> order, final String name) {
+        return new Callable<String>() {
+
+            @Override
+            public String call() {
+                order.add(name);
+                return name;
+            }
+        };
+    }
+}
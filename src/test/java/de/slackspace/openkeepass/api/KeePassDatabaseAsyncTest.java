@@ -0,0 +1,104 @@
+package de.slackspace.openkeepass.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.KeePassDatabaseAsync;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+
+public class KeePassDatabaseAsyncTest {
+
+    private static final File DATABASE = new File("target/test-classes/fullBlownDatabase.kdbx");
+
+    private ExecutorService cpuExecutor = Executors.newSingleThreadExecutor();
+    private ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private KeePassDatabaseAsync async = new KeePassDatabaseAsync(cpuExecutor, ioExecutor);
+
+    @After
+    public void shutdown() {
+        cpuExecutor.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+
+    @Test
+    public void whenOpeningAsyncShouldNotifyCallbackWithSameEntriesAsWhenOpening() throws InterruptedException {
+        KeePassFile expected = KeePassDatabase.getInstance(DATABASE).openDatabase("123456");
+
+        final KeePassFile[] opened = new KeePassFile[1];
+        final CountDownLatch done = new CountDownLatch(1);
+
+        async.openDatabaseAsync(DATABASE, "123456").addCallback(new AsyncCallback<KeePassFile>() {
+
+            @Override
+            public void onSuccess(KeePassFile result) {
+                opened[0] = result;
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                done.countDown();
+            }
+        });
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(expected.getEntries(), opened[0].getEntries());
+    }
+
+    @Test
+    public void whenPasswordIsWrongShouldFailResult() throws Exception {
+        try {
+            async.openDatabaseAsync(DATABASE, "wrong").get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the result to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof KeePassDatabaseUnreadableException);
+        }
+    }
+
+    @Test
+    public void whenLoadingThrowsErrorShouldFailResult() throws Exception {
+        final Error error = new Error("Broken stream");
+        InputStream stream = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                throw error;
+            }
+        };
+
+        try {
+            async.openDatabaseAsync(stream, "123456", ReadOptions.ALL).get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the result to fail");
+        } catch (ExecutionException e) {
+            Assert.assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void whenWritingAsyncShouldBeAbleToOpenWrittenDatabase() throws Exception {
+        Entry entry = new EntryBuilder("First entry").username("Carl").password("secret").build();
+        KeePassFile keePassFile = new KeePassFileBuilder("asyncDB").addTopEntries(entry).build();
+        File file = new File("target/test-classes/asyncDatabase.kdbx");
+
+        Assert.assertNull(async.writeAsync(keePassFile, "abc", file).get(10, TimeUnit.SECONDS));
+
+        KeePassFile database = async.openDatabaseAsync(file, "abc").get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("secret", database.getEntryByTitle("First entry").getPassword());
+    }
+}
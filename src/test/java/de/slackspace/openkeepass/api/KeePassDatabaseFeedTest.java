@@ -0,0 +1,122 @@
+package de.slackspace.openkeepass.api;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.util.StreamUtils;
+
+public class KeePassDatabaseFeedTest {
+
+    private static final String DATABASE = "target/test-classes/fullBlownDatabase.kdbx";
+
+    private ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void whenFeedingDatabaseInChunksShouldReturnSameEntriesAsWhenOpening() throws Exception {
+        KeePassFile expected = KeePassDatabase.getInstance(DATABASE).openDatabase("123456");
+
+        KeePassDatabaseFeed feed = KeePassDatabase.openFeed("123456", ReadOptions.ALL, executorService);
+        feedInChunks(feed, readDatabase(), 100);
+        feed.finish();
+
+        KeePassFile keePassFile = feed.getResult().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(expected.getEntries(), keePassFile.getEntries());
+    }
+
+    @Test
+    public void whenFeedingWhileBacklogIsDecryptedShouldKeepChunksInOrder() throws Exception {
+        KeePassFile expected = KeePassDatabase.getInstance(DATABASE).openDatabase("123456");
+        byte[] database = readDatabase();
+
+        // every task runs on its own thread, so the backlog is drained while
+        // further chunks arrive
+        KeePassDatabaseFeed feed = KeePassDatabase.openFeed("123456", ReadOptions.ALL, new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                new Thread(command).start();
+            }
+        });
+
+        int half = database.length / 2;
+        feedInChunks(feed, Arrays.copyOfRange(database, 0, half), 64);
+        for (int i = half; i < database.length; i += 16) {
+            feed.feed(ByteBuffer.wrap(database, i, Math.min(16, database.length - i)));
+            Thread.yield();
+        }
+        feed.finish();
+
+        KeePassFile keePassFile = feed.getResult().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(expected.getEntries(), keePassFile.getEntries());
+    }
+
+    @Test
+    public void whenPasswordIsWrongShouldFailResult() throws Exception {
+        KeePassDatabaseFeed feed = KeePassDatabase.openFeed("wrong", ReadOptions.ALL, executorService);
+        feedInChunks(feed, readDatabase(), 4096);
+        feed.finish();
+
+        assertFailure(feed);
+    }
+
+    @Test
+    public void whenDatabaseIsTruncatedShouldFailResult() throws Exception {
+        byte[] database = readDatabase();
+        byte[] truncated = new byte[database.length - 100];
+        System.arraycopy(database, 0, truncated, 0, truncated.length);
+
+        KeePassDatabaseFeed feed = KeePassDatabase.openFeed("123456", ReadOptions.ALL, executorService);
+        feedInChunks(feed, truncated, 4096);
+        feed.finish();
+
+        assertFailure(feed);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenFeedingAfterFinishShouldThrowException() {
+        KeePassDatabaseFeed feed = KeePassDatabase.openFeed("123456", ReadOptions.ALL, executorService);
+        feed.finish();
+
+        feed.feed(ByteBuffer.allocate(1));
+    }
+
+    private void assertFailure(KeePassDatabaseFeed feed) throws InterruptedException, TimeoutException {
+        try {
+            feed.getResult().get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the result to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof KeePassDatabaseUnreadableException);
+        }
+    }
+
+    private void feedInChunks(KeePassDatabaseFeed feed, byte[] database, int chunkSize) {
+        for (int i = 0; i < database.length; i += chunkSize) {
+            feed.feed(ByteBuffer.wrap(database, i, Math.min(chunkSize, database.length - i)));
+        }
+    }
+
+    private byte[] readDatabase() throws IOException {
+        return StreamUtils.toByteArray(new FileInputStream(DATABASE));
+    }
+}
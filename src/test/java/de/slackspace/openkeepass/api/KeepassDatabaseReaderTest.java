@@ -1,13 +1,17 @@
 package de.slackspace.openkeepass.api;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -15,16 +19,195 @@ import org.junit.Test;
 import de.slackspace.openkeepass.KeePassDatabase;
 import de.slackspace.openkeepass.domain.CompressionAlgorithm;
 import de.slackspace.openkeepass.domain.CrsAlgorithm;
+import de.slackspace.openkeepass.domain.CustomIcon;
 import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
 import de.slackspace.openkeepass.domain.Group;
 import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
 import de.slackspace.openkeepass.domain.KeePassHeader;
 import de.slackspace.openkeepass.domain.Property;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.domain.ReadOptionsBuilder;
+import de.slackspace.openkeepass.domain.visitor.EntryVisitorAdapter;
 import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
 import de.slackspace.openkeepass.util.ByteUtils;
 
 public class KeepassDatabaseReaderTest {
 
+    @Test
+    public void whenVisitingDatabaseShouldReceiveSameEntriesAsWhenOpening() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+        List<Entry> expectedEntries = reader.openDatabase("123456").getEntries();
+
+        final List<Entry> visitedEntries = new ArrayList<Entry>();
+        reader.openDatabase("123456", new EntryVisitorAdapter() {
+            @Override
+            public void visitEntry(Entry entry) {
+                visitedEntries.add(entry);
+            }
+        });
+
+        Assert.assertEquals(expectedEntries.size(), visitedEntries.size());
+        for (int i = 0; i < expectedEntries.size(); i++) {
+            Assert.assertEquals(expectedEntries.get(i).getUuid(), visitedEntries.get(i).getUuid());
+            Assert.assertEquals(expectedEntries.get(i).getTitle(), visitedEntries.get(i).getTitle());
+            Assert.assertEquals(expectedEntries.get(i).getPassword(), visitedEntries.get(i).getPassword());
+        }
+    }
+
+    @Test
+    public void whenReadingWithoutHistoryShouldSkipHistoryAndDecryptFollowingEntries() {
+        Entry original = new EntryBuilder("First").password("secret1").build();
+        Entry changed = new EntryBuilder(original).password("secret2").buildWithHistory();
+        Entry second = new EntryBuilder("Second").password("secret3").build();
+        KeePassFile keePassFile = new KeePassFileBuilder("historyDb").addTopEntries(changed, second).build();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KeePassDatabase.write(keePassFile, "abc", outputStream);
+
+        ReadOptions readOptions = new ReadOptionsBuilder().history(false).build();
+        KeePassFile database = KeePassDatabase.getInstance(new ByteArrayInputStream(outputStream.toByteArray())).openDatabase("abc", readOptions);
+
+        Entry firstEntry = database.getEntryByTitle("First");
+        Assert.assertNull(firstEntry.getHistory());
+        Assert.assertEquals("secret2", firstEntry.getPassword());
+        Assert.assertEquals("secret3", database.getEntryByTitle("Second").getPassword());
+    }
+
+    @Test
+    public void whenReadingWithoutTimesAndIconsShouldSkipThem() {
+        ReadOptions readOptions = new ReadOptionsBuilder().times(false).iconEnrichment(false).build();
+        KeePassFile database = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx").openDatabase("123456", readOptions);
+
+        Group group = database.getGroupByName("General");
+        Assert.assertNull(group.getTimes());
+        Assert.assertNull(group.getIconData());
+        Assert.assertNull(database.getMeta().getDatabaseNameChanged());
+        Assert.assertEquals("2f29047129b9e4c48f05d09907e52b9b", database.getEntries().get(0).getPassword());
+    }
+
+    @Test
+    public void whenReadingWithoutCustomIconDataShouldKeepIconsWithoutData() {
+        ReadOptions readOptions = new ReadOptionsBuilder().customIconData(false).build();
+        KeePassFile database = KeePassDatabase.getInstance("target/test-classes/KeeFoxDatabase.kdbx").openDatabase("abcd1234", readOptions);
+
+        CustomIcon customIcon = database.getMeta().getCustomIcons().getIcons().get(0);
+        Assert.assertNotNull(customIcon.getUuid());
+        Assert.assertNull(customIcon.getData());
+    }
+
+    @Test
+    public void whenReadingWithAllOptionsShouldReturnSameEntriesAsWhenOpening() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+        KeePassFile expected = reader.openDatabase("123456");
+        KeePassFile database = reader.openDatabase("123456", ReadOptions.ALL);
+
+        Assert.assertEquals(expected.getEntries(), database.getEntries());
+        Assert.assertEquals(expected.getGroups().size(), database.getGroups().size());
+    }
+
+    @Test
+    public void whenReadingLazilyShouldLoadSameEntriesAsWhenOpening() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+        KeePassFile expected = reader.openDatabase("123456");
+
+        KeePassFile database = reader.openDatabase("123456", new ReadOptionsBuilder().lazy(true).build());
+        Assert.assertFalse(database.getRoot().getGroups().get(0).isChildrenLoaded());
+
+        Entry entry = database.getEntryByTitle("6th Entry");
+        Assert.assertEquals("y", entry.getPropertyByName("x").getValue());
+        Assert.assertEquals(expected.getEntries(), database.getEntries());
+    }
+
+    @Test
+    public void whenReadingLazilyWithCheckpointIndexShouldLoadSameEntriesAsWhenOpening() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+        KeePassFile expected = reader.openDatabase("123456");
+
+        KeePassFile database = reader.openDatabase("123456", new ReadOptionsBuilder().lazy(true).checkpointSpan(512).build());
+
+        Assert.assertEquals(expected.getEntries(), database.getEntries());
+    }
+
+    @Test
+    public void whenReadingConcurrentlyShouldLoadSameDatabaseAsWhenOpening() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+        KeePassFile expected = reader.openDatabase("123456");
+
+        KeePassFile database = reader.openDatabase("123456", new ReadOptionsBuilder().parallelism(4).build());
+
+        Assert.assertEquals(expected.getTopGroups(), database.getTopGroups());
+        Assert.assertEquals(expected.getEntries(), database.getEntries());
+    }
+
+    @Test
+    public void whenReadingWithParserExecutorShouldReuseItWithoutShuttingDown() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+        KeePassFile expected = reader.openDatabase("123456");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            ReadOptions readOptions = new ReadOptionsBuilder().parserExecutor(executorService).build();
+
+            Assert.assertEquals(expected.getEntries(), reader.openDatabase("123456", readOptions).getEntries());
+            Assert.assertEquals(expected.getTopGroups(), reader.openDatabase("123456", readOptions).getTopGroups());
+            Assert.assertFalse(executorService.isShutdown());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenReadingLargeInstanceShouldLoadSameEntriesAsWhenOpening() {
+        KeePassFile expected = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx").openDatabase("123456");
+
+        KeePassDatabase reader = KeePassDatabase.getLargeInstance(new File("target/test-classes/fullBlownDatabase.kdbx"));
+        KeePassFile database = reader.openDatabase("123456");
+
+        Assert.assertEquals(expected.getEntries(), database.getEntries());
+        Assert.assertEquals("y", reader.findEntryByTitle("123456", "6th Entry").getPropertyByName("x").getValue());
+    }
+
+    @Test
+    public void whenFindingEntryByUuidShouldReturnSameEntryAsWhenOpening() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+        List<Entry> entries = reader.openDatabase("123456").getEntries();
+        Entry expected = entries.get(entries.size() - 1);
+
+        Entry entry = reader.findEntry("123456", expected.getUuid());
+
+        Assert.assertEquals(expected.getTitle(), entry.getTitle());
+        Assert.assertEquals(expected.getPassword(), entry.getPassword());
+        Assert.assertEquals(expected.getProperties(), entry.getProperties());
+    }
+
+    @Test
+    public void whenFindingEntryByTitleShouldDecryptEntry() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+
+        Entry entry = reader.findEntryByTitle("123456", "6th entry");
+
+        Assert.assertEquals("6th Entry", entry.getTitle());
+        Assert.assertEquals("y", entry.getPropertyByName("x").getValue());
+        Assert.assertEquals(reader.openDatabase("123456").getEntryByTitle("6th Entry").getPassword(), entry.getPassword());
+    }
+
+    @Test
+    public void whenFindingUnknownEntryShouldReturnNull() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+
+        Assert.assertNull(reader.findEntry("123456", UUID.randomUUID()));
+        Assert.assertNull(reader.findEntryByTitle("123456", "unknown"));
+    }
+
+    @Test(expected = KeePassDatabaseUnreadableException.class)
+    public void whenVisitingDatabaseWithWrongPasswordShouldThrowException() {
+        KeePassDatabase reader = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx");
+        reader.openDatabase("wrong", new EntryVisitorAdapter() {
+        });
+    }
+
     @Test
     public void whenGettingEntriesByTitleShouldReturnMatchingEntries() throws FileNotFoundException {
         FileInputStream file = new FileInputStream("target/test-classes/testDatabase.kdbx");
@@ -272,4 +455,4 @@ public class KeepassDatabaseReaderTest {
         Assert.assertEquals("General", group.getName());
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+package de.slackspace.openkeepass.api;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.crypto.Aes;
+import de.slackspace.openkeepass.crypto.RandomGenerator;
+import de.slackspace.openkeepass.crypto.Sha256;
+import de.slackspace.openkeepass.domain.CompressionAlgorithm;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.KeePassHeader;
+import de.slackspace.openkeepass.domain.visitor.EntryVisitorAdapter;
+import de.slackspace.openkeepass.stream.HashedBlockOutputStream;
+
+/**
+ * Opens a generated 3 GiB database. The test writes the database to a
+ * temporary file and takes a few minutes, so it only runs with
+ * <tt>-Dopenkeepass.largeTests=true</tt>.
+ */
+public class LargeDatabaseTest {
+
+    private static final String PASSWORD = "123456";
+    private static final long DATABASE_SIZE = 3L * 1024 * 1024 * 1024;
+    private static final int NOTES_SIZE = 64 * 1024;
+
+    private static File databaseFile;
+
+    @BeforeClass
+    public static void createDatabase() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("openkeepass.largeTests"));
+
+        databaseFile = File.createTempFile("largeDatabase", ".kdbx");
+        writeDatabase(databaseFile);
+    }
+
+    @AfterClass
+    public static void deleteDatabase() {
+        if (databaseFile != null) {
+            databaseFile.delete();
+        }
+    }
+
+    @Test
+    public void whenDatabaseIsLargerThan2GiBShouldVisitAllEntries() {
+        Assert.assertTrue(databaseFile.length() > DATABASE_SIZE);
+
+        final long[] counts = new long[2];
+        KeePassDatabase.getLargeInstance(databaseFile).openDatabase(PASSWORD, new EntryVisitorAdapter() {
+
+            @Override
+            public void visitEntry(Entry entry) {
+                Assert.assertEquals("Entry " + counts[0], entry.getTitle());
+                counts[0]++;
+                counts[1] += entry.getNotes().length();
+            }
+        });
+
+        Assert.assertEquals(getEntryCount(), counts[0]);
+        Assert.assertEquals(getEntryCount() * NOTES_SIZE, counts[1]);
+    }
+
+    @Test
+    public void whenDatabaseIsLargerThan2GiBShouldFindLastEntry() {
+        Entry entry = KeePassDatabase.getLargeInstance(databaseFile).findEntryByTitle(PASSWORD, "Entry " + (getEntryCount() - 1));
+
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(NOTES_SIZE, entry.getNotes().length());
+    }
+
+    private static long getEntryCount() {
+        return DATABASE_SIZE / NOTES_SIZE;
+    }
+
+    private static void writeDatabase(File file) throws Exception {
+        KeePassHeader header = new KeePassHeader(new RandomGenerator());
+        header.setCompression(CompressionAlgorithm.None);
+
+        OutputStream fileStream = new BufferedOutputStream(new FileOutputStream(file), 1024 * 1024);
+        fileStream.write(header.getBytes());
+
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(createAesKey(header), "AES"), new IvParameterSpec(header.getEncryptionIV()));
+
+        OutputStream cipherStream = new CipherOutputStream(fileStream, cipher);
+        cipherStream.write(header.getStreamStartBytes());
+
+        OutputStream payload = new HashedBlockOutputStream(cipherStream);
+        try {
+            payload.write(bytes("<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\"?><KeePassFile><Meta><DatabaseName>Large</DatabaseName></Meta>"
+                    + "<Root><Group><UUID>" + uuid(-1) + "</UUID><Name>Large</Name>"));
+
+            char[] notes = new char[NOTES_SIZE];
+            Arrays.fill(notes, 'x');
+            byte[] notesValue = bytes("<String><Key>Notes</Key><Value>" + new String(notes) + "</Value></String>");
+
+            for (long i = 0; i < getEntryCount(); i++) {
+                payload.write(bytes("<Entry><UUID>" + uuid(i) + "</UUID><String><Key>Title</Key><Value>Entry " + i + "</Value></String>"));
+                payload.write(notesValue);
+                payload.write(bytes("</Entry>"));
+            }
+
+            payload.write(bytes("</Group></Root></KeePassFile>"));
+        } finally {
+            payload.close();
+        }
+    }
+
+    private static byte[] createAesKey(KeePassHeader header) throws IOException {
+        byte[] compositeKey = Sha256.hash(bytes(PASSWORD));
+        byte[] transformedKey = Aes.transformKey(header.getTransformSeed(), Sha256.hash(compositeKey), header.getTransformRounds());
+
+        ByteArrayOutputStream aesKey = new ByteArrayOutputStream();
+        aesKey.write(header.getMasterSeed());
+        aesKey.write(Sha256.hash(transformedKey));
+
+        return Sha256.hash(aesKey.toByteArray());
+    }
+
+    private static String uuid(long index) {
+        return DatatypeConverter.printBase64Binary(ByteBuffer.allocate(16).putLong(8, index).array());
+    }
+
+    private static byte[] bytes(String value) throws IOException {
+        return value.getBytes("UTF-8");
+    }
+}
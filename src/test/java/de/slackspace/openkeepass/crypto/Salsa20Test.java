@@ -23,6 +23,30 @@ public class Salsa20Test {
         Assert.assertEquals("Password", Salsa20.createInstance(bytes).decrypt("U39tKvVEn9E="));
     }
 
+    @Test
+    public void whenSkippingValueShouldDecryptFollowingValue() {
+        byte[] bytes = ByteUtils.hexStringToByteArray("ec77a2169769734c5d26e5341401f8d7b11052058f8455d314879075d0b7e257");
+        Salsa20 encrypter = Salsa20.createInstance(bytes);
+        String first = encrypter.encrypt("first value");
+        String second = encrypter.encrypt("second");
+
+        Salsa20 decrypter = Salsa20.createInstance(bytes);
+        decrypter.skip(first);
+
+        Assert.assertEquals(11, decrypter.getPosition());
+        Assert.assertEquals("second", decrypter.decrypt(second));
+    }
+
+    @Test
+    public void whenSeekingBackShouldDecryptValueAgain() {
+        byte[] bytes = ByteUtils.hexStringToByteArray("ec77a2169769734c5d26e5341401f8d7b11052058f8455d314879075d0b7e257");
+        Salsa20 salsa20 = Salsa20.createInstance(bytes);
+        Assert.assertEquals("Password", salsa20.decrypt("U39tKvVEn9E="));
+
+        salsa20.seekTo(0);
+        Assert.assertEquals("Password", salsa20.decrypt("U39tKvVEn9E="));
+    }
+
     @Test
     public void shouldEncryptToHexString() {
         byte[] bytes = ByteUtils.hexStringToByteArray("ec77a2169769734c5d26e5341401f8d7b11052058f8455d314879075d0b7e257");
@@ -0,0 +1,88 @@
+package de.slackspace.openkeepass.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.zipper.GroupZipper;
+
+public class GroupPathTest {
+
+    private Entry prod = new EntryBuilder("Prod").build();
+    private Group databases = new GroupBuilder("Databases").addEntry(prod).build();
+    private Group slashed = new GroupBuilder("A/B").build();
+    private Group infrastructure = new GroupBuilder("Infrastructure").addGroup(databases).addGroup(slashed).build();
+    private Group duplicate = new GroupBuilder("Infrastructure").build();
+
+    private Group top = new GroupBuilder("Root").addGroup(infrastructure).addGroup(duplicate).build();
+
+    private KeePassFile keePassFile = new KeePassFileBuilder("pathDB").addTopGroups(top).build();
+
+    @Test
+    public void whenLookingUpPathShouldFindGroupsAndEntries() {
+        Assert.assertSame(databases, keePassFile.getGroupByPath("Root/Infrastructure/Databases"));
+        Assert.assertSame(databases, keePassFile.getGroupByPath("/Root/Infrastructure/Databases/"));
+        Assert.assertSame(prod, keePassFile.getEntryByPath("Root/Infrastructure/Databases/Prod"));
+        Assert.assertSame(top, keePassFile.getGroupByPath("Root"));
+    }
+
+    @Test
+    public void whenNamesAreDuplicatedShouldFindFirstGroup() {
+        Assert.assertSame(infrastructure, keePassFile.getGroupByPath("Root/Infrastructure"));
+    }
+
+    @Test
+    public void whenNameContainsSeparatorShouldBeEscaped() {
+        Assert.assertSame(slashed, keePassFile.getGroupByPath("Root/Infrastructure/A\\/B"));
+        Assert.assertNull(keePassFile.getGroupByPath("Root/Infrastructure/A/B"));
+    }
+
+    @Test
+    public void whenPathDoesNotExistShouldReturnNull() {
+        Assert.assertNull(keePassFile.getGroupByPath("Root/infrastructure"));
+        Assert.assertNull(keePassFile.getGroupByPath("Root/Missing/Databases"));
+        Assert.assertNull(keePassFile.getEntryByPath("Root/Infrastructure/Databases/Missing"));
+        Assert.assertNull(keePassFile.getEntryByPath("Root"));
+        Assert.assertNull(keePassFile.getGroupByPath(""));
+        Assert.assertNull(keePassFile.getGroupByPath(null));
+    }
+
+    @Test
+    public void whenGroupBuilderModifiesChildrenShouldFindNewChildren() {
+        Assert.assertNull(infrastructure.getChildGroup("Web"));
+
+        Group web = new GroupBuilder("Web").build();
+        new GroupBuilder(infrastructure).addGroup(web).removeGroup(databases);
+
+        Assert.assertSame(web, keePassFile.getGroupByPath("Root/Infrastructure/Web"));
+        Assert.assertNull(keePassFile.getGroupByPath("Root/Infrastructure/Databases"));
+    }
+
+    @Test
+    public void whenZipperReplacesGroupShouldFindReplacement() {
+        Assert.assertSame(databases, keePassFile.getGroupByPath("Root/Infrastructure/Databases"));
+
+        Group replacement = new GroupBuilder("Databases").addEntry(new EntryBuilder("Staging").build()).build();
+        new GroupZipper(keePassFile).down().down().replace(replacement);
+
+        Assert.assertSame(replacement, keePassFile.getGroupByPath("Root/Infrastructure/Databases"));
+        Assert.assertNotNull(keePassFile.getEntryByPath("Root/Infrastructure/Databases/Staging"));
+    }
+
+    @Test
+    public void whenEntryTitleChangesInPlaceShouldNotFindOldTitle() {
+        Assert.assertSame(prod, databases.getChildEntry("Prod"));
+
+        prod.getProperties().set(prod.getProperties().indexOf(prod.getPropertyByName("Title")), new Property("Title", "Production", false));
+
+        Assert.assertNull(databases.getChildEntry("Prod"));
+    }
+
+    @Test
+    public void whenEntryTitleIsRemovedInPlaceShouldNotFindEntry() {
+        Assert.assertSame(prod, databases.getChildEntry("Prod"));
+
+        prod.getProperties().remove(prod.getPropertyByName("Title"));
+
+        Assert.assertNull(databases.getChildEntry("Prod"));
+    }
+}
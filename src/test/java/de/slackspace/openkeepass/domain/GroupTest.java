@@ -1,5 +1,8 @@
 package de.slackspace.openkeepass.domain;
 
+import java.util.List;
+
+import org.junit.Assert;
 import org.junit.Test;
 
 import nl.jqno.equalsverifier.EqualsVerifier;
@@ -11,4 +14,37 @@ public class GroupTest {
     public void equalsContract() {
         EqualsVerifier.forClass(Group.class).suppress(Warning.NONFINAL_FIELDS).verify();
     }
+
+    @Test
+    public void whenLoadingChildrenFailsShouldRetryOnNextAccess() {
+        final Entry existing = new EntryBuilder("Existing").build();
+        final Entry loaded = new EntryBuilder("Loaded").build();
+
+        Group group = new GroupBuilder("Lazy").addEntry(existing).childrenLoader(new GroupChildrenLoader() {
+
+            private boolean failed;
+
+            @Override
+            public void loadChildren(List<Entry> entries, List<Group> groups) {
+                entries.add(loaded);
+                if (!failed) {
+                    failed = true;
+                    throw new IllegalStateException("corrupt range");
+                }
+            }
+        }).build();
+
+        try {
+            group.getEntries();
+            Assert.fail("Expected the load to fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertFalse(group.isChildrenLoaded());
+
+        Assert.assertEquals(2, group.getEntries().size());
+        Assert.assertSame(existing, group.getEntries().get(0));
+        Assert.assertSame(loaded, group.getEntries().get(1));
+        Assert.assertTrue(group.isChildrenLoaded());
+    }
 }
@@ -0,0 +1,77 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GroupTraversalTest {
+
+    private Entry topEntry = new EntryBuilder("Top entry").build();
+    private Entry firstEntry = new EntryBuilder("First entry").build();
+    private Entry nestedEntry = new EntryBuilder("Nested entry").build();
+    private Entry secondEntry = new EntryBuilder("Second entry").build();
+
+    private Group nested = new GroupBuilder("Nested").addEntry(nestedEntry).build();
+    private Group first = new GroupBuilder("First").addEntry(firstEntry).addGroup(nested).build();
+    private Group empty = new GroupBuilder("Empty").build();
+    private Group second = new GroupBuilder("Second").addEntry(secondEntry).build();
+    private Group top = new GroupBuilder("Top").addEntry(topEntry).addGroup(first).addGroup(empty).addGroup(second).build();
+
+    private KeePassFile keePassFile = new KeePassFileBuilder("traversalDB").addTopGroups(top).build();
+
+    @Test
+    public void whenIteratingEntriesShouldReturnSameOrderAsList() {
+        List<Entry> entries = toList(keePassFile.iterateEntries());
+
+        Assert.assertEquals(4, entries.size());
+        Assert.assertEquals(keePassFile.getEntries(), entries);
+        Assert.assertSame(topEntry, entries.get(0));
+        Assert.assertSame(nestedEntry, entries.get(2));
+    }
+
+    @Test
+    public void whenIteratingGroupsShouldReturnSameOrderAsList() {
+        List<Group> groups = toList(keePassFile.iterateGroups());
+
+        Assert.assertEquals(5, groups.size());
+        Assert.assertEquals(keePassFile.getGroups(), groups);
+    }
+
+    @Test
+    public void whenIteratingSubtreeShouldOnlyReturnItsElements() {
+        Assert.assertEquals(2, toList(GroupTraversal.entries(first)).size());
+        Assert.assertSame(nested, GroupTraversal.groups(first).iterator().next());
+    }
+
+    @Test
+    public void whenGroupIsNullShouldBeEmpty() {
+        Assert.assertFalse(GroupTraversal.entries(null).iterator().hasNext());
+        Assert.assertFalse(GroupTraversal.groups(null).iterator().hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void whenIteratorIsExhaustedShouldThrowException() {
+        Iterator<Entry> iterator = GroupTraversal.entries(nested).iterator();
+        iterator.next();
+        iterator.next();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void whenRemovingShouldThrowException() {
+        Iterator<Group> iterator = keePassFile.iterateGroups().iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+    private static <T> List<T> toList(Iterable<T> iterable) {
+        List<T> list = new ArrayList<T>();
+        for (T element : iterable) {
+            list.add(element);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,102 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.index.AncestryIndex;
+import de.slackspace.openkeepass.domain.index.TextIndex;
+import de.slackspace.openkeepass.domain.index.UuidIndex;
+import de.slackspace.openkeepass.domain.zipper.GroupZipper;
+
+public class KeePassFileTest {
+
+    @Test
+    public void whenOtherDatabaseIsChangedShouldKeepIndex() {
+        Group firstGroup = new GroupBuilder("First").build();
+        Group secondGroup = new GroupBuilder("Second").build();
+        KeePassFile firstFile = new KeePassFileBuilder("firstDB").addTopGroups(firstGroup).build();
+        KeePassFile secondFile = new KeePassFileBuilder("secondDB").addTopGroups(secondGroup).build();
+        UuidIndex firstIndex = firstFile.getUuidIndex();
+        UuidIndex secondIndex = secondFile.getUuidIndex();
+
+        Entry addedEntry = new EntryBuilder("Added entry").build();
+        new GroupBuilder(secondGroup).addEntry(addedEntry);
+
+        Assert.assertSame(firstIndex, firstFile.getUuidIndex());
+        Assert.assertNotSame(secondIndex, secondFile.getUuidIndex());
+        Assert.assertSame(addedEntry, secondFile.getEntryByUUID(addedEntry.getUuid()));
+    }
+
+    @Test
+    public void whenGroupIsSharedByTwoDatabasesShouldUpdateBothIndexes() {
+        Group sharedGroup = new GroupBuilder("Shared").build();
+        KeePassFile firstFile = new KeePassFileBuilder("firstDB").addTopGroups(sharedGroup).build();
+        firstFile.getUuidIndex();
+        KeePassFile secondFile = new GroupZipper(firstFile).close();
+        secondFile.getUuidIndex();
+
+        Entry addedEntry = new EntryBuilder("Added entry").build();
+        new GroupBuilder(sharedGroup).addEntry(addedEntry);
+
+        Assert.assertSame(addedEntry, firstFile.getEntryByUUID(addedEntry.getUuid()));
+        Assert.assertSame(addedEntry, secondFile.getEntryByUUID(addedEntry.getUuid()));
+    }
+
+    @Test
+    public void whenGroupIsAddedAfterFirstLookupShouldTrackItsChildren() {
+        Group topGroup = new GroupBuilder("Top").build();
+        KeePassFile keePassFile = new KeePassFileBuilder("indexedDB").addTopGroups(topGroup).build();
+        keePassFile.getUuidIndex();
+
+        Group addedGroup = new GroupBuilder("Added").build();
+        new GroupBuilder(topGroup).addGroup(addedGroup);
+        Assert.assertSame(addedGroup, keePassFile.getGroupByUUID(addedGroup.getUuid()));
+
+        Entry addedEntry = new EntryBuilder("Added entry").build();
+        new GroupBuilder(addedGroup).addEntry(addedEntry);
+        Assert.assertSame(addedEntry, keePassFile.getEntryByUUID(addedEntry.getUuid()));
+    }
+
+    @Test
+    public void whenSearchingTitleShouldLoadLazyGroupsAndBuildIndexOnce() {
+        final Entry loadedEntry = new EntryBuilder("Loaded").build();
+        Group lazyGroup = new GroupBuilder("Lazy").childrenLoader(new GroupChildrenLoader() {
+
+            @Override
+            public void loadChildren(List<Entry> entries, List<Group> groups) {
+                entries.add(loadedEntry);
+            }
+        }).build();
+        KeePassFile keePassFile = new KeePassFileBuilder("lazyDB").addTopGroups(lazyGroup).build();
+
+        TextIndex<Entry> titleIndex = keePassFile.getTitleIndex();
+        List<Entry> entries = keePassFile.getEntriesByTitle("Loaded", true);
+
+        Assert.assertEquals(1, entries.size());
+        Assert.assertSame(loadedEntry, entries.get(0));
+        Assert.assertTrue(lazyGroup.isChildrenLoaded());
+        Assert.assertSame(titleIndex, keePassFile.getTitleIndex());
+    }
+
+    @Test
+    public void whenGroupIsMovedBetweenDatabasesShouldOnlyRebuildTheirAncestryIndexes() {
+        Group movedGroup = new GroupBuilder("Moved").build();
+        Group sourceGroup = new GroupBuilder("Source").addGroup(movedGroup).build();
+        Group targetGroup = new GroupBuilder("Target").build();
+        KeePassFile sourceFile = new KeePassFileBuilder("sourceDB").addTopGroups(sourceGroup).build();
+        KeePassFile targetFile = new KeePassFileBuilder("targetDB").addTopGroups(targetGroup).build();
+        KeePassFile otherFile = new KeePassFileBuilder("otherDB").addTopGroups(new GroupBuilder("Other").build()).build();
+        Assert.assertSame(sourceGroup, sourceFile.getParent(movedGroup));
+        Assert.assertNull(targetFile.getParent(movedGroup));
+        AncestryIndex otherIndex = otherFile.getAncestryIndex();
+
+        new GroupBuilder(sourceGroup).removeGroup(movedGroup);
+        new GroupBuilder(targetGroup).addGroup(movedGroup);
+
+        Assert.assertNull(sourceFile.getParent(movedGroup));
+        Assert.assertSame(targetGroup, targetFile.getParent(movedGroup));
+        Assert.assertSame(otherIndex, otherFile.getAncestryIndex());
+    }
+}
@@ -0,0 +1,83 @@
+package de.slackspace.openkeepass.domain;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyListTest {
+
+    @Test
+    public void whenLookingUpByKeyShouldIgnoreCase() {
+        PropertyList properties = new PropertyList();
+        Property title = new Property("Title", "Mail", false);
+        Property custom = new Property("Pin", "1234", true);
+        properties.add(title);
+        properties.add(custom);
+
+        Assert.assertSame(title, properties.get("TITLE"));
+        Assert.assertSame(title, properties.getStandard(PropertyList.TITLE));
+        Assert.assertSame(custom, properties.get("pin"));
+        Assert.assertNull(properties.get("Notes"));
+        Assert.assertNull(properties.get(null));
+    }
+
+    @Test
+    public void whenPuttingExistingKeyShouldReplaceInPlace() {
+        PropertyList properties = new PropertyList(Arrays.asList(new Property("Title", "Mail", false), new Property("UserName", "john", false)));
+
+        properties.put(new Property("Title", "Web", false));
+
+        Assert.assertEquals(2, properties.size());
+        Assert.assertEquals("Web", properties.get(0).getValue());
+        Assert.assertEquals("Web", properties.get("Title").getValue());
+    }
+
+    @Test
+    public void whenKeyIsDuplicatedShouldFindFirstUntilRemoved() {
+        Property first = new Property("Pin", "1", false);
+        Property second = new Property("PIN", "2", false);
+        PropertyList properties = new PropertyList();
+        properties.add(second);
+        properties.add(0, first);
+
+        Assert.assertSame(first, properties.get("pin"));
+
+        properties.remove(first);
+
+        Assert.assertSame(second, properties.get("pin"));
+    }
+
+    @Test
+    public void whenRemovingThroughIteratorShouldUpdateIndex() {
+        PropertyList properties = new PropertyList(Arrays.asList(new Property("Title", "Mail", false), new Property("Pin", "1", false)));
+
+        Iterator<Property> iterator = properties.iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+
+        Assert.assertTrue(properties.isEmpty());
+        Assert.assertNull(properties.get("Title"));
+        Assert.assertNull(properties.get("Pin"));
+    }
+
+    @Test
+    public void whenGettingCustomPropertiesShouldKeepDocumentOrder() {
+        Property second = new Property("b", "2", false);
+        Property first = new Property("a", "1", false);
+        PropertyList properties = new PropertyList(Arrays.asList(second, new Property("Password", "secret", true), first));
+
+        Assert.assertEquals(Arrays.asList(second, first), properties.getCustomProperties());
+    }
+
+    @Test
+    public void whenComparedWithArrayListShouldBeEqual() {
+        PropertyList properties = new PropertyList(Arrays.asList(new Property("Title", "Mail", false)));
+
+        Assert.assertEquals(Arrays.asList(new Property("Title", "Mail", false)), properties);
+        Assert.assertEquals(Arrays.asList(new Property("Title", "Mail", false)).hashCode(), properties.hashCode());
+    }
+}
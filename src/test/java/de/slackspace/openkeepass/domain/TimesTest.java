@@ -1,14 +1,67 @@
 package de.slackspace.openkeepass.domain;
 
+import java.util.Calendar;
+
+import org.junit.Assert;
 import org.junit.Test;
 
+import de.slackspace.openkeepass.util.TimestampUtils;
 import nl.jqno.equalsverifier.EqualsVerifier;
 import nl.jqno.equalsverifier.Warning;
 
 public class TimesTest {
 
+    private static final long TIMESTAMP = 1416682779000L;
+
     @Test
     public void equalsContract() {
         EqualsVerifier.forClass(Times.class).suppress(Warning.NONFINAL_FIELDS).verify();
     }
+
+    @Test
+    public void whenCreatingFromCalendarContractShouldKeepTimestamps() {
+        Times times = new Times(new TimesContract() {
+
+            @Override
+            public Calendar getLastModificationTime() {
+                return TimestampUtils.toCalendar(TIMESTAMP);
+            }
+
+            @Override
+            public Calendar getCreationTime() {
+                return TimestampUtils.toCalendar(TIMESTAMP - 1000);
+            }
+
+            @Override
+            public Calendar getLastAccessTime() {
+                return null;
+            }
+
+            @Override
+            public Calendar getExpiryTime() {
+                return null;
+            }
+
+            @Override
+            public boolean getExpires() {
+                return false;
+            }
+
+            @Override
+            public int getUsageCount() {
+                return 3;
+            }
+
+            @Override
+            public Calendar getLocationChanged() {
+                return null;
+            }
+        });
+
+        Assert.assertEquals(TIMESTAMP, times.getLastModificationTimeMillis());
+        Assert.assertEquals(TIMESTAMP - 1000, times.getCreationTime().getTimeInMillis());
+        Assert.assertEquals(TimestampUtils.NONE, times.getLastAccessTimeMillis());
+        Assert.assertEquals(3, times.getUsageCount());
+        Assert.assertEquals(new TimesBuilder(times).build(), times);
+    }
 }
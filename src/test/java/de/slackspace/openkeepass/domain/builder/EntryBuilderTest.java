@@ -1,5 +1,6 @@
 package de.slackspace.openkeepass.domain.builder;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 import org.junit.Assert;
@@ -8,6 +9,7 @@ import org.junit.Test;
 import de.slackspace.openkeepass.domain.Entry;
 import de.slackspace.openkeepass.domain.EntryBuilder;
 import de.slackspace.openkeepass.domain.History;
+import de.slackspace.openkeepass.domain.Property;
 
 public class EntryBuilderTest {
 
@@ -71,4 +73,21 @@ public class EntryBuilderTest {
         Entry entryCopyNotEqual = new EntryBuilder(entry).notes("another note").build();
         Assert.assertNotEquals(entry, entryCopyNotEqual);
     }
+
+    @Test
+    public void shouldKeepPropertyOrderWhenChangingEntry() {
+        Entry entry = new EntryBuilder().properties(Arrays.asList(new Property("Custom", "value", false), new Property("Title", "old", false),
+                new Property("Password", "secret", true))).build();
+
+        EntryBuilder builder = new EntryBuilder(entry).title("new");
+        builder.getCustomPropertyList().add(new Property("Other", "other", false));
+        Entry changed = builder.build();
+
+        Assert.assertEquals("new", changed.getTitle());
+        Assert.assertEquals(2, builder.getCustomPropertyList().size());
+        Assert.assertEquals("Custom", changed.getProperties().get(0).getKey());
+        Assert.assertEquals("Title", changed.getProperties().get(1).getKey());
+        Assert.assertEquals("Password", changed.getProperties().get(2).getKey());
+        Assert.assertEquals("Other", changed.getProperties().get(3).getKey());
+    }
 }
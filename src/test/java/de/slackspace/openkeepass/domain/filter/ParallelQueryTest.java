@@ -0,0 +1,141 @@
+package de.slackspace.openkeepass.domain.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+
+public class ParallelQueryTest {
+
+    private ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private KeePassFile keePassFile = createDatabase();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void whenListingEntriesShouldReturnSameResultAsSequentialFilter() {
+        Filter<Entry> filter = titleContains("7");
+
+        List<Entry> result = ParallelQuery.entries(keePassFile, executor).filter(filter).list();
+
+        Assert.assertEquals(ListFilter.filter(keePassFile.getEntries(), filter), result);
+        Assert.assertFalse(result.isEmpty());
+    }
+
+    @Test
+    public void whenListingGroupsShouldReturnAllMatchingGroups() {
+        List<Group> result = ParallelQuery.groups(keePassFile, executor).filter(new Filter<Group>() {
+
+            @Override
+            public boolean matches(Group item) {
+                return item.getName().startsWith("Group 1");
+            }
+        }).list();
+
+        Assert.assertEquals(ListFilter.filter(keePassFile.getGroups(), new Filter<Group>() {
+
+            @Override
+            public boolean matches(Group item) {
+                return item.getName().startsWith("Group 1");
+            }
+        }).size(), result.size());
+        Assert.assertEquals("Group 1", result.get(0).getName());
+    }
+
+    @Test
+    public void whenLimitingShouldReturnFirstMatchesInDocumentOrder() {
+        List<Entry> all = ParallelQuery.entries(keePassFile, executor).list();
+
+        List<Entry> result = ParallelQuery.entries(keePassFile, executor).limit(5).list();
+
+        Assert.assertEquals(all.subList(0, 5), result);
+        Assert.assertEquals(keePassFile.getEntries(), all);
+    }
+
+    @Test
+    public void whenFindingFirstShouldReturnFirstMatchInDocumentOrder() {
+        Entry result = ParallelQuery.entries(keePassFile, executor).filter(titleContains("Entry 3")).findFirst();
+
+        Assert.assertEquals(ListFilter.filter(keePassFile.getEntries(), titleContains("Entry 3")).get(0), result);
+    }
+
+    @Test
+    public void whenFindingAnyShouldReturnMatchAndStopScanning() {
+        final AtomicInteger evaluated = new AtomicInteger();
+
+        Entry result = ParallelQuery.entries(keePassFile, executor).filter(new Filter<Entry>() {
+
+            @Override
+            public boolean matches(Entry item) {
+                evaluated.incrementAndGet();
+                return true;
+            }
+        }).findAny();
+
+        Assert.assertNotNull(result);
+        Assert.assertTrue(evaluated.get() < keePassFile.getEntries().size());
+    }
+
+    @Test
+    public void whenNothingMatchesShouldReturnNull() {
+        Assert.assertNull(ParallelQuery.entries(keePassFile, executor).filter(titleContains("missing")).findAny());
+        Assert.assertNull(ParallelQuery.entries(keePassFile, executor).filter(titleContains("missing")).findFirst());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenFilterFailsShouldRethrowException() {
+        ParallelQuery.entries(keePassFile, executor).filter(new Filter<Entry>() {
+
+            @Override
+            public boolean matches(Entry item) {
+                throw new IllegalStateException("broken filter");
+            }
+        }).list();
+    }
+
+    private static Filter<Entry> titleContains(final String text) {
+        return new Filter<Entry>() {
+
+            @Override
+            public boolean matches(Entry item) {
+                return item.getTitle().contains(text);
+            }
+        };
+    }
+
+    private static KeePassFile createDatabase() {
+        List<Group> groups = new ArrayList<Group>();
+        int count = 0;
+
+        for (int i = 0; i < 20; i++) {
+            GroupBuilder groupBuilder = new GroupBuilder("Group " + i);
+            for (int j = 0; j < 5; j++) {
+                GroupBuilder subGroupBuilder = new GroupBuilder("Group " + i + "." + j);
+                for (int k = 0; k < 10; k++) {
+                    subGroupBuilder.addEntry(new EntryBuilder("Entry " + count++).build());
+                }
+                groupBuilder.addGroup(subGroupBuilder.build());
+            }
+            groupBuilder.addEntry(new EntryBuilder("Entry " + count++).build());
+            groups.add(groupBuilder.build());
+        }
+
+        return new KeePassFileBuilder("parallelDB").addTopGroups(groups.toArray(new Group[groups.size()])).build();
+    }
+}
@@ -0,0 +1,92 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.zipper.GroupZipper;
+
+public class AncestryIndexTest {
+
+    private Entry prod = new EntryBuilder("Prod").build();
+    private Entry copy = new EntryBuilder(prod).build();
+    private Group databases = new GroupBuilder("Databases").addEntry(prod).build();
+    private Group infrastructure = new GroupBuilder("Infra/Ops").addGroup(databases).build();
+    private Group other = new GroupBuilder("Other").addEntry(copy).build();
+    private Group top = new GroupBuilder("Root").addGroup(infrastructure).addGroup(other).build();
+
+    private KeePassFile keePassFile = new KeePassFileBuilder("ancestryDB").addTopGroups(top).build();
+
+    @Test
+    public void whenLookingUpParentShouldCompareByIdentity() {
+        AncestryIndex index = new AncestryIndex(keePassFile.getRoot());
+
+        Assert.assertEquals(prod, copy);
+        Assert.assertSame(databases, index.getParent(prod));
+        Assert.assertSame(other, index.getParent(copy));
+        Assert.assertSame(top, index.getParent(infrastructure));
+        Assert.assertNull(index.getParent(top));
+        Assert.assertNull(index.getParent(new EntryBuilder("Unknown").build()));
+    }
+
+    @Test
+    public void whenGettingPathShouldStartAtTopGroup() {
+        AncestryIndex index = new AncestryIndex(keePassFile.getRoot());
+
+        Assert.assertEquals(Arrays.asList(top, infrastructure, databases), index.getPath(databases));
+        Assert.assertTrue(index.getPath(new GroupBuilder("Unknown").build()).isEmpty());
+    }
+
+    @Test
+    public void whenCheckingDescendantShouldWalkUpTheTree() {
+        AncestryIndex index = new AncestryIndex(keePassFile.getRoot());
+
+        Assert.assertTrue(index.isDescendant(top, databases));
+        Assert.assertTrue(index.isDescendant(infrastructure, prod));
+        Assert.assertTrue(index.isDescendant(databases, prod));
+        Assert.assertFalse(index.isDescendant(databases, databases));
+        Assert.assertFalse(index.isDescendant(other, prod));
+        Assert.assertFalse(index.isDescendant(databases, infrastructure));
+    }
+
+    @Test
+    public void whenBuildingPathsShouldResolveToSameElements() {
+        Assert.assertEquals("Root/Infra\\/Ops/Databases", keePassFile.getPath(databases));
+        Assert.assertSame(databases, keePassFile.getGroupByPath(keePassFile.getPath(databases)));
+        Assert.assertSame(prod, keePassFile.getEntryByPath(keePassFile.getPath(prod)));
+        Assert.assertNull(keePassFile.getPath(new EntryBuilder("Unknown").build()));
+    }
+
+    @Test
+    public void whenZipperReplacesGroupShouldFindNewParent() {
+        Assert.assertSame(databases, keePassFile.getParent(prod));
+
+        Entry staging = new EntryBuilder("Staging").build();
+        Group replacement = new GroupBuilder("Databases").addEntry(staging).build();
+        new GroupZipper(keePassFile).down().down().replace(replacement);
+
+        Assert.assertSame(replacement, keePassFile.getParent(staging));
+        Assert.assertNull(keePassFile.getParent(prod));
+        Assert.assertTrue(keePassFile.isDescendant(top, staging));
+    }
+
+    @Test
+    public void whenGroupIsMovedThroughBuildersShouldFindNewParent() {
+        Assert.assertSame(infrastructure, keePassFile.getParent(databases));
+
+        new GroupBuilder(infrastructure).removeGroup(databases);
+        new GroupBuilder(other).addGroup(databases);
+
+        Assert.assertSame(other, keePassFile.getParent(databases));
+        Assert.assertSame(databases, keePassFile.getParent(prod));
+        Assert.assertEquals("Root/Other/Databases", keePassFile.getPath(databases));
+        Assert.assertFalse(keePassFile.isDescendant(infrastructure, prod));
+    }
+}
@@ -0,0 +1,100 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.api.ExpiryListener;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.TimesBuilder;
+
+public class ExpirySchedulerTest {
+
+    private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private List<Entry> expired = new CopyOnWriteArrayList<Entry>();
+    private CountDownLatch latch;
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void whenEntriesExpireShouldNotifyListeners() throws InterruptedException {
+        Entry alreadyExpired = createEntry("Already expired", -1000);
+        Entry first = createEntry("First", 300);
+        Entry second = createEntry("Second", 600);
+
+        TimeIndex<Entry> index = TimeIndex.forEntries(Arrays.asList(second, alreadyExpired, first), TimeField.EXPIRY);
+        ExpiryScheduler<Entry> scheduler = createScheduler(index, 2);
+        scheduler.start();
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(first, second), new ArrayList<Entry>(expired));
+    }
+
+    @Test
+    public void whenEntryIsAddedAfterStartShouldNotifyListeners() throws InterruptedException {
+        TimeIndex<Entry> index = TimeIndex.forEntries(new ArrayList<Entry>(), TimeField.EXPIRY);
+        ExpiryScheduler<Entry> scheduler = createScheduler(index, 1);
+        scheduler.start();
+
+        Entry added = createEntry("Added", 300);
+        index.add(added);
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(added), new ArrayList<Entry>(expired));
+    }
+
+    @Test
+    public void whenSchedulerIsStoppedShouldNotNotifyListeners() throws InterruptedException {
+        TimeIndex<Entry> index = TimeIndex.forEntries(Arrays.asList(createEntry("Expiring", 100)), TimeField.EXPIRY);
+        ExpiryScheduler<Entry> scheduler = createScheduler(index, 1);
+        scheduler.start();
+        scheduler.stop();
+
+        Assert.assertFalse(latch.await(400, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(expired.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenIndexIsNotOnExpiryShouldThrowException() {
+        new ExpiryScheduler<Entry>(TimeIndex.forEntries(new ArrayList<Entry>(), TimeField.CREATION), executor);
+    }
+
+    private ExpiryScheduler<Entry> createScheduler(TimeIndex<Entry> index, int expectedEntries) {
+        latch = new CountDownLatch(expectedEntries);
+
+        ExpiryScheduler<Entry> scheduler = new ExpiryScheduler<Entry>(index, executor);
+        scheduler.addListener(new ExpiryListener<Entry>() {
+
+            @Override
+            public void onExpired(List<Entry> entries) {
+                for (Entry entry : entries) {
+                    expired.add(entry);
+                    latch.countDown();
+                }
+            }
+        });
+        return scheduler;
+    }
+
+    private static Entry createEntry(String title, long expiresInMillis) {
+        Calendar expiryTime = Calendar.getInstance();
+        expiryTime.setTimeInMillis(System.currentTimeMillis() + expiresInMillis);
+
+        return new EntryBuilder(title).times(new TimesBuilder().expiryTime(expiryTime).expires(true).build()).build();
+    }
+}
@@ -0,0 +1,84 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.index.FullTextIndex.Operator;
+
+/**
+ * Compares searching a synthetic database of 500k entries through the
+ * {@link FullTextIndex} with scanning all entries. The test needs about a
+ * gigabyte of heap, so it only runs with
+ * <tt>-Dopenkeepass.largeTests=true</tt>.
+ */
+public class FullTextIndexBenchmarkTest {
+
+    private static final int ENTRY_COUNT = 500000;
+    private static final int QUERY_COUNT = 200;
+    private static final String[] WORDS = { "mail", "bank", "shop", "work", "home", "cloud", "server", "admin", "backup", "social" };
+
+    private static KeePassFile keePassFile;
+
+    @BeforeClass
+    public static void createDatabase() {
+        Assume.assumeTrue(Boolean.getBoolean("openkeepass.largeTests"));
+
+        Random random = new Random(42);
+        GroupBuilder group = new GroupBuilder("Synthetic");
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            group.addEntry(new EntryBuilder(WORDS[random.nextInt(WORDS.length)] + " account " + i).username("user" + random.nextInt(10000))
+                    .url("https://" + WORDS[random.nextInt(WORDS.length)] + ".example.com").notes("note " + WORDS[random.nextInt(WORDS.length)]).build());
+        }
+        keePassFile = new KeePassFileBuilder("Synthetic").addTopGroups(group.build()).build();
+    }
+
+    @Test
+    public void whenSearchingLargeDatabaseShouldBeFasterThanScanning() {
+        FullTextIndex index = new FullTextIndex(keePassFile);
+        Assert.assertEquals(ENTRY_COUNT, index.size());
+
+        Random random = new Random(7);
+        long indexTime = 0;
+        long scanTime = 0;
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            String username = "user" + random.nextInt(10000);
+            String word = WORDS[random.nextInt(WORDS.length)];
+
+            long start = System.nanoTime();
+            List<Entry> indexed = index.search(username + " " + word, Operator.AND);
+            indexTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<Entry> scanned = scan(username, word);
+            scanTime += System.nanoTime() - start;
+
+            Assert.assertEquals(scanned.size(), indexed.size());
+            Assert.assertTrue(indexed.containsAll(scanned));
+        }
+
+        Assert.assertTrue("index: " + indexTime / QUERY_COUNT + "ns, scan: " + scanTime / QUERY_COUNT + "ns per query", indexTime * 10 < scanTime);
+    }
+
+    private static List<Entry> scan(String username, String word) {
+        List<Entry> result = new ArrayList<Entry>();
+        for (Entry entry : keePassFile.getEntries()) {
+            if (entry.getUsername().equals(username) && (FullTextIndex.tokenize(entry.getTitle()).contains(word)
+                    || FullTextIndex.tokenize(entry.getUrl()).contains(word) || FullTextIndex.tokenize(entry.getNotes()).contains(word))) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.index.FullTextIndex.Operator;
+
+public class FullTextIndexTest {
+
+    private Entry github = new EntryBuilder("GitHub").username("octocat").url("https://github.com/login").notes("work account").password("secret")
+            .build();
+    private Entry mail = new EntryBuilder("Mail").username("john").url("https://mail.example.com").notes("private github notifications").build();
+    private Entry bank = new EntryBuilder("Online Banking").username("john.doe").notes("work salary").build();
+
+    @Test
+    public void whenTokenizingShouldSplitAtNonAlphanumericCharactersAndLowerCase() {
+        Assert.assertEquals(Arrays.asList("https", "mail", "example", "com"), Arrays.asList(FullTextIndex.tokenize("https://Mail.example.com").toArray()));
+        Assert.assertTrue(FullTextIndex.tokenize(" -- ").isEmpty());
+    }
+
+    @Test
+    public void whenSearchingWithAndShouldReturnEntriesContainingAllTerms() {
+        FullTextIndex index = createIndex();
+
+        Assert.assertEquals(Arrays.asList(bank), index.search("John WORK", Operator.AND));
+        Assert.assertTrue(index.search("john unknown", Operator.AND).isEmpty());
+    }
+
+    @Test
+    public void whenSearchingWithOrShouldRankTitleMatchesFirst() {
+        FullTextIndex index = createIndex();
+
+        Assert.assertEquals(Arrays.asList(github, mail), index.search("github", Operator.OR));
+        Assert.assertEquals(3, index.search("github banking unknown", Operator.OR).size());
+    }
+
+    @Test
+    public void whenSearchingPasswordShouldNotFindEntry() {
+        Assert.assertTrue(createIndex().search("secret", Operator.OR).isEmpty());
+    }
+
+    @Test
+    public void whenEntryIsUpdatedShouldFindNewValuesOnly() {
+        FullTextIndex index = createIndex();
+
+        index.add(new EntryBuilder(mail).notes("personal").build());
+
+        Assert.assertEquals(Arrays.asList(github), index.search("github", Operator.OR));
+        Assert.assertEquals(1, index.search("personal", Operator.OR).size());
+        Assert.assertEquals(3, index.size());
+    }
+
+    @Test
+    public void whenEntryIsRemovedShouldNotFindIt() {
+        FullTextIndex index = createIndex();
+
+        Assert.assertTrue(index.remove(bank.getUuid()));
+        Assert.assertFalse(index.remove(bank.getUuid()));
+
+        Assert.assertEquals(Arrays.asList(github), index.search("work", Operator.OR));
+        Assert.assertEquals(2, index.size());
+    }
+
+    @Test
+    public void whenManyEntriesAreReplacedShouldCompactAndKeepResults() {
+        FullTextIndex index = createIndex();
+
+        for (int i = 0; i < 3000; i++) {
+            index.add(new EntryBuilder(mail).notes("revision " + i).build());
+        }
+
+        List<Entry> result = index.search("revision 2999", Operator.AND);
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("revision 2999", result.get(0).getNotes());
+        Assert.assertEquals(Arrays.asList(bank), index.search("salary", Operator.AND));
+    }
+
+    @Test
+    public void whenIndexingDatabaseShouldFindEntriesByAnyField() {
+        KeePassFile keePassFile = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx").openDatabase("123456");
+        FullTextIndex index = new FullTextIndex(keePassFile);
+
+        Assert.assertEquals(keePassFile.getEntries().size(), index.size());
+        for (Entry entry : keePassFile.getEntries()) {
+            if (entry.getUsername() != null && !FullTextIndex.tokenize(entry.getUsername()).isEmpty()) {
+                Assert.assertTrue(index.search(entry.getUsername(), Operator.AND).contains(entry));
+            }
+        }
+    }
+
+    private FullTextIndex createIndex() {
+        FullTextIndex index = new FullTextIndex();
+        index.add(github);
+        index.add(mail);
+        index.add(bank);
+        return index;
+    }
+}
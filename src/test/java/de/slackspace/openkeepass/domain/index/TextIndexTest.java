@@ -0,0 +1,103 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+
+public class TextIndexTest {
+
+    private static final List<String> TEXTS = Arrays.asList("Banking", "banana", null, "Online Banking", "BANK", "Straße", "aaaa", "");
+
+    private TextIndex<String> index = new TextIndex<String>(TEXTS, TEXTS);
+
+    @Test
+    public void whenSearchingExactShouldIgnoreCase() {
+        Assert.assertEquals(Arrays.asList("Banking"), index.findExact("banking"));
+        Assert.assertEquals(Arrays.asList("Straße"), index.findExact("STRAßE"));
+        Assert.assertEquals(Arrays.asList(""), index.findExact(""));
+        Assert.assertTrue(index.findExact("bank account").isEmpty());
+        Assert.assertTrue(index.findExact(null).isEmpty());
+    }
+
+    @Test
+    public void whenSearchingPrefixShouldReturnMatchesInIndexOrder() {
+        Assert.assertEquals(Arrays.asList("Banking", "banana", "BANK"), index.findPrefix("ban"));
+        Assert.assertEquals(Arrays.asList("Banking", "BANK"), index.findPrefix("BANK"));
+        Assert.assertTrue(index.findPrefix("x").isEmpty());
+    }
+
+    @Test
+    public void whenSearchingSubstringShouldReturnMatchesInIndexOrder() {
+        Assert.assertEquals(Arrays.asList("Banking", "Online Banking"), index.findContaining("king"));
+        Assert.assertEquals(Arrays.asList("Banking", "banana", "Online Banking", "BANK"), index.findContaining("an"));
+        Assert.assertEquals(Arrays.asList("aaaa"), index.findContaining("aaaa"));
+        Assert.assertEquals(Arrays.asList("Online Banking"), index.findContaining("e bank"));
+        Assert.assertTrue(index.findContaining("bankings").isEmpty());
+        Assert.assertEquals(7, index.findContaining("").size());
+    }
+
+    @Test
+    public void whenSearchingDatabaseShouldReturnSameResultsAsScanning() {
+        KeePassFile keePassFile = KeePassDatabase.getInstance("target/test-classes/fullBlownDatabase.kdbx").openDatabase("123456");
+
+        for (String query : Arrays.asList("", "a", "SA", "sample", "Entry", "e e", "test", "general", "xyz")) {
+            Assert.assertEquals(query, scanEntries(keePassFile, query, true), keePassFile.getEntriesByTitle(query, true));
+            Assert.assertEquals(query, scanEntries(keePassFile, query, false), keePassFile.getEntriesByTitle(query, false));
+            Assert.assertEquals(query, scanGroups(keePassFile, query, true), keePassFile.getGroupsByName(query, true));
+            Assert.assertEquals(query, scanGroups(keePassFile, query, false), keePassFile.getGroupsByName(query, false));
+        }
+    }
+
+    @Test
+    public void whenChildrenAreAddedThroughBuilderShouldFindThem() {
+        Group group = new GroupBuilder("Top").build();
+        KeePassFile keePassFile = new KeePassFileBuilder("indexedDB").addTopGroups(group).build();
+        Assert.assertEquals(0, keePassFile.getEntriesByTitle("zzz", true).size());
+        Assert.assertEquals(0, keePassFile.getGroupsByName("yyy", true).size());
+
+        Entry entry = new EntryBuilder("zzz").build();
+        Group subGroup = new GroupBuilder("yyy").build();
+        new GroupBuilder(group).addEntry(entry).addGroup(subGroup);
+
+        Assert.assertEquals(Arrays.asList(entry), keePassFile.getEntriesByTitle("zzz", true));
+        Assert.assertEquals(Arrays.asList(subGroup), keePassFile.getGroupsByName("yyy", true));
+    }
+
+    private static List<Entry> scanEntries(KeePassFile keePassFile, String query, boolean matchExactly) {
+        List<Entry> result = new ArrayList<Entry>();
+        for (Entry entry : keePassFile.getEntries()) {
+            if (matches(entry.getTitle(), query, matchExactly)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private static List<Group> scanGroups(KeePassFile keePassFile, String query, boolean matchExactly) {
+        List<Group> result = new ArrayList<Group>();
+        for (Group group : keePassFile.getGroups()) {
+            if (matches(group.getName(), query, matchExactly)) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(String text, String query, boolean matchExactly) {
+        if (text == null) {
+            return false;
+        }
+        return matchExactly ? text.equalsIgnoreCase(query) : text.toLowerCase().contains(query.toLowerCase());
+    }
+}
@@ -0,0 +1,88 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.TimesBuilder;
+
+public class TimeIndexTest {
+
+    private Entry newest = createEntry("Newest", 2017);
+    private Entry oldest = createEntry("Oldest", 2014);
+    private Entry middle = createEntry("Middle", 2015);
+    private Entry withoutTimes = new EntryBuilder("Without times").build();
+
+    private TimeIndex<Entry> index = TimeIndex.forEntries(Arrays.asList(newest, oldest, withoutTimes, middle), TimeField.CREATION);
+
+    @Test
+    public void whenSearchingRangeShouldReturnEntriesOldestFirst() {
+        Assert.assertEquals(Arrays.asList(oldest, middle), index.findBetween(year(2014), year(2016)));
+        Assert.assertEquals(Arrays.asList(oldest, middle, newest), index.findBetween(null, null));
+        Assert.assertEquals(Arrays.asList(newest), index.findBetween(year(2016), null));
+    }
+
+    @Test
+    public void whenRangeEndEqualsTimestampShouldExcludeEntry() {
+        Assert.assertEquals(Arrays.asList(oldest), index.findBetween(null, year(2015)));
+        Assert.assertEquals(1, index.countBetween(null, year(2015)));
+    }
+
+    @Test
+    public void whenRangeIsEmptyShouldReturnNothing() {
+        Assert.assertTrue(index.findBetween(year(2016), year(2015)).isEmpty());
+        Assert.assertEquals(0, index.countBetween(year(2016), year(2015)));
+    }
+
+    @Test
+    public void whenEntryIsUpdatedShouldReplacePreviousVersion() {
+        Entry updated = new EntryBuilder(oldest).times(new TimesBuilder().creationTime(year(2018)).build()).build();
+        index.add(updated);
+
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(Arrays.asList(middle, newest, updated), index.findBetween(null, null));
+    }
+
+    @Test
+    public void whenEntryIsRemovedShouldNotBeFound() {
+        Assert.assertTrue(index.remove(middle.getUuid()));
+        Assert.assertFalse(index.remove(middle.getUuid()));
+
+        Assert.assertEquals(Arrays.asList(oldest, newest), index.findBetween(null, null));
+    }
+
+    @Test
+    public void whenSearchingLatestShouldReturnNewestFirst() {
+        Assert.assertEquals(Arrays.asList(newest, middle), index.findLatest(2));
+        Assert.assertEquals(3, index.findLatest(10).size());
+    }
+
+    @Test
+    public void whenIndexingExpiryShouldIgnoreElementsWhichDoNotExpire() {
+        Group expiring = new GroupBuilder("Expiring").times(new TimesBuilder().expiryTime(year(2016)).expires(true).build()).build();
+        Group notExpiring = new GroupBuilder("Not expiring").times(new TimesBuilder().expiryTime(year(2015)).expires(false).build()).build();
+
+        TimeIndex<Group> groupIndex = TimeIndex.forGroups(Arrays.asList(expiring, notExpiring), TimeField.EXPIRY);
+
+        Assert.assertEquals(Arrays.asList(expiring), groupIndex.findBetween(null, year(2017)));
+    }
+
+    private static Entry createEntry(String title, int year) {
+        return new EntryBuilder(title).times(new TimesBuilder().creationTime(year(year)).build()).build();
+    }
+
+    private static Calendar year(int year) {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, 0, 1);
+        return calendar;
+    }
+}
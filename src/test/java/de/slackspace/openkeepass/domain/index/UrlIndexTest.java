@@ -0,0 +1,98 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Property;
+
+public class UrlIndexTest {
+
+    private Entry login = new EntryBuilder("Login").url("https://user@Login.Example.com:8443/path?query#fragment").build();
+    private Entry example = new EntryBuilder("Example").url("example.com").build();
+    private Entry wildcard = new EntryBuilder("Wildcard").url("*.example.com").build();
+    private Entry other = new EntryBuilder("Other").url("http://example.org/").build();
+    private Entry router = new EntryBuilder("Router").url("http://192.168.0.1/admin").build();
+    private Entry noUrl = new EntryBuilder("No URL").build();
+
+    @Test
+    public void whenNormalizingShouldReturnLowerCaseHost() {
+        Assert.assertEquals("login.example.com", UrlIndex.normalizeHost("https://user:pw@Login.Example.COM.:8443/path"));
+        Assert.assertEquals("example.com", UrlIndex.normalizeHost(" //example.com?x=1 "));
+        Assert.assertEquals("[::1]", UrlIndex.normalizeHost("http://[::1]:8080/"));
+        Assert.assertEquals("xn--mller-kva.de", UrlIndex.normalizeHost("https://müller.de"));
+        Assert.assertNull(UrlIndex.normalizeHost("https:///path"));
+        Assert.assertNull(UrlIndex.normalizeHost(""));
+        Assert.assertNull(UrlIndex.normalizeHost(null));
+    }
+
+    @Test
+    public void whenSearchingByHostShouldReturnExactMatchesOnly() {
+        UrlIndex index = createIndex();
+
+        Assert.assertEquals(Arrays.asList(login), index.findByHost("LOGIN.example.com"));
+        Assert.assertEquals(Arrays.asList(example), index.findByHost("https://example.com/other"));
+        Assert.assertEquals(Arrays.asList(router), index.findByHost("192.168.0.1"));
+        Assert.assertTrue(index.findByHost("www.example.com").isEmpty());
+    }
+
+    @Test
+    public void whenSearchingByDomainShouldReturnDomainAndSubdomains() {
+        UrlIndex index = createIndex();
+
+        Assert.assertEquals(3, index.findByDomain("example.com").size());
+        Assert.assertTrue(index.findByDomain("example.com").containsAll(Arrays.asList(login, example, wildcard)));
+        Assert.assertEquals(4, index.findByDomain("com").size() + index.findByDomain("org").size());
+    }
+
+    @Test
+    public void whenMatchingHostShouldReturnExactThenWildcardThenParentDomainEntries() {
+        UrlIndex index = createIndex();
+
+        Assert.assertEquals(Arrays.asList(login, wildcard, example), index.findMatching("https://login.example.com/"));
+        Assert.assertEquals(Arrays.asList(wildcard, example), index.findMatching("mail.example.com"));
+        Assert.assertEquals(Arrays.asList(example), index.findMatching("example.com"));
+        Assert.assertTrue(index.findMatching("example.net").isEmpty());
+    }
+
+    @Test
+    public void whenEntryIsUpdatedOrRemovedShouldNotFindOldUrl() {
+        UrlIndex index = createIndex();
+
+        index.add(new EntryBuilder(login).url("https://login.example.org").build());
+        Assert.assertTrue(index.findByHost("login.example.com").isEmpty());
+        Assert.assertEquals(1, index.findByHost("login.example.org").size());
+
+        Assert.assertTrue(index.remove(wildcard.getUuid()));
+        Assert.assertFalse(index.remove(noUrl.getUuid()));
+        Assert.assertEquals(Arrays.asList(example), index.findMatching("mail.example.com"));
+    }
+
+    @Test
+    public void whenUrlOfIndexedEntryChangesShouldRemoveEntryFromOldHost() {
+        UrlIndex index = createIndex();
+
+        Iterator<Property> properties = login.getProperties().iterator();
+        while (properties.hasNext()) {
+            if ("URL".equals(properties.next().getKey())) {
+                properties.remove();
+            }
+        }
+
+        Assert.assertTrue(index.remove(login.getUuid()));
+        Assert.assertTrue(index.findByHost("login.example.com").isEmpty());
+        Assert.assertFalse(index.findByDomain("example.com").contains(login));
+    }
+
+    private UrlIndex createIndex() {
+        UrlIndex index = new UrlIndex();
+        for (Entry entry : Arrays.asList(login, example, wildcard, other, router, noUrl)) {
+            index.add(entry);
+        }
+        return index;
+    }
+}
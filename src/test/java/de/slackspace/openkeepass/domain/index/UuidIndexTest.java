@@ -0,0 +1,72 @@
+package de.slackspace.openkeepass.domain.index;
+
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.zipper.GroupZipper;
+
+public class UuidIndexTest {
+
+    private Entry firstEntry = new EntryBuilder("First entry").build();
+    private Entry secondEntry = new EntryBuilder("Second entry").build();
+    private Group subGroup = new GroupBuilder("Sub").addEntry(secondEntry).build();
+    private Group topGroup = new GroupBuilder("Top").addEntry(firstEntry).addGroup(subGroup).build();
+
+    @Test
+    public void whenLookingUpUuidShouldFindNestedEntriesAndGroups() {
+        UuidIndex index = new UuidIndex(new GroupBuilder().addGroup(topGroup).build());
+
+        Assert.assertSame(firstEntry, index.getEntry(firstEntry.getUuid()));
+        Assert.assertSame(secondEntry, index.getEntry(secondEntry.getUuid()));
+        Assert.assertSame(topGroup, index.getGroup(topGroup.getUuid()));
+        Assert.assertSame(subGroup, index.getGroup(subGroup.getUuid()));
+        Assert.assertNull(index.getEntry(UUID.randomUUID()));
+        Assert.assertNull(index.getGroup(secondEntry.getUuid()));
+    }
+
+    @Test
+    public void whenUuidIsNotUniqueShouldNotFindEntry() {
+        Entry duplicate = new EntryBuilder(firstEntry).title("Duplicate").build();
+        Group root = new GroupBuilder().addGroup(topGroup).addGroup(new GroupBuilder("Other").addEntry(duplicate).build()).build();
+
+        Assert.assertNull(new UuidIndex(root).getEntry(firstEntry.getUuid()));
+    }
+
+    @Test
+    public void whenRootIsNullShouldBeEmpty() {
+        Assert.assertNull(new UuidIndex(null).getGroup(topGroup.getUuid()));
+    }
+
+    @Test
+    public void whenZipperReplacesGroupInPlaceShouldFindReplacement() {
+        KeePassFile keePassFile = new KeePassFileBuilder("indexedDB").addTopGroups(topGroup).build();
+        Assert.assertSame(subGroup, keePassFile.getGroupByUUID(subGroup.getUuid()));
+
+        Entry addedEntry = new EntryBuilder("Added entry").build();
+        Group replacement = new GroupBuilder("Replacement").addEntry(addedEntry).build();
+        new GroupZipper(keePassFile).down().replace(replacement);
+
+        Assert.assertNull(keePassFile.getGroupByUUID(subGroup.getUuid()));
+        Assert.assertSame(replacement, keePassFile.getGroupByUUID(replacement.getUuid()));
+        Assert.assertSame(addedEntry, keePassFile.getEntryByUUID(addedEntry.getUuid()));
+    }
+
+    @Test
+    public void whenEntryIsAddedThroughBuilderShouldFindEntry() {
+        KeePassFile keePassFile = new KeePassFileBuilder("indexedDB").addTopGroups(topGroup).build();
+        Entry addedEntry = new EntryBuilder("Added entry").build();
+        Assert.assertNull(keePassFile.getEntryByUUID(addedEntry.getUuid()));
+
+        new GroupBuilder(subGroup).addEntry(addedEntry);
+
+        Assert.assertSame(addedEntry, keePassFile.getEntryByUUID(addedEntry.getUuid()));
+    }
+}
@@ -0,0 +1,84 @@
+package de.slackspace.openkeepass.domain.query;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.Property;
+import de.slackspace.openkeepass.domain.TimesBuilder;
+
+public class EntryQueryTest {
+
+    private Entry entry = new EntryBuilder("Mail Account").username("John").url("https://login.example.com/path")
+            .times(new TimesBuilder().lastModificationTime(date(2016, 5, 1)).build()).build();
+
+    @Test
+    public void whenComparingFieldsShouldIgnoreCase() {
+        Assert.assertTrue(EntryQuery.titleEquals("mail account").matches(entry));
+        Assert.assertTrue(EntryQuery.titleStartsWith("MAIL").matches(entry));
+        Assert.assertTrue(EntryQuery.titleContains("acc").matches(entry));
+        Assert.assertTrue(EntryQuery.fieldEquals("username", "john").matches(entry));
+        Assert.assertFalse(EntryQuery.titleEquals("mail").matches(entry));
+    }
+
+    @Test
+    public void whenFieldIsMissingShouldNotMatch() {
+        Assert.assertFalse(EntryQuery.fieldContains("Notes", "").matches(entry));
+        Assert.assertTrue(EntryQuery.not(EntryQuery.fieldContains("Notes", "")).matches(entry));
+    }
+
+    @Test
+    public void whenMatchingCustomFieldShouldFindProperty() {
+        Entry custom = new EntryBuilder("Bank").build();
+        custom.getProperties().add(new Property("Pin", "1234", false));
+
+        Assert.assertTrue(EntryQuery.fieldEquals("PIN", "1234").matches(custom));
+    }
+
+    @Test
+    public void whenMatchingHostShouldIgnoreSchemeAndPath() {
+        Assert.assertTrue(EntryQuery.host("LOGIN.example.com").matches(entry));
+        Assert.assertFalse(EntryQuery.host("example.com").matches(entry));
+    }
+
+    @Test
+    public void whenMatchingTimeRangeShouldIncludeStartAndExcludeEnd() {
+        Assert.assertTrue(EntryQuery.modifiedBetween(date(2016, 5, 1), date(2016, 5, 2)).matches(entry));
+        Assert.assertTrue(EntryQuery.modifiedBetween(null, null).matches(entry));
+        Assert.assertFalse(EntryQuery.modifiedBetween(date(2016, 4, 1), date(2016, 5, 1)).matches(entry));
+        Assert.assertFalse(EntryQuery.createdBetween(null, null).matches(entry));
+    }
+
+    @Test
+    public void whenScopedToGroupShouldOnlyMatchEntriesOfSubtree() {
+        Entry other = new EntryBuilder("Other").build();
+        Group subGroup = new GroupBuilder("Sub").addEntry(entry).build();
+        Group group = new GroupBuilder("Top").addGroup(subGroup).build();
+
+        Assert.assertTrue(EntryQuery.inGroup(group).matches(entry));
+        Assert.assertFalse(EntryQuery.inGroup(group).matches(other));
+    }
+
+    @Test
+    public void whenCombiningQueriesShouldFlattenOperands() {
+        EntryQuery query = EntryQuery.titleContains("mail").and(EntryQuery.usernameEquals("john")).and(EntryQuery.not(EntryQuery.titleContains("x")));
+
+        Assert.assertTrue(query.matches(entry));
+        Assert.assertEquals("(Title contains 'mail' AND UserName = 'john' AND NOT Title contains 'x')", query.toString());
+        Assert.assertTrue(EntryQuery.titleEquals("x").or(EntryQuery.usernameEquals("john")).matches(entry));
+    }
+
+    private static Calendar date(int year, int month, int day) {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar;
+    }
+}
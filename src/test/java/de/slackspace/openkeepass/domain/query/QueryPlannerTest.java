@@ -0,0 +1,122 @@
+package de.slackspace.openkeepass.domain.query;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.TimesBuilder;
+import de.slackspace.openkeepass.domain.filter.ListFilter;
+import de.slackspace.openkeepass.domain.index.TimeField;
+import de.slackspace.openkeepass.domain.index.TimeIndex;
+import de.slackspace.openkeepass.domain.index.UrlIndex;
+
+public class QueryPlannerTest {
+
+    private Entry mail = createEntry("Mail", "https://mail.example.com", 2016, 1);
+    private Entry webMail = createEntry("Web Mail", "https://web.example.com", 2016, 6);
+    private Entry bank = createEntry("Bank", "https://bank.example.org", 2015, 3);
+    private Entry shop = createEntry("Shop", "https://shop.example.org", 2016, 8);
+
+    private Group finance = new GroupBuilder("Finance").addEntry(bank).addEntry(shop).build();
+    private Group top = new GroupBuilder("Top").addEntry(mail).addEntry(webMail).addGroup(finance).build();
+    private KeePassFile keePassFile = new KeePassFileBuilder("queryDB").addTopGroups(top).build();
+
+    @Test
+    public void whenQueryingUuidShouldUseUuidIndex() {
+        QueryPlan plan = new QueryPlanner(keePassFile).plan(EntryQuery.uuid(bank.getUuid()));
+
+        Assert.assertEquals("Filter UUID = " + bank.getUuid() + "\n  UUID index (1 candidate)", plan.explain());
+        Assert.assertEquals(1, plan.execute().size());
+    }
+
+    @Test
+    public void whenQueryingTitleAndTimeShouldUseCheapestIndex() {
+        EntryQuery query = EntryQuery.titleContains("mail").and(EntryQuery.modifiedBetween(date(2016, 5), null));
+        QueryPlanner planner = new QueryPlanner(keePassFile);
+
+        QueryPlan plan = planner.plan(query);
+        Assert.assertTrue(plan.explain().contains("Title index substring 'mail' (2 candidates)"));
+
+        planner.withTimeIndex(TimeIndex.forEntries(keePassFile, TimeField.LAST_MODIFICATION));
+        QueryPlan timePlan = planner.plan(EntryQuery.modifiedBetween(date(2016, 7), null).and(EntryQuery.titleContains("s")));
+        Assert.assertTrue(timePlan.explain().contains("Time index LAST_MODIFICATION (1 candidate)"));
+
+        assertSameAsScan(query, plan);
+        assertSameAsScan(EntryQuery.modifiedBetween(date(2016, 7), null).and(EntryQuery.titleContains("s")), timePlan);
+    }
+
+    @Test
+    public void whenQueryingDisjunctionOfIndexedConditionsShouldUseUnion() {
+        EntryQuery query = EntryQuery.titleStartsWith("web").or(EntryQuery.host("bank.example.org"));
+        QueryPlan plan = new QueryPlanner(keePassFile).withUrlIndex(new UrlIndex(keePassFile)).plan(query);
+
+        Assert.assertEquals("Filter (Title starts with 'web' OR host = 'bank.example.org')\n  Union (2 candidates)\n    Title index prefix 'web' (1 candidate)\n    URL index (1 candidate)",
+                plan.explain());
+        assertSameAsScan(query, plan);
+    }
+
+    @Test
+    public void whenConditionHasNoIndexShouldScanAllEntries() {
+        EntryQuery query = EntryQuery.not(EntryQuery.host("mail.example.com"));
+        QueryPlan plan = new QueryPlanner(keePassFile).plan(query);
+
+        Assert.assertTrue(plan.explain().endsWith("Full scan (4 candidates)"));
+        assertSameAsScan(query, plan);
+    }
+
+    @Test
+    public void whenQueryingGroupScopeShouldOnlyScanSubtree() {
+        EntryQuery query = EntryQuery.inGroup(finance).and(EntryQuery.fieldContains("URL", "org"));
+        QueryPlan plan = new QueryPlanner(keePassFile).plan(query);
+
+        Assert.assertEquals(2, plan.getCandidateCount());
+        assertSameAsScan(query, plan);
+    }
+
+    @Test
+    public void whenGroupScopeIsCombinedWithIndexShouldNotScanGroup() {
+        EntryQuery query = EntryQuery.inGroup(top).and(EntryQuery.uuid(bank.getUuid()));
+        QueryPlan plan = new QueryPlanner(keePassFile).plan(query);
+
+        Assert.assertEquals("Filter (in group 'Top' AND UUID = " + bank.getUuid() + ")\n  UUID index (1 candidate)", plan.explain());
+        assertSameAsScan(query, plan);
+    }
+
+    @Test
+    public void whenRankingAccessPathsShouldPreferIndexOverGroupScan() {
+        EntryQuery query = EntryQuery.inGroup(finance).and(EntryQuery.titleContains("a"));
+        QueryPlan plan = new QueryPlanner(keePassFile).plan(query);
+
+        Assert.assertTrue(plan.explain().endsWith("Title index substring 'a' (3 candidates)"));
+        assertSameAsScan(query, plan);
+    }
+
+    private void assertSameAsScan(EntryQuery query, QueryPlan plan) {
+        List<Entry> expected = ListFilter.filter(keePassFile.getEntries(), query);
+        List<Entry> actual = plan.execute();
+
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertTrue(actual.containsAll(expected));
+    }
+
+    private static Entry createEntry(String title, String url, int year, int month) {
+        return new EntryBuilder(title).url(url).times(new TimesBuilder().lastModificationTime(date(year, month)).build()).build();
+    }
+
+    private static Calendar date(int year, int month) {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month - 1, 1);
+        return calendar;
+    }
+}
@@ -0,0 +1,109 @@
+package de.slackspace.openkeepass.parser;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.crypto.ProtectedStringCrypto;
+import de.slackspace.openkeepass.crypto.Salsa20;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.domain.ReadOptionsBuilder;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.processor.DecryptionStrategy;
+import de.slackspace.openkeepass.processor.ProtectedValueProcessor;
+import de.slackspace.openkeepass.util.ByteUtils;
+import de.slackspace.openkeepass.util.StreamUtils;
+
+public class KeePassDatabaseXmlLazyParserTest {
+
+    private byte[] protectedStreamKey = ByteUtils.hexStringToByteArray("ec77a2169769734c5d26e5341401f8d7b11052058f8455d314879075d0b7e257");
+    private ReadOptions readOptions = new ReadOptionsBuilder().lazy(true).iconEnrichment(false).build();
+
+    @Test
+    public void whenParsingLazilyShouldNotLoadChildrenOfTopGroup() throws IOException {
+        KeePassFile keePassFile = parseKeePassXmlLazily();
+
+        Group topGroup = keePassFile.getRoot().getGroups().get(0);
+        Assert.assertEquals("testDatabase", topGroup.getName());
+        Assert.assertFalse(topGroup.isChildrenLoaded());
+        Assert.assertEquals("TestDatabase", keePassFile.getMeta().getDatabaseName());
+    }
+
+    @Test
+    public void whenAccessingGroupShouldLoadOnlyItsDirectChildren() throws IOException {
+        KeePassFile keePassFile = parseKeePassXmlLazily();
+
+        List<Group> groups = keePassFile.getTopGroups();
+        Assert.assertEquals(6, groups.size());
+        Assert.assertEquals("General", groups.get(0).getName());
+        Assert.assertFalse(groups.get(0).isChildrenLoaded());
+
+        List<Entry> entries = keePassFile.getTopEntries();
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals("Sample Entry", entries.get(0).getTitle());
+        Assert.assertEquals("Password", entries.get(0).getPassword());
+    }
+
+    @Test
+    public void whenLoadingGroupsInAnyOrderShouldDecryptSameValuesAsEagerParser() throws IOException {
+        KeePassFile expected = new KeePassDatabaseXmlParser().fromXml(new FileInputStream("target/test-classes/testDatabase_decrypted.xml"));
+        new ProtectedValueProcessor().processProtectedValues(new DecryptionStrategy(Salsa20.createInstance(protectedStreamKey)), expected);
+
+        KeePassFile keePassFile = parseKeePassXmlLazily();
+
+        // load the last group first to make sure offsets are independent
+        List<Group> groups = keePassFile.getTopGroups();
+        groups.get(groups.size() - 1).getEntries();
+
+        List<Entry> expectedEntries = expected.getEntries();
+        List<Entry> entries = keePassFile.getEntries();
+        Assert.assertEquals(expectedEntries.size(), entries.size());
+        for (Entry expectedEntry : expectedEntries) {
+            Entry entry = keePassFile.getEntryByUUID(expectedEntry.getUuid());
+            Assert.assertEquals(expectedEntry.getTitle(), entry.getTitle());
+            Assert.assertEquals(expectedEntry.getPassword(), entry.getPassword());
+        }
+    }
+
+    @Test(expected = KeePassDatabaseUnreadableException.class)
+    public void whenXmlIsTruncatedShouldThrowException() throws IOException {
+        byte[] xml = readKeePassXml();
+        byte[] truncated = new byte[xml.length / 2];
+        System.arraycopy(xml, 0, truncated, 0, truncated.length);
+
+        new KeePassDatabaseXmlLazyParser().parse(truncated, Salsa20.createInstance(protectedStreamKey), readOptions);
+    }
+
+    @Test
+    public void whenMetaContainsProtectedBinaryShouldDecryptEntriesAfterIt() throws IOException {
+        byte[] xml = createXmlWithProtectedBinary(Salsa20.createInstance(protectedStreamKey));
+
+        KeePassFile keePassFile = new KeePassDatabaseXmlLazyParser().parse(xml, Salsa20.createInstance(protectedStreamKey), readOptions);
+
+        Assert.assertEquals("secret", keePassFile.getTopEntries().get(0).getPassword());
+    }
+
+    static byte[] createXmlWithProtectedBinary(ProtectedStringCrypto crypto) throws IOException {
+        String binary = crypto.encrypt("twelve bytes");
+        String password = crypto.encrypt("secret");
+
+        String xml = "<KeePassFile><Meta><DatabaseName>binaries</DatabaseName><Binaries><Binary ID=\"0\" Protected=\"True\">" + binary
+                + "</Binary></Binaries></Meta><Root><Group><Name>Top</Name><Entry><String><Key>Title</Key><Value>Entry</Value></String>"
+                + "<String><Key>Password</Key><Value Protected=\"True\">" + password + "</Value></String></Entry></Group></Root></KeePassFile>";
+        return xml.getBytes("UTF-8");
+    }
+
+    private KeePassFile parseKeePassXmlLazily() throws IOException {
+        return new KeePassDatabaseXmlLazyParser().parse(readKeePassXml(), Salsa20.createInstance(protectedStreamKey), readOptions);
+    }
+
+    private byte[] readKeePassXml() throws IOException {
+        return StreamUtils.toByteArray(new FileInputStream("target/test-classes/testDatabase_decrypted.xml"));
+    }
+}
@@ -0,0 +1,77 @@
+package de.slackspace.openkeepass.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.crypto.Salsa20;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.domain.ReadOptionsBuilder;
+import de.slackspace.openkeepass.domain.visitor.KeePassFileBuildingVisitor;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.util.ByteUtils;
+import de.slackspace.openkeepass.util.StreamUtils;
+
+public class KeePassDatabaseXmlParallelParserTest {
+
+    private byte[] protectedStreamKey = ByteUtils.hexStringToByteArray("ec77a2169769734c5d26e5341401f8d7b11052058f8455d314879075d0b7e257");
+    private ReadOptions readOptions = new ReadOptionsBuilder().iconEnrichment(false).build();
+    private ExecutorService executorService = Executors.newFixedThreadPool(3);
+
+    @After
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void whenParsingConcurrentlyShouldReturnSameTreeAsStreamParser() throws IOException {
+        byte[] xml = readKeePassXml();
+
+        KeePassFileBuildingVisitor visitor = new KeePassFileBuildingVisitor();
+        new KeePassDatabaseXmlStreamParser().parse(new ByteArrayInputStream(xml), Salsa20.createInstance(protectedStreamKey), visitor, readOptions);
+        KeePassFile expected = visitor.getKeePassFile();
+
+        KeePassFile keePassFile = new KeePassDatabaseXmlParallelParser().parse(xml, Salsa20.createInstance(protectedStreamKey), readOptions, executorService);
+
+        Assert.assertEquals(expected.getMeta().getDatabaseName(), keePassFile.getMeta().getDatabaseName());
+        Assert.assertEquals(expected.getTopGroups(), keePassFile.getTopGroups());
+
+        List<Entry> expectedEntries = expected.getEntries();
+        List<Entry> entries = keePassFile.getEntries();
+        Assert.assertEquals(expectedEntries.size(), entries.size());
+        for (int i = 0; i < expectedEntries.size(); i++) {
+            Assert.assertEquals(expectedEntries.get(i).getPassword(), entries.get(i).getPassword());
+        }
+    }
+
+    @Test
+    public void whenMetaContainsProtectedBinaryShouldDecryptEntriesAfterIt() throws IOException {
+        byte[] xml = KeePassDatabaseXmlLazyParserTest.createXmlWithProtectedBinary(Salsa20.createInstance(protectedStreamKey));
+
+        KeePassFile keePassFile = new KeePassDatabaseXmlParallelParser().parse(xml, Salsa20.createInstance(protectedStreamKey), readOptions, executorService);
+
+        Assert.assertEquals("secret", keePassFile.getEntries().get(0).getPassword());
+    }
+
+    @Test(expected = KeePassDatabaseUnreadableException.class)
+    public void whenXmlIsTruncatedShouldThrowException() throws IOException {
+        byte[] xml = readKeePassXml();
+        byte[] truncated = new byte[xml.length / 2];
+        System.arraycopy(xml, 0, truncated, 0, truncated.length);
+
+        new KeePassDatabaseXmlParallelParser().parse(truncated, Salsa20.createInstance(protectedStreamKey), readOptions, executorService);
+    }
+
+    private byte[] readKeePassXml() throws IOException {
+        return StreamUtils.toByteArray(new FileInputStream("target/test-classes/testDatabase_decrypted.xml"));
+    }
+}
@@ -1,5 +1,6 @@
 package de.slackspace.openkeepass.parser;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -160,6 +161,26 @@ public class KeePassDatabaseXmlParserTest {
         Assert.assertEquals("Password", writtenKeePassFile.getEntryByTitle("Sample Entry").getPassword());
     }
 
+    @Test
+    public void whenWritingCompactXmlShouldBeAbleToReadItAgain() throws IOException {
+        FileInputStream fileInputStream = new FileInputStream("target/test-classes/testDatabase_decrypted.xml");
+        KeePassDatabaseXmlParser parser = new KeePassDatabaseXmlParser();
+        KeePassFile keePassFile = parser.fromXml(fileInputStream);
+
+        ByteArrayOutputStream compactStream = new ByteArrayOutputStream();
+        parser.toXml(keePassFile, compactStream);
+
+        KeePassFile writtenKeePassFile = parser.fromXml(new ByteArrayInputStream(compactStream.toByteArray()));
+        new ProtectedValueProcessor().processProtectedValues(new DecryptionStrategy(Salsa20.createInstance(protectedStreamKey)), writtenKeePassFile);
+
+        Assert.assertTrue(compactStream.size() < parser.toXml(keePassFile).size());
+        Assert.assertEquals(keePassFile.getMeta(), writtenKeePassFile.getMeta());
+        Assert.assertEquals(7, writtenKeePassFile.getGroups().size());
+        Assert.assertEquals(3, writtenKeePassFile.getEntries().size());
+        Assert.assertEquals("Password", writtenKeePassFile.getEntryByTitle("Sample Entry").getPassword());
+        Assert.assertEquals("2014-11-22 18:58:13", dateFormatter.format(writtenKeePassFile.getGroupByName("testDatabase").getTimes().getExpiryTime().getTime()));
+    }
+
     @Test
     public void whenUsingGetGroupsShouldReturnAllGroups() throws FileNotFoundException {
         KeePassFile keePassFile = parseKeePassXml();
@@ -211,4 +232,34 @@ public class KeePassDatabaseXmlParserTest {
         Assert.assertEquals("2014-11-22 18:58:56", dateFormatter.format(times.getLocationChanged().getTime()));
         Assert.assertEquals(8, times.getUsageCount());
     }
+
+    @Test
+    public void whenFlagsAreMissingShouldNotWriteThem() throws IOException {
+        String xml = "<KeePassFile><Meta><Generator>other</Generator></Meta><Root><Group><Name>Top</Name>"
+                + "<Times><UsageCount>0</UsageCount></Times></Group></Root></KeePassFile>";
+
+        KeePassDatabaseXmlParser parser = new KeePassDatabaseXmlParser();
+        KeePassFile keePassFile = parser.fromXml(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        String written = new String(parser.toXml(keePassFile).toByteArray(), "UTF-8");
+
+        Assert.assertFalse(written.contains("RecycleBinEnabled"));
+        Assert.assertFalse(written.contains("IsExpanded"));
+        Assert.assertFalse(written.contains("Expires"));
+        Assert.assertTrue(written.contains("<UsageCount>0</UsageCount>"));
+    }
+
+    @Test
+    public void whenPropertyIsNotProtectedShouldNotWriteProtectedAttribute() throws IOException {
+        String xml = "<KeePassFile><Meta><Generator>other</Generator></Meta><Root><Group><Name>Top</Name><Entry>"
+                + "<String><Key>Title</Key><Value>Sample Entry</Value></String>"
+                + "<String><Key>Password</Key><Value Protected=\"True\">c2VjcmV0</Value></String></Entry></Group></Root></KeePassFile>";
+
+        KeePassDatabaseXmlParser parser = new KeePassDatabaseXmlParser();
+        KeePassFile keePassFile = parser.fromXml(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        String written = new String(parser.toXml(keePassFile).toByteArray(), "UTF-8");
+
+        Assert.assertTrue(written.contains("<Value>Sample Entry</Value>"));
+        Assert.assertTrue(written.contains("<Value Protected=\"True\">c2VjcmV0</Value>"));
+        Assert.assertFalse(written.contains("Protected=\"False\""));
+    }
 }
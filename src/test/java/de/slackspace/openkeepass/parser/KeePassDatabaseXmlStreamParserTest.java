@@ -0,0 +1,153 @@
+package de.slackspace.openkeepass.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.slackspace.openkeepass.crypto.Salsa20;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.Meta;
+import de.slackspace.openkeepass.domain.ReadOptions;
+import de.slackspace.openkeepass.domain.Times;
+import de.slackspace.openkeepass.domain.visitor.EntryVisitorAdapter;
+import de.slackspace.openkeepass.util.ByteUtils;
+
+public class KeePassDatabaseXmlStreamParserTest {
+
+    private byte[] protectedStreamKey = ByteUtils.hexStringToByteArray("ec77a2169769734c5d26e5341401f8d7b11052058f8455d314879075d0b7e257");
+
+    @Test
+    public void whenInputIsValidKeePassXmlShouldVisitMetadata() throws FileNotFoundException {
+        RecordingVisitor visitor = parseKeePassXml();
+
+        Assert.assertEquals("KeePass", visitor.meta.getGenerator());
+        Assert.assertEquals("TestDatabase", visitor.meta.getDatabaseName());
+        Assert.assertEquals(10, visitor.meta.getHistoryMaxItems());
+    }
+
+    @Test
+    public void whenInputIsValidKeePassXmlShouldVisitAllEntriesWithDecryptedValues() throws FileNotFoundException {
+        RecordingVisitor visitor = parseKeePassXml();
+
+        Assert.assertEquals(3, visitor.entries.size());
+
+        Entry entry = visitor.entries.get(0);
+        Assert.assertEquals(UUID.fromString("9626dd2d-6f3c-714e-81be-b3d096f2aa30"), entry.getUuid());
+        Assert.assertEquals("Sample Entry", entry.getTitle());
+        Assert.assertEquals("http://keepass.info/", entry.getUrl());
+        Assert.assertEquals("User Name", entry.getUsername());
+        Assert.assertEquals("Notes", entry.getNotes());
+        Assert.assertEquals("Password", entry.getPassword());
+    }
+
+    @Test
+    public void whenInputIsValidKeePassXmlShouldReadEntryTimes() throws FileNotFoundException {
+        RecordingVisitor visitor = parseKeePassXml();
+
+        Times times = visitor.entries.get(0).getTimes();
+        Assert.assertEquals(DatatypeConverter.parseDateTime("2014-11-22T18:59:39Z").getTimeInMillis(), times.getCreationTime().getTimeInMillis());
+        Assert.assertEquals(DatatypeConverter.parseDateTime("2014-11-22T18:59:45Z").getTimeInMillis(), times.getLastAccessTime().getTimeInMillis());
+    }
+
+    @Test
+    public void whenInputIsValidKeePassXmlShouldEnterAndExitGroupsInDocumentOrder() throws FileNotFoundException {
+        RecordingVisitor visitor = parseKeePassXml();
+
+        Assert.assertEquals("+testDatabase", visitor.groupEvents.get(0));
+        Assert.assertEquals("+General", visitor.groupEvents.get(1));
+        Assert.assertEquals("-General", visitor.groupEvents.get(2));
+        Assert.assertEquals("-testDatabase", visitor.groupEvents.get(visitor.groupEvents.size() - 1));
+    }
+
+    @Test
+    public void whenFindingEntryByTitleShouldDecryptOnlyMatchingEntry() throws FileNotFoundException {
+        FileInputStream fileInputStream = new FileInputStream("target/test-classes/testDatabase_decrypted.xml");
+
+        Entry entry = new KeePassDatabaseXmlStreamParser().findEntryByTitle(fileInputStream, Salsa20.createInstance(protectedStreamKey), "sample entry");
+
+        Assert.assertEquals(UUID.fromString("9626dd2d-6f3c-714e-81be-b3d096f2aa30"), entry.getUuid());
+        Assert.assertEquals("Password", entry.getPassword());
+        Assert.assertEquals("User Name", entry.getUsername());
+    }
+
+    @Test
+    public void whenFindingEntryByUuidShouldSkipPrecedingProtectedValues() throws FileNotFoundException {
+        List<Entry> entries = parseKeePassXml().entries;
+        Entry expected = entries.get(entries.size() - 1);
+        FileInputStream fileInputStream = new FileInputStream("target/test-classes/testDatabase_decrypted.xml");
+
+        Entry entry = new KeePassDatabaseXmlStreamParser().findEntryByUuid(fileInputStream, Salsa20.createInstance(protectedStreamKey), expected.getUuid());
+
+        Assert.assertEquals(expected, entry);
+    }
+
+    @Test
+    public void whenCustomPropertyPrecedesTitleShouldKeepDocumentOrder() throws UnsupportedEncodingException {
+        String xml = "<Entry><UUID>libdLW88cU6BvrPQlvKqMA==</UUID>"
+                + "<String><Key>Custom</Key><Value>custom value</Value></String>"
+                + "<String><Key>Title</Key><Value>Sample Entry</Value></String>"
+                + "<String><Key>Password</Key><Value Protected=\"False\">secret</Value></String></Entry>";
+
+        Entry entry = new KeePassDatabaseXmlStreamParser().parseEntry(new ByteArrayInputStream(xml.getBytes("UTF-8")),
+                Salsa20.createInstance(protectedStreamKey), ReadOptions.ALL);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new KeePassDatabaseXmlSerializer().serialize(
+                new KeePassFileBuilder("orderDB").addTopGroups(new GroupBuilder("Top").addEntry(entry).build()).build(), output);
+        String written = new String(output.toByteArray(), "UTF-8");
+
+        Assert.assertEquals(3, entry.getProperties().size());
+        Assert.assertEquals("Custom", entry.getProperties().get(0).getKey());
+        Assert.assertEquals("Sample Entry", entry.getTitle());
+        Assert.assertTrue(written.indexOf("<Key>Custom</Key>") < written.indexOf("<Key>Title</Key>"));
+        Assert.assertTrue(written.indexOf("<Key>Title</Key>") < written.indexOf("<Key>Password</Key>"));
+    }
+
+    private RecordingVisitor parseKeePassXml() throws FileNotFoundException {
+        FileInputStream fileInputStream = new FileInputStream("target/test-classes/testDatabase_decrypted.xml");
+        RecordingVisitor visitor = new RecordingVisitor();
+
+        new KeePassDatabaseXmlStreamParser().parse(fileInputStream, Salsa20.createInstance(protectedStreamKey), visitor);
+
+        return visitor;
+    }
+
+    private static class RecordingVisitor extends EntryVisitorAdapter {
+
+        private Meta meta;
+        private List<Entry> entries = new ArrayList<Entry>();
+        private List<String> groupEvents = new ArrayList<String>();
+
+        @Override
+        public void visitMeta(Meta meta) {
+            this.meta = meta;
+        }
+
+        @Override
+        public void enterGroup(Group group) {
+            groupEvents.add("+" + group.getName());
+        }
+
+        @Override
+        public void visitEntry(Entry entry) {
+            entries.add(entry);
+        }
+
+        @Override
+        public void exitGroup(Group group) {
+            groupEvents.add("-" + group.getName());
+        }
+    }
+}
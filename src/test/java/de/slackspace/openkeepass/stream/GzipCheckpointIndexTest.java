@@ -0,0 +1,79 @@
+package de.slackspace.openkeepass.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Test;
+
+public class GzipCheckpointIndexTest {
+
+    private static Random random = new Random(42);
+
+    @Test
+    public void whenBuildingIndexShouldDecompressWholeStream() throws IOException {
+        byte[] orig = createCompressibleData(300000);
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+
+        GzipCheckpointIndex index = GzipCheckpointIndex.build(gzip(orig), 16 * 1024, decompressed);
+
+        assertArrayEquals(orig, decompressed.toByteArray());
+        assertEquals(orig.length, index.getUncompressedSize());
+        assertTrue(index.getCheckpointCount() > 1);
+    }
+
+    @Test
+    public void whenReadingRangesShouldResumeAtCheckpoints() throws IOException {
+        byte[] orig = createCompressibleData(300000);
+        GzipCheckpointIndex index = GzipCheckpointIndex.build(gzip(orig), 16 * 1024, new ByteArrayOutputStream());
+
+        int[] offsets = { 0, 1, 40000, 123456, 299000, orig.length - 10 };
+        for (int offset : offsets) {
+            int length = Math.min(5000, orig.length - offset);
+            assertArrayEquals(Arrays.copyOfRange(orig, offset, offset + length), index.read(offset, length));
+        }
+    }
+
+    @Test
+    public void whenDataIsIncompressibleShouldReadStoredBlocks() throws IOException {
+        byte[] orig = new byte[100000];
+        random.nextBytes(orig);
+        GzipCheckpointIndex index = GzipCheckpointIndex.build(gzip(orig), 8 * 1024, new ByteArrayOutputStream());
+
+        assertArrayEquals(Arrays.copyOfRange(orig, 70000, 71000), index.read(70000, 1000));
+    }
+
+    @Test(expected = ZipException.class)
+    public void whenCrcIsCorruptShouldThrowException() throws IOException {
+        byte[] compressed = gzip(createCompressibleData(1000));
+        compressed[compressed.length - 8] ^= 1;
+
+        GzipCheckpointIndex.build(compressed, 1024, new ByteArrayOutputStream());
+    }
+
+    private byte[] createCompressibleData(int size) {
+        String[] words = { "<Entry>", "<String>", "<Key>Title</Key>", "<Value Protected=\"True\">", "secret", "</Value>", "</String>", "</Entry>" };
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        while (data.size() < size) {
+            byte[] word = words[random.nextInt(words.length)].getBytes();
+            data.write(word, 0, word.length);
+            data.write('0' + random.nextInt(10));
+        }
+        return Arrays.copyOf(data.toByteArray(), size);
+    }
+
+    private byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed);
+        gzipOutputStream.write(data);
+        gzipOutputStream.close();
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,46 @@
+package de.slackspace.openkeepass.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashedBlockDecoderTest {
+
+    private static Random random = new Random();
+
+    @Test
+    public void whenFeedingInSmallChunksShouldDecodePayload() throws IOException {
+        byte[] payload = new byte[3000];
+        random.nextBytes(payload);
+        byte[] encoded = encode(payload);
+
+        HashedBlockDecoder decoder = new HashedBlockDecoder();
+        for (int i = 0; i < encoded.length; i += 7) {
+            Assert.assertFalse(decoder.isComplete());
+            decoder.update(encoded, i, Math.min(7, encoded.length - i));
+        }
+
+        Assert.assertTrue(decoder.isComplete());
+        Assert.assertArrayEquals(payload, decoder.getPayload());
+    }
+
+    @Test(expected = IOException.class)
+    public void whenBlockIsCorruptShouldThrowException() throws IOException {
+        byte[] encoded = encode(new byte[] { 1, 2, 3, 4 });
+        encoded[45] ^= 1;
+
+        new HashedBlockDecoder().update(encoded, 0, encoded.length);
+    }
+
+    private byte[] encode(byte[] payload) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        HashedBlockOutputStream hashedBlockOutputStream = new HashedBlockOutputStream(outputStream);
+        hashedBlockOutputStream.write(payload);
+        hashedBlockOutputStream.close();
+
+        return outputStream.toByteArray();
+    }
+}
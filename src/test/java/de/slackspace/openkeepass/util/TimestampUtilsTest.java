@@ -0,0 +1,54 @@
+package de.slackspace.openkeepass.util;
+
+import java.util.Calendar;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimestampUtilsTest {
+
+    private static final long TIMESTAMP = 1416682779000L;
+
+    @Test
+    public void whenParsingIsoTimestampShouldMatchDatatypeConverter() {
+        Assert.assertEquals(TIMESTAMP, TimestampUtils.parse("2014-11-22T18:59:39Z"));
+        Assert.assertEquals(DatatypeConverter.parseDateTime("2014-11-22T19:59:39.25+01:00").getTimeInMillis(),
+                TimestampUtils.parse("2014-11-22T19:59:39.25+01:00"));
+        Assert.assertEquals(DatatypeConverter.parseDateTime("2014-11-22T18:59:39").getTimeInMillis(), TimestampUtils.parse("2014-11-22T18:59:39"));
+    }
+
+    @Test
+    public void whenParsingBase64TimestampShouldReadSecondsSinceYearOne() {
+        Assert.assertEquals(TIMESTAMP, TimestampUtils.parse("G9QCzA4AAAA="));
+        Assert.assertEquals("G9QCzA4AAAA=", TimestampUtils.printBase64(TIMESTAMP));
+        Assert.assertEquals(-62135596800000L, TimestampUtils.parse("AAAAAAAAAAA="));
+    }
+
+    @Test
+    public void whenPrintingTimestampShouldRoundTrip() {
+        Assert.assertEquals("2014-11-22T18:59:39Z", TimestampUtils.print(TIMESTAMP));
+        Assert.assertEquals("2014-11-22T18:59:39.005Z", TimestampUtils.print(TIMESTAMP + 5));
+        Assert.assertEquals("0001-01-01T00:00:00Z", TimestampUtils.print(-62135596800000L));
+        Assert.assertEquals("1969-12-31T23:59:59Z", TimestampUtils.print(-1000));
+        Assert.assertEquals("9999-12-31T23:59:59Z", TimestampUtils.print(TimestampUtils.parse("9999-12-31T23:59:59Z")));
+    }
+
+    @Test
+    public void whenTimestampIsMissingShouldReturnNone() {
+        Assert.assertEquals(TimestampUtils.NONE, TimestampUtils.parse(" "));
+        Assert.assertEquals(TimestampUtils.NONE, TimestampUtils.parse(null));
+        Assert.assertNull(TimestampUtils.print(TimestampUtils.NONE));
+        Assert.assertNull(TimestampUtils.toCalendar(TimestampUtils.NONE));
+    }
+
+    @Test
+    public void whenCreatingCalendarShouldUseUtc() {
+        Calendar calendar = TimestampUtils.toCalendar(TIMESTAMP);
+
+        Assert.assertEquals(TIMESTAMP, calendar.getTimeInMillis());
+        Assert.assertEquals(18, calendar.get(Calendar.HOUR_OF_DAY));
+        Assert.assertEquals(TIMESTAMP, TimestampUtils.fromCalendar(calendar));
+    }
+}